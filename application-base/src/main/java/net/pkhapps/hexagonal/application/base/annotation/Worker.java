@@ -29,7 +29,8 @@ import java.lang.annotation.Target;
  * interacts with the domain model (typically through domain services) and with
  * {@linkplain ApplicationServiceDelegate application service delegates} on a regular basis, for example through
  * {@linkplain org.springframework.scheduling.annotation.Scheduled scheduled} or continuously running jobs such as
- * consumer or producer threads.
+ * consumer or producer threads. Continuously running workers can be managed by the
+ * {@link net.pkhapps.hexagonal.application.base.worker.WorkerRuntime}.
  *
  * @see Orchestrator
  */
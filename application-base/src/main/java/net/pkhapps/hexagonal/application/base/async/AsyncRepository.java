@@ -0,0 +1,212 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.application.base.async;
+
+import net.pkhapps.hexagonal.domain.base.BaseAggregateRoot;
+import net.pkhapps.hexagonal.domain.base.BaseRepository;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.io.Serializable;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Asynchronous facade over a {@link BaseRepository}, for callers that must not block (such as reactive edge
+ * services). Every call is run on a {@link RepositoryExecutor} and returns a {@link CompletableFuture}.
+ * <p>
+ * Every call runs in its own thread and therefore in its own transaction; calls made through this facade never take
+ * part in the transaction of the caller. Returned aggregates are detached, so lazy associations must be fetched by the
+ * query itself (for example with an entity graph).
+ *
+ * @param <Aggregate> the aggregate root type.
+ * @param <ID>        the ID type.
+ */
+public class AsyncRepository<Aggregate extends BaseAggregateRoot<ID>, ID extends Serializable> {
+
+    private final BaseRepository<Aggregate, ID> repository;
+    private final RepositoryExecutor executor;
+
+    /**
+     * Creates a new {@code AsyncRepository}.
+     *
+     * @param repository the repository to delegate to.
+     * @param executor   the executor to run the calls on.
+     */
+    public AsyncRepository(@NotNull BaseRepository<Aggregate, ID> repository, @NotNull RepositoryExecutor executor) {
+        this.repository = requireNonNull(repository);
+        this.executor = requireNonNull(executor);
+    }
+
+    /**
+     * Returns the underlying repository.
+     *
+     * @return the repository.
+     */
+    public @NotNull BaseRepository<Aggregate, ID> getRepository() {
+        return repository;
+    }
+
+    /**
+     * Asynchronous version of {@link BaseRepository#findById(Object)}.
+     *
+     * @param id the ID of the aggregate.
+     * @return a future that completes with the aggregate, or an empty {@code Optional} if not found.
+     */
+    public @NotNull CompletableFuture<Optional<Aggregate>> findById(@NotNull ID id) {
+        requireNonNull(id);
+        return executor.submit(() -> repository.findById(id));
+    }
+
+    /**
+     * Asynchronous version of {@link BaseRepository#existsById(Object)}.
+     *
+     * @param id the ID of the aggregate.
+     * @return a future that completes with true if the aggregate exists, false otherwise.
+     */
+    public @NotNull CompletableFuture<Boolean> existsById(@NotNull ID id) {
+        requireNonNull(id);
+        return executor.submit(() -> repository.existsById(id));
+    }
+
+    /**
+     * Asynchronous version of {@link BaseRepository#findAllById(Iterable)}.
+     *
+     * @param ids the IDs of the aggregates.
+     * @return a future that completes with the aggregates that were found.
+     */
+    public @NotNull CompletableFuture<List<Aggregate>> findAllById(@NotNull Iterable<ID> ids) {
+        requireNonNull(ids);
+        return executor.submit(() -> repository.findAllById(ids));
+    }
+
+    /**
+     * Asynchronous version of {@link BaseRepository#findOne(Specification)}.
+     *
+     * @param specification the specification of the aggregate to find, or {@code null} to match all aggregates.
+     * @return a future that completes with the matching aggregate, or an empty {@code Optional} if none matches.
+     */
+    public @NotNull CompletableFuture<Optional<Aggregate>> findOne(@Nullable Specification<Aggregate> specification) {
+        return executor.submit(() -> repository.findOne(specification));
+    }
+
+    /**
+     * Asynchronous version of {@link BaseRepository#findAll(Specification)}.
+     *
+     * @param specification the specification of the aggregates to find, or {@code null} to find all aggregates.
+     * @return a future that completes with the matching aggregates.
+     */
+    public @NotNull CompletableFuture<List<Aggregate>> findAll(@Nullable Specification<Aggregate> specification) {
+        return executor.submit(() -> repository.findAll(specification));
+    }
+
+    /**
+     * Asynchronous version of {@link BaseRepository#findAll(Specification, Sort)}.
+     *
+     * @param specification the specification of the aggregates to find, or {@code null} to find all aggregates.
+     * @param sort          the sort order.
+     * @return a future that completes with the matching aggregates.
+     */
+    public @NotNull CompletableFuture<List<Aggregate>> findAll(@Nullable Specification<Aggregate> specification,
+                                                               @NotNull Sort sort) {
+        requireNonNull(sort);
+        return executor.submit(() -> repository.findAll(specification, sort));
+    }
+
+    /**
+     * Asynchronous version of {@link BaseRepository#findAll(Specification, Pageable)}.
+     *
+     * @param specification the specification of the aggregates to find, or {@code null} to find all aggregates.
+     * @param pageable      the page to find.
+     * @return a future that completes with the page of matching aggregates.
+     */
+    public @NotNull CompletableFuture<Page<Aggregate>> findAll(@Nullable Specification<Aggregate> specification,
+                                                               @NotNull Pageable pageable) {
+        requireNonNull(pageable);
+        return executor.submit(() -> repository.findAll(specification, pageable));
+    }
+
+    /**
+     * Asynchronous version of {@link BaseRepository#count(Specification)}.
+     *
+     * @param specification the specification of the aggregates to count, or {@code null} to count all aggregates.
+     * @return a future that completes with the number of matching aggregates.
+     */
+    public @NotNull CompletableFuture<Long> count(@Nullable Specification<Aggregate> specification) {
+        return executor.submit(() -> repository.count(specification));
+    }
+
+    /**
+     * Asynchronous version of {@link BaseRepository#save(Object)}.
+     *
+     * @param aggregate the aggregate to save.
+     * @param <S>       the aggregate type.
+     * @return a future that completes with the saved aggregate.
+     */
+    public <S extends Aggregate> @NotNull CompletableFuture<S> save(@NotNull S aggregate) {
+        requireNonNull(aggregate);
+        return executor.submit(() -> repository.save(aggregate));
+    }
+
+    /**
+     * Asynchronous version of {@link BaseRepository#saveAll(Iterable)}.
+     *
+     * @param aggregates the aggregates to save.
+     * @param <S>        the aggregate type.
+     * @return a future that completes with the saved aggregates.
+     */
+    public <S extends Aggregate> @NotNull CompletableFuture<List<S>> saveAll(@NotNull Iterable<S> aggregates) {
+        requireNonNull(aggregates);
+        return executor.submit(() -> repository.saveAll(aggregates));
+    }
+
+    /**
+     * Asynchronous version of {@link BaseRepository#deleteById(Object)}.
+     *
+     * @param id the ID of the aggregate to delete.
+     * @return a future that completes when the aggregate has been deleted.
+     */
+    public @NotNull CompletableFuture<Void> deleteById(@NotNull ID id) {
+        requireNonNull(id);
+        return executor.submit(() -> {
+            repository.deleteById(id);
+            return null;
+        });
+    }
+
+    /**
+     * Asynchronous version of {@link BaseRepository#delete(Object)}.
+     *
+     * @param aggregate the aggregate to delete.
+     * @return a future that completes when the aggregate has been deleted.
+     */
+    public @NotNull CompletableFuture<Void> delete(@NotNull Aggregate aggregate) {
+        requireNonNull(aggregate);
+        return executor.submit(() -> {
+            repository.delete(aggregate);
+            return null;
+        });
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.application.base.async;
+
+import net.pkhapps.hexagonal.application.base.support.VirtualThreads;
+import org.jetbrains.annotations.NotNull;
+import org.springframework.beans.factory.DisposableBean;
+
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Executor for blocking repository calls made through {@link AsyncRepository}. The number of calls running at the
+ * same time is limited to the given concurrency, which should match the size of the connection pool: running more
+ * calls than there are connections only makes them wait for a connection while holding a thread.
+ * <p>
+ * On JDKs with virtual threads, every call gets its own virtual thread, and calls beyond the concurrency limit wait
+ * for a permit without tying up a platform thread. On other JDKs, calls run on a pool of platform threads as large as
+ * the concurrency limit. In both cases, at most {@code maxQueued} calls may wait for their turn; further calls are
+ * rejected by completing their futures with a {@link RejectedExecutionException}.
+ * <p>
+ * A single executor is typically shared by all asynchronous repositories that use the same connection pool.
+ */
+public class RepositoryExecutor implements DisposableBean {
+
+    private final Semaphore permits;
+    private final Semaphore queueSlots;
+    private final Executor executor;
+    private final ThreadPoolExecutor platformExecutor;
+    private final AtomicInteger pendingCalls = new AtomicInteger();
+    private volatile boolean shutdown;
+
+    /**
+     * Creates a new {@code RepositoryExecutor}, using virtual threads if available.
+     *
+     * @param maxConcurrency the maximum number of calls to run at the same time (typically the connection pool size).
+     * @param maxQueued      the maximum number of calls waiting to run.
+     */
+    public RepositoryExecutor(int maxConcurrency, int maxQueued) {
+        this(maxConcurrency, maxQueued, true);
+    }
+
+    /**
+     * Creates a new {@code RepositoryExecutor}.
+     *
+     * @param maxConcurrency    the maximum number of calls to run at the same time (typically the connection pool
+     *                          size).
+     * @param maxQueued         the maximum number of calls waiting to run.
+     * @param useVirtualThreads whether to use virtual threads if they are available.
+     */
+    public RepositoryExecutor(int maxConcurrency, int maxQueued, boolean useVirtualThreads) {
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("maxConcurrency must be at least 1");
+        }
+        if (maxQueued < 0) {
+            throw new IllegalArgumentException("maxQueued must not be negative");
+        }
+        this.permits = new Semaphore(maxConcurrency);
+        this.queueSlots = new Semaphore(maxConcurrency + maxQueued);
+        var virtualThreads = useVirtualThreads
+                ? VirtualThreads.newThreadFactory("repository-")
+                : Optional.<ThreadFactory>empty();
+        if (virtualThreads.isPresent()) {
+            var factory = virtualThreads.get();
+            this.platformExecutor = null;
+            this.executor = command -> factory.newThread(command).start();
+        } else {
+            var threadNumber = new AtomicInteger();
+            this.platformExecutor = new ThreadPoolExecutor(maxConcurrency, maxConcurrency, 60, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<>(Math.max(1, maxQueued)), runnable -> {
+                var thread = new Thread(runnable, "repository-" + threadNumber.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.platformExecutor.allowCoreThreadTimeOut(true);
+            this.executor = platformExecutor;
+        }
+    }
+
+    /**
+     * Returns whether this executor runs calls on virtual threads.
+     *
+     * @return true if virtual threads are used, false if platform threads are used.
+     */
+    public boolean isUsingVirtualThreads() {
+        return platformExecutor == null;
+    }
+
+    /**
+     * Returns the number of calls that are currently running or waiting to run.
+     *
+     * @return the number of pending calls.
+     */
+    public int getPendingCalls() {
+        return pendingCalls.get();
+    }
+
+    /**
+     * Runs the given blocking call asynchronously.
+     *
+     * @param call the call to run.
+     * @param <T>  the result type.
+     * @return a future that completes with the result of the call.
+     */
+    public <T> @NotNull CompletableFuture<T> submit(@NotNull Supplier<T> call) {
+        var future = new CompletableFuture<T>();
+        if (shutdown) {
+            future.completeExceptionally(new RejectedExecutionException("Executor has been shut down"));
+            return future;
+        }
+        if (!queueSlots.tryAcquire()) {
+            future.completeExceptionally(new RejectedExecutionException("Too many pending repository calls"));
+            return future;
+        }
+        pendingCalls.incrementAndGet();
+        try {
+            executor.execute(() -> run(call, future));
+        } catch (RejectedExecutionException ex) {
+            release(false);
+            future.completeExceptionally(ex);
+        }
+        return future;
+    }
+
+    private <T> void run(@NotNull Supplier<T> call, @NotNull CompletableFuture<T> future) {
+        T result = null;
+        Throwable failure = null;
+        var acquired = false;
+        try {
+            permits.acquire();
+            acquired = true;
+            if (future.isDone()) {
+                return; // Cancelled while waiting
+            }
+            result = call.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            failure = ex;
+        } catch (Throwable ex) {
+            failure = ex;
+        } finally {
+            release(acquired);
+        }
+        // Complete only after releasing, so that dependent stages already see the call as finished
+        if (failure == null) {
+            future.complete(result);
+        } else {
+            future.completeExceptionally(failure);
+        }
+    }
+
+    private void release(boolean permit) {
+        if (permit) {
+            permits.release();
+        }
+        pendingCalls.decrementAndGet();
+        queueSlots.release();
+    }
+
+    /**
+     * Stops accepting new calls. Calls that have already been submitted are still run.
+     */
+    public void shutdown() {
+        shutdown = true;
+        if (platformExecutor != null) {
+            platformExecutor.shutdown();
+        }
+    }
+
+    @Override
+    public void destroy() {
+        shutdown();
+    }
+}
@@ -0,0 +1,321 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.application.base.datasource;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.jetbrains.annotations.NotNull;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Supplier;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Data source that routes read-only transactions to a set of read replicas and everything else to the primary
+ * database. Replicas are chosen round-robin among the healthy ones. A replica is excluded when it fails to hand out a
+ * connection or fails a periodic health check, and included again once a health check succeeds. If no replica is
+ * healthy, read-only transactions go to the primary.
+ * <p>
+ * To let callers read their own writes despite replication lag, the data source can be given a
+ * {@linkplain #setCallerKeySupplier(Supplier) caller key supplier} (for example returning the current user). For the
+ * duration of the {@linkplain #setReadYourWritesWindow(Duration) read-your-writes window} after a caller has committed
+ * a read-write transaction, the read-only transactions of that caller are routed to the primary.
+ * <p>
+ * The routing decision is made when a connection is requested, which transaction managers normally do before the
+ * transaction has been marked as read-only. This data source should therefore be wrapped in a
+ * {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy}, which defers fetching the connection
+ * until the first statement is executed. Declare the routing data source as a bean of its own, so that the container
+ * initializes it and stops its health checks on shutdown, and the proxy as the primary data source:
+ * <pre>
+ * &#64;Bean
+ * public ReadReplicaRoutingDataSource routingDataSource() {
+ *     return new ReadReplicaRoutingDataSource(primary, List.of(replica));
+ * }
+ *
+ * &#64;Bean
+ * &#64;Primary
+ * public DataSource dataSource(ReadReplicaRoutingDataSource routingDataSource) {
+ *     return new LazyConnectionDataSourceProxy(routingDataSource);
+ * }
+ * </pre>
+ */
+public class ReadReplicaRoutingDataSource extends AbstractRoutingDataSource implements DisposableBean {
+
+    private static final Log log = LogFactory.getLog(ReadReplicaRoutingDataSource.class);
+    private static final String PRIMARY_KEY = "primary";
+    private static final String REPLICA_KEY_PREFIX = "replica-";
+    private static final int CALLER_SWEEP_THRESHOLD = 10_000;
+
+    private final DataSource primary;
+    private final List<DataSource> replicas;
+    private final AtomicReferenceArray<Boolean> replicaHealth;
+    private final AtomicInteger nextReplica = new AtomicInteger();
+    private final Map<Object, Long> lastWriteByCaller = new ConcurrentHashMap<>();
+    private final Object writeTrackingKey = new Object();
+    private Supplier<?> callerKeySupplier = () -> null;
+    private Duration readYourWritesWindow = Duration.ofSeconds(5);
+    private Duration healthCheckInterval = Duration.ofSeconds(10);
+    private Duration healthCheckTimeout = Duration.ofSeconds(2);
+    private Clock clock = Clock.systemUTC();
+    private ScheduledExecutorService healthChecker;
+
+    /**
+     * Creates a new {@code ReadReplicaRoutingDataSource}.
+     *
+     * @param primary  the primary data source.
+     * @param replicas the read replica data sources.
+     */
+    public ReadReplicaRoutingDataSource(@NotNull DataSource primary, @NotNull List<? extends DataSource> replicas) {
+        this.primary = requireNonNull(primary);
+        this.replicas = List.copyOf(replicas);
+        this.replicaHealth = new AtomicReferenceArray<>(this.replicas.size());
+        var targets = new HashMap<Object, Object>();
+        targets.put(PRIMARY_KEY, primary);
+        for (int i = 0; i < this.replicas.size(); ++i) {
+            targets.put(REPLICA_KEY_PREFIX + i, this.replicas.get(i));
+            replicaHealth.set(i, true);
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        setLenientFallback(false);
+    }
+
+    /**
+     * Sets the supplier of the key identifying the current caller, for read-your-writes tracking. If the supplier
+     * returns {@code null}, the caller is not tracked. By default, no callers are tracked.
+     *
+     * @param callerKeySupplier the caller key supplier.
+     */
+    public void setCallerKeySupplier(@NotNull Supplier<?> callerKeySupplier) {
+        this.callerKeySupplier = requireNonNull(callerKeySupplier);
+    }
+
+    /**
+     * Sets how long after a committed write the read-only transactions of the same caller go to the primary. The
+     * default is 5 seconds.
+     *
+     * @param readYourWritesWindow the window, or {@link Duration#ZERO} to disable read-your-writes.
+     */
+    public void setReadYourWritesWindow(@NotNull Duration readYourWritesWindow) {
+        this.readYourWritesWindow = requireNonNull(readYourWritesWindow);
+    }
+
+    /**
+     * Sets the interval of the replica health checks. The default is 10 seconds. Must be set before the data source
+     * is initialized.
+     *
+     * @param healthCheckInterval the interval, or {@link Duration#ZERO} to disable periodic health checks (failing
+     *                            replicas are then never included again).
+     */
+    public void setHealthCheckInterval(@NotNull Duration healthCheckInterval) {
+        this.healthCheckInterval = requireNonNull(healthCheckInterval);
+    }
+
+    /**
+     * Sets the timeout of a single replica health check. The default is 2 seconds.
+     *
+     * @param healthCheckTimeout the timeout.
+     */
+    public void setHealthCheckTimeout(@NotNull Duration healthCheckTimeout) {
+        this.healthCheckTimeout = requireNonNull(healthCheckTimeout);
+    }
+
+    /**
+     * Sets the clock used for the read-your-writes window. Intended for testing.
+     *
+     * @param clock the clock.
+     */
+    public void setClock(@NotNull Clock clock) {
+        this.clock = requireNonNull(clock);
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        super.afterPropertiesSet();
+        if (!replicas.isEmpty() && !healthCheckInterval.isZero() && healthChecker == null) {
+            healthChecker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                var thread = new Thread(runnable, "replica-health-check");
+                thread.setDaemon(true);
+                return thread;
+            });
+            healthChecker.scheduleWithFixedDelay(this::checkReplicaHealth, healthCheckInterval.toMillis(),
+                    healthCheckInterval.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (healthChecker != null) {
+            healthChecker.shutdownNow();
+            healthChecker = null;
+        }
+    }
+
+    /**
+     * Returns whether the given replica is currently considered healthy.
+     *
+     * @param replica the index of the replica.
+     * @return true if the replica is healthy, false if it is excluded.
+     */
+    public boolean isReplicaHealthy(int replica) {
+        return replicaHealth.get(replica);
+    }
+
+    /**
+     * Checks the health of all replicas immediately. This is also done periodically in the background.
+     */
+    public void checkReplicaHealth() {
+        var timeoutSeconds = (int) Math.max(1, healthCheckTimeout.toSeconds());
+        for (int i = 0; i < replicas.size(); ++i) {
+            boolean healthy;
+            try (var connection = replicas.get(i).getConnection()) {
+                healthy = connection.isValid(timeoutSeconds);
+            } catch (SQLException | RuntimeException ex) {
+                healthy = false;
+            }
+            setReplicaHealth(i, healthy);
+        }
+    }
+
+    private void setReplicaHealth(int replica, boolean healthy) {
+        var previous = replicaHealth.getAndSet(replica, healthy);
+        if (previous != healthy) {
+            log.info(String.format("Replica %d is now %s", replica, healthy ? "included" : "excluded"));
+        }
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return getConnection(DataSource::getConnection);
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return getConnection(dataSource -> dataSource.getConnection(username, password));
+    }
+
+    private @NotNull Connection getConnection(@NotNull ConnectionSource source) throws SQLException {
+        var replica = selectReplica();
+        if (replica >= 0) {
+            try {
+                return source.getConnection(replicas.get(replica));
+            } catch (SQLException ex) {
+                log.warn(String.format("Could not get connection from replica %d, falling back to primary", replica),
+                        ex);
+                setReplicaHealth(replica, false);
+            }
+        } else {
+            trackWrite();
+        }
+        return source.getConnection(primary);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        var replica = selectReplica();
+        return replica < 0 ? PRIMARY_KEY : REPLICA_KEY_PREFIX + replica;
+    }
+
+    /**
+     * Selects the replica to use for the current transaction.
+     *
+     * @return the index of the replica, or -1 to use the primary.
+     */
+    private int selectReplica() {
+        if (replicas.isEmpty() || !TransactionSynchronizationManager.isCurrentTransactionReadOnly()
+                || isWithinReadYourWritesWindow()) {
+            return -1;
+        }
+        var start = Math.floorMod(nextReplica.getAndIncrement(), replicas.size());
+        for (int i = 0; i < replicas.size(); ++i) {
+            var candidate = (start + i) % replicas.size();
+            if (replicaHealth.get(candidate)) {
+                return candidate;
+            }
+        }
+        return -1;
+    }
+
+    private boolean isWithinReadYourWritesWindow() {
+        var caller = callerKeySupplier.get();
+        if (caller == null || readYourWritesWindow.isZero()) {
+            return false;
+        }
+        var lastWrite = lastWriteByCaller.get(caller);
+        return lastWrite != null && clock.millis() - lastWrite < readYourWritesWindow.toMillis();
+    }
+
+    private void trackWrite() {
+        // Writes can only be detected inside read-write transactions
+        if (readYourWritesWindow.isZero() || !TransactionSynchronizationManager.isActualTransactionActive()
+                || TransactionSynchronizationManager.isCurrentTransactionReadOnly()
+                || !TransactionSynchronizationManager.isSynchronizationActive()
+                || TransactionSynchronizationManager.hasResource(writeTrackingKey)) {
+            return;
+        }
+        var caller = callerKeySupplier.get();
+        if (caller == null) {
+            return;
+        }
+        TransactionSynchronizationManager.bindResource(writeTrackingKey, caller);
+        // The window starts when the write becomes visible, i.e. when the transaction commits
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                recordWrite(caller);
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(writeTrackingKey);
+            }
+        });
+    }
+
+    private void recordWrite(@NotNull Object caller) {
+        var now = clock.millis();
+        lastWriteByCaller.put(caller, now);
+        if (lastWriteByCaller.size() > CALLER_SWEEP_THRESHOLD) {
+            var window = readYourWritesWindow.toMillis();
+            lastWriteByCaller.values().removeIf(lastWrite -> now - lastWrite >= window);
+        }
+    }
+
+    @FunctionalInterface
+    private interface ConnectionSource {
+        @NotNull Connection getConnection(@NotNull DataSource dataSource) throws SQLException;
+    }
+}
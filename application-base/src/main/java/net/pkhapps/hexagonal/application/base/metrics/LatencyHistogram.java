@@ -0,0 +1,171 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.application.base.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+
+/**
+ * Lock-free latency histogram with logarithmic buckets, in the style of HdrHistogram. Every power of two is split
+ * into 32 linear sub-buckets, which gives a relative error of at most about 3% over the whole range while keeping the
+ * histogram at a fixed size of a few kilobytes. Recording a value is a couple of arithmetic operations and a single
+ * atomic increment, so the histogram can be shared by any number of threads.
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    /**
+     * Values are capped at 2^42 ns (a bit more than an hour).
+     */
+    private static final int MAX_VALUE_BITS = 42;
+    private static final long MAX_VALUE = (1L << MAX_VALUE_BITS) - 1;
+    private static final int BUCKET_COUNT = (MAX_VALUE_BITS - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Records the given value.
+     *
+     * @param nanos the value to record, in nanoseconds. Negative values are recorded as 0 and values larger than about
+     *              an hour are capped.
+     */
+    public void record(long nanos) {
+        var value = Math.min(Math.max(nanos, 0), MAX_VALUE);
+        counts.getAndIncrement(indexOf(value));
+        max.accumulate(value);
+    }
+
+    /**
+     * Takes a snapshot of the histogram. Values that are recorded while the snapshot is being taken may or may not be
+     * included in it.
+     *
+     * @return a new snapshot.
+     */
+    public Snapshot snapshot() {
+        var copy = new long[BUCKET_COUNT];
+        for (var i = 0; i < BUCKET_COUNT; ++i) {
+            copy[i] = counts.get(i);
+        }
+        return new Snapshot(copy, max.get());
+    }
+
+    static int indexOf(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        var shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        var subBucket = (int) (value >>> shift) & (SUB_BUCKET_COUNT - 1);
+        return (shift + 1) * SUB_BUCKET_COUNT + subBucket;
+    }
+
+    static long lowestValueOf(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        var shift = index / SUB_BUCKET_COUNT - 1;
+        var subBucket = index % SUB_BUCKET_COUNT;
+        return (long) (SUB_BUCKET_COUNT + subBucket) << shift;
+    }
+
+    static long highestValueOf(int index) {
+        return index + 1 < BUCKET_COUNT ? lowestValueOf(index + 1) - 1 : MAX_VALUE;
+    }
+
+    /**
+     * Immutable snapshot of a {@link LatencyHistogram}.
+     */
+    public static final class Snapshot {
+
+        private final long[] counts;
+        private final long totalCount;
+        private final long max;
+
+        private Snapshot(long[] counts, long max) {
+            this.counts = counts;
+            var total = 0L;
+            for (var count : counts) {
+                total += count;
+            }
+            this.totalCount = total;
+            this.max = max;
+        }
+
+        /**
+         * Returns the number of recorded values.
+         *
+         * @return the number of values.
+         */
+        public long getTotalCount() {
+            return totalCount;
+        }
+
+        /**
+         * Returns the largest recorded value.
+         *
+         * @return the maximum in nanoseconds, or 0 if no values have been recorded.
+         */
+        public long getMax() {
+            return max;
+        }
+
+        /**
+         * Returns the (approximate) mean of the recorded values.
+         *
+         * @return the mean in nanoseconds, or 0 if no values have been recorded.
+         */
+        public double getMean() {
+            if (totalCount == 0) {
+                return 0;
+            }
+            var sum = 0.0;
+            for (var i = 0; i < counts.length; ++i) {
+                if (counts[i] > 0) {
+                    sum += counts[i] * ((lowestValueOf(i) + highestValueOf(i)) / 2.0);
+                }
+            }
+            return sum / totalCount;
+        }
+
+        /**
+         * Returns the value at the given percentile. The returned value is the upper end of the bucket containing the
+         * percentile, so it never underestimates the actual value by more than the precision of the histogram.
+         *
+         * @param percentile the percentile, between 0 and 100.
+         * @return the value in nanoseconds, or 0 if no values have been recorded.
+         */
+        public long getValueAtPercentile(double percentile) {
+            if (percentile < 0 || percentile > 100) {
+                throw new IllegalArgumentException("Percentile must be between 0 and 100");
+            }
+            if (totalCount == 0) {
+                return 0;
+            }
+            var target = Math.max(1, (long) Math.ceil(percentile / 100.0 * totalCount));
+            var seen = 0L;
+            for (var i = 0; i < counts.length; ++i) {
+                seen += counts[i];
+                if (seen >= target) {
+                    return Math.min(highestValueOf(i), max);
+                }
+            }
+            return max;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.application.base.metrics;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Records the metrics of a single service method.
+ */
+final class MethodMetrics {
+
+    private final Class<?> serviceClass;
+    private final Method method;
+    private final String methodName;
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private long lastSnapshotNanos = System.nanoTime();
+    private long lastCalls;
+    private long lastErrors;
+
+    MethodMetrics(@NotNull Class<?> serviceClass, @NotNull Method method) {
+        this.serviceClass = requireNonNull(serviceClass);
+        this.method = requireNonNull(method);
+        this.methodName = Arrays.stream(method.getParameterTypes())
+                .map(Class::getTypeName)
+                .collect(Collectors.joining(",", method.getName() + "(", ")"));
+    }
+
+    void record(long elapsedNanos, boolean failed) {
+        calls.increment();
+        if (failed) {
+            errors.increment();
+        }
+        latency.record(elapsedNanos);
+    }
+
+    synchronized @NotNull MethodMetricsSnapshot snapshot() {
+        var now = System.nanoTime();
+        var currentCalls = calls.sum();
+        var currentErrors = errors.sum();
+        var snapshot = new MethodMetricsSnapshot(serviceClass, method, methodName, currentCalls, currentErrors,
+                Duration.ofNanos(now - lastSnapshotNanos), currentCalls - lastCalls, currentErrors - lastErrors,
+                latency.snapshot());
+        lastSnapshotNanos = now;
+        lastCalls = currentCalls;
+        lastErrors = currentErrors;
+        return snapshot;
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.application.base.metrics;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.lang.reflect.Method;
+import java.time.Duration;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Immutable snapshot of the metrics of a single service method, as passed to {@link MetricsSink}s. Call and error
+ * counts and the latency histogram are cumulative since the application started; the rates are computed over the
+ * interval since the previous snapshot was published.
+ */
+public final class MethodMetricsSnapshot {
+
+    private final Class<?> serviceClass;
+    private final Method method;
+    private final String methodName;
+    private final long calls;
+    private final long errors;
+    private final Duration interval;
+    private final long intervalCalls;
+    private final long intervalErrors;
+    private final LatencyHistogram.Snapshot latency;
+
+    MethodMetricsSnapshot(@NotNull Class<?> serviceClass, @NotNull Method method, @NotNull String methodName,
+                          long calls, long errors,
+                          @NotNull Duration interval, long intervalCalls, long intervalErrors,
+                          @NotNull LatencyHistogram.Snapshot latency) {
+        this.serviceClass = requireNonNull(serviceClass);
+        this.method = requireNonNull(method);
+        this.methodName = requireNonNull(methodName);
+        this.calls = calls;
+        this.errors = errors;
+        this.interval = requireNonNull(interval);
+        this.intervalCalls = intervalCalls;
+        this.intervalErrors = intervalErrors;
+        this.latency = requireNonNull(latency);
+    }
+
+    /**
+     * Returns the name of the service (the fully qualified name of the service class).
+     *
+     * @return the service name.
+     */
+    public @NotNull String getServiceName() {
+        return serviceClass.getName();
+    }
+
+    /**
+     * Returns the service class.
+     *
+     * @return the service class.
+     */
+    public @NotNull Class<?> getServiceClass() {
+        return serviceClass;
+    }
+
+    /**
+     * Returns the name of the method including its parameter types, such as {@code find(java.lang.Long)}, so that
+     * overloaded methods can be told apart.
+     *
+     * @return the method name.
+     */
+    public @NotNull String getMethodName() {
+        return methodName;
+    }
+
+    /**
+     * Returns the method.
+     *
+     * @return the method.
+     */
+    public @NotNull Method getMethod() {
+        return method;
+    }
+
+    /**
+     * Returns the total number of calls, including failed ones.
+     *
+     * @return the number of calls.
+     */
+    public long getCalls() {
+        return calls;
+    }
+
+    /**
+     * Returns the total number of calls that threw an exception.
+     *
+     * @return the number of errors.
+     */
+    public long getErrors() {
+        return errors;
+    }
+
+    /**
+     * Returns the length of the interval over which the rates have been computed.
+     *
+     * @return the interval.
+     */
+    public @NotNull Duration getInterval() {
+        return interval;
+    }
+
+    /**
+     * Returns the number of calls per second during the interval.
+     *
+     * @return the call rate.
+     */
+    public double getCallRate() {
+        return rate(intervalCalls);
+    }
+
+    /**
+     * Returns the number of errors per second during the interval.
+     *
+     * @return the error rate.
+     */
+    public double getErrorRate() {
+        return rate(intervalErrors);
+    }
+
+    private double rate(long count) {
+        var seconds = interval.toNanos() / 1e9;
+        return seconds > 0 ? count / seconds : 0;
+    }
+
+    /**
+     * Returns the latency histogram of all calls, including failed ones.
+     *
+     * @return a histogram snapshot with values in nanoseconds.
+     */
+    public @NotNull LatencyHistogram.Snapshot getLatency() {
+        return latency;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s{method=%s.%s, calls=%d, errors=%d, callRate=%.2f/s, p50=%dns, p99=%dns, max=%dns}",
+                getClass().getSimpleName(), serviceClass.getName(), methodName, calls, errors, getCallRate(),
+                latency.getValueAtPercentile(50), latency.getValueAtPercentile(99), latency.getMax());
+    }
+}
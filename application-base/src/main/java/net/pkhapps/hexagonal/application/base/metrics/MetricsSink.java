@@ -0,0 +1,38 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.application.base.metrics;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+
+/**
+ * Interface for sinks that receive service method metrics from the {@link ServiceMetricsRegistry}, for example to
+ * forward them to a monitoring system or write them to a log.
+ */
+@FunctionalInterface
+public interface MetricsSink {
+
+    /**
+     * Publishes the given metrics. This is called on the thread that invoked {@link ServiceMetricsRegistry#publish()}
+     * and should not block for long.
+     *
+     * @param metrics the metrics of all methods that have been called at least once.
+     */
+    void publish(@NotNull List<MethodMetricsSnapshot> metrics);
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.application.base.metrics;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.jetbrains.annotations.NotNull;
+import org.springframework.aop.support.AopUtils;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Method interceptor that records the latency and outcome of every call in a {@link ServiceMetricsRegistry}.
+ *
+ * @see ServiceMetricsPostProcessor
+ */
+public class ServiceMetricsInterceptor implements MethodInterceptor {
+
+    private final ServiceMetricsRegistry registry;
+
+    /**
+     * Creates a new {@code ServiceMetricsInterceptor}.
+     *
+     * @param registry the registry to record the metrics in.
+     */
+    public ServiceMetricsInterceptor(@NotNull ServiceMetricsRegistry registry) {
+        this.registry = requireNonNull(registry);
+    }
+
+    @Override
+    public Object invoke(@NotNull MethodInvocation invocation) throws Throwable {
+        var target = invocation.getThis();
+        var serviceClass = target == null ? invocation.getMethod().getDeclaringClass() : AopUtils.getTargetClass(target);
+        var metrics = registry.getMethodMetrics(serviceClass, invocation.getMethod());
+        var start = System.nanoTime();
+        var failed = true;
+        try {
+            var result = invocation.proceed();
+            failed = false;
+            return result;
+        } finally {
+            metrics.record(System.nanoTime() - start, failed);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.application.base.metrics;
+
+import net.pkhapps.hexagonal.application.base.annotation.ApplicationService;
+import net.pkhapps.hexagonal.application.base.annotation.ApplicationServiceDelegate;
+import org.jetbrains.annotations.NotNull;
+import org.springframework.aop.framework.AbstractAdvisingBeanPostProcessor;
+import org.springframework.aop.support.ClassFilters;
+import org.springframework.aop.support.ComposablePointcut;
+import org.springframework.aop.support.DefaultPointcutAdvisor;
+import org.springframework.aop.support.StaticMethodMatcher;
+import org.springframework.aop.support.annotation.AnnotationClassFilter;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+/**
+ * Bean post processor that opts {@linkplain ApplicationService application services} and
+ * {@linkplain ApplicationServiceDelegate application service delegates} into metrics collection by wrapping them in a
+ * {@link ServiceMetricsInterceptor} that intercepts all their public methods. Register it as a bean together with a
+ * {@link ServiceMetricsRegistry} to enable it.
+ */
+public class ServiceMetricsPostProcessor extends AbstractAdvisingBeanPostProcessor {
+
+    /**
+     * Creates a new {@code ServiceMetricsPostProcessor}.
+     *
+     * @param registry the registry to record the metrics in.
+     */
+    public ServiceMetricsPostProcessor(@NotNull ServiceMetricsRegistry registry) {
+        var classFilter = ClassFilters.union(new AnnotationClassFilter(ApplicationService.class, true),
+                new AnnotationClassFilter(ApplicationServiceDelegate.class, true));
+        var pointcut = new ComposablePointcut(classFilter, new PublicServiceMethodMatcher());
+        this.advisor = new DefaultPointcutAdvisor(pointcut, new ServiceMetricsInterceptor(registry));
+        // Measure the whole call including transaction and security handling
+        setBeforeExistingAdvisors(true);
+    }
+
+    private static final class PublicServiceMethodMatcher extends StaticMethodMatcher {
+
+        @Override
+        public boolean matches(@NotNull Method method, @NotNull Class<?> targetClass) {
+            return Modifier.isPublic(method.getModifiers()) && method.getDeclaringClass() != Object.class;
+        }
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.application.base.metrics;
+
+import org.jetbrains.annotations.NotNull;
+import org.springframework.aop.support.AopUtils;
+
+import java.lang.reflect.Method;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Collectors;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Registry of the metrics recorded by the {@link ServiceMetricsInterceptor}. Call {@link #publish()} periodically (for
+ * example from a {@linkplain org.springframework.scheduling.annotation.Scheduled scheduled} method) to pass the
+ * metrics to the registered {@linkplain MetricsSink sinks}.
+ */
+public class ServiceMetricsRegistry {
+
+    private final ConcurrentMap<MethodKey, MethodMetrics> metrics = new ConcurrentHashMap<>();
+    private final List<MetricsSink> sinks;
+
+    /**
+     * Creates a new {@code ServiceMetricsRegistry}.
+     *
+     * @param sinks the sinks to publish the metrics to.
+     */
+    public ServiceMetricsRegistry(@NotNull List<MetricsSink> sinks) {
+        this.sinks = List.copyOf(sinks);
+    }
+
+    /**
+     * Returns the metrics of the given method of the given service, creating them if necessary. The method is resolved
+     * to the most specific method of the service class, so calls made through an interface and through the class
+     * itself share the same metrics.
+     */
+    @NotNull MethodMetrics getMethodMetrics(@NotNull Class<?> serviceClass, @NotNull Method method) {
+        var key = new MethodKey(serviceClass, method);
+        var existing = metrics.get(key);
+        if (existing != null) {
+            return existing;
+        }
+        var specificMethod = AopUtils.getMostSpecificMethod(method, serviceClass);
+        var methodMetrics = metrics.computeIfAbsent(new MethodKey(serviceClass, specificMethod),
+                k -> new MethodMetrics(serviceClass, specificMethod));
+        metrics.putIfAbsent(key, methodMetrics);
+        return methodMetrics;
+    }
+
+    /**
+     * Takes a snapshot of the metrics of all methods and passes them to all sinks. The rates in the snapshots are
+     * computed over the interval since the previous call to this method.
+     */
+    public void publish() {
+        var snapshots = metrics.values().stream()
+                .distinct()
+                .map(MethodMetrics::snapshot)
+                .sorted(Comparator.comparing(MethodMetricsSnapshot::getServiceName)
+                        .thenComparing(MethodMetricsSnapshot::getMethodName))
+                .collect(Collectors.toUnmodifiableList());
+        sinks.forEach(sink -> sink.publish(snapshots));
+    }
+
+    private static final class MethodKey {
+
+        private final Class<?> serviceClass;
+        private final Method method;
+
+        MethodKey(@NotNull Class<?> serviceClass, @NotNull Method method) {
+            this.serviceClass = requireNonNull(serviceClass);
+            this.method = requireNonNull(method);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            var that = (MethodKey) o;
+            return serviceClass.equals(that.serviceClass) && method.equals(that.method);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * serviceClass.hashCode() + method.hashCode();
+        }
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.application.base.query;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Set;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Data source that reports every executed SQL statement, and the number of rows it read or updated, to a
+ * {@link QueryInspector}. Wrap the data source used by the entity manager factory in this to enable query
+ * instrumentation. The wrapping is done with dynamic proxies and costs a few reflective calls per statement, so it is
+ * primarily intended for development and tests.
+ */
+public class InstrumentedDataSource extends DelegatingDataSource {
+
+    private static final Set<String> EXECUTE_METHODS = Set.of("execute", "executeQuery", "executeUpdate",
+            "executeLargeUpdate", "executeBatch", "executeLargeBatch");
+
+    private final QueryInspector inspector;
+
+    /**
+     * Creates a new {@code InstrumentedDataSource}.
+     *
+     * @param targetDataSource the data source to wrap.
+     * @param inspector        the inspector to report the statements to.
+     */
+    public InstrumentedDataSource(@NotNull DataSource targetDataSource, @NotNull QueryInspector inspector) {
+        super(targetDataSource);
+        this.inspector = requireNonNull(inspector);
+    }
+
+    @Override
+    public @NotNull Connection getConnection() throws SQLException {
+        return wrapConnection(obtainTargetDataSource().getConnection());
+    }
+
+    @Override
+    public @NotNull Connection getConnection(String username, String password) throws SQLException {
+        return wrapConnection(obtainTargetDataSource().getConnection(username, password));
+    }
+
+    private @NotNull Connection wrapConnection(@NotNull Connection connection) {
+        return proxy(Connection.class, connection, (proxy, method, args) -> {
+            var result = invoke(connection, method, args);
+            if (result instanceof Statement) {
+                var sql = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : null;
+                return wrapStatement((Statement) result, sql);
+            }
+            return result;
+        });
+    }
+
+    private @NotNull Statement wrapStatement(@NotNull Statement statement, @Nullable String preparedSql) {
+        Class<? extends Statement> type = statement instanceof CallableStatement ? CallableStatement.class
+                : statement instanceof PreparedStatement ? PreparedStatement.class : Statement.class;
+        var currentRecord = new QueryInspector.StatementRecord[1];
+        return proxy(type, statement, (proxy, method, args) -> {
+            if (EXECUTE_METHODS.contains(method.getName())) {
+                var sql = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : preparedSql;
+                var start = System.nanoTime();
+                var result = invoke(statement, method, args);
+                var elapsed = System.nanoTime() - start;
+                currentRecord[0] = inspector.statementExecuted(sql == null ? "<batch>" : sql, elapsed,
+                        updatedRows(result));
+                return result instanceof ResultSet ? wrapResultSet((ResultSet) result, currentRecord[0]) : result;
+            }
+            var result = invoke(statement, method, args);
+            if (result instanceof ResultSet && "getResultSet".equals(method.getName()) && currentRecord[0] != null) {
+                return wrapResultSet((ResultSet) result, currentRecord[0]);
+            }
+            return result;
+        });
+    }
+
+    private static long updatedRows(@Nullable Object result) {
+        if (result instanceof Integer || result instanceof Long) {
+            return Math.max(0, ((Number) result).longValue());
+        }
+        var total = 0L;
+        if (result instanceof int[]) {
+            for (var count : (int[]) result) {
+                total += Math.max(0, count);
+            }
+        } else if (result instanceof long[]) {
+            for (var count : (long[]) result) {
+                total += Math.max(0, count);
+            }
+        }
+        return total;
+    }
+
+    private @NotNull ResultSet wrapResultSet(@NotNull ResultSet resultSet,
+                                             @NotNull QueryInspector.StatementRecord record) {
+        return proxy(ResultSet.class, resultSet, (proxy, method, args) -> {
+            var result = invoke(resultSet, method, args);
+            if ("next".equals(method.getName()) && Boolean.TRUE.equals(result)) {
+                record.rowRead();
+            }
+            return result;
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> @NotNull T proxy(@NotNull Class<? extends T> type, @NotNull T target,
+                                        @NotNull InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(InstrumentedDataSource.class.getClassLoader(), new Class<?>[]{type},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "equals":
+                            return proxy == args[0];
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "unwrap":
+                        case "isWrapperFor":
+                            return invoke(target, method, args);
+                        default:
+                            return handler.invoke(proxy, method, args);
+                    }
+                });
+    }
+
+    private static Object invoke(@NotNull Object target, @NotNull Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException ex) {
+            throw ex.getTargetException();
+        }
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.application.base.query;
+
+import org.jetbrains.annotations.NotNull;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Immutable budget of SQL statements that the {@link QueryInspector} checks every repository and service call against.
+ */
+public final class QueryBudget {
+
+    /**
+     * What to do when a budget is exceeded.
+     */
+    public enum Mode {
+        /**
+         * Log a warning. Suitable for production.
+         */
+        LOG,
+        /**
+         * Throw a {@link QueryBudgetExceededException}. Suitable for development and tests.
+         */
+        FAIL
+    }
+
+    /**
+     * A budget that never fails but logs suspected N+1 selects (ten or more identical single row selects within one
+     * service call).
+     */
+    public static final QueryBudget DEFAULT = new QueryBudget(Mode.LOG, Integer.MAX_VALUE, Integer.MAX_VALUE, 10);
+
+    private final Mode mode;
+    private final int maxStatementsPerRepositoryCall;
+    private final int maxStatementsPerServiceCall;
+    private final int nPlusOneThreshold;
+
+    /**
+     * Creates a new {@code QueryBudget}.
+     *
+     * @param mode                           what to do when the budget is exceeded.
+     * @param maxStatementsPerRepositoryCall the maximum number of statements a single repository call may execute.
+     * @param maxStatementsPerServiceCall    the maximum number of statements a single service call may execute.
+     * @param nPlusOneThreshold              the number of identical statements returning at most one row each that may
+     *                                       be executed within a single service call before it is flagged as an N+1
+     *                                       select.
+     */
+    public QueryBudget(@NotNull Mode mode, int maxStatementsPerRepositoryCall, int maxStatementsPerServiceCall,
+                       int nPlusOneThreshold) {
+        this.mode = requireNonNull(mode);
+        if (maxStatementsPerRepositoryCall < 1 || maxStatementsPerServiceCall < 1 || nPlusOneThreshold < 2) {
+            throw new IllegalArgumentException("Invalid budget");
+        }
+        this.maxStatementsPerRepositoryCall = maxStatementsPerRepositoryCall;
+        this.maxStatementsPerServiceCall = maxStatementsPerServiceCall;
+        this.nPlusOneThreshold = nPlusOneThreshold;
+    }
+
+    public @NotNull Mode getMode() {
+        return mode;
+    }
+
+    public int getMaxStatementsPerRepositoryCall() {
+        return maxStatementsPerRepositoryCall;
+    }
+
+    public int getMaxStatementsPerServiceCall() {
+        return maxStatementsPerServiceCall;
+    }
+
+    public int getNPlusOneThreshold() {
+        return nPlusOneThreshold;
+    }
+}
@@ -0,0 +1,231 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.application.base.query;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.jetbrains.annotations.NotNull;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Collects statistics about the SQL statements executed by repository calls, specifications and service calls, and
+ * checks them against a {@link QueryBudget}. Statements are reported by an {@link InstrumentedDataSource} and
+ * attributed to the calls that are active on the current thread, as tracked by the
+ * {@link QueryInstrumentationPostProcessor}.
+ * <p>
+ * Within the outermost service call, the inspector also looks for N+1 selects: the same statement, returning at most
+ * one row, being executed over and over again (typically when lazy associations are loaded one by one while iterating
+ * over a result list).
+ */
+public class QueryInspector {
+
+    private static final Log log = LogFactory.getLog(QueryInspector.class);
+    private static final int MAX_RECORDS_PER_SCOPE = 10000;
+
+    private final QueryBudget budget;
+    private final ThreadLocal<ArrayDeque<Scope>> scopes = ThreadLocal.withInitial(ArrayDeque::new);
+    private final ConcurrentMap<String, Accumulator> statistics = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a new {@code QueryInspector} using the {@linkplain QueryBudget#DEFAULT default budget}.
+     */
+    public QueryInspector() {
+        this(QueryBudget.DEFAULT);
+    }
+
+    /**
+     * Creates a new {@code QueryInspector}.
+     *
+     * @param budget the budget to check the calls against.
+     */
+    public QueryInspector(@NotNull QueryBudget budget) {
+        this.budget = requireNonNull(budget);
+    }
+
+    /**
+     * Returns the accumulated statistics of all instrumented methods that have been called at least once.
+     *
+     * @return a list of statistics, sorted by name.
+     */
+    public @NotNull List<QueryStatistics> getStatistics() {
+        return statistics.entrySet().stream()
+                .map(entry -> entry.getValue().toStatistics(entry.getKey()))
+                .sorted(Comparator.comparing(QueryStatistics::getName))
+                .collect(Collectors.toUnmodifiableList());
+    }
+
+    /**
+     * Clears the accumulated statistics.
+     */
+    public void reset() {
+        statistics.clear();
+    }
+
+    @NotNull Scope openScope(@NotNull String name, @NotNull ScopeKind kind, @NotNull Collection<String> aliases) {
+        var scope = new Scope(name, kind, aliases);
+        scopes.get().push(scope);
+        return scope;
+    }
+
+    /**
+     * Closes the given scope, records its statistics and checks it against the budget.
+     *
+     * @param scope  the scope to close, which should be the innermost open scope of the current thread. Any scopes
+     *               opened after it that are still open are discarded, so that the thread is left in a consistent state.
+     * @param failed whether the call failed. Budget violations of failed calls are logged but never thrown, so that
+     *               the original exception is not masked.
+     * @throws IllegalStateException if the scope is not open on the current thread.
+     */
+    void closeScope(@NotNull Scope scope, boolean failed) {
+        var stack = scopes.get();
+        if (!stack.contains(scope)) {
+            throw new IllegalStateException("Scope " + scope.name + " is not open on this thread");
+        }
+        while (stack.peek() != scope) {
+            log.warn("Discarding scope " + stack.pop().name + ", which was not closed before " + scope.name);
+        }
+        stack.pop();
+        var rows = scope.records.stream().mapToLong(record -> record.rows).sum();
+        statistics.computeIfAbsent(scope.name, key -> new Accumulator()).add(scope.statements, rows, scope.elapsedNanos);
+        scope.aliases.forEach(alias -> statistics.computeIfAbsent(alias, key -> new Accumulator())
+                .add(scope.statements, rows, scope.elapsedNanos));
+
+        var violations = new ArrayList<String>();
+        if (scope.kind == ScopeKind.REPOSITORY && scope.statements > budget.getMaxStatementsPerRepositoryCall()) {
+            violations.add(String.format("%s executed %d statements, budget is %d", scope.name, scope.statements,
+                    budget.getMaxStatementsPerRepositoryCall()));
+        }
+        if (scope.kind == ScopeKind.SERVICE && scope.statements > budget.getMaxStatementsPerServiceCall()) {
+            violations.add(String.format("%s executed %d statements, budget is %d", scope.name, scope.statements,
+                    budget.getMaxStatementsPerServiceCall()));
+        }
+        if (scope.kind == ScopeKind.SERVICE && stack.stream().noneMatch(s -> s.kind == ScopeKind.SERVICE)) {
+            findNPlusOneSelects(scope, violations);
+        }
+        if (!violations.isEmpty()) {
+            var message = "Query budget exceeded: " + String.join("; ", violations);
+            if (budget.getMode() == QueryBudget.Mode.FAIL && !failed) {
+                throw new QueryBudgetExceededException(message);
+            }
+            log.warn(message);
+        }
+    }
+
+    private void findNPlusOneSelects(@NotNull Scope scope, @NotNull List<String> violations) {
+        var singleRowSelects = new HashMap<String, Integer>();
+        for (var record : scope.records) {
+            if (record.select && record.rows <= 1) {
+                singleRowSelects.merge(record.sql, 1, Integer::sum);
+            }
+        }
+        singleRowSelects.forEach((sql, count) -> {
+            if (count >= budget.getNPlusOneThreshold()) {
+                violations.add(String.format("%s executed the same single row select %d times (suspected N+1): %s",
+                        scope.name, count, sql));
+            }
+        });
+    }
+
+    /**
+     * Records that a statement has been executed on the current thread.
+     *
+     * @param sql          the SQL of the statement.
+     * @param elapsedNanos the time it took to execute the statement.
+     * @param rows         the number of rows updated by the statement (rows read are added afterwards).
+     * @return the record of the statement, to which rows can be added as they are read.
+     */
+    @NotNull StatementRecord statementExecuted(@NotNull String sql, long elapsedNanos, long rows) {
+        var record = new StatementRecord(sql, rows);
+        for (var scope : scopes.get()) {
+            scope.statements++;
+            scope.elapsedNanos += elapsedNanos;
+            if (scope.records.size() < MAX_RECORDS_PER_SCOPE) {
+                scope.records.add(record);
+            }
+        }
+        return record;
+    }
+
+    enum ScopeKind {
+        SERVICE, REPOSITORY
+    }
+
+    static final class Scope {
+        private final String name;
+        private final ScopeKind kind;
+        private final Collection<String> aliases;
+        private final List<StatementRecord> records = new ArrayList<>();
+        private long statements;
+        private long elapsedNanos;
+
+        private Scope(@NotNull String name, @NotNull ScopeKind kind, @NotNull Collection<String> aliases) {
+            this.name = name;
+            this.kind = kind;
+            this.aliases = aliases;
+        }
+    }
+
+    static final class StatementRecord {
+        private final String sql;
+        private final boolean select;
+        private long rows;
+
+        private StatementRecord(@NotNull String sql, long rows) {
+            this.sql = sql;
+            this.select = sql.stripLeading().toLowerCase(Locale.ROOT).startsWith("select");
+            this.rows = rows;
+        }
+
+        void rowRead() {
+            rows++;
+        }
+    }
+
+    private static final class Accumulator {
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder statements = new LongAdder();
+        private final LongAdder rows = new LongAdder();
+        private final LongAdder elapsedNanos = new LongAdder();
+
+        void add(long statements, long rows, long elapsedNanos) {
+            this.calls.increment();
+            this.statements.add(statements);
+            this.rows.add(rows);
+            this.elapsedNanos.add(elapsedNanos);
+        }
+
+        @NotNull QueryStatistics toStatistics(@NotNull String name) {
+            return new QueryStatistics(name, calls.sum(), statements.sum(), rows.sum(),
+                    Duration.ofNanos(elapsedNanos.sum()));
+        }
+    }
+}
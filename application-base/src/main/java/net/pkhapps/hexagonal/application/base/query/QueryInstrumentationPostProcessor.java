@@ -0,0 +1,178 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.application.base.query;
+
+import net.pkhapps.hexagonal.application.base.annotation.ApplicationService;
+import net.pkhapps.hexagonal.application.base.annotation.ApplicationServiceDelegate;
+import net.pkhapps.hexagonal.domain.base.BaseRepository;
+import net.pkhapps.hexagonal.domain.base.ExtendedRepository;
+import net.pkhapps.hexagonal.domain.base.annotation.SpecificationFactory;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.jetbrains.annotations.NotNull;
+import org.springframework.aop.framework.Advised;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Bean post processor that instruments {@linkplain BaseRepository repositories},
+ * {@linkplain SpecificationFactory specification factories}, {@linkplain ApplicationService application services}
+ * and {@linkplain ApplicationServiceDelegate application service delegates} so that the statements reported by an
+ * {@link InstrumentedDataSource} can be attributed to them by the {@link QueryInspector}. Register it as a bean
+ * together with the inspector and the instrumented data source to enable query instrumentation.
+ * <p>
+ * Calls are named after the fully qualified name of the repository interface or class, followed by the name and
+ * parameter types of the method, so overloaded methods and classes with the same simple name are kept apart.
+ */
+public class QueryInstrumentationPostProcessor implements BeanPostProcessor {
+
+    private final QueryInspector inspector;
+
+    /**
+     * Creates a new {@code QueryInstrumentationPostProcessor}.
+     *
+     * @param inspector the inspector to report the calls to.
+     */
+    public QueryInstrumentationPostProcessor(@NotNull QueryInspector inspector) {
+        this.inspector = requireNonNull(inspector);
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(@NotNull Object bean, @NotNull String beanName) throws BeansException {
+        if (bean instanceof BaseRepository) {
+            return addInterceptor(bean, repositoryInterceptor(repositoryName(bean)), false);
+        }
+        var targetClass = AopUtils.getTargetClass(bean);
+        if (AnnotatedElementUtils.hasAnnotation(targetClass, SpecificationFactory.class)) {
+            return addInterceptor(bean, specificationFactoryInterceptor(targetClass.getName()), true);
+        }
+        if (AnnotatedElementUtils.hasAnnotation(targetClass, ApplicationService.class)
+                || AnnotatedElementUtils.hasAnnotation(targetClass, ApplicationServiceDelegate.class)) {
+            return addInterceptor(bean, serviceInterceptor(targetClass.getName()), true);
+        }
+        return bean;
+    }
+
+    private static @NotNull String repositoryName(@NotNull Object repository) {
+        for (var iface : repository.getClass().getInterfaces()) {
+            if (BaseRepository.class.isAssignableFrom(iface) && iface != BaseRepository.class
+                    && iface != ExtendedRepository.class) {
+                return iface.getName();
+            }
+        }
+        return AopUtils.getTargetClass(repository).getName();
+    }
+
+    /**
+     * Returns a function that names the methods of the given class, caching the names.
+     */
+    private static @NotNull Function<Method, String> methodNames(@NotNull String className) {
+        Map<Method, String> names = new ConcurrentHashMap<>();
+        return method -> names.computeIfAbsent(method, m -> Arrays.stream(m.getParameterTypes())
+                .map(Class::getTypeName)
+                .collect(Collectors.joining(",", className + "." + m.getName() + "(", ")")));
+    }
+
+    private static @NotNull Object addInterceptor(@NotNull Object bean, @NotNull MethodInterceptor interceptor,
+                                                  boolean proxyTargetClass) {
+        if (bean instanceof Advised && !((Advised) bean).isFrozen()) {
+            // Add the interceptor first so that it also covers transaction handling
+            ((Advised) bean).addAdvice(0, interceptor);
+            return bean;
+        }
+        var proxyFactory = new ProxyFactory(bean);
+        proxyFactory.setProxyTargetClass(proxyTargetClass);
+        proxyFactory.addAdvice(interceptor);
+        return proxyFactory.getProxy(bean.getClass().getClassLoader());
+    }
+
+    private static boolean isInstrumented(@NotNull Method method) {
+        return Modifier.isPublic(method.getModifiers()) && method.getDeclaringClass() != Object.class;
+    }
+
+    private @NotNull MethodInterceptor repositoryInterceptor(@NotNull String repositoryName) {
+        var names = methodNames(repositoryName);
+        return invocation -> {
+            if (!isInstrumented(invocation.getMethod())) {
+                return invocation.proceed();
+            }
+            var aliases = new ArrayList<String>();
+            for (var argument : invocation.getArguments()) {
+                if (argument instanceof TracedSpecification) {
+                    aliases.add(((TracedSpecification<?>) argument).getFactoryMethodName());
+                }
+            }
+            return proceedInScope(invocation, names.apply(invocation.getMethod()),
+                    QueryInspector.ScopeKind.REPOSITORY, aliases);
+        };
+    }
+
+    private @NotNull MethodInterceptor serviceInterceptor(@NotNull String serviceName) {
+        var names = methodNames(serviceName);
+        return invocation -> {
+            if (!isInstrumented(invocation.getMethod())) {
+                return invocation.proceed();
+            }
+            return proceedInScope(invocation, names.apply(invocation.getMethod()),
+                    QueryInspector.ScopeKind.SERVICE, List.of());
+        };
+    }
+
+    private @NotNull MethodInterceptor specificationFactoryInterceptor(@NotNull String factoryName) {
+        var names = methodNames(factoryName);
+        return invocation -> {
+            var result = invocation.proceed();
+            if (result instanceof Specification && !(result instanceof TracedSpecification)) {
+                @SuppressWarnings("unchecked")
+                var specification = (Specification<Object>) result;
+                return new TracedSpecification<>(specification, names.apply(invocation.getMethod()));
+            }
+            return result;
+        };
+    }
+
+    private Object proceedInScope(@NotNull MethodInvocation invocation, @NotNull String name,
+                                  @NotNull QueryInspector.ScopeKind kind, @NotNull List<String> aliases)
+            throws Throwable {
+        var scope = inspector.openScope(name, kind, aliases);
+        var failed = true;
+        try {
+            var result = invocation.proceed();
+            failed = false;
+            return result;
+        } finally {
+            inspector.closeScope(scope, failed);
+        }
+    }
+}
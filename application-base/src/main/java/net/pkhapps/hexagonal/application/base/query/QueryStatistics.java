@@ -0,0 +1,108 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.application.base.query;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.time.Duration;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Immutable snapshot of the accumulated query statistics of a single repository method, specification factory method
+ * or service method.
+ *
+ * @see QueryInspector#getStatistics()
+ */
+public final class QueryStatistics {
+
+    private final String name;
+    private final long calls;
+    private final long statements;
+    private final long rows;
+    private final Duration elapsed;
+
+    QueryStatistics(@NotNull String name, long calls, long statements, long rows, @NotNull Duration elapsed) {
+        this.name = requireNonNull(name);
+        this.calls = calls;
+        this.statements = statements;
+        this.rows = rows;
+        this.elapsed = requireNonNull(elapsed);
+    }
+
+    /**
+     * Returns the name of the method, in the form {@code com.example.ClassName.methodName(parameter,types)}.
+     *
+     * @return the method name.
+     */
+    public @NotNull String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the number of times the method has been called.
+     *
+     * @return the number of calls.
+     */
+    public long getCalls() {
+        return calls;
+    }
+
+    /**
+     * Returns the total number of SQL statements executed by the method.
+     *
+     * @return the number of statements.
+     */
+    public long getStatements() {
+        return statements;
+    }
+
+    /**
+     * Returns the total number of rows read or updated by the statements executed by the method.
+     *
+     * @return the number of rows.
+     */
+    public long getRows() {
+        return rows;
+    }
+
+    /**
+     * Returns the total time spent executing the statements of the method (not including the time spent fetching
+     * rows).
+     *
+     * @return the elapsed time.
+     */
+    public @NotNull Duration getElapsed() {
+        return elapsed;
+    }
+
+    /**
+     * Returns the average number of statements per call.
+     *
+     * @return the average number of statements.
+     */
+    public double getStatementsPerCall() {
+        return calls == 0 ? 0 : (double) statements / calls;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s{name=%s, calls=%d, statements=%d, rows=%d, elapsed=%s}", getClass().getSimpleName(),
+                name, calls, statements, rows, elapsed);
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.application.base.query;
+
+import net.pkhapps.hexagonal.domain.base.support.DelegatingSpecification;
+import org.jetbrains.annotations.NotNull;
+import org.springframework.data.jpa.domain.Specification;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Specification wrapper that remembers which {@linkplain net.pkhapps.hexagonal.domain.base.annotation.SpecificationFactory
+ * specification factory} method created it, so that the statements executed by repository calls using it can be
+ * attributed to that method. Note that combining the specification with others using {@link #and(Specification)} or
+ * {@link #or(Specification)} creates a new specification that is no longer traced. Repositories backed by
+ * {@link net.pkhapps.hexagonal.domain.base.support.BaseRepositoryImpl} unwrap the specification before executing it.
+ *
+ * @param <T> the type of the entity.
+ */
+final class TracedSpecification<T> implements DelegatingSpecification<T> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Specification<T> delegate;
+    private final String factoryMethodName;
+
+    TracedSpecification(@NotNull Specification<T> delegate, @NotNull String factoryMethodName) {
+        this.delegate = requireNonNull(delegate);
+        this.factoryMethodName = requireNonNull(factoryMethodName);
+    }
+
+    @NotNull String getFactoryMethodName() {
+        return factoryMethodName;
+    }
+
+    @Override
+    public @NotNull Specification<T> getDelegate() {
+        return delegate;
+    }
+}
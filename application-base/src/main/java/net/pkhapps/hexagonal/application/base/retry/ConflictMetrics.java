@@ -0,0 +1,100 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.application.base.retry;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Registry of the optimistic locking conflicts encountered by {@link RetryOnConflictInterceptor}, per aggregate type.
+ * Use it to find hot aggregates that many transactions compete for.
+ */
+public class ConflictMetrics {
+
+    /**
+     * The aggregate type used when the conflicting type cannot be determined.
+     */
+    public static final String UNKNOWN_AGGREGATE_TYPE = "unknown";
+
+    private final Map<String, Counters> counters = new ConcurrentHashMap<>();
+
+    void recordRetry(@NotNull String aggregateType) {
+        var c = counters(aggregateType);
+        c.conflicts.increment();
+        c.retries.increment();
+    }
+
+    void recordExhausted(@NotNull String aggregateType) {
+        var c = counters(aggregateType);
+        c.conflicts.increment();
+        c.exhausted.increment();
+    }
+
+    private @NotNull Counters counters(@NotNull String aggregateType) {
+        return counters.computeIfAbsent(requireNonNull(aggregateType), key -> new Counters());
+    }
+
+    /**
+     * Returns the statistics of all aggregate types that have had conflicts, the most contended type first.
+     *
+     * @return a list of statistics.
+     */
+    public @NotNull List<ConflictStatistics> getStatistics() {
+        return counters.keySet().stream()
+                .map(this::snapshot)
+                .sorted(Comparator.comparingLong(ConflictStatistics::getConflicts).reversed())
+                .collect(Collectors.toUnmodifiableList());
+    }
+
+    /**
+     * Returns the statistics of the given aggregate type.
+     *
+     * @param aggregateType the name of the aggregate type.
+     * @return the statistics, or an empty {@code Optional} if there have been no conflicts on the type.
+     */
+    public @NotNull Optional<ConflictStatistics> getStatistics(@NotNull String aggregateType) {
+        return counters.containsKey(aggregateType) ? Optional.of(snapshot(aggregateType)) : Optional.empty();
+    }
+
+    private @NotNull ConflictStatistics snapshot(@NotNull String aggregateType) {
+        var c = counters.get(aggregateType);
+        return new ConflictStatistics(aggregateType, c.conflicts.sum(), c.retries.sum(), c.exhausted.sum());
+    }
+
+    /**
+     * Clears all recorded statistics.
+     */
+    public void reset() {
+        counters.clear();
+    }
+
+    private static final class Counters {
+        private final LongAdder conflicts = new LongAdder();
+        private final LongAdder retries = new LongAdder();
+        private final LongAdder exhausted = new LongAdder();
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.application.base.retry;
+
+import org.jetbrains.annotations.NotNull;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Immutable snapshot of the optimistic locking conflicts recorded for a single aggregate type.
+ *
+ * @see ConflictMetrics
+ */
+public final class ConflictStatistics {
+
+    private final String aggregateType;
+    private final long conflicts;
+    private final long retries;
+    private final long exhausted;
+
+    ConflictStatistics(@NotNull String aggregateType, long conflicts, long retries, long exhausted) {
+        this.aggregateType = requireNonNull(aggregateType);
+        this.conflicts = conflicts;
+        this.retries = retries;
+        this.exhausted = exhausted;
+    }
+
+    /**
+     * Returns the name of the aggregate type, or {@value ConflictMetrics#UNKNOWN_AGGREGATE_TYPE} if the conflicting
+     * type could not be determined from the exception.
+     */
+    public @NotNull String getAggregateType() {
+        return aggregateType;
+    }
+
+    /**
+     * Returns the total number of conflicts.
+     */
+    public long getConflicts() {
+        return conflicts;
+    }
+
+    /**
+     * Returns the number of conflicts that were followed by a retry.
+     */
+    public long getRetries() {
+        return retries;
+    }
+
+    /**
+     * Returns the number of conflicts that were passed on to the caller because the maximum number of attempts had
+     * been reached.
+     */
+    public long getExhausted() {
+        return exhausted;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s[aggregateType=%s, conflicts=%d, retries=%d, exhausted=%d]",
+                getClass().getSimpleName(), aggregateType, conflicts, retries, exhausted);
+    }
+}
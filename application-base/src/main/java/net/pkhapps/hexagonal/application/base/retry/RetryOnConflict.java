@@ -0,0 +1,66 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.application.base.retry;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Annotation used on {@linkplain net.pkhapps.hexagonal.application.base.annotation.ApplicationService application
+ * service} methods (or classes, to apply it to all methods) to re-run the method when it fails because of an
+ * optimistic locking conflict. The method must start its own transaction, as the whole transaction is re-run: if the
+ * method is invoked inside an already active transaction, it is not retried and the conflict is left to the caller.
+ *
+ * @see RetryOnConflictPostProcessor
+ */
+@Target({ElementType.METHOD, ElementType.TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+@Inherited
+@Documented
+public @interface RetryOnConflict {
+
+    /**
+     * The maximum number of attempts, including the first one. Must be at least 1.
+     */
+    int maxAttempts() default 3;
+
+    /**
+     * The backoff before the first retry, in milliseconds.
+     */
+    long backoffMillis() default 20;
+
+    /**
+     * The factor the backoff is multiplied with after every retry.
+     */
+    double multiplier() default 2.0;
+
+    /**
+     * The maximum backoff between two attempts, in milliseconds.
+     */
+    long maxBackoffMillis() default 1000;
+
+    /**
+     * The fraction of the backoff that is randomized, between 0 (no jitter) and 1 (full jitter). Jitter prevents
+     * conflicting transactions from retrying in lockstep and conflicting again.
+     */
+    double jitter() default 1.0;
+}
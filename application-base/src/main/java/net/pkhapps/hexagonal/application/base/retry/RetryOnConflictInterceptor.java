@@ -0,0 +1,143 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.application.base.retry;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.springframework.aop.ProxyMethodInvocation;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.OptimisticLockException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Method interceptor that re-runs methods annotated with {@link RetryOnConflict} when they fail because of an
+ * optimistic locking conflict, and records the conflicts in a {@link ConflictMetrics} registry. Both JPA's
+ * {@link OptimisticLockException} and Spring's {@link OptimisticLockingFailureException} (anywhere in the cause chain)
+ * are treated as conflicts.
+ * <p>
+ * This interceptor must be placed outside the transaction interceptor so that every attempt runs in a new
+ * transaction.
+ *
+ * @see RetryOnConflictPostProcessor
+ */
+public class RetryOnConflictInterceptor implements MethodInterceptor {
+
+    private static final Log log = LogFactory.getLog(RetryOnConflictInterceptor.class);
+
+    private final ConflictMetrics metrics;
+
+    /**
+     * Creates a new {@code RetryOnConflictInterceptor}.
+     *
+     * @param metrics the registry to record the conflicts in.
+     */
+    public RetryOnConflictInterceptor(@NotNull ConflictMetrics metrics) {
+        this.metrics = requireNonNull(metrics);
+    }
+
+    @Override
+    public Object invoke(@NotNull MethodInvocation invocation) throws Throwable {
+        var policy = findPolicy(invocation);
+        if (policy == null || !(invocation instanceof ProxyMethodInvocation)
+                || TransactionSynchronizationManager.isActualTransactionActive()) {
+            // Retrying inside an existing transaction would reuse a persistence context that is already out of date
+            return invocation.proceed();
+        }
+        var proxyInvocation = (ProxyMethodInvocation) invocation;
+        var backoff = (double) policy.backoffMillis();
+        for (int attempt = 1; ; ++attempt) {
+            try {
+                return proxyInvocation.invocableClone().proceed();
+            } catch (Throwable ex) {
+                if (!isConflict(ex)) {
+                    throw ex;
+                }
+                var aggregateType = aggregateTypeOf(ex);
+                if (attempt >= policy.maxAttempts()) {
+                    metrics.recordExhausted(aggregateType);
+                    throw ex;
+                }
+                metrics.recordRetry(aggregateType);
+                var delay = (long) Math.min(backoff, policy.maxBackoffMillis());
+                var jitter = Math.max(0, Math.min(1, policy.jitter()));
+                var sleep = delay - (long) (delay * jitter * ThreadLocalRandom.current().nextDouble());
+                if (log.isDebugEnabled()) {
+                    log.debug(String.format("Conflict on %s in %s (attempt %d), retrying in %d ms", aggregateType,
+                            invocation.getMethod(), attempt, sleep));
+                }
+                try {
+                    TimeUnit.MILLISECONDS.sleep(sleep);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw ex;
+                }
+                backoff *= policy.multiplier();
+            }
+        }
+    }
+
+    private static @Nullable RetryOnConflict findPolicy(@NotNull MethodInvocation invocation) {
+        var target = invocation.getThis();
+        var targetClass = target == null ? invocation.getMethod().getDeclaringClass() : AopUtils.getTargetClass(target);
+        var method = AopUtils.getMostSpecificMethod(invocation.getMethod(), targetClass);
+        var policy = AnnotatedElementUtils.findMergedAnnotation(method, RetryOnConflict.class);
+        if (policy == null) {
+            policy = AnnotatedElementUtils.findMergedAnnotation(targetClass, RetryOnConflict.class);
+        }
+        if (policy != null && policy.maxAttempts() < 1) {
+            throw new IllegalStateException(String.format("Invalid @RetryOnConflict on %s: maxAttempts must be at "
+                    + "least 1 but was %d", method, policy.maxAttempts()));
+        }
+        return policy;
+    }
+
+    private static boolean isConflict(@NotNull Throwable ex) {
+        for (Throwable t = ex; t != null; t = t.getCause()) {
+            if (t instanceof OptimisticLockException || t instanceof OptimisticLockingFailureException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static @NotNull String aggregateTypeOf(@NotNull Throwable ex) {
+        for (Throwable t = ex; t != null; t = t.getCause()) {
+            if (t instanceof ObjectOptimisticLockingFailureException) {
+                return ((ObjectOptimisticLockingFailureException) t).getPersistentClassName();
+            } else if (t instanceof OptimisticLockException) {
+                var entity = ((OptimisticLockException) t).getEntity();
+                if (entity != null) {
+                    return AopUtils.getTargetClass(entity).getName();
+                }
+            }
+        }
+        return ConflictMetrics.UNKNOWN_AGGREGATE_TYPE;
+    }
+}
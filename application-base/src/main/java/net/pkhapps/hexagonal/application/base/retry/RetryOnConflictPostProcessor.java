@@ -0,0 +1,45 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.application.base.retry;
+
+import org.jetbrains.annotations.NotNull;
+import org.springframework.aop.framework.AbstractAdvisingBeanPostProcessor;
+import org.springframework.aop.support.ComposablePointcut;
+import org.springframework.aop.support.DefaultPointcutAdvisor;
+import org.springframework.aop.support.annotation.AnnotationMatchingPointcut;
+
+/**
+ * Bean post processor that wraps beans with {@link RetryOnConflict} annotated methods or classes in a
+ * {@link RetryOnConflictInterceptor}. The interceptor is placed in front of all existing advisors, so that it is
+ * invoked outside of the transaction interceptor. Register it as a bean together with a {@link ConflictMetrics} to
+ * enable it.
+ */
+public class RetryOnConflictPostProcessor extends AbstractAdvisingBeanPostProcessor {
+
+    /**
+     * Creates a new {@code RetryOnConflictPostProcessor}.
+     *
+     * @param metrics the registry to record the conflicts in.
+     */
+    public RetryOnConflictPostProcessor(@NotNull ConflictMetrics metrics) {
+        var pointcut = new ComposablePointcut(new AnnotationMatchingPointcut(RetryOnConflict.class, true))
+                .union(AnnotationMatchingPointcut.forMethodAnnotation(RetryOnConflict.class));
+        this.advisor = new DefaultPointcutAdvisor(pointcut, new RetryOnConflictInterceptor(metrics));
+        setBeforeExistingAdvisors(true);
+    }
+}
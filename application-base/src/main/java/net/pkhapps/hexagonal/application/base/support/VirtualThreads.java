@@ -0,0 +1,84 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.application.base.support;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Optional;
+import java.util.concurrent.ThreadFactory;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Utility class for creating virtual threads on JDKs that support them. The library is compiled for Java 11, so the
+ * virtual thread API is looked up through reflection. On older JDKs (or JDKs where virtual threads are still a preview
+ * feature that has not been enabled), virtual threads are reported as unavailable and callers are expected to fall
+ * back to platform threads.
+ */
+public final class VirtualThreads {
+
+    private static final boolean AVAILABLE = lookupSupport();
+
+    private VirtualThreads() {
+    }
+
+    private static boolean lookupSupport() {
+        try {
+            var builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            // Make sure the builder can actually create a factory (this fails if preview features are disabled).
+            Class.forName("java.lang.Thread$Builder").getMethod("factory").invoke(builder);
+            return true;
+        } catch (Exception | LinkageError ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Returns whether virtual threads are available in the running JDK.
+     *
+     * @return true if virtual threads are available, false otherwise.
+     */
+    public static boolean isAvailable() {
+        return AVAILABLE;
+    }
+
+    /**
+     * Creates a new {@link ThreadFactory} that creates virtual threads named {@code namePrefix} followed by a
+     * sequence number.
+     *
+     * @param namePrefix the prefix of the thread names.
+     * @return the thread factory, or an empty {@code Optional} if virtual threads are not available.
+     */
+    public static @NotNull Optional<ThreadFactory> newThreadFactory(@NotNull String namePrefix) {
+        requireNonNull(namePrefix);
+        if (!isAvailable()) {
+            return Optional.empty();
+        }
+        try {
+            var builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = Class.forName("java.lang.Thread$Builder$OfVirtual")
+                    .getMethod("name", String.class, long.class)
+                    .invoke(builder, namePrefix, 0L);
+            return Optional.of((ThreadFactory) Class.forName("java.lang.Thread$Builder")
+                    .getMethod("factory")
+                    .invoke(builder));
+        } catch (Exception ex) {
+            throw new IllegalStateException("Could not create virtual thread factory", ex);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.application.base.worker;
+
+/**
+ * Interface to be implemented by {@linkplain net.pkhapps.hexagonal.application.base.annotation.Worker workers} that
+ * run continuously, for example by polling a table or an external system for work. The {@link WorkerRuntime} calls
+ * {@link #doWork()} in a loop on as many threads as has been configured through {@link WorkerExecution}.
+ *
+ * @see PipelineWorker
+ */
+public interface ContinuousWorker {
+
+    /**
+     * Performs one unit of work. Implementations must be thread safe if the worker is configured to run on more than
+     * one thread.
+     *
+     * @return true if work was performed and the method should be called again immediately, false if there was nothing
+     * to do and the runtime should wait for the {@linkplain WorkerExecution#idleDelayMillis() idle delay} before
+     * calling it again.
+     * @throws InterruptedException if the thread was interrupted while working (typically because the runtime is
+     *                              shutting down).
+     * @throws Exception            if an error occurred. The error is logged and the runtime backs off for the idle
+     *                              delay before calling the method again.
+     */
+    boolean doWork() throws Exception;
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.application.base.worker;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Interface to be implemented by {@linkplain net.pkhapps.hexagonal.application.base.annotation.Worker workers} that
+ * consist of a producer stage and a consumer stage. The {@link WorkerRuntime} runs the producer on a single thread and
+ * the consumer on as many threads as has been configured through {@link WorkerExecution}. The stages are connected by
+ * a bounded queue, so a producer that is faster than its consumers is blocked until there is room in the queue again
+ * (backpressure).
+ *
+ * @param <T> the type of the items passed from the producer to the consumers.
+ * @see ContinuousWorker
+ */
+public interface PipelineWorker<T> {
+
+    /**
+     * Produces new items by passing them to the given sink. The runtime calls this method in a loop on the producer
+     * thread. If the method returns without having passed any items to the sink, the runtime waits for the
+     * {@linkplain WorkerExecution#idleDelayMillis() idle delay} before calling it again.
+     *
+     * @param sink the sink to pass the produced items to. The sink blocks while the queue is full.
+     * @throws InterruptedException if the thread was interrupted while producing (typically because the runtime is
+     *                              shutting down).
+     * @throws Exception            if an error occurred. The error is logged, counted as a failure and the runtime
+     *                              backs off for the idle delay before calling the method again.
+     */
+    void produce(@NotNull WorkerSink<T> sink) throws Exception;
+
+    /**
+     * Consumes a single item. Implementations must be thread safe if the worker is configured to run on more than one
+     * consumer thread.
+     *
+     * @param item the item to consume.
+     * @throws Exception if an error occurred. The error is logged, counted as a failed item and the consumer moves on
+     *                   to the next item.
+     */
+    void consume(@NotNull T item) throws Exception;
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.application.base.worker;
+
+/**
+ * Enumeration of the kinds of queues that can connect the producer and the consumers of a {@link PipelineWorker}.
+ *
+ * @see WorkerExecution#queue()
+ */
+public enum QueueKind {
+    /**
+     * A single {@link java.util.concurrent.ArrayBlockingQueue} shared by all consumers. Consumers are load balanced
+     * automatically, but the producer and all the consumers contend on the same lock.
+     */
+    BLOCKING,
+    /**
+     * One lock-free {@linkplain net.pkhapps.hexagonal.application.base.worker.channel.RingBufferChannel ring buffer}
+     * per consumer, filled by the producer in round-robin order and consumed in batches. This has a much higher
+     * throughput for large volumes of small items, but a slow item only holds up the consumer it was handed to.
+     */
+    RING_BUFFER
+}
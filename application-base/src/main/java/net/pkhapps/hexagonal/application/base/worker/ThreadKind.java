@@ -0,0 +1,36 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.application.base.worker;
+
+/**
+ * Enumeration of the kinds of threads a worker can run on.
+ *
+ * @see WorkerExecution#threads()
+ */
+public enum ThreadKind {
+    /**
+     * Ordinary platform threads.
+     */
+    PLATFORM,
+    /**
+     * Virtual threads. If the running JDK does not support virtual threads, platform threads are used instead.
+     *
+     * @see net.pkhapps.hexagonal.application.base.support.VirtualThreads
+     */
+    VIRTUAL
+}
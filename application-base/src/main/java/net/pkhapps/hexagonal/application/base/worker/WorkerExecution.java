@@ -0,0 +1,70 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.application.base.worker;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Annotation used to configure how the {@link WorkerRuntime} runs a {@link ContinuousWorker} or a
+ * {@link PipelineWorker}. Workers that are not annotated are run using the default values.
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface WorkerExecution {
+
+    /**
+     * The number of threads that run a {@link ContinuousWorker}, or the number of consumer threads of a
+     * {@link PipelineWorker}. Must be at least 1.
+     */
+    int concurrency() default 1;
+
+    /**
+     * The kind of threads to run the worker on.
+     */
+    ThreadKind threads() default ThreadKind.PLATFORM;
+
+    /**
+     * The capacity of the bounded queue between the producer and the consumers of a {@link PipelineWorker}. With
+     * {@link QueueKind#RING_BUFFER}, the capacity is divided between the consumers and rounded up to a power of two.
+     * Ignored for {@link ContinuousWorker}s.
+     */
+    int queueCapacity() default 1024;
+
+    /**
+     * The kind of queue between the producer and the consumers of a {@link PipelineWorker}. Ignored for
+     * {@link ContinuousWorker}s.
+     */
+    QueueKind queue() default QueueKind.BLOCKING;
+
+    /**
+     * The number of milliseconds to wait before calling the worker again after it had nothing to do or failed.
+     */
+    long idleDelayMillis() default 1000;
+
+    /**
+     * The maximum number of milliseconds to wait for the worker to finish its current work (and for the consumers of
+     * a {@link PipelineWorker} to drain the queue) when the runtime is stopped. After this, the worker threads are
+     * interrupted.
+     */
+    long shutdownTimeoutMillis() default 30000;
+}
@@ -0,0 +1,289 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.application.base.worker;
+
+import net.pkhapps.hexagonal.application.base.support.VirtualThreads;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Runs a single {@link ContinuousWorker} or {@link PipelineWorker} on behalf of the {@link WorkerRuntime}.
+ */
+final class WorkerHandle {
+
+    private static final Log log = LogFactory.getLog(WorkerHandle.class);
+    private static final long POLL_INTERVAL_MILLIS = 100;
+
+    private final String name;
+    private final Object worker;
+    private final int concurrency;
+    private final long idleDelayMillis;
+    private final long shutdownTimeoutMillis;
+    private final ThreadFactory threadFactory;
+    private final WorkerQueue queue;
+    private final List<Thread> threads = new ArrayList<>();
+    private final LongAdder processed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder busyNanos = new LongAdder();
+    private volatile boolean running;
+    private volatile CountDownLatch stopSignal = new CountDownLatch(0);
+    private volatile long startNanos;
+    private volatile long stopNanos;
+    private volatile Thread producerThread;
+
+    WorkerHandle(@NotNull String name, @NotNull Object worker, @Nullable WorkerExecution execution) {
+        this.name = requireNonNull(name);
+        this.worker = requireNonNull(worker);
+        if (!(worker instanceof ContinuousWorker) && !(worker instanceof PipelineWorker)) {
+            throw new IllegalArgumentException("Worker " + name + " is neither a ContinuousWorker nor a PipelineWorker");
+        }
+        var threadKind = execution == null ? ThreadKind.PLATFORM : execution.threads();
+        this.concurrency = execution == null ? 1 : execution.concurrency();
+        var queueCapacity = execution == null ? 1024 : execution.queueCapacity();
+        var queueKind = execution == null ? QueueKind.BLOCKING : execution.queue();
+        this.idleDelayMillis = execution == null ? 1000 : execution.idleDelayMillis();
+        this.shutdownTimeoutMillis = execution == null ? 30000 : execution.shutdownTimeoutMillis();
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("Worker " + name + " must have a concurrency of at least 1");
+        }
+        if (queueCapacity < 1) {
+            throw new IllegalArgumentException("Worker " + name + " must have a queue capacity of at least 1");
+        }
+        this.threadFactory = createThreadFactory(name, threadKind);
+        this.queue = worker instanceof PipelineWorker ? WorkerQueue.create(queueKind, queueCapacity, concurrency) : null;
+    }
+
+    private static @NotNull ThreadFactory createThreadFactory(@NotNull String name, @NotNull ThreadKind threadKind) {
+        var prefix = name + "-";
+        if (threadKind == ThreadKind.VIRTUAL) {
+            var virtualThreadFactory = VirtualThreads.newThreadFactory(prefix);
+            if (virtualThreadFactory.isPresent()) {
+                return virtualThreadFactory.get();
+            }
+            log.warn("Virtual threads are not available, running worker " + name + " on platform threads");
+        }
+        return new CustomizableThreadFactory(prefix);
+    }
+
+    @NotNull String getName() {
+        return name;
+    }
+
+    boolean isRunning() {
+        return running;
+    }
+
+    synchronized void start() {
+        if (running) {
+            return;
+        }
+        log.info("Starting worker " + name + " with concurrency " + concurrency);
+        running = true;
+        stopSignal = new CountDownLatch(1);
+        startNanos = System.nanoTime();
+        stopNanos = 0;
+        threads.clear();
+        if (worker instanceof PipelineWorker) {
+            producerThread = threadFactory.newThread(this::runProducer);
+            threads.add(producerThread);
+            for (var i = 0; i < concurrency; ++i) {
+                var consumer = i;
+                threads.add(threadFactory.newThread(() -> runConsumer(consumer)));
+            }
+        } else {
+            for (var i = 0; i < concurrency; ++i) {
+                threads.add(threadFactory.newThread(this::runContinuous));
+            }
+        }
+        threads.forEach(Thread::start);
+    }
+
+    /**
+     * Signals the worker to stop without waiting for it to do so.
+     */
+    synchronized void signalStop() {
+        if (!running) {
+            return;
+        }
+        log.info("Stopping worker " + name);
+        running = false;
+        // Wakes up threads waiting for the idle delay. A producer blocked on a full queue is released by the consumers
+        // as they drain the queue.
+        stopSignal.countDown();
+    }
+
+    /**
+     * Waits for the worker threads to finish, interrupting them if they have not finished before the shutdown
+     * timeout.
+     */
+    void awaitStop() {
+        List<Thread> threadsToAwait;
+        synchronized (this) {
+            threadsToAwait = new ArrayList<>(threads);
+        }
+        var deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(shutdownTimeoutMillis);
+        try {
+            for (var thread : threadsToAwait) {
+                var remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remainingMillis > 0) {
+                    thread.join(remainingMillis);
+                }
+            }
+            var stragglers = threadsToAwait.stream().filter(Thread::isAlive).count();
+            if (stragglers > 0) {
+                log.warn("Worker " + name + " did not stop within " + shutdownTimeoutMillis + " ms, interrupting "
+                        + stragglers + " thread(s) and discarding " + backlog() + " queued item(s)");
+                threadsToAwait.forEach(Thread::interrupt);
+            }
+        } catch (InterruptedException ex) {
+            threadsToAwait.forEach(Thread::interrupt);
+            Thread.currentThread().interrupt();
+        }
+        stopNanos = System.nanoTime();
+    }
+
+    private void runContinuous() {
+        var continuousWorker = (ContinuousWorker) worker;
+        while (running) {
+            var start = System.nanoTime();
+            boolean workDone;
+            try {
+                workDone = continuousWorker.doWork();
+                if (workDone) {
+                    processed.increment();
+                }
+            } catch (InterruptedException ex) {
+                if (!running) {
+                    return;
+                }
+                workDone = false;
+            } catch (Exception ex) {
+                log.error("Worker " + name + " failed", ex);
+                failed.increment();
+                workDone = false;
+            } finally {
+                busyNanos.add(System.nanoTime() - start);
+            }
+            if (!workDone && !idle()) {
+                return;
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void runProducer() {
+        var pipelineWorker = (PipelineWorker<Object>) worker;
+        while (running) {
+            var produced = new boolean[1];
+            try {
+                pipelineWorker.produce(item -> {
+                    queue.put(requireNonNull(item, "produced item must not be null"));
+                    produced[0] = true;
+                });
+            } catch (InterruptedException ex) {
+                if (!running) {
+                    return;
+                }
+            } catch (Exception ex) {
+                log.error("Producer of worker " + name + " failed", ex);
+                failed.increment();
+                produced[0] = false;
+            }
+            if (!produced[0] && !idle()) {
+                return;
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void runConsumer(int consumer) {
+        var pipelineWorker = (PipelineWorker<Object>) worker;
+        Consumer<Object> handler = item -> {
+            var start = System.nanoTime();
+            try {
+                pipelineWorker.consume(item);
+                processed.increment();
+            } catch (InterruptedException ex) {
+                failed.increment();
+                Thread.currentThread().interrupt();
+            } catch (Exception ex) {
+                log.error("Consumer of worker " + name + " failed to consume " + item, ex);
+                failed.increment();
+            } finally {
+                busyNanos.add(System.nanoTime() - start);
+            }
+        };
+        // Keep on consuming until the producer has stopped and the queue has been drained
+        while (running || isProducerAlive() || !queue.isEmpty(consumer)) {
+            try {
+                queue.take(consumer, handler, POLL_INTERVAL_MILLIS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            // Only a forced shutdown stops a consumer. Otherwise the interrupt is cleared, since the producer would block
+            // forever if all the consumers were gone.
+            if (Thread.interrupted() && !running) {
+                return;
+            }
+        }
+    }
+
+    private boolean isProducerAlive() {
+        var producer = producerThread;
+        return producer != null && producer.isAlive();
+    }
+
+    /**
+     * Waits for the idle delay.
+     *
+     * @return true if the worker should continue, false if it has been stopped or interrupted.
+     */
+    private boolean idle() {
+        try {
+            return !stopSignal.await(idleDelayMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ex) {
+            return false;
+        }
+    }
+
+    private int backlog() {
+        return queue == null ? 0 : queue.size();
+    }
+
+    @NotNull WorkerMetrics getMetrics() {
+        var start = startNanos;
+        var end = running || stopNanos == 0 ? System.nanoTime() : stopNanos;
+        var uptime = start == 0 ? Duration.ZERO : Duration.ofNanos(end - start);
+        return new WorkerMetrics(name, processed.sum(), failed.sum(), uptime, Duration.ofNanos(busyNanos.sum()),
+                concurrency, backlog(), queue == null ? 0 : queue.capacity());
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.application.base.worker;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.time.Duration;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Immutable snapshot of the metrics of a single worker managed by the {@link WorkerRuntime}. Counters are cumulative
+ * since the worker was started, so callers that want rates over a specific interval can compute them from the
+ * difference between two snapshots.
+ */
+public final class WorkerMetrics {
+
+    private final String workerName;
+    private final long processedItems;
+    private final long failedItems;
+    private final Duration uptime;
+    private final Duration busyTime;
+    private final int concurrency;
+    private final int backlog;
+    private final int queueCapacity;
+
+    WorkerMetrics(@NotNull String workerName, long processedItems, long failedItems, @NotNull Duration uptime,
+                  @NotNull Duration busyTime, int concurrency, int backlog, int queueCapacity) {
+        this.workerName = requireNonNull(workerName);
+        this.processedItems = processedItems;
+        this.failedItems = failedItems;
+        this.uptime = requireNonNull(uptime);
+        this.busyTime = requireNonNull(busyTime);
+        this.concurrency = concurrency;
+        this.backlog = backlog;
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * Returns the name of the worker.
+     *
+     * @return the worker name.
+     */
+    public @NotNull String getWorkerName() {
+        return workerName;
+    }
+
+    /**
+     * Returns the number of items (or units of work for {@link ContinuousWorker}s) that have been successfully
+     * processed.
+     *
+     * @return the number of processed items.
+     */
+    public long getProcessedItems() {
+        return processedItems;
+    }
+
+    /**
+     * Returns the number of items (or units of work for {@link ContinuousWorker}s) that failed with an exception. For
+     * {@link PipelineWorker}s, this includes the calls to the producer that failed.
+     *
+     * @return the number of failed items.
+     */
+    public long getFailedItems() {
+        return failedItems;
+    }
+
+    /**
+     * Returns for how long the worker has been running.
+     *
+     * @return the uptime.
+     */
+    public @NotNull Duration getUptime() {
+        return uptime;
+    }
+
+    /**
+     * Returns the total time the worker threads have spent processing items (excluding time spent idle or waiting for
+     * the queue).
+     *
+     * @return the busy time summed over all threads.
+     */
+    public @NotNull Duration getBusyTime() {
+        return busyTime;
+    }
+
+    /**
+     * Returns the number of threads processing items.
+     *
+     * @return the concurrency.
+     */
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    /**
+     * Returns the number of items waiting in the queue between the producer and the consumers. This is always 0 for
+     * {@link ContinuousWorker}s.
+     *
+     * @return the backlog.
+     */
+    public int getBacklog() {
+        return backlog;
+    }
+
+    /**
+     * Returns the capacity of the queue between the producer and the consumers. This is always 0 for
+     * {@link ContinuousWorker}s.
+     *
+     * @return the queue capacity.
+     */
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    /**
+     * Returns the average number of processed (successful and failed) items per second since the worker was started.
+     *
+     * @return the throughput in items per second.
+     */
+    public double getThroughput() {
+        var seconds = uptime.toNanos() / 1e9;
+        return seconds > 0 ? (processedItems + failedItems) / seconds : 0;
+    }
+
+    /**
+     * Returns the fraction of the available thread time that has been spent processing items since the worker was
+     * started.
+     *
+     * @return the utilization, between 0 and 1.
+     */
+    public double getUtilization() {
+        var available = (double) uptime.toNanos() * concurrency;
+        return available > 0 ? Math.min(1.0, busyTime.toNanos() / available) : 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s{workerName=%s, processedItems=%d, failedItems=%d, throughput=%.2f/s, utilization=%.2f, backlog=%d/%d}",
+                getClass().getSimpleName(), workerName, processedItems, failedItems, getThroughput(), getUtilization(),
+                backlog, queueCapacity);
+    }
+}
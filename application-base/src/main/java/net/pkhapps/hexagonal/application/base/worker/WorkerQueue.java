@@ -0,0 +1,186 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.application.base.worker;
+
+import net.pkhapps.hexagonal.application.base.worker.channel.ProducerMode;
+import net.pkhapps.hexagonal.application.base.worker.channel.RingBufferChannel;
+import net.pkhapps.hexagonal.application.base.worker.channel.WaitStrategy;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * The queue between the producer and the consumers of a {@link PipelineWorker}.
+ */
+abstract class WorkerQueue {
+
+    private static final int MAX_BATCH_SIZE = 256;
+
+    /**
+     * Creates a new queue.
+     *
+     * @param kind      the kind of queue to create.
+     * @param capacity  the total capacity of the queue.
+     * @param consumers the number of consumers.
+     * @return the new queue.
+     */
+    static @NotNull WorkerQueue create(@NotNull QueueKind kind, int capacity, int consumers) {
+        return kind == QueueKind.RING_BUFFER
+                ? new RingBufferQueue(capacity, consumers)
+                : new BlockingQueueAdapter(capacity);
+    }
+
+    /**
+     * Puts the given item in the queue, blocking while the queue is full. Only called by the producer thread.
+     *
+     * @param item the item to put.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    abstract void put(@NotNull Object item) throws InterruptedException;
+
+    /**
+     * Passes a batch of items to the given handler, waiting at most the given time for items to become available.
+     *
+     * @param consumer the index of the calling consumer.
+     * @param handler  the handler to pass the items to.
+     * @param timeout  the maximum time to wait in milliseconds.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    abstract void take(int consumer, @NotNull Consumer<Object> handler, long timeout) throws InterruptedException;
+
+    /**
+     * Returns whether the part of the queue read by the given consumer is empty.
+     *
+     * @param consumer the index of the consumer.
+     * @return true if there is nothing more for the consumer to take.
+     */
+    abstract boolean isEmpty(int consumer);
+
+    /**
+     * Returns the number of items in the queue.
+     *
+     * @return the total number of items waiting for any of the consumers.
+     */
+    abstract int size();
+
+    /**
+     * Returns the actual capacity of the queue, which may be larger than the requested one.
+     *
+     * @return the total capacity.
+     */
+    abstract int capacity();
+
+    private static final class BlockingQueueAdapter extends WorkerQueue {
+
+        private final BlockingQueue<Object> queue;
+        private final int capacity;
+
+        BlockingQueueAdapter(int capacity) {
+            this.queue = new ArrayBlockingQueue<>(capacity);
+            this.capacity = capacity;
+        }
+
+        @Override
+        void put(@NotNull Object item) throws InterruptedException {
+            queue.put(item);
+        }
+
+        @Override
+        void take(int consumer, @NotNull Consumer<Object> handler, long timeout) throws InterruptedException {
+            var item = queue.poll(timeout, TimeUnit.MILLISECONDS);
+            if (item != null) {
+                handler.accept(item);
+            }
+        }
+
+        @Override
+        boolean isEmpty(int consumer) {
+            return queue.isEmpty();
+        }
+
+        @Override
+        int size() {
+            return queue.size();
+        }
+
+        @Override
+        int capacity() {
+            return capacity;
+        }
+    }
+
+    private static final class RingBufferQueue extends WorkerQueue {
+
+        private final RingBufferChannel<Object>[] channels;
+        private int nextChannel;
+
+        @SuppressWarnings("unchecked")
+        RingBufferQueue(int capacity, int consumers) {
+            var channelCapacity = RingBufferChannel.capacityFor((capacity + consumers - 1) / consumers);
+            channels = new RingBufferChannel[consumers];
+            for (var i = 0; i < consumers; ++i) {
+                // Only the runtime's producer thread publishes, so the single producer mode is safe
+                channels[i] = new RingBufferChannel<>(channelCapacity, ProducerMode.SINGLE, WaitStrategy.blocking());
+            }
+        }
+
+        @Override
+        void put(@NotNull Object item) throws InterruptedException {
+            requireNonNull(item);
+            // Try the consumers in round-robin order and block on the next one in turn only if all of them are full.
+            for (var i = 0; i < channels.length; ++i) {
+                var channel = channels[nextChannel];
+                nextChannel = (nextChannel + 1) % channels.length;
+                if (channel.offer(item)) {
+                    return;
+                }
+            }
+            channels[nextChannel].put(item);
+            nextChannel = (nextChannel + 1) % channels.length;
+        }
+
+        @Override
+        void take(int consumer, @NotNull Consumer<Object> handler, long timeout) throws InterruptedException {
+            channels[consumer].take(handler, MAX_BATCH_SIZE, timeout, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        boolean isEmpty(int consumer) {
+            return channels[consumer].isEmpty();
+        }
+
+        @Override
+        int size() {
+            var size = 0;
+            for (var channel : channels) {
+                size += channel.size();
+            }
+            return size;
+        }
+
+        @Override
+        int capacity() {
+            return channels[0].capacity() * channels.length;
+        }
+    }
+}
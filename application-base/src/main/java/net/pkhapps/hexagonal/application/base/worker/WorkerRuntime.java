@@ -0,0 +1,122 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.application.base.worker;
+
+import net.pkhapps.hexagonal.application.base.annotation.Worker;
+import org.jetbrains.annotations.NotNull;
+import org.springframework.beans.BeansException;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationContextAware;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Runtime that discovers all {@linkplain Worker workers} implementing {@link ContinuousWorker} or
+ * {@link PipelineWorker}, runs them on dedicated threads when the application context starts and shuts them down
+ * gracefully when it stops. Workers can be configured using the {@link WorkerExecution} annotation. Workers that
+ * implement neither interface (for example workers that only contain
+ * {@linkplain org.springframework.scheduling.annotation.Scheduled scheduled} methods) are ignored.
+ * <p>
+ * The runtime is opt-in; register it as a bean in your application context to enable it.
+ */
+public class WorkerRuntime implements SmartLifecycle, ApplicationContextAware {
+
+    private final List<WorkerHandle> handles = new ArrayList<>();
+    private ApplicationContext applicationContext;
+    private volatile boolean running;
+
+    @Override
+    public void setApplicationContext(@NotNull ApplicationContext applicationContext) throws BeansException {
+        this.applicationContext = requireNonNull(applicationContext);
+    }
+
+    @Override
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        if (handles.isEmpty()) {
+            discoverWorkers();
+        }
+        handles.forEach(WorkerHandle::start);
+        running = true;
+    }
+
+    private void discoverWorkers() {
+        if (applicationContext == null) {
+            throw new IllegalStateException("No ApplicationContext has been set");
+        }
+        applicationContext.getBeansWithAnnotation(Worker.class).forEach((beanName, bean) -> {
+            if (bean instanceof ContinuousWorker || bean instanceof PipelineWorker) {
+                var userClass = ClassUtils.getUserClass(bean);
+                var worker = AnnotationUtils.findAnnotation(userClass, Worker.class);
+                var name = worker != null && StringUtils.hasText(worker.value()) ? worker.value() : beanName;
+                var execution = AnnotationUtils.findAnnotation(userClass, WorkerExecution.class);
+                handles.add(new WorkerHandle(name, bean, execution));
+            }
+        });
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        // Signal all the workers first so that they can shut down in parallel
+        handles.forEach(WorkerHandle::signalStop);
+        handles.forEach(WorkerHandle::awaitStop);
+        running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Returns the metrics of all the workers managed by this runtime.
+     *
+     * @return a list of metrics snapshots, one per worker.
+     */
+    public synchronized @NotNull List<WorkerMetrics> getMetrics() {
+        return handles.stream().map(WorkerHandle::getMetrics).collect(Collectors.toUnmodifiableList());
+    }
+
+    /**
+     * Returns the metrics of the worker with the given name.
+     *
+     * @param workerName the name of the worker (either the value of the {@link Worker} annotation or the bean name).
+     * @return a metrics snapshot, or an empty {@code Optional} if no such worker exists.
+     */
+    public synchronized @NotNull Optional<WorkerMetrics> getMetrics(@NotNull String workerName) {
+        requireNonNull(workerName);
+        return handles.stream()
+                .filter(handle -> handle.getName().equals(workerName))
+                .findFirst()
+                .map(WorkerHandle::getMetrics);
+    }
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.application.base.worker;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Sink through which a {@link PipelineWorker} passes produced items to its consumers.
+ *
+ * @param <T> the type of the items.
+ */
+@FunctionalInterface
+public interface WorkerSink<T> {
+
+    /**
+     * Passes the given item to the consumers, blocking while the queue between the producer and the consumers is full.
+     *
+     * @param item the item to pass on.
+     * @throws InterruptedException if the thread was interrupted while waiting for room in the queue.
+     */
+    void put(@NotNull T item) throws InterruptedException;
+}
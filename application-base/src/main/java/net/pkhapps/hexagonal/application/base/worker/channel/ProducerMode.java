@@ -0,0 +1,33 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.application.base.worker.channel;
+
+/**
+ * Enumeration of the producer modes supported by {@link RingBufferChannel}.
+ */
+public enum ProducerMode {
+    /**
+     * Only a single thread publishes to the channel. This is the fastest mode since claiming a slot does not require
+     * any atomic read-modify-write operations, but using it from more than one producer thread corrupts the channel.
+     */
+    SINGLE,
+    /**
+     * Any number of threads may publish to the channel concurrently. Slots are claimed using compare-and-set.
+     */
+    MULTI
+}
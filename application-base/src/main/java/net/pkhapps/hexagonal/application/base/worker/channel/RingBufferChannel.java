@@ -0,0 +1,298 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.application.base.worker.channel;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Bounded, lock-free channel for passing items from one or more producer threads to a single consumer thread, modelled
+ * after the LMAX Disruptor. All slots are allocated up front, so unlike {@link java.util.concurrent.LinkedBlockingQueue}
+ * no nodes are allocated per item, and unlike {@link java.util.concurrent.ArrayBlockingQueue} producers and the
+ * consumer never contend on a lock. The consumer processes items in batches, publishing its progress only once per
+ * batch.
+ * <p>
+ * The channel supports exactly one consumer thread at a time. Use one channel per consumer if you need more than one.
+ *
+ * @param <T> the type of the items in the channel.
+ */
+public final class RingBufferChannel<T> {
+
+    private static final VarHandle AVAILABLE = MethodHandles.arrayElementVarHandle(int[].class);
+    private static final VarHandle SLOT = MethodHandles.arrayElementVarHandle(Object[].class);
+
+    private final Object[] slots;
+    private final int mask;
+    private final int indexShift;
+    private final ProducerMode producerMode;
+    private final WaitStrategy waitStrategy;
+
+    /**
+     * The sequence of the last published item in {@link ProducerMode#SINGLE} mode, or of the last claimed item in
+     * {@link ProducerMode#MULTI} mode.
+     */
+    private final Sequence cursor = new Sequence(-1);
+    /**
+     * The sequence of the last consumed item.
+     */
+    private final Sequence consumed = new Sequence(-1);
+    /**
+     * In {@link ProducerMode#MULTI} mode, this array contains the "lap" of the last item published into each slot, so
+     * that the consumer can tell whether a claimed slot has actually been published yet.
+     */
+    private final int[] available;
+
+    private final BooleanSupplier itemsAvailable = this::hasItems;
+    private final BooleanSupplier slotAvailable = this::hasFreeSlot;
+
+    /**
+     * Creates a new {@code RingBufferChannel}.
+     *
+     * @param capacity     the capacity of the channel. Must be a power of two.
+     * @param producerMode whether the channel is used by one or many producer threads.
+     * @param waitStrategy the strategy to use when waiting for items or free slots.
+     */
+    public RingBufferChannel(int capacity, @NotNull ProducerMode producerMode, @NotNull WaitStrategy waitStrategy) {
+        if (capacity < 1 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a positive power of two");
+        }
+        this.slots = new Object[capacity];
+        this.mask = capacity - 1;
+        this.indexShift = Integer.numberOfTrailingZeros(capacity);
+        this.producerMode = requireNonNull(producerMode);
+        this.waitStrategy = requireNonNull(waitStrategy);
+        if (producerMode == ProducerMode.MULTI) {
+            available = new int[capacity];
+            for (var i = 0; i < capacity; ++i) {
+                AVAILABLE.setRelease(available, i, -1);
+            }
+        } else {
+            available = null;
+        }
+    }
+
+    /**
+     * Returns the smallest power of two that is greater than or equal to the given value, for use as a capacity.
+     *
+     * @param value the requested capacity.
+     * @return the capacity rounded up to a power of two.
+     */
+    public static int capacityFor(int value) {
+        if (value <= 1) {
+            return 1;
+        }
+        if (value > (1 << 30)) {
+            throw new IllegalArgumentException("Capacity is too large");
+        }
+        return Integer.highestOneBit(value - 1) << 1;
+    }
+
+    /**
+     * Returns the capacity of this channel.
+     *
+     * @return the capacity.
+     */
+    public int capacity() {
+        return slots.length;
+    }
+
+    /**
+     * Returns the approximate number of items in the channel.
+     *
+     * @return the number of published or claimed items that have not been consumed yet.
+     */
+    public int size() {
+        var size = cursor.get() - consumed.get();
+        return (int) Math.max(0, Math.min(size, slots.length));
+    }
+
+    /**
+     * Returns whether the channel is (approximately) empty.
+     *
+     * @return true if there are no items in the channel, false otherwise.
+     */
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Publishes the given item, waiting for a free slot if the channel is full.
+     *
+     * @param item the item to publish.
+     * @throws InterruptedException if the thread was interrupted while waiting for a free slot.
+     */
+    public void put(@NotNull T item) throws InterruptedException {
+        requireNonNull(item);
+        while (!offer(item)) {
+            waitStrategy.await(slotAvailable, Long.MAX_VALUE);
+        }
+    }
+
+    /**
+     * Publishes the given item, waiting at most the given time for a free slot if the channel is full.
+     *
+     * @param item    the item to publish.
+     * @param timeout the maximum time to wait.
+     * @param unit    the unit of the timeout.
+     * @return true if the item was published, false if the channel was still full when the timeout elapsed.
+     * @throws InterruptedException if the thread was interrupted while waiting for a free slot.
+     */
+    public boolean offer(@NotNull T item, long timeout, @NotNull TimeUnit unit) throws InterruptedException {
+        requireNonNull(item);
+        var deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (!offer(item)) {
+            var remaining = deadline - System.nanoTime();
+            if (remaining <= 0 || !waitStrategy.await(slotAvailable, remaining)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Publishes the given item if there is a free slot, without waiting.
+     *
+     * @param item the item to publish.
+     * @return true if the item was published, false if the channel was full.
+     */
+    public boolean offer(@NotNull T item) {
+        requireNonNull(item);
+        if (producerMode == ProducerMode.SINGLE) {
+            var next = cursor.get() + 1;
+            if (next - slots.length > consumed.get()) {
+                return false;
+            }
+            SLOT.setRelease(slots, index(next), item);
+            cursor.set(next);
+        } else {
+            long next;
+            do {
+                var current = cursor.get();
+                next = current + 1;
+                if (next - slots.length > consumed.get()) {
+                    return false;
+                }
+            } while (!cursor.compareAndSet(next - 1, next));
+            var index = index(next);
+            SLOT.setRelease(slots, index, item);
+            AVAILABLE.setRelease(available, index, lap(next));
+        }
+        waitStrategy.signalAll();
+        return true;
+    }
+
+    /**
+     * Passes up to {@code maxBatchSize} available items to the given handler without waiting. Must only be called by
+     * the consumer thread.
+     *
+     * @param handler      the handler to pass the items to.
+     * @param maxBatchSize the maximum number of items to pass to the handler.
+     * @return the number of items passed to the handler.
+     */
+    public int drain(@NotNull Consumer<? super T> handler, int maxBatchSize) {
+        requireNonNull(handler);
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be at least 1");
+        }
+        var first = consumed.get() + 1;
+        var last = Math.min(highestPublished(first), first + maxBatchSize - 1);
+        if (last < first) {
+            return 0;
+        }
+        for (var sequence = first; sequence <= last; ++sequence) {
+            var index = index(sequence);
+            @SuppressWarnings("unchecked")
+            var item = (T) SLOT.getAcquire(slots, index);
+            // Clear the slot so that the item can be garbage collected
+            SLOT.setOpaque(slots, index, null);
+            try {
+                handler.accept(item);
+            } catch (RuntimeException | Error ex) {
+                // Skip the failed item so that it is not handed out again
+                consumed.set(sequence);
+                waitStrategy.signalAll();
+                throw ex;
+            }
+        }
+        consumed.set(last);
+        waitStrategy.signalAll();
+        return (int) (last - first + 1);
+    }
+
+    /**
+     * Passes up to {@code maxBatchSize} items to the given handler, waiting at most the given time for at least one
+     * item to become available. Must only be called by the consumer thread.
+     *
+     * @param handler      the handler to pass the items to.
+     * @param maxBatchSize the maximum number of items to pass to the handler.
+     * @param timeout      the maximum time to wait.
+     * @param unit         the unit of the timeout.
+     * @return the number of items passed to the handler, 0 if the timeout elapsed.
+     * @throws InterruptedException if the thread was interrupted while waiting for items.
+     */
+    public int take(@NotNull Consumer<? super T> handler, int maxBatchSize, long timeout, @NotNull TimeUnit unit)
+            throws InterruptedException {
+        var drained = drain(handler, maxBatchSize);
+        if (drained > 0) {
+            return drained;
+        }
+        if (waitStrategy.await(itemsAvailable, unit.toNanos(timeout))) {
+            return drain(handler, maxBatchSize);
+        }
+        return 0;
+    }
+
+    private boolean hasItems() {
+        var next = consumed.get() + 1;
+        return highestPublished(next) >= next;
+    }
+
+    private boolean hasFreeSlot() {
+        return cursor.get() + 1 - slots.length <= consumed.get();
+    }
+
+    private long highestPublished(long from) {
+        var claimed = cursor.get();
+        if (producerMode == ProducerMode.SINGLE) {
+            return claimed;
+        }
+        // In multi producer mode, slots may be claimed but not yet published. Return the last sequence of the
+        // contiguous range of published slots.
+        for (var sequence = from; sequence <= claimed; ++sequence) {
+            if ((int) AVAILABLE.getAcquire(available, index(sequence)) != lap(sequence)) {
+                return sequence - 1;
+            }
+        }
+        return claimed;
+    }
+
+    private int index(long sequence) {
+        return (int) sequence & mask;
+    }
+
+    private int lap(long sequence) {
+        return (int) (sequence >>> indexShift);
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.application.base.worker.channel;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.lang.invoke.VarHandle;
+import java.time.Duration;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Strategy deciding how a {@link RingBufferChannel} waits for items to become available (on the consumer side) or for
+ * free slots to become available (on the producer side). The strategies trade latency for CPU usage: a busy-spinning
+ * strategy has the lowest latency but burns a full core while waiting, whereas a blocking strategy uses no CPU but has
+ * to wake up the waiting thread through the operating system.
+ */
+public interface WaitStrategy {
+
+    /**
+     * Waits until the given condition is true or the timeout elapses.
+     *
+     * @param condition    the condition to wait for.
+     * @param timeoutNanos the maximum time to wait in nanoseconds.
+     * @return true if the condition became true, false if the timeout elapsed first.
+     * @throws InterruptedException if the thread was interrupted while waiting.
+     */
+    boolean await(@NotNull BooleanSupplier condition, long timeoutNanos) throws InterruptedException;
+
+    /**
+     * Wakes up any threads waiting in {@link #await(BooleanSupplier, long)}. The channel calls this whenever it has
+     * published or consumed items. Strategies that do not block can ignore this.
+     */
+    default void signalAll() {
+    }
+
+    /**
+     * Returns a strategy that spins in a tight loop while waiting. Use only when the number of waiting threads is
+     * lower than the number of available cores.
+     *
+     * @return a busy-spinning wait strategy.
+     */
+    static @NotNull WaitStrategy busySpin() {
+        return (condition, timeoutNanos) -> {
+            var deadline = System.nanoTime() + timeoutNanos;
+            while (!condition.getAsBoolean()) {
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+                if (System.nanoTime() - deadline >= 0) {
+                    return false;
+                }
+                Thread.onSpinWait();
+            }
+            return true;
+        };
+    }
+
+    /**
+     * Returns a strategy that spins for a while and then yields the thread while waiting.
+     *
+     * @return a yielding wait strategy.
+     */
+    static @NotNull WaitStrategy yielding() {
+        return sleeping(Duration.ZERO);
+    }
+
+    /**
+     * Returns a strategy that first spins, then yields and finally parks the thread for the given duration between
+     * checks. This is a good compromise between latency and CPU usage for most workers.
+     *
+     * @param sleepTime the time to park the thread between checks once spinning and yielding have not helped. If this
+     *                  is zero, the thread keeps on yielding.
+     * @return a sleeping wait strategy.
+     */
+    static @NotNull WaitStrategy sleeping(@NotNull Duration sleepTime) {
+        var sleepNanos = requireNonNull(sleepTime).toNanos();
+        return (condition, timeoutNanos) -> {
+            var deadline = System.nanoTime() + timeoutNanos;
+            var attempt = 0;
+            while (!condition.getAsBoolean()) {
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+                if (System.nanoTime() - deadline >= 0) {
+                    return false;
+                }
+                if (attempt < 100) {
+                    Thread.onSpinWait();
+                } else if (attempt < 200 || sleepNanos == 0) {
+                    Thread.yield();
+                } else {
+                    LockSupport.parkNanos(sleepNanos);
+                }
+                ++attempt;
+            }
+            return true;
+        };
+    }
+
+    /**
+     * Returns a strategy that blocks on a lock condition while waiting and is woken up by {@link #signalAll()}. This
+     * uses the least CPU but has the highest latency. The returned strategy must not be shared between channels.
+     *
+     * @return a blocking wait strategy.
+     */
+    static @NotNull WaitStrategy blocking() {
+        return new WaitStrategy() {
+            private final ReentrantLock lock = new ReentrantLock();
+            private final Condition signal = lock.newCondition();
+            private volatile int waiters;
+
+            @Override
+            public boolean await(@NotNull BooleanSupplier condition, long timeoutNanos) throws InterruptedException {
+                if (condition.getAsBoolean()) {
+                    return true;
+                }
+                var remaining = timeoutNanos;
+                lock.lockInterruptibly();
+                try {
+                    ++waiters;
+                    // The condition is checked while holding the lock, so a signal cannot get lost between the check
+                    // and the call to awaitNanos.
+                    while (!condition.getAsBoolean()) {
+                        if (remaining <= 0) {
+                            return false;
+                        }
+                        remaining = signal.awaitNanos(remaining);
+                    }
+                    return true;
+                } finally {
+                    --waiters;
+                    lock.unlock();
+                }
+            }
+
+            @Override
+            public void signalAll() {
+                // Orders the preceding publication before the read of waiters (pairs with the increment in await)
+                VarHandle.fullFence();
+                if (waiters > 0) {
+                    lock.lock();
+                    try {
+                        signal.signalAll();
+                    } finally {
+                        lock.unlock();
+                    }
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.application.base.worker.lease;
+
+import org.jetbrains.annotations.NotNull;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * {@link LeaseStore} that stores the leases and heartbeats in two database tables, using one auto-committed statement
+ * per operation. Instants are stored as milliseconds since the epoch, so the clocks of the nodes must be synchronized
+ * to within a small fraction of the lease duration. The tables can be created using {@link #createSchema()} or with
+ * the following DDL:
+ * <pre>
+ * create table worker_partition_lease (
+ *     worker_name varchar(200) not null,
+ *     partition_no integer not null,
+ *     owner varchar(200),
+ *     expires_at bigint,
+ *     primary key (worker_name, partition_no)
+ * );
+ * create table worker_node (
+ *     worker_name varchar(200) not null,
+ *     node_id varchar(200) not null,
+ *     expires_at bigint not null,
+ *     primary key (worker_name, node_id)
+ * );
+ * </pre>
+ */
+public class JdbcLeaseStore implements LeaseStore {
+
+    private static final String[] SCHEMA = {
+            "create table worker_partition_lease (worker_name varchar(200) not null, partition_no integer not null, "
+                    + "owner varchar(200), expires_at bigint, primary key (worker_name, partition_no))",
+            "create table worker_node (worker_name varchar(200) not null, node_id varchar(200) not null, "
+                    + "expires_at bigint not null, primary key (worker_name, node_id))"
+    };
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Creates a new {@code JdbcLeaseStore}.
+     *
+     * @param dataSource the data source containing the lease tables.
+     */
+    public JdbcLeaseStore(@NotNull DataSource dataSource) {
+        this.jdbcTemplate = new JdbcTemplate(requireNonNull(dataSource));
+    }
+
+    /**
+     * Creates the lease tables. This is mainly intended for tests and local development; in production the tables
+     * should be created together with the rest of the schema.
+     */
+    public void createSchema() {
+        for (var statement : SCHEMA) {
+            jdbcTemplate.execute(statement);
+        }
+    }
+
+    @Override
+    public void initialize(@NotNull String workerName, int partitionCount) {
+        var existing = new HashSet<>(jdbcTemplate.queryForList(
+                "select partition_no from worker_partition_lease where worker_name = ?", Integer.class, workerName));
+        for (var partition = 0; partition < partitionCount; ++partition) {
+            if (!existing.contains(partition)) {
+                try {
+                    jdbcTemplate.update("insert into worker_partition_lease (worker_name, partition_no) values (?, ?)",
+                            workerName, partition);
+                } catch (DuplicateKeyException ex) {
+                    // Another node initialized the partition at the same time, which is fine
+                }
+            }
+        }
+    }
+
+    @Override
+    public void heartbeat(@NotNull String workerName, @NotNull String nodeId, @NotNull Instant expiresAt) {
+        var updateSql = "update worker_node set expires_at = ? where worker_name = ? and node_id = ?";
+        if (jdbcTemplate.update(updateSql, expiresAt.toEpochMilli(), workerName, nodeId) == 0) {
+            try {
+                jdbcTemplate.update("insert into worker_node (worker_name, node_id, expires_at) values (?, ?, ?)",
+                        workerName, nodeId, expiresAt.toEpochMilli());
+            } catch (DuplicateKeyException ex) {
+                jdbcTemplate.update(updateSql, expiresAt.toEpochMilli(), workerName, nodeId);
+            }
+        }
+    }
+
+    @Override
+    public void removeNode(@NotNull String workerName, @NotNull String nodeId) {
+        jdbcTemplate.update("delete from worker_node where worker_name = ? and node_id = ?", workerName, nodeId);
+    }
+
+    @Override
+    public @NotNull List<String> findLiveNodes(@NotNull String workerName, @NotNull Instant now) {
+        return jdbcTemplate.queryForList("select node_id from worker_node where worker_name = ? and expires_at > ? "
+                + "order by node_id", String.class, workerName, now.toEpochMilli());
+    }
+
+    @Override
+    public @NotNull Set<Integer> renew(@NotNull String workerName, @NotNull String nodeId, @NotNull Instant expiresAt) {
+        jdbcTemplate.update("update worker_partition_lease set expires_at = ? where worker_name = ? and owner = ?",
+                expiresAt.toEpochMilli(), workerName, nodeId);
+        return new HashSet<>(jdbcTemplate.queryForList(
+                "select partition_no from worker_partition_lease where worker_name = ? and owner = ?", Integer.class,
+                workerName, nodeId));
+    }
+
+    @Override
+    public @NotNull List<Integer> findAvailable(@NotNull String workerName, @NotNull Instant now) {
+        return jdbcTemplate.queryForList("select partition_no from worker_partition_lease where worker_name = ? "
+                + "and (owner is null or expires_at <= ?) order by partition_no", Integer.class, workerName,
+                now.toEpochMilli());
+    }
+
+    @Override
+    public boolean tryAcquire(@NotNull String workerName, int partition, @NotNull String nodeId, @NotNull Instant now,
+                              @NotNull Instant expiresAt) {
+        return jdbcTemplate.update("update worker_partition_lease set owner = ?, expires_at = ? "
+                        + "where worker_name = ? and partition_no = ? and (owner is null or expires_at <= ?)",
+                nodeId, expiresAt.toEpochMilli(), workerName, partition, now.toEpochMilli()) == 1;
+    }
+
+    @Override
+    public void release(@NotNull String workerName, int partition, @NotNull String nodeId) {
+        jdbcTemplate.update("update worker_partition_lease set owner = null, expires_at = null "
+                + "where worker_name = ? and partition_no = ? and owner = ?", workerName, partition, nodeId);
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.application.base.worker.lease;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Port through which the {@link PartitionLeaseManager} stores partition leases and node heartbeats in storage shared
+ * by all the nodes. Every method must be atomic on its own, but no transactions spanning several calls are required.
+ *
+ * @see JdbcLeaseStore
+ */
+public interface LeaseStore {
+
+    /**
+     * Makes sure that there is a lease record for every partition of the given worker.
+     *
+     * @param workerName     the name of the worker.
+     * @param partitionCount the number of partitions.
+     */
+    void initialize(@NotNull String workerName, int partitionCount);
+
+    /**
+     * Records that the given node is alive until the given instant.
+     *
+     * @param workerName the name of the worker.
+     * @param nodeId     the ID of the node.
+     * @param expiresAt  the instant after which the node is considered dead unless it sends another heartbeat.
+     */
+    void heartbeat(@NotNull String workerName, @NotNull String nodeId, @NotNull Instant expiresAt);
+
+    /**
+     * Removes the heartbeat record of the given node.
+     *
+     * @param workerName the name of the worker.
+     * @param nodeId     the ID of the node.
+     */
+    void removeNode(@NotNull String workerName, @NotNull String nodeId);
+
+    /**
+     * Returns the IDs of the nodes whose heartbeat has not expired, in ascending order.
+     *
+     * @param workerName the name of the worker.
+     * @param now        the current instant.
+     * @return a sorted list of node IDs.
+     */
+    @NotNull List<String> findLiveNodes(@NotNull String workerName, @NotNull Instant now);
+
+    /**
+     * Extends all leases held by the given node and returns the leased partitions.
+     *
+     * @param workerName the name of the worker.
+     * @param nodeId     the ID of the node.
+     * @param expiresAt  the new expiry instant of the leases.
+     * @return the partitions leased by the node.
+     */
+    @NotNull Set<Integer> renew(@NotNull String workerName, @NotNull String nodeId, @NotNull Instant expiresAt);
+
+    /**
+     * Returns the partitions that are either not leased at all or whose leases have expired.
+     *
+     * @param workerName the name of the worker.
+     * @param now        the current instant.
+     * @return a list of available partitions.
+     */
+    @NotNull List<Integer> findAvailable(@NotNull String workerName, @NotNull Instant now);
+
+    /**
+     * Tries to lease the given partition, succeeding only if it is not leased or its lease has expired.
+     *
+     * @param workerName the name of the worker.
+     * @param partition  the partition to lease.
+     * @param nodeId     the ID of the node.
+     * @param now        the current instant.
+     * @param expiresAt  the expiry instant of the new lease.
+     * @return true if the lease was acquired, false if another node got it first.
+     */
+    boolean tryAcquire(@NotNull String workerName, int partition, @NotNull String nodeId, @NotNull Instant now,
+                       @NotNull Instant expiresAt);
+
+    /**
+     * Releases the given partition if it is leased by the given node.
+     *
+     * @param workerName the name of the worker.
+     * @param partition  the partition to release.
+     * @param nodeId     the ID of the node.
+     */
+    void release(@NotNull String workerName, int partition, @NotNull String nodeId);
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.application.base.worker.lease;
+
+import net.pkhapps.hexagonal.domain.base.DomainObjectId;
+import net.pkhapps.hexagonal.domain.base.support.NumericDomainObjectId;
+import org.jetbrains.annotations.NotNull;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * {@link PartitionScheme} that splits a range of {@link NumericDomainObjectId} values into contiguous ranges of
+ * (almost) equal size. IDs below the range belong to the first partition and IDs above the range to the last.
+ *
+ * @see PartitionScheme#numericRanges(int, long, long)
+ */
+public final class NumericRangePartitionScheme implements PartitionScheme {
+
+    private final int partitionCount;
+    private final long minValue;
+    private final long maxValue;
+
+    NumericRangePartitionScheme(int partitionCount, long minValue, long maxValue) {
+        if (partitionCount < 1) {
+            throw new IllegalArgumentException("Partition count must be at least 1");
+        }
+        if (maxValue <= minValue) {
+            throw new IllegalArgumentException("maxValue must be greater than minValue");
+        }
+        this.partitionCount = partitionCount;
+        this.minValue = minValue;
+        this.maxValue = maxValue;
+    }
+
+    @Override
+    public int partitionCount() {
+        return partitionCount;
+    }
+
+    @Override
+    public int partitionOf(@NotNull DomainObjectId id) {
+        requireNonNull(id);
+        if (!(id instanceof NumericDomainObjectId)) {
+            throw new IllegalArgumentException("Only NumericDomainObjectIds are supported");
+        }
+        return partitionOf(((NumericDomainObjectId) id).unwrap());
+    }
+
+    /**
+     * Returns the partition that the given ID value belongs to.
+     *
+     * @param value the ID value.
+     * @return the partition.
+     */
+    public int partitionOf(long value) {
+        if (value < minValue) {
+            return 0;
+        }
+        if (value >= maxValue) {
+            return partitionCount - 1;
+        }
+        // Use floating point arithmetic to avoid overflows when the range spans most of the long range
+        var partition = (int) (((double) value - minValue) / ((double) maxValue - minValue) * partitionCount);
+        // Correct for rounding errors so that the result is consistent with lowerBound() and upperBound()
+        while (partition > 0 && value < lowerBound(partition)) {
+            --partition;
+        }
+        while (partition < partitionCount - 1 && value >= upperBound(partition)) {
+            ++partition;
+        }
+        return partition;
+    }
+
+    /**
+     * Returns the smallest ID value (inclusive) of the given partition, not taking into account that the first
+     * partition also contains all values below the range.
+     *
+     * @param partition the partition.
+     * @return the lower bound.
+     */
+    public long lowerBound(int partition) {
+        checkPartition(partition);
+        return minValue + (long) (((double) maxValue - minValue) / partitionCount * partition);
+    }
+
+    /**
+     * Returns the largest ID value (exclusive) of the given partition, not taking into account that the last partition
+     * also contains all values above the range.
+     *
+     * @param partition the partition.
+     * @return the upper bound.
+     */
+    public long upperBound(int partition) {
+        checkPartition(partition);
+        return partition == partitionCount - 1 ? maxValue : lowerBound(partition + 1);
+    }
+
+    private void checkPartition(int partition) {
+        if (partition < 0 || partition >= partitionCount) {
+            throw new IllegalArgumentException("Invalid partition: " + partition);
+        }
+    }
+}
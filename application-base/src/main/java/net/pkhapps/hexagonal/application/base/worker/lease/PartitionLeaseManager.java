@@ -0,0 +1,310 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.application.base.worker.lease;
+
+import net.pkhapps.hexagonal.domain.base.DomainObjectId;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.jetbrains.annotations.NotNull;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Manages leases of the partitions of a {@linkplain net.pkhapps.hexagonal.application.base.annotation.Worker worker's}
+ * keyspace, so that several nodes running the same worker can split the work between them instead of competing for
+ * the same rows. Every node sends a heartbeat at a regular interval, during which it renews its own leases, computes
+ * its fair share of the partitions based on the number of live nodes, releases any partitions above its share and
+ * acquires available partitions up to its share. Every node gets at least {@code partitions / nodes} partitions, and
+ * the remainder is given to the nodes with the lowest IDs, so the shares always add up to the number of partitions
+ * and no node is left idle while there are at least as many partitions as nodes. As nodes join or leave, the
+ * partitions are thereby rebalanced automatically within a couple of heartbeats.
+ * <p>
+ * A worker should only process the IDs of partitions it {@linkplain #owns(DomainObjectId) owns}. Ownership is checked
+ * against the local expiry of the lease minus a safety margin, so a node that cannot reach the {@link LeaseStore} stops
+ * processing before another node can take over its partitions, even if the clocks of the nodes are slightly off or the
+ * node is paused (for example by the garbage collector) right after checking ownership. The margin should be larger
+ * than the worst expected clock skew and pause.
+ */
+public class PartitionLeaseManager implements SmartLifecycle {
+
+    private static final Log log = LogFactory.getLog(PartitionLeaseManager.class);
+
+    private final String workerName;
+    private final String nodeId;
+    private final PartitionScheme partitionScheme;
+    private final LeaseStore leaseStore;
+    private final Duration leaseDuration;
+    private final Duration heartbeatInterval;
+    private final Duration safetyMargin;
+    private final Clock clock;
+    private final List<Consumer<Set<Integer>>> listeners = new CopyOnWriteArrayList<>();
+    private volatile LeaseState state = LeaseState.NONE;
+    private ScheduledExecutorService executor;
+
+    /**
+     * Creates a new {@code PartitionLeaseManager} with a random node ID, sending heartbeats at a third of the lease
+     * duration.
+     *
+     * @param workerName      the name of the worker whose partitions are leased.
+     * @param partitionScheme the partition scheme.
+     * @param leaseStore      the lease store.
+     * @param leaseDuration   the duration of a lease.
+     */
+    public PartitionLeaseManager(@NotNull String workerName, @NotNull PartitionScheme partitionScheme,
+                                 @NotNull LeaseStore leaseStore, @NotNull Duration leaseDuration) {
+        this(workerName, UUID.randomUUID().toString(), partitionScheme, leaseStore, leaseDuration,
+                leaseDuration.dividedBy(3), Clock.systemUTC());
+    }
+
+    /**
+     * Creates a new {@code PartitionLeaseManager} with a safety margin of half the time between the heartbeat interval
+     * and the lease duration.
+     *
+     * @param workerName        the name of the worker whose partitions are leased.
+     * @param nodeId            the ID of this node, unique among all nodes running the worker.
+     * @param partitionScheme   the partition scheme.
+     * @param leaseStore        the lease store.
+     * @param leaseDuration     the duration of a lease.
+     * @param heartbeatInterval the interval between heartbeats, must be shorter than the lease duration.
+     * @param clock             the clock to use.
+     */
+    public PartitionLeaseManager(@NotNull String workerName, @NotNull String nodeId,
+                                 @NotNull PartitionScheme partitionScheme, @NotNull LeaseStore leaseStore,
+                                 @NotNull Duration leaseDuration, @NotNull Duration heartbeatInterval,
+                                 @NotNull Clock clock) {
+        this(workerName, nodeId, partitionScheme, leaseStore, leaseDuration, heartbeatInterval,
+                leaseDuration.minus(heartbeatInterval).dividedBy(2), clock);
+    }
+
+    /**
+     * Creates a new {@code PartitionLeaseManager}.
+     *
+     * @param workerName        the name of the worker whose partitions are leased.
+     * @param nodeId            the ID of this node, unique among all nodes running the worker.
+     * @param partitionScheme   the partition scheme.
+     * @param leaseStore        the lease store.
+     * @param leaseDuration     the duration of a lease.
+     * @param heartbeatInterval the interval between heartbeats, must be shorter than the lease duration.
+     * @param safetyMargin      for how long before the expiry of a lease this node stops treating it as owned. The sum
+     *                          of the heartbeat interval and the safety margin must be shorter than the lease duration.
+     * @param clock             the clock to use.
+     */
+    public PartitionLeaseManager(@NotNull String workerName, @NotNull String nodeId,
+                                 @NotNull PartitionScheme partitionScheme, @NotNull LeaseStore leaseStore,
+                                 @NotNull Duration leaseDuration, @NotNull Duration heartbeatInterval,
+                                 @NotNull Duration safetyMargin, @NotNull Clock clock) {
+        this.workerName = requireNonNull(workerName);
+        this.nodeId = requireNonNull(nodeId);
+        this.partitionScheme = requireNonNull(partitionScheme);
+        this.leaseStore = requireNonNull(leaseStore);
+        this.leaseDuration = requireNonNull(leaseDuration);
+        this.heartbeatInterval = requireNonNull(heartbeatInterval);
+        this.safetyMargin = requireNonNull(safetyMargin);
+        this.clock = requireNonNull(clock);
+        if (heartbeatInterval.isZero() || heartbeatInterval.isNegative()
+                || heartbeatInterval.compareTo(leaseDuration) >= 0) {
+            throw new IllegalArgumentException("The heartbeat interval must be positive and shorter than the lease duration");
+        }
+        if (safetyMargin.isNegative() || heartbeatInterval.plus(safetyMargin).compareTo(leaseDuration) >= 0) {
+            throw new IllegalArgumentException("The safety margin must not be negative, and the heartbeat interval plus "
+                    + "the safety margin must be shorter than the lease duration");
+        }
+    }
+
+    /**
+     * Returns the ID of this node.
+     *
+     * @return the node ID.
+     */
+    public @NotNull String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * Returns the partition scheme.
+     *
+     * @return the partition scheme.
+     */
+    public @NotNull PartitionScheme getPartitionScheme() {
+        return partitionScheme;
+    }
+
+    /**
+     * Returns the partitions currently leased by this node.
+     *
+     * @return an unmodifiable set of partitions, empty if the leases have expired or are about to expire.
+     */
+    public @NotNull Set<Integer> getOwnedPartitions() {
+        var current = state;
+        return clock.instant().isBefore(current.validUntil) ? current.partitions : Set.of();
+    }
+
+    /**
+     * Returns whether this node currently leases the given partition.
+     *
+     * @param partition the partition.
+     * @return true if the partition is leased by this node and the lease is not about to expire.
+     */
+    public boolean owns(int partition) {
+        return getOwnedPartitions().contains(partition);
+    }
+
+    /**
+     * Returns whether this node currently leases the partition of the given ID.
+     *
+     * @param id the ID.
+     * @return true if the partition of the ID is leased by this node and the lease is not about to expire.
+     */
+    public boolean owns(@NotNull DomainObjectId id) {
+        return owns(partitionScheme.partitionOf(id));
+    }
+
+    /**
+     * Registers a listener that is notified on the heartbeat thread whenever the set of owned partitions changes.
+     *
+     * @param listener the listener to register.
+     */
+    public void addListener(@NotNull Consumer<Set<Integer>> listener) {
+        listeners.add(requireNonNull(listener));
+    }
+
+    @Override
+    public synchronized void start() {
+        if (executor != null) {
+            return;
+        }
+        leaseStore.initialize(workerName, partitionScheme.partitionCount());
+        executor = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory(workerName + "-lease-"));
+        executor.scheduleWithFixedDelay(this::heartbeat, 0, heartbeatInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (executor == null) {
+            return;
+        }
+        // Let a heartbeat in progress finish, so that it cannot acquire or renew leases after they have been released
+        executor.shutdown();
+        var terminated = false;
+        try {
+            terminated = executor.awaitTermination(leaseDuration.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        executor = null;
+        var released = state.partitions;
+        updateState(LeaseState.NONE);
+        if (!terminated) {
+            log.warn("Heartbeat of node " + nodeId + " did not finish, leaving its leases to expire on their own");
+            return;
+        }
+        try {
+            released.forEach(partition -> leaseStore.release(workerName, partition, nodeId));
+            leaseStore.removeNode(workerName, nodeId);
+        } catch (RuntimeException ex) {
+            log.warn("Could not release the leases of node " + nodeId + ", they will expire on their own", ex);
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return executor != null;
+    }
+
+    /**
+     * Sends a heartbeat, renews the leases of this node and rebalances the partitions. This is called automatically at
+     * the heartbeat interval while the manager is running.
+     */
+    public void heartbeat() {
+        try {
+            var now = clock.instant();
+            var expiresAt = now.plus(leaseDuration);
+            leaseStore.heartbeat(workerName, nodeId, expiresAt);
+            var owned = new TreeSet<>(leaseStore.renew(workerName, nodeId, expiresAt));
+            var fairShare = fairShare(leaseStore.findLiveNodes(workerName, now));
+
+            while (owned.size() > fairShare) {
+                var partition = owned.pollLast();
+                leaseStore.release(workerName, partition, nodeId);
+            }
+            if (owned.size() < fairShare) {
+                for (var partition : leaseStore.findAvailable(workerName, now)) {
+                    if (owned.size() >= fairShare) {
+                        break;
+                    }
+                    if (leaseStore.tryAcquire(workerName, partition, nodeId, now, expiresAt)) {
+                        owned.add(partition);
+                    }
+                }
+            }
+            updateState(new LeaseState(Set.copyOf(owned), expiresAt.minus(safetyMargin)));
+        } catch (RuntimeException ex) {
+            log.error("Heartbeat of node " + nodeId + " for worker " + workerName + " failed", ex);
+        }
+    }
+
+    private int fairShare(@NotNull List<String> liveNodes) {
+        var rank = liveNodes.indexOf(nodeId);
+        if (rank < 0) {
+            // Our own heartbeat has not become visible yet, so count ourselves last
+            rank = liveNodes.size();
+        }
+        var nodeCount = Math.max(rank + 1, liveNodes.size());
+        var partitionCount = partitionScheme.partitionCount();
+        return partitionCount / nodeCount + (rank < partitionCount % nodeCount ? 1 : 0);
+    }
+
+    private void updateState(@NotNull LeaseState newState) {
+        var oldState = state;
+        state = newState;
+        if (!oldState.partitions.equals(newState.partitions)) {
+            log.info("Node " + nodeId + " now leases partitions " + new TreeSet<>(newState.partitions) + " of worker "
+                    + workerName);
+            var partitions = newState.partitions;
+            listeners.forEach(listener -> listener.accept(partitions));
+        }
+    }
+
+    private static final class LeaseState {
+
+        static final LeaseState NONE = new LeaseState(Set.of(), Instant.MIN);
+
+        final Set<Integer> partitions;
+        final Instant validUntil;
+
+        LeaseState(@NotNull Set<Integer> partitions, @NotNull Instant validUntil) {
+            this.partitions = partitions;
+            this.validUntil = validUntil;
+        }
+    }
+}
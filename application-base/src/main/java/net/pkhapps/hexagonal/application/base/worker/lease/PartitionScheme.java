@@ -0,0 +1,84 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.application.base.worker.lease;
+
+import net.pkhapps.hexagonal.domain.base.DomainObjectId;
+import net.pkhapps.hexagonal.domain.base.support.NumericDomainObjectId;
+import net.pkhapps.hexagonal.domain.base.support.StableHash;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Strategy for splitting the keyspace of {@linkplain DomainObjectId domain object IDs} into a fixed number of
+ * partitions that can be leased by the {@link PartitionLeaseManager}.
+ */
+public interface PartitionScheme {
+
+    /**
+     * Returns the number of partitions.
+     *
+     * @return the number of partitions, at least 1.
+     */
+    int partitionCount();
+
+    /**
+     * Returns the partition that the given ID belongs to.
+     *
+     * @param id the ID.
+     * @return the partition, in the range {@code [0, partitionCount())}.
+     */
+    int partitionOf(@NotNull DomainObjectId id);
+
+    /**
+     * Returns a scheme that assigns IDs to partitions based on their {@linkplain StableHash stable hash}. This
+     * spreads the IDs evenly over the partitions but means that a worker cannot select the rows of a partition using an
+     * index.
+     *
+     * @param partitionCount the number of partitions.
+     * @return the partition scheme.
+     */
+    static @NotNull PartitionScheme hash(int partitionCount) {
+        if (partitionCount < 1) {
+            throw new IllegalArgumentException("Partition count must be at least 1");
+        }
+        return new PartitionScheme() {
+            @Override
+            public int partitionCount() {
+                return partitionCount;
+            }
+
+            @Override
+            public int partitionOf(@NotNull DomainObjectId id) {
+                return StableHash.bucket(StableHash.of(id), partitionCount);
+            }
+        };
+    }
+
+    /**
+     * Returns a scheme that splits the {@link NumericDomainObjectId}s between {@code minValue} (inclusive) and
+     * {@code maxValue} (exclusive) into contiguous ranges of equal size. This makes it possible for workers to select
+     * the rows of a partition using the primary key index.
+     *
+     * @param partitionCount the number of partitions.
+     * @param minValue       the smallest ID value (inclusive).
+     * @param maxValue       the largest ID value (exclusive).
+     * @return the partition scheme.
+     */
+    static @NotNull NumericRangePartitionScheme numericRanges(int partitionCount, long minValue, long maxValue) {
+        return new NumericRangePartitionScheme(partitionCount, minValue, maxValue);
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.application.base.async;
+
+import net.pkhapps.hexagonal.domain.base.BaseAggregateRoot;
+import net.pkhapps.hexagonal.domain.base.BaseRepository;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AsyncRepositoryTest {
+
+    private static final class Item extends BaseAggregateRoot<Long> {
+
+        private final Long id;
+
+        private Item(long id) {
+            this.id = id;
+        }
+
+        @Override
+        public @Nullable Long getId() {
+            return id;
+        }
+    }
+
+    private final List<String> callingThreads = new ArrayList<>();
+    private final RepositoryExecutor executor = new RepositoryExecutor(1, 0, false);
+
+    @SuppressWarnings("unchecked")
+    private @NotNull AsyncRepository<Item, Long> repository() {
+        var repository = (BaseRepository<Item, Long>) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{BaseRepository.class}, (proxy, method, args) -> {
+                    synchronized (callingThreads) {
+                        callingThreads.add(Thread.currentThread().getName());
+                    }
+                    switch (method.getName()) {
+                        case "findById":
+                            return Optional.of(new Item((Long) args[0]));
+                        case "deleteById":
+                            return null;
+                        case "count":
+                            throw new IllegalStateException("count failed");
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+        return new AsyncRepository<>(repository, executor);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdown();
+    }
+
+    @Test
+    void findById_runsOnRepositoryThread() throws Exception {
+        var item = repository().findById(42L).get(10, TimeUnit.SECONDS);
+
+        assertEquals(42L, item.orElseThrow().getId());
+        assertEquals(1, callingThreads.size());
+        assertTrue(callingThreads.get(0).startsWith("repository-"), callingThreads::toString);
+    }
+
+    @Test
+    void deleteById_completesWithNull() throws Exception {
+        assertNull(repository().deleteById(42L).get(10, TimeUnit.SECONDS));
+        assertEquals(1, callingThreads.size());
+    }
+
+    @Test
+    void count_repositoryFails_futureCompletedExceptionally() {
+        var future = repository().count(null);
+
+        var exception = assertThrows(ExecutionException.class, () -> future.get(10, TimeUnit.SECONDS));
+        assertTrue(exception.getCause() instanceof IllegalStateException, exception::toString);
+    }
+}
@@ -0,0 +1,213 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.application.base.async;
+
+import net.pkhapps.hexagonal.application.base.support.VirtualThreads;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RepositoryExecutorTest {
+
+    private static final long TIMEOUT_SECONDS = 10;
+
+    /**
+     * Call that blocks until released, keeping track of how many calls are running at the same time.
+     */
+    private static final class BlockingCalls {
+
+        private final CountDownLatch released = new CountDownLatch(1);
+        private final AtomicInteger running = new AtomicInteger();
+        private final AtomicInteger maxRunning = new AtomicInteger();
+        private final AtomicInteger started = new AtomicInteger();
+
+        @NotNull CompletableFuture<Integer> submit(@NotNull RepositoryExecutor executor) {
+            return executor.submit(() -> {
+                var number = started.incrementAndGet();
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                try {
+                    assertTrue(released.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+                } catch (InterruptedException ex) {
+                    throw new IllegalStateException(ex);
+                } finally {
+                    running.decrementAndGet();
+                }
+                return number;
+            });
+        }
+
+        void release() {
+            released.countDown();
+        }
+    }
+
+    private static void awaitCondition(@NotNull BooleanSupplier condition) throws InterruptedException {
+        var deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT_SECONDS);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "Timed out");
+            Thread.sleep(10);
+        }
+    }
+
+    private static <T> T await(@NotNull CompletableFuture<T> future) throws Exception {
+        return future.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {true, false})
+    void submit_moreCallsThanMaxConcurrency_atMostMaxConcurrencyRun(boolean useVirtualThreads) throws Exception {
+        var executor = new RepositoryExecutor(2, 10, useVirtualThreads);
+        var calls = new BlockingCalls();
+        var futures = new ArrayList<CompletableFuture<Integer>>();
+        for (int i = 0; i < 6; ++i) {
+            futures.add(calls.submit(executor));
+        }
+
+        awaitCondition(() -> calls.running.get() == 2);
+        Thread.sleep(100);
+        assertEquals(2, calls.started.get());
+        assertEquals(6, executor.getPendingCalls());
+        calls.release();
+        for (var future : futures) {
+            await(future);
+        }
+
+        assertEquals(6, calls.started.get());
+        assertEquals(2, calls.maxRunning.get());
+        awaitCondition(() -> executor.getPendingCalls() == 0);
+        executor.shutdown();
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {true, false})
+    void submit_tooManyPendingCalls_rejected(boolean useVirtualThreads) throws Exception {
+        var executor = new RepositoryExecutor(1, 2, useVirtualThreads);
+        var calls = new BlockingCalls();
+        var accepted = new ArrayList<CompletableFuture<Integer>>();
+        for (int i = 0; i < 3; ++i) {
+            accepted.add(calls.submit(executor));
+        }
+
+        var rejected = calls.submit(executor);
+
+        var exception = assertThrows(ExecutionException.class, () -> await(rejected));
+        assertTrue(exception.getCause() instanceof RejectedExecutionException, exception::toString);
+        assertEquals(3, executor.getPendingCalls());
+        calls.release();
+        for (var future : accepted) {
+            await(future);
+        }
+        awaitCondition(() -> executor.getPendingCalls() == 0);
+        assertEquals("again", await(executor.submit(() -> "again")));
+        executor.shutdown();
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {true, false})
+    void submit_cancelledWhileWaiting_callSkipped(boolean useVirtualThreads) throws Exception {
+        var executor = new RepositoryExecutor(1, 1, useVirtualThreads);
+        var calls = new BlockingCalls();
+        var running = calls.submit(executor);
+        awaitCondition(() -> calls.running.get() == 1);
+        var skippedRan = new AtomicBoolean();
+        var waiting = executor.submit(() -> {
+            skippedRan.set(true);
+            return null;
+        });
+
+        assertTrue(waiting.cancel(false));
+        calls.release();
+        await(running);
+
+        awaitCondition(() -> executor.getPendingCalls() == 0);
+        assertFalse(skippedRan.get());
+        assertEquals("next", await(executor.submit(() -> "next")));
+        executor.shutdown();
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {true, false})
+    void shutdown_submittedCallsRunAndNewCallsRejected(boolean useVirtualThreads) throws Exception {
+        var executor = new RepositoryExecutor(1, 1, useVirtualThreads);
+        var calls = new BlockingCalls();
+        var running = calls.submit(executor);
+        var waiting = calls.submit(executor);
+
+        executor.shutdown();
+        var rejected = executor.submit(() -> "rejected");
+
+        var exception = assertThrows(ExecutionException.class, () -> await(rejected));
+        assertTrue(exception.getCause() instanceof RejectedExecutionException, exception::toString);
+        calls.release();
+        assertEquals(1, await(running));
+        assertEquals(2, await(waiting));
+    }
+
+    @Test
+    void submit_failingCall_futureCompletedExceptionallyAndPermitReleased() throws Exception {
+        var executor = new RepositoryExecutor(1, 0, false);
+
+        var failed = executor.submit(() -> {
+            throw new IllegalStateException("failed");
+        });
+
+        var exception = assertThrows(ExecutionException.class, () -> await(failed));
+        assertTrue(exception.getCause() instanceof IllegalStateException, exception::toString);
+        assertEquals("next", await(executor.submit(() -> "next")));
+        executor.shutdown();
+    }
+
+    @Test
+    void constructor_virtualThreadsNotWanted_platformThreadsUsed() throws Exception {
+        var executor = new RepositoryExecutor(2, 0, false);
+
+        var thread = await(executor.submit(Thread::currentThread));
+
+        assertFalse(executor.isUsingVirtualThreads());
+        assertTrue(thread.getName().startsWith("repository-"), thread.getName());
+        assertTrue(thread.isDaemon());
+        executor.shutdown();
+    }
+
+    @Test
+    void constructor_default_virtualThreadsUsedIfAvailable() {
+        var executor = new RepositoryExecutor(2, 0);
+
+        assertEquals(VirtualThreads.isAvailable(), executor.isUsingVirtualThreads());
+        executor.shutdown();
+    }
+
+    @Test
+    void constructor_invalidLimits_rejected() {
+        assertThrows(IllegalArgumentException.class, () -> new RepositoryExecutor(0, 1));
+        assertThrows(IllegalArgumentException.class, () -> new RepositoryExecutor(1, -1));
+    }
+}
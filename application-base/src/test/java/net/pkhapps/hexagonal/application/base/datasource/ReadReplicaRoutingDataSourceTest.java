@@ -0,0 +1,135 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.application.base.datasource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReadReplicaRoutingDataSourceTest {
+
+    private FailingDataSource replica;
+    private ReadReplicaRoutingDataSource routingDataSource;
+
+    @BeforeEach
+    void setUp() {
+        var primary = database("primary");
+        replica = new FailingDataSource(database("replica"));
+        routingDataSource = new ReadReplicaRoutingDataSource(primary, List.of(replica));
+        routingDataSource.setHealthCheckInterval(Duration.ZERO);
+        routingDataSource.afterPropertiesSet();
+    }
+
+    @AfterEach
+    void tearDown() {
+        routingDataSource.destroy();
+    }
+
+    @Test
+    void readOnlyTransaction_withLazyProxy_routesToReplica() {
+        var dataSource = new LazyConnectionDataSourceProxy(routingDataSource);
+        assertEquals("replica", currentDatabase(dataSource, true));
+        assertEquals("primary", currentDatabase(dataSource, false));
+    }
+
+    @Test
+    void readOnlyTransaction_withoutLazyProxy_goesToPrimary() {
+        // The transaction manager fetches the connection before the transaction is marked as read-only
+        assertEquals("primary", currentDatabase(routingDataSource, true));
+    }
+
+    @Test
+    void readOnlyTransaction_afterWriteBySameCaller_routesToPrimaryUntilWindowEnds() {
+        var dataSource = new LazyConnectionDataSourceProxy(routingDataSource);
+        routingDataSource.setCallerKeySupplier(() -> "alice");
+        routingDataSource.setReadYourWritesWindow(Duration.ofSeconds(5));
+        assertEquals("replica", currentDatabase(dataSource, true));
+
+        assertEquals("primary", currentDatabase(dataSource, false));
+        assertEquals("primary", currentDatabase(dataSource, true));
+
+        routingDataSource.setCallerKeySupplier(() -> "bob");
+        assertEquals("replica", currentDatabase(dataSource, true));
+
+        routingDataSource.setCallerKeySupplier(() -> "alice");
+        routingDataSource.setClock(Clock.offset(Clock.systemUTC(), Duration.ofSeconds(6)));
+        assertEquals("replica", currentDatabase(dataSource, true));
+    }
+
+    @Test
+    void readOnlyTransaction_failingReplica_fallsBackToPrimaryUntilHealthy() {
+        var dataSource = new LazyConnectionDataSourceProxy(routingDataSource);
+        replica.failing = true;
+        assertEquals("primary", currentDatabase(dataSource, true));
+        assertFalse(routingDataSource.isReplicaHealthy(0));
+
+        replica.failing = false;
+        assertEquals("primary", currentDatabase(dataSource, true));
+        routingDataSource.checkReplicaHealth();
+        assertTrue(routingDataSource.isReplicaHealthy(0));
+        assertEquals("replica", currentDatabase(dataSource, true));
+    }
+
+    private static String currentDatabase(DataSource dataSource, boolean readOnly) {
+        var transaction = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        transaction.setReadOnly(readOnly);
+        return transaction.execute(status -> new JdbcTemplate(dataSource)
+                .queryForObject("select name from database_name", String.class));
+    }
+
+    private static DataSource database(String name) {
+        var dataSource = new DriverManagerDataSource("jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        var jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("create table database_name (name varchar(20))");
+        jdbcTemplate.update("insert into database_name values (?)", name);
+        return dataSource;
+    }
+
+    private static final class FailingDataSource extends DelegatingDataSource {
+
+        private volatile boolean failing;
+
+        private FailingDataSource(DataSource targetDataSource) {
+            super(targetDataSource);
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            if (failing) {
+                throw new SQLException("Replica is down");
+            }
+            return super.getConnection();
+        }
+    }
+}
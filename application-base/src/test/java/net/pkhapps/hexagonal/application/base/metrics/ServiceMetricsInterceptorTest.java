@@ -0,0 +1,122 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.application.base.metrics;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.framework.ProxyFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ServiceMetricsInterceptorTest {
+
+    public interface GreetingService {
+        String greet(String name);
+
+        String greet(String name, int times);
+    }
+
+    public static class GreetingServiceImpl implements GreetingService {
+
+        @Override
+        public String greet(String name) {
+            return "Hello " + name;
+        }
+
+        @Override
+        public String greet(String name, int times) {
+            if (times < 0) {
+                throw new IllegalArgumentException();
+            }
+            return ("Hello " + name + " ").repeat(times);
+        }
+    }
+
+    public static class Service {
+        public void run() {
+        }
+    }
+
+    public static class Other {
+        public static class Service {
+            public void run() {
+            }
+        }
+    }
+
+    private final List<MethodMetricsSnapshot> published = new ArrayList<>();
+    private final ServiceMetricsRegistry registry = new ServiceMetricsRegistry(List.of(published::addAll));
+
+    @SuppressWarnings("unchecked")
+    private <T> T proxy(T target, boolean proxyTargetClass) {
+        var factory = new ProxyFactory(target);
+        factory.setProxyTargetClass(proxyTargetClass);
+        factory.addAdvice(new ServiceMetricsInterceptor(registry));
+        return (T) factory.getProxy();
+    }
+
+    @Test
+    void overloadedMethods_recordedSeparately() {
+        var service = proxy((GreetingService) new GreetingServiceImpl(), false);
+        service.greet("Joe");
+        service.greet("Joe", 2);
+        service.greet("Joe", 3);
+        assertThrows(IllegalArgumentException.class, () -> service.greet("Joe", -1));
+        registry.publish();
+
+        assertEquals(2, published.size());
+        var single = published.get(0);
+        var overload = published.get(1);
+        assertEquals(GreetingServiceImpl.class.getName(), single.getServiceName());
+        assertEquals("greet(java.lang.String)", single.getMethodName());
+        assertEquals(1, single.getCalls());
+        assertEquals(0, single.getErrors());
+        assertEquals("greet(java.lang.String,int)", overload.getMethodName());
+        assertEquals(3, overload.getCalls());
+        assertEquals(1, overload.getErrors());
+        assertEquals(GreetingServiceImpl.class, overload.getMethod().getDeclaringClass());
+    }
+
+    @Test
+    void interfaceAndClassProxies_shareMetrics() {
+        var target = new GreetingServiceImpl();
+        proxy((GreetingService) target, false).greet("Joe");
+        proxy(target, true).greet("Joe");
+        registry.publish();
+
+        assertEquals(1, published.size());
+        assertEquals(2, published.get(0).getCalls());
+    }
+
+    @Test
+    void servicesWithSameSimpleName_recordedSeparately() {
+        proxy(new Service(), true).run();
+        proxy(new Other.Service(), true).run();
+        proxy(new Other.Service(), true).run();
+        registry.publish();
+
+        var calls = published.stream().collect(Collectors.toMap(MethodMetricsSnapshot::getServiceName,
+                MethodMetricsSnapshot::getCalls));
+        assertEquals(2, calls.size());
+        assertEquals(1, calls.get(Service.class.getName()));
+        assertEquals(2, calls.get(Other.Service.class.getName()));
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.application.base.query;
+
+import net.pkhapps.hexagonal.application.base.annotation.ApplicationService;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs an instrumented application service against an H2 database.
+ */
+class QueryInstrumentationTest {
+
+    private DataSource dataSource;
+
+    @BeforeEach
+    void setUp() {
+        dataSource = new DriverManagerDataSource("jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        var jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("create table item (id int primary key, code varchar(20))");
+        for (var id = 1; id <= 5; ++id) {
+            jdbcTemplate.update("insert into item (id, code) values (?, ?)", id, "item-" + id);
+        }
+    }
+
+    private @NotNull ItemService service(@NotNull QueryInspector inspector) {
+        var jdbcTemplate = new JdbcTemplate(new InstrumentedDataSource(dataSource, inspector));
+        return (ItemService) new QueryInstrumentationPostProcessor(inspector)
+                .postProcessAfterInitialization(new ItemService(jdbcTemplate), "itemService");
+    }
+
+    private static @NotNull QueryStatistics statistics(@NotNull QueryInspector inspector, @NotNull String method) {
+        var name = ItemService.class.getName() + "." + method;
+        return inspector.getStatistics().stream()
+                .filter(statistics -> statistics.getName().equals(name))
+                .findFirst()
+                .orElseThrow(() -> new AssertionError("No statistics for " + name + " in "
+                        + inspector.getStatistics()));
+    }
+
+    @Test
+    void serviceCall_statementsAndRowsCounted() {
+        var inspector = new QueryInspector();
+        var service = service(inspector);
+
+        service.insertAndReadAll(List.of(10, 11, 12));
+        service.insertAndReadAll(List.of(13));
+
+        var statistics = statistics(inspector, "insertAndReadAll(java.util.List)");
+        assertEquals(2, statistics.getCalls());
+        // 3 inserts and 1 select, then 1 insert and 1 select
+        assertEquals(6, statistics.getStatements());
+        // 4 inserted rows, 8 rows read by the first select and 9 by the second
+        assertEquals(4 + 8 + 9, statistics.getRows());
+        assertEquals(3.0, statistics.getStatementsPerCall());
+    }
+
+    @Test
+    void overloadedMethods_recordedSeparately() {
+        var inspector = new QueryInspector();
+        var service = service(inspector);
+
+        assertEquals("item-1", service.find(1));
+        assertEquals(2, service.find("item-2"));
+        assertEquals(3, service.find("item-3"));
+
+        assertEquals(1, statistics(inspector, "find(int)").getCalls());
+        assertEquals(2, statistics(inspector, "find(java.lang.String)").getCalls());
+        assertEquals(2, inspector.getStatistics().size());
+    }
+
+    @Test
+    void failMode_serviceBudgetExceeded_throws() {
+        var inspector = new QueryInspector(new QueryBudget(QueryBudget.Mode.FAIL, 10, 2, 10));
+        var service = service(inspector);
+
+        service.insertAndReadAll(List.of(10));
+        var exception = assertThrows(QueryBudgetExceededException.class,
+                () -> service.insertAndReadAll(List.of(11, 12)));
+
+        assertTrue(exception.getMessage().contains("executed 3 statements, budget is 2"), exception.getMessage());
+        assertEquals(2, statistics(inspector, "insertAndReadAll(java.util.List)").getCalls());
+    }
+
+    @Test
+    void failMode_failedCallOverBudget_originalExceptionKept() {
+        var inspector = new QueryInspector(new QueryBudget(QueryBudget.Mode.FAIL, 10, 2, 10));
+        var service = service(inspector);
+
+        assertThrows(IllegalStateException.class, () -> service.loadOneByOneAndFail(5));
+    }
+
+    @Test
+    void logMode_serviceBudgetExceeded_doesNotThrow() {
+        var inspector = new QueryInspector(new QueryBudget(QueryBudget.Mode.LOG, 10, 2, 10));
+        var service = service(inspector);
+
+        assertDoesNotThrow(() -> service.insertAndReadAll(List.of(10, 11, 12)));
+    }
+
+    @Test
+    void failMode_repeatedSingleRowSelects_flaggedAsNPlusOne() {
+        var inspector = new QueryInspector(new QueryBudget(QueryBudget.Mode.FAIL, 10, 100, 5));
+        var service = service(inspector);
+
+        assertEquals(4, service.loadOneByOne(4).size());
+        var exception = assertThrows(QueryBudgetExceededException.class, () -> service.loadOneByOne(5));
+
+        assertTrue(exception.getMessage().contains("suspected N+1"), exception.getMessage());
+        assertEquals(5, service.loadAll().size());
+    }
+
+    @Test
+    void closeScope_innerScopeLeftOpen_innerScopeDiscarded() {
+        var inspector = new QueryInspector();
+        var outer = inspector.openScope("outer", QueryInspector.ScopeKind.SERVICE, List.of());
+        var inner = inspector.openScope("inner", QueryInspector.ScopeKind.REPOSITORY, List.of());
+        inspector.statementExecuted("select 1", 0, 0);
+
+        inspector.closeScope(outer, false);
+        assertThrows(IllegalStateException.class, () -> inspector.closeScope(inner, false));
+
+        // The thread can still be used for new scopes
+        var next = inspector.openScope("next", QueryInspector.ScopeKind.SERVICE, List.of());
+        inspector.statementExecuted("select 2", 0, 0);
+        inspector.closeScope(next, false);
+        var statements = inspector.getStatistics().stream()
+                .collect(Collectors.toMap(QueryStatistics::getName, QueryStatistics::getStatements));
+        assertEquals(1, statements.get("outer"));
+        assertEquals(1, statements.get("next"));
+        assertFalse(statements.containsKey("inner"));
+    }
+
+    @ApplicationService
+    public static class ItemService {
+
+        private final JdbcTemplate jdbcTemplate;
+
+        public ItemService(@NotNull JdbcTemplate jdbcTemplate) {
+            this.jdbcTemplate = jdbcTemplate;
+        }
+
+        public @NotNull List<String> insertAndReadAll(@NotNull List<Integer> ids) {
+            ids.forEach(id -> jdbcTemplate.update("insert into item (id, code) values (?, ?)", id, "item-" + id));
+            return jdbcTemplate.queryForList("select code from item", String.class);
+        }
+
+        public @NotNull String find(int id) {
+            return jdbcTemplate.queryForObject("select code from item where id = ?", String.class, id);
+        }
+
+        public int find(@NotNull String code) {
+            return jdbcTemplate.queryForObject("select id from item where code = ?", Integer.class, code);
+        }
+
+        public @NotNull List<String> loadOneByOne(int count) {
+            return jdbcTemplate.queryForList("select id from item where id <= ? order by id", Integer.class, count)
+                    .stream()
+                    .map(id -> jdbcTemplate.queryForObject("select code from item where id = ?", String.class, id))
+                    .collect(Collectors.toList());
+        }
+
+        public @NotNull List<String> loadOneByOneAndFail(int count) {
+            loadOneByOne(count);
+            throw new IllegalStateException("Failed after loading");
+        }
+
+        public @NotNull List<String> loadAll() {
+            return jdbcTemplate.queryForList("select code from item order by id", String.class);
+        }
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.application.base.retry;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.framework.AopProxyUtils;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.EnableTransactionManagement;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs transactional services with {@link RetryOnConflict} methods in a Spring application context.
+ */
+class RetryOnConflictTest {
+
+    public static class Order {
+    }
+
+    public static class OrderService {
+
+        private final DataSource dataSource;
+        private final List<Object> transactions = new ArrayList<>();
+        private int conflicts;
+
+        public OrderService(@NotNull DataSource dataSource) {
+            this.dataSource = dataSource;
+        }
+
+        void failWithConflicts(int conflicts) {
+            this.conflicts = conflicts;
+        }
+
+        List<Object> getTransactions() {
+            return transactions;
+        }
+
+        @Transactional
+        @RetryOnConflict(backoffMillis = 0)
+        public int update() {
+            // Every transaction binds its own connection holder, so the holder identifies the transaction
+            transactions.add(TransactionSynchronizationManager.getResource(dataSource));
+            if (transactions.size() <= conflicts) {
+                throw new ObjectOptimisticLockingFailureException(Order.class, 1L);
+            }
+            return transactions.size();
+        }
+
+        @Transactional
+        @RetryOnConflict(maxAttempts = 0)
+        public void invalidPolicy() {
+        }
+
+        @Transactional
+        public void notRetried() {
+            transactions.add(TransactionSynchronizationManager.getResource(dataSource));
+            throw new ObjectOptimisticLockingFailureException(Order.class, 1L);
+        }
+    }
+
+    @Configuration
+    @EnableTransactionManagement
+    static class Config {
+
+        @Bean
+        static RetryOnConflictPostProcessor retryOnConflictPostProcessor(ConflictMetrics conflictMetrics) {
+            return new RetryOnConflictPostProcessor(conflictMetrics);
+        }
+
+        @Bean
+        static ConflictMetrics conflictMetrics() {
+            return new ConflictMetrics();
+        }
+
+        @Bean
+        DataSource dataSource() {
+            return new DriverManagerDataSource("jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        }
+
+        @Bean
+        PlatformTransactionManager transactionManager(DataSource dataSource) {
+            return new DataSourceTransactionManager(dataSource);
+        }
+
+        @Bean
+        OrderService orderService(DataSource dataSource) {
+            return new OrderService(dataSource);
+        }
+    }
+
+    private AnnotationConfigApplicationContext context;
+    private OrderService service;
+    private OrderService target;
+    private ConflictMetrics metrics;
+
+    @BeforeEach
+    void setUp() {
+        context = new AnnotationConfigApplicationContext(Config.class);
+        service = context.getBean(OrderService.class);
+        target = (OrderService) AopProxyUtils.getSingletonTarget(service);
+        metrics = context.getBean(ConflictMetrics.class);
+    }
+
+    @AfterEach
+    void tearDown() {
+        context.close();
+    }
+
+    @Test
+    void conflict_retriedInNewTransaction() {
+        target.failWithConflicts(2);
+
+        assertEquals(3, service.update());
+
+        var transactions = target.getTransactions();
+        assertEquals(3, transactions.size());
+        transactions.forEach(Assertions::assertNotNull);
+        assertNotSame(transactions.get(0), transactions.get(1));
+        assertNotSame(transactions.get(1), transactions.get(2));
+        var statistics = metrics.getStatistics(Order.class.getName()).orElseThrow();
+        assertEquals(2, statistics.getConflicts());
+        assertEquals(2, statistics.getRetries());
+        assertEquals(0, statistics.getExhausted());
+    }
+
+    @Test
+    void conflictOnEveryAttempt_givesUpAfterMaxAttempts() {
+        target.failWithConflicts(Integer.MAX_VALUE);
+
+        assertThrows(ObjectOptimisticLockingFailureException.class, service::update);
+
+        assertEquals(3, target.getTransactions().size());
+        var statistics = metrics.getStatistics(Order.class.getName()).orElseThrow();
+        assertEquals(3, statistics.getConflicts());
+        assertEquals(2, statistics.getRetries());
+        assertEquals(1, statistics.getExhausted());
+    }
+
+    @Test
+    void conflictInsideActiveTransaction_notRetried() {
+        target.failWithConflicts(1);
+        var transactionTemplate = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+
+        assertThrows(ObjectOptimisticLockingFailureException.class,
+                () -> transactionTemplate.execute(status -> service.update()));
+
+        assertEquals(1, target.getTransactions().size());
+        assertTrue(metrics.getStatistics().isEmpty());
+    }
+
+    @Test
+    void methodWithoutAnnotation_notRetried() {
+        assertThrows(ObjectOptimisticLockingFailureException.class, service::notRetried);
+
+        assertEquals(1, target.getTransactions().size());
+        assertTrue(metrics.getStatistics().isEmpty());
+    }
+
+    @Test
+    void maxAttemptsBelowOne_rejected() {
+        var exception = assertThrows(IllegalStateException.class, service::invalidPolicy);
+
+        assertTrue(exception.getMessage().contains("maxAttempts"), exception.getMessage());
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.application.base.worker;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WorkerHandleTest {
+
+    private WorkerHandle handle;
+
+    @AfterEach
+    void tearDown() {
+        if (handle != null) {
+            handle.signalStop();
+            handle.awaitStop();
+        }
+    }
+
+    private static void await(@NotNull BooleanSupplier condition) throws InterruptedException {
+        var deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "Timed out waiting for condition");
+            Thread.sleep(5);
+        }
+    }
+
+    private void stop() {
+        handle.signalStop();
+        handle.awaitStop();
+    }
+
+    @Test
+    void continuousWorker_concurrency_atMostConfiguredThreadsWorkAtOnce() throws InterruptedException {
+        var current = new AtomicInteger();
+        var max = new AtomicInteger();
+        var calls = new AtomicInteger();
+        ContinuousWorker worker = () -> {
+            max.accumulateAndGet(current.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(2);
+                if (calls.incrementAndGet() % 5 == 0) {
+                    throw new IllegalStateException("Every fifth call fails");
+                }
+                return true;
+            } finally {
+                current.decrementAndGet();
+            }
+        };
+        handle = new WorkerHandle("continuous", worker, Continuous.class.getAnnotation(WorkerExecution.class));
+        handle.start();
+        await(() -> calls.get() >= 50);
+        stop();
+
+        assertEquals(3, max.get());
+        var metrics = handle.getMetrics();
+        assertEquals(calls.get(), metrics.getProcessedItems() + metrics.getFailedItems());
+        assertEquals(calls.get() / 5, metrics.getFailedItems());
+        assertEquals(3, metrics.getConcurrency());
+        assertEquals(0, metrics.getQueueCapacity());
+        assertTrue(metrics.getThroughput() > 0);
+        assertTrue(metrics.getUtilization() > 0 && metrics.getUtilization() <= 1);
+        assertTrue(metrics.getBusyTime().compareTo(metrics.getUptime().multipliedBy(3)) <= 0);
+    }
+
+    @Test
+    void pipelineWorker_slowConsumer_producerBlockedByFullQueue() throws InterruptedException {
+        var produced = new AtomicInteger();
+        var release = new CountDownLatch(1);
+        var worker = new PipelineWorker<Integer>() {
+            @Override
+            public void produce(@NotNull WorkerSink<Integer> sink) throws InterruptedException {
+                sink.put(produced.get());
+                produced.incrementAndGet();
+            }
+
+            @Override
+            public void consume(@NotNull Integer item) throws InterruptedException {
+                release.await();
+            }
+        };
+        handle = new WorkerHandle("backpressure", worker, Blocking.class.getAnnotation(WorkerExecution.class));
+        handle.start();
+        await(() -> handle.getMetrics().getBacklog() == 4);
+        Thread.sleep(50);
+
+        // One item is held by the consumer and four are in the queue
+        assertEquals(5, produced.get());
+        assertEquals(4, handle.getMetrics().getQueueCapacity());
+        release.countDown();
+    }
+
+    @ParameterizedTest
+    @ValueSource(classes = {Blocking.class, RingBuffer.class})
+    void signalStop_queuedItems_drainedBeforeStopping(Class<?> configuration) throws InterruptedException {
+        var produced = new AtomicInteger();
+        var consumed = new AtomicInteger();
+        var release = new CountDownLatch(1);
+        var worker = new PipelineWorker<Integer>() {
+            @Override
+            public void produce(@NotNull WorkerSink<Integer> sink) throws InterruptedException {
+                while (produced.get() < 20) {
+                    sink.put(produced.incrementAndGet());
+                }
+            }
+
+            @Override
+            public void consume(@NotNull Integer item) throws InterruptedException {
+                release.await();
+                consumed.incrementAndGet();
+            }
+        };
+        handle = new WorkerHandle("drain", worker, configuration.getAnnotation(WorkerExecution.class));
+        handle.start();
+        await(() -> handle.getMetrics().getBacklog() > 0);
+
+        handle.signalStop();
+        release.countDown();
+        handle.awaitStop();
+
+        assertEquals(20, produced.get());
+        assertEquals(20, consumed.get());
+        assertEquals(20, handle.getMetrics().getProcessedItems());
+        assertEquals(0, handle.getMetrics().getBacklog());
+    }
+
+    @Test
+    void pipelineWorker_consumerInterrupted_keepsOnConsuming() throws InterruptedException {
+        var produced = new AtomicInteger();
+        var consumed = new AtomicInteger();
+        var worker = new PipelineWorker<Integer>() {
+            @Override
+            public void produce(@NotNull WorkerSink<Integer> sink) throws InterruptedException {
+                while (produced.get() < 10) {
+                    sink.put(produced.incrementAndGet());
+                }
+            }
+
+            @Override
+            public void consume(@NotNull Integer item) throws InterruptedException {
+                if (item == 1) {
+                    throw new InterruptedException();
+                }
+                consumed.incrementAndGet();
+            }
+        };
+        handle = new WorkerHandle("interrupted", worker, Blocking.class.getAnnotation(WorkerExecution.class));
+        handle.start();
+        await(() -> consumed.get() == 9);
+
+        assertEquals(9, handle.getMetrics().getProcessedItems());
+        assertEquals(1, handle.getMetrics().getFailedItems());
+    }
+
+    @Test
+    void pipelineWorker_failingProducer_countedAsFailure() throws InterruptedException {
+        var calls = new AtomicInteger();
+        var worker = new PipelineWorker<Integer>() {
+            @Override
+            public void produce(@NotNull WorkerSink<Integer> sink) throws InterruptedException {
+                if (calls.incrementAndGet() == 1) {
+                    throw new IllegalStateException("First call fails");
+                }
+                if (calls.get() == 2) {
+                    sink.put(1);
+                }
+            }
+
+            @Override
+            public void consume(@NotNull Integer item) {
+            }
+        };
+        handle = new WorkerHandle("failing", worker, Blocking.class.getAnnotation(WorkerExecution.class));
+        handle.start();
+        await(() -> handle.getMetrics().getProcessedItems() == 1);
+
+        assertEquals(1, handle.getMetrics().getFailedItems());
+    }
+
+    @WorkerExecution(concurrency = 3, idleDelayMillis = 10)
+    private static final class Continuous {
+    }
+
+    @WorkerExecution(queueCapacity = 4, idleDelayMillis = 10, shutdownTimeoutMillis = 5000)
+    private static final class Blocking {
+    }
+
+    @WorkerExecution(concurrency = 2, queueCapacity = 32, queue = QueueKind.RING_BUFFER, idleDelayMillis = 10,
+            shutdownTimeoutMillis = 5000)
+    private static final class RingBuffer {
+    }
+}
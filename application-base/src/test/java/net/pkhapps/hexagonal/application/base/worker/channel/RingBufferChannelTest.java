@@ -0,0 +1,111 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.application.base.worker.channel;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RingBufferChannelTest {
+
+    @Test
+    void offer_fullChannel_returnsFalseUntilDrained() {
+        var channel = new RingBufferChannel<Integer>(4, ProducerMode.SINGLE, WaitStrategy.busySpin());
+        for (var i = 0; i < 4; ++i) {
+            assertTrue(channel.offer(i));
+        }
+        assertFalse(channel.offer(4));
+        assertEquals(4, channel.size());
+
+        var drained = new ArrayList<Integer>();
+        assertEquals(2, channel.drain(drained::add, 2));
+        assertTrue(channel.offer(4));
+        assertEquals(3, channel.drain(drained::add, 10));
+        assertEquals(List.of(0, 1, 2, 3, 4), drained);
+        assertTrue(channel.isEmpty());
+    }
+
+    @Test
+    void drain_failingHandler_skipsFailedItem() {
+        var channel = new RingBufferChannel<Integer>(4, ProducerMode.SINGLE, WaitStrategy.busySpin());
+        channel.offer(1);
+        channel.offer(2);
+        assertThrows(IllegalStateException.class, () -> channel.drain(item -> {
+            throw new IllegalStateException();
+        }, 10));
+        var drained = new ArrayList<Integer>();
+        channel.drain(drained::add, 10);
+        assertEquals(List.of(2), drained);
+    }
+
+    @Test
+    void take_emptyChannel_timesOut() throws InterruptedException {
+        var channel = new RingBufferChannel<Integer>(4, ProducerMode.SINGLE, WaitStrategy.blocking());
+        assertEquals(0, channel.take(item -> fail(), 10, 10, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void multipleProducers_allItemsDeliveredOnceInProducerOrder() throws InterruptedException {
+        var producers = 4;
+        var itemsPerProducer = 50_000;
+        var channel = new RingBufferChannel<long[]>(64, ProducerMode.MULTI, WaitStrategy.blocking());
+        var start = new CountDownLatch(1);
+        var threads = new ArrayList<Thread>();
+        for (var p = 0; p < producers; ++p) {
+            var producer = p;
+            var thread = new Thread(() -> {
+                try {
+                    start.await();
+                    for (var i = 0; i < itemsPerProducer; ++i) {
+                        channel.put(new long[]{producer, i});
+                    }
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+
+        var lastSeen = new long[producers];
+        Arrays.fill(lastSeen, -1);
+        var seen = new HashSet<Long>();
+        var received = 0;
+        while (received < producers * itemsPerProducer) {
+            received += channel.take(item -> {
+                var producer = (int) item[0];
+                assertEquals(lastSeen[producer] + 1, item[1], "Items of a producer must arrive in order");
+                lastSeen[producer] = item[1];
+                assertTrue(seen.add(item[0] * itemsPerProducer + item[1]));
+            }, 32, 5, TimeUnit.SECONDS);
+        }
+        for (var thread : threads) {
+            thread.join();
+        }
+        assertEquals(producers * itemsPerProducer, seen.size());
+        assertTrue(channel.isEmpty());
+    }
+}
@@ -0,0 +1,275 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.application.base.worker.lease;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs several in-process "nodes" against one H2 database, driving the heartbeats manually.
+ */
+class PartitionLeaseManagerTest {
+
+    private static final String WORKER = "test-worker";
+    private static final Duration LEASE_DURATION = Duration.ofSeconds(30);
+
+    private final MutableClock clock = new MutableClock();
+    private JdbcLeaseStore leaseStore;
+
+    @BeforeEach
+    void setUp() {
+        var dataSource = new DriverManagerDataSource("jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        leaseStore = new JdbcLeaseStore(dataSource);
+        leaseStore.createSchema();
+    }
+
+    private PartitionLeaseManager node(String nodeId, int partitions) {
+        var manager = new PartitionLeaseManager(WORKER, nodeId, PartitionScheme.hash(partitions), leaseStore,
+                LEASE_DURATION, Duration.ofSeconds(10), clock);
+        leaseStore.initialize(WORKER, partitions);
+        return manager;
+    }
+
+    private static void heartbeats(List<PartitionLeaseManager> nodes) {
+        for (var round = 0; round < 3; ++round) {
+            nodes.forEach(PartitionLeaseManager::heartbeat);
+        }
+    }
+
+    private static List<Integer> shares(List<PartitionLeaseManager> nodes) {
+        var shares = new ArrayList<Integer>();
+        var all = new HashSet<Integer>();
+        for (var node : nodes) {
+            var owned = node.getOwnedPartitions();
+            shares.add(owned.size());
+            for (var partition : owned) {
+                assertTrue(all.add(partition), "Partition " + partition + " is leased by more than one node");
+            }
+        }
+        return shares;
+    }
+
+    @Test
+    void moreNodesThanQuotient_remainderGoesToLowestNodeIds() {
+        var nodes = List.of(node("a", 4), node("b", 4), node("c", 4));
+        heartbeats(nodes);
+        assertEquals(List.of(2, 1, 1), shares(nodes));
+    }
+
+    @Test
+    void nodeJoins_partitionsAreRebalanced() {
+        var nodes = new ArrayList<>(List.of(node("a", 8), node("b", 8)));
+        heartbeats(nodes);
+        assertEquals(List.of(4, 4), shares(nodes));
+
+        nodes.add(node("c", 8));
+        heartbeats(nodes);
+        assertEquals(List.of(3, 3, 2), shares(nodes));
+
+        nodes.add(node("d", 8));
+        heartbeats(nodes);
+        assertEquals(List.of(2, 2, 2, 2), shares(nodes));
+    }
+
+    @Test
+    void moreNodesThanPartitions_extraNodesGetNothing() {
+        var nodes = List.of(node("a", 2), node("b", 2), node("c", 2));
+        heartbeats(nodes);
+        assertEquals(List.of(1, 1, 0), shares(nodes));
+    }
+
+    @Test
+    void nodeStops_itsPartitionsAreTakenOver() {
+        var nodes = new ArrayList<>(List.of(node("a", 6), node("b", 6), node("c", 6)));
+        heartbeats(nodes);
+        assertEquals(List.of(2, 2, 2), shares(nodes));
+
+        var stopped = nodes.remove(1);
+        stopped.start();
+        stopped.stop();
+        assertTrue(stopped.getOwnedPartitions().isEmpty());
+        heartbeats(nodes);
+        assertEquals(List.of(3, 3), shares(nodes));
+    }
+
+    @Test
+    void nodeDies_itsPartitionsAreTakenOverWhenLeasesExpire() {
+        var nodes = new ArrayList<>(List.of(node("a", 4), node("b", 4)));
+        heartbeats(nodes);
+        assertEquals(List.of(2, 2), shares(nodes));
+
+        var dead = nodes.remove(0);
+        clock.advance(LEASE_DURATION.plusSeconds(1));
+        assertTrue(dead.getOwnedPartitions().isEmpty(), "Expired leases must not be reported as owned");
+        heartbeats(nodes);
+        assertEquals(List.of(4), shares(nodes));
+    }
+
+    @Test
+    void owns_leaseAboutToExpire_notOwnedBeforeOtherNodesCanAcquireIt() {
+        var a = node("a", 2);
+        a.heartbeat();
+        assertEquals(Set.of(0, 1), a.getOwnedPartitions());
+
+        // The default safety margin is half of the time between the heartbeat interval and the lease duration
+        clock.advance(Duration.ofSeconds(19));
+        assertTrue(a.owns(0));
+        clock.advance(Duration.ofSeconds(1));
+        assertFalse(a.owns(0));
+        assertTrue(a.getOwnedPartitions().isEmpty());
+
+        var b = node("b", 2);
+        b.heartbeat();
+        assertTrue(b.getOwnedPartitions().isEmpty(), "Leases must not be acquired before they expire");
+
+        clock.advance(Duration.ofSeconds(10));
+        b.heartbeat();
+        assertEquals(Set.of(0, 1), b.getOwnedPartitions());
+        assertTrue(a.getOwnedPartitions().isEmpty());
+    }
+
+    @Test
+    void constructor_safetyMarginTooLarge_rejected() {
+        assertThrows(IllegalArgumentException.class, () -> new PartitionLeaseManager(WORKER, "a",
+                PartitionScheme.hash(2), leaseStore, LEASE_DURATION, Duration.ofSeconds(10), Duration.ofSeconds(20),
+                clock));
+        assertThrows(IllegalArgumentException.class, () -> new PartitionLeaseManager(WORKER, "a",
+                PartitionScheme.hash(2), leaseStore, LEASE_DURATION, Duration.ofSeconds(10), Duration.ofSeconds(-1),
+                clock));
+    }
+
+    @Test
+    void stop_heartbeatInProgress_leasesReleasedAfterHeartbeatFinishes() throws InterruptedException {
+        var renewing = new CountDownLatch(1);
+        var slowStore = new DelegatingLeaseStore(leaseStore) {
+            @Override
+            public @NotNull Set<Integer> renew(@NotNull String workerName, @NotNull String nodeId,
+                                               @NotNull Instant expiresAt) {
+                renewing.countDown();
+                // Like a JDBC call, the renewal is not interruptible
+                var deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(500);
+                while (System.nanoTime() < deadline) {
+                    Thread.onSpinWait();
+                }
+                return super.renew(workerName, nodeId, expiresAt);
+            }
+        };
+        var manager = new PartitionLeaseManager(WORKER, "a", PartitionScheme.hash(4), slowStore,
+                Duration.ofSeconds(3), Duration.ofMillis(100), clock);
+        manager.start();
+        assertTrue(renewing.await(10, TimeUnit.SECONDS));
+
+        manager.stop();
+
+        assertTrue(manager.getOwnedPartitions().isEmpty());
+        assertEquals(List.of(0, 1, 2, 3), leaseStore.findAvailable(WORKER, clock.instant()));
+        assertTrue(leaseStore.findLiveNodes(WORKER, clock.instant()).isEmpty());
+    }
+
+    private static class DelegatingLeaseStore implements LeaseStore {
+
+        private final LeaseStore delegate;
+
+        DelegatingLeaseStore(@NotNull LeaseStore delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void initialize(@NotNull String workerName, int partitionCount) {
+            delegate.initialize(workerName, partitionCount);
+        }
+
+        @Override
+        public void heartbeat(@NotNull String workerName, @NotNull String nodeId, @NotNull Instant expiresAt) {
+            delegate.heartbeat(workerName, nodeId, expiresAt);
+        }
+
+        @Override
+        public void removeNode(@NotNull String workerName, @NotNull String nodeId) {
+            delegate.removeNode(workerName, nodeId);
+        }
+
+        @Override
+        public @NotNull List<String> findLiveNodes(@NotNull String workerName, @NotNull Instant now) {
+            return delegate.findLiveNodes(workerName, now);
+        }
+
+        @Override
+        public @NotNull Set<Integer> renew(@NotNull String workerName, @NotNull String nodeId,
+                                           @NotNull Instant expiresAt) {
+            return delegate.renew(workerName, nodeId, expiresAt);
+        }
+
+        @Override
+        public @NotNull List<Integer> findAvailable(@NotNull String workerName, @NotNull Instant now) {
+            return delegate.findAvailable(workerName, now);
+        }
+
+        @Override
+        public boolean tryAcquire(@NotNull String workerName, int partition, @NotNull String nodeId,
+                                  @NotNull Instant now, @NotNull Instant expiresAt) {
+            return delegate.tryAcquire(workerName, partition, nodeId, now, expiresAt);
+        }
+
+        @Override
+        public void release(@NotNull String workerName, int partition, @NotNull String nodeId) {
+            delegate.release(workerName, partition, nodeId);
+        }
+    }
+
+    private static final class MutableClock extends Clock {
+
+        private Instant now = Instant.parse("2020-01-01T00:00:00Z");
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
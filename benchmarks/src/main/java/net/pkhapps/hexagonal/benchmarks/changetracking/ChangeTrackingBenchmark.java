@@ -0,0 +1,126 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.benchmarks.changetracking;
+
+import net.pkhapps.hexagonal.domain.hibernate.ChangeTrackingDirtinessStrategy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures flushing a persistence context of 20,000 managed entities with 30 columns each, when none or 1% of them
+ * have been modified, with and without {@link ChangeTrackingDirtinessStrategy change tracking}. Every flush modifies
+ * (and writes) a different set of entities.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ChangeTrackingBenchmark {
+
+    private static final int ENTITIES = 20_000;
+
+    @Param({"true", "false"})
+    public boolean tracked;
+
+    @Param({"0", "1"})
+    public int modifiedPercent;
+
+    private LocalContainerEntityManagerFactoryBean factoryBean;
+    private EntityManager entityManager;
+    private List<? extends WideEntity> entities;
+    private int next;
+    private int value;
+
+    @Setup
+    public void setUp() {
+        factoryBean = new LocalContainerEntityManagerFactoryBean();
+        factoryBean.setPackagesToScan(ChangeTrackingBenchmark.class.getPackageName());
+        factoryBean.setJpaVendorAdapter(new HibernateJpaVendorAdapter());
+        factoryBean.setJpaPropertyMap(Map.of(
+                "javax.persistence.jdbc.url", "jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1",
+                "hibernate.hbm2ddl.auto", "create-drop",
+                "hibernate.jdbc.batch_size", "50",
+                "hibernate.entity_dirtiness_strategy", ChangeTrackingDirtinessStrategy.class.getName()));
+        factoryBean.afterPropertiesSet();
+        var em = factoryBean.getObject().createEntityManager();
+        try {
+            em.getTransaction().begin();
+            for (long id = 0; id < ENTITIES; ++id) {
+                em.persist(tracked ? new TrackedEntity(id) : new UntrackedEntity(id));
+                if (id % 1000 == 999) {
+                    em.flush();
+                    em.clear();
+                }
+            }
+            em.getTransaction().commit();
+        } finally {
+            em.close();
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void loadEntities() {
+        entityManager = factoryBean.getObject().createEntityManager();
+        entityManager.getTransaction().begin();
+        entities = entityManager.createQuery("select e from " + (tracked ? "TrackedEntity" : "UntrackedEntity")
+                + " e", WideEntity.class).getResultList();
+    }
+
+    @TearDown(Level.Iteration)
+    public void discardEntities() {
+        entityManager.getTransaction().rollback();
+        entityManager.close();
+    }
+
+    @TearDown
+    public void tearDown() {
+        factoryBean.destroy();
+    }
+
+    @Benchmark
+    public void flush() {
+        var modified = ENTITIES * modifiedPercent / 100;
+        ++value;
+        for (int i = 0; i < modified; ++i) {
+            entities.get(next).setF3(value);
+            next = (next + 1) % ENTITIES;
+        }
+        entityManager.flush();
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.benchmarks.changetracking;
+
+import net.pkhapps.hexagonal.domain.base.BaseAggregateRoot;
+import org.jetbrains.annotations.Nullable;
+
+import javax.persistence.Id;
+import javax.persistence.MappedSuperclass;
+
+/**
+ * Entity with 30 integer columns, used by {@link ChangeTrackingBenchmark}.
+ */
+@MappedSuperclass
+abstract class WideEntity extends BaseAggregateRoot<Long> {
+
+    @Id
+    private Long id;
+    private int f0;
+    private int f1;
+    private int f2;
+    private int f3;
+    private int f4;
+    private int f5;
+    private int f6;
+    private int f7;
+    private int f8;
+    private int f9;
+    private int f10;
+    private int f11;
+    private int f12;
+    private int f13;
+    private int f14;
+    private int f15;
+    private int f16;
+    private int f17;
+    private int f18;
+    private int f19;
+    private int f20;
+    private int f21;
+    private int f22;
+    private int f23;
+    private int f24;
+    private int f25;
+    private int f26;
+    private int f27;
+    private int f28;
+    private int f29;
+
+    protected WideEntity() {
+    }
+
+    protected WideEntity(long id) {
+        this.id = id;
+    }
+
+    @Override
+    public @Nullable Long getId() {
+        return id;
+    }
+
+    void setF3(int value) {
+        f3 = value;
+        markModified("f3");
+    }
+}
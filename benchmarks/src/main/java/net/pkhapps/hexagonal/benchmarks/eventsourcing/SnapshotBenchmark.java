@@ -0,0 +1,113 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.benchmarks.eventsourcing;
+
+import net.pkhapps.hexagonal.domain.base.eventsourcing.Counter;
+import net.pkhapps.hexagonal.domain.base.eventsourcing.EventSourcedRepository;
+import net.pkhapps.hexagonal.domain.base.eventsourcing.jpa.JpaEventStore;
+import net.pkhapps.hexagonal.domain.base.eventsourcing.jpa.StoredEvent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+
+import javax.persistence.EntityManager;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures loading an event-sourced aggregate with a long history from an in-memory database, by replaying its whole
+ * stream ({@code snapshotInterval} 0) and by restoring the latest snapshot and replaying the events after it. Also
+ * measures {@link EventSourcedRepository#existsById(Object)}, which only reads the version of the stream.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SnapshotBenchmark {
+
+    private static final String ID = "counter";
+
+    @Param({"1000"})
+    public int events;
+
+    @Param({"0", "100"})
+    public int snapshotInterval;
+
+    private LocalContainerEntityManagerFactoryBean factoryBean;
+    private EntityManager entityManager;
+    private EventSourcedRepository<Counter, String> repository;
+
+    @Setup
+    public void setUp() {
+        factoryBean = new LocalContainerEntityManagerFactoryBean();
+        factoryBean.setPackagesToScan(StoredEvent.class.getPackageName());
+        factoryBean.setJpaVendorAdapter(new HibernateJpaVendorAdapter());
+        factoryBean.setJpaPropertyMap(Map.of(
+                "javax.persistence.jdbc.url", "jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1",
+                "hibernate.hbm2ddl.auto", "create-drop"));
+        factoryBean.afterPropertiesSet();
+        entityManager = factoryBean.getObject().createEntityManager();
+        repository = new EventSourcedRepository<>(new JpaEventStore(entityManager), "Counter", Counter::new,
+                snapshotInterval);
+
+        // Save in batches of ten events, so that snapshots are taken at the same versions as in a live system
+        entityManager.getTransaction().begin();
+        var counter = Counter.create(ID);
+        for (int i = 1; i < events; ++i) {
+            counter.add(i);
+            if (i % 10 == 0) {
+                repository.save(counter);
+            }
+        }
+        repository.save(counter);
+        entityManager.getTransaction().commit();
+        entityManager.clear();
+    }
+
+    @TearDown
+    public void tearDown() {
+        entityManager.close();
+        factoryBean.destroy();
+    }
+
+    @Benchmark
+    public Counter load() {
+        var counter = repository.findById(ID).orElseThrow();
+        entityManager.clear();
+        return counter;
+    }
+
+    @Benchmark
+    public boolean exists() {
+        return repository.existsById(ID);
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.benchmarks.metrics;
+
+import net.pkhapps.hexagonal.application.base.metrics.ServiceMetricsInterceptor;
+import net.pkhapps.hexagonal.application.base.metrics.ServiceMetricsRegistry;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.aop.framework.ProxyFactory;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the per-call overhead of {@link ServiceMetricsInterceptor}. The overhead of the metrics is the difference
+ * between {@code metricsProxy} and {@code plainProxy}, which goes through the same AOP proxy with an interceptor that
+ * does nothing. The {@code contended} variants call the same method from four threads.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ServiceMetricsBenchmark {
+
+    public static class OrderService {
+
+        public long placeOrder(long customerId, int quantity) {
+            return customerId * 31 + quantity;
+        }
+    }
+
+    private OrderService direct;
+    private OrderService plainProxy;
+    private OrderService metricsProxy;
+    private long customerId = 1234;
+
+    @Setup
+    public void setUp() {
+        direct = new OrderService();
+        plainProxy = proxy(invocation -> invocation.proceed());
+        metricsProxy = proxy(new ServiceMetricsInterceptor(new ServiceMetricsRegistry(List.of(metrics -> {
+        }))));
+    }
+
+    private static OrderService proxy(MethodInterceptor interceptor) {
+        var factory = new ProxyFactory(new OrderService());
+        factory.setProxyTargetClass(true);
+        factory.addAdvice(interceptor);
+        return (OrderService) factory.getProxy();
+    }
+
+    @Benchmark
+    public long direct() {
+        return direct.placeOrder(customerId, 2);
+    }
+
+    @Benchmark
+    public long plainProxy() {
+        return plainProxy.placeOrder(customerId, 2);
+    }
+
+    @Benchmark
+    public long metricsProxy() {
+        return metricsProxy.placeOrder(customerId, 2);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public long plainProxyContended() {
+        return plainProxy.placeOrder(customerId, 2);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public long metricsProxyContended() {
+        return metricsProxy.placeOrder(customerId, 2);
+    }
+}
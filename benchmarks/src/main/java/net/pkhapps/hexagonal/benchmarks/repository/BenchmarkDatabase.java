@@ -0,0 +1,78 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.benchmarks.repository;
+
+import org.jetbrains.annotations.NotNull;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * In-memory H2 database with a Hibernate entity manager factory for the entities of this package.
+ */
+final class BenchmarkDatabase implements AutoCloseable {
+
+    private final LocalContainerEntityManagerFactoryBean factoryBean;
+
+    BenchmarkDatabase() {
+        this(Map.of());
+    }
+
+    BenchmarkDatabase(@NotNull Map<String, Object> properties) {
+        var allProperties = new HashMap<String, Object>();
+        allProperties.put("javax.persistence.jdbc.url", "jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        allProperties.put("hibernate.hbm2ddl.auto", "create-drop");
+        allProperties.putAll(properties);
+        factoryBean = new LocalContainerEntityManagerFactoryBean();
+        factoryBean.setPackagesToScan(BenchmarkDatabase.class.getPackageName());
+        factoryBean.setJpaVendorAdapter(new HibernateJpaVendorAdapter());
+        factoryBean.setJpaPropertyMap(allProperties);
+        factoryBean.afterPropertiesSet();
+    }
+
+    @NotNull EntityManagerFactory getEntityManagerFactory() {
+        return factoryBean.getObject();
+    }
+
+    /**
+     * Runs the given action in a new entity manager and transaction, and commits the transaction.
+     *
+     * @param action the action to run.
+     */
+    void inTransaction(@NotNull Consumer<EntityManager> action) {
+        var entityManager = getEntityManagerFactory().createEntityManager();
+        try {
+            entityManager.getTransaction().begin();
+            action.accept(entityManager);
+            entityManager.getTransaction().commit();
+        } finally {
+            entityManager.close();
+        }
+    }
+
+    @Override
+    public void close() {
+        factoryBean.destroy();
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.benchmarks.repository;
+
+import net.pkhapps.hexagonal.domain.base.support.BaseRepositoryImpl;
+import net.pkhapps.hexagonal.domain.base.support.SpecificationShape;
+import org.jetbrains.annotations.NotNull;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.support.JpaEntityInformationSupport;
+
+import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares a plain {@link Specification} with the equivalent {@link SpecificationShape} bound to the same values.
+ * The {@code prepare} benchmarks only create the query, which for a plain specification means building the criteria
+ * tree and rendering it to JPQL; the {@code execute} benchmarks also run it against an in-memory database of 1000
+ * products, where the query matches 10 of them.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SpecificationShapeBenchmark {
+
+    private static final SpecificationShape<Product> SHAPE = SpecificationShape.of((root, query, cb, params) -> cb.and(
+            cb.like(root.get("name"), params.get("name", String.class)),
+            cb.between(root.get("price"), params.get("minPrice", Integer.class),
+                    params.get("maxPrice", Integer.class)),
+            cb.greaterThan(root.get("stock"), params.get("minStock", Integer.class))));
+    private static final Sort SORT = Sort.by("name");
+
+    private BenchmarkDatabase database;
+    private EntityManager entityManager;
+    private QueryingRepository repository;
+    private int minPrice;
+
+    @Setup
+    public void setUp() {
+        database = new BenchmarkDatabase();
+        database.inTransaction(em -> {
+            for (int i = 0; i < 1000; ++i) {
+                em.persist(new Product("product" + i, i, i % 2));
+            }
+        });
+        entityManager = database.getEntityManagerFactory().createEntityManager();
+        repository = new QueryingRepository(entityManager);
+    }
+
+    @TearDown
+    public void tearDown() {
+        entityManager.close();
+        database.close();
+    }
+
+    private static Specification<Product> plain(int minPrice, int maxPrice) {
+        return (root, query, cb) -> cb.and(
+                cb.like(root.get("name"), "product%"),
+                cb.between(root.get("price"), minPrice, maxPrice),
+                cb.greaterThan(root.get("stock"), 0));
+    }
+
+    private static Specification<Product> bound(int minPrice, int maxPrice) {
+        return SHAPE.with("name", "product%").with("minPrice", minPrice).with("maxPrice", maxPrice)
+                .with("minStock", 0);
+    }
+
+    private int nextMinPrice() {
+        minPrice = (minPrice + 20) % 980;
+        return minPrice;
+    }
+
+    @Benchmark
+    public TypedQuery<Product> preparePlain() {
+        var min = nextMinPrice();
+        return repository.query(plain(min, min + 19));
+    }
+
+    @Benchmark
+    public TypedQuery<Product> prepareBound() {
+        var min = nextMinPrice();
+        return repository.query(bound(min, min + 19));
+    }
+
+    @Benchmark
+    public List<Product> executePlain() {
+        var min = nextMinPrice();
+        var result = repository.query(plain(min, min + 19)).getResultList();
+        entityManager.clear();
+        return result;
+    }
+
+    @Benchmark
+    public List<Product> executeBound() {
+        var min = nextMinPrice();
+        var result = repository.query(bound(min, min + 19)).getResultList();
+        entityManager.clear();
+        return result;
+    }
+
+    /**
+     * Exposes the query creation of {@link BaseRepositoryImpl}.
+     */
+    static final class QueryingRepository extends BaseRepositoryImpl<Product, Long> {
+
+        QueryingRepository(@NotNull EntityManager entityManager) {
+            super(JpaEntityInformationSupport.getEntityInformation(Product.class, entityManager), entityManager);
+        }
+
+        @NotNull TypedQuery<Product> query(@NotNull Specification<Product> specification) {
+            return getQuery(specification, SORT);
+        }
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.benchmarks.worker;
+
+import net.pkhapps.hexagonal.application.base.worker.channel.ProducerMode;
+import net.pkhapps.hexagonal.application.base.worker.channel.RingBufferChannel;
+import net.pkhapps.hexagonal.application.base.worker.channel.WaitStrategy;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Compares {@link RingBufferChannel} to {@link ArrayBlockingQueue} and {@link LinkedBlockingQueue} when moving items
+ * from one or three producer threads to a single consumer that consumes in batches. The relevant result is the
+ * {@code items} counter of the consumer, which is the number of items transferred per microsecond; the scores of the
+ * producer methods only count offer attempts.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ChannelBenchmark {
+
+    private static final int CAPACITY = 1024;
+    private static final int BATCH_SIZE = 64;
+    private static final Integer ITEM = 42;
+
+    /**
+     * A channel under test, shared by the producers and the consumer of a group.
+     */
+    @State(Scope.Group)
+    public abstract static class ChannelState {
+
+        @Param({"ring", "array", "linked"})
+        public String channel;
+
+        private RingBufferChannel<Integer> ring;
+        private BlockingQueue<Integer> queue;
+        private final ArrayList<Integer> drained = new ArrayList<>(BATCH_SIZE);
+        private Consumer<Integer> sink;
+
+        abstract ProducerMode producerMode();
+
+        @Setup(Level.Iteration)
+        public void setUp(Blackhole blackhole) {
+            ring = null;
+            queue = null;
+            switch (channel) {
+                case "ring":
+                    ring = new RingBufferChannel<>(CAPACITY, producerMode(), WaitStrategy.yielding());
+                    break;
+                case "array":
+                    queue = new ArrayBlockingQueue<>(CAPACITY);
+                    break;
+                case "linked":
+                    queue = new LinkedBlockingQueue<>(CAPACITY);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown channel: " + channel);
+            }
+            sink = blackhole::consume;
+        }
+
+        boolean offer(Integer item) {
+            return ring != null ? ring.offer(item) : queue.offer(item);
+        }
+
+        int drain() {
+            if (ring != null) {
+                return ring.drain(sink, BATCH_SIZE);
+            }
+            var count = queue.drainTo(drained, BATCH_SIZE);
+            drained.forEach(sink);
+            drained.clear();
+            return count;
+        }
+    }
+
+    @State(Scope.Group)
+    public static class SingleProducer extends ChannelState {
+        @Override
+        ProducerMode producerMode() {
+            return ProducerMode.SINGLE;
+        }
+    }
+
+    @State(Scope.Group)
+    public static class MultiProducer extends ChannelState {
+        @Override
+        ProducerMode producerMode() {
+            return ProducerMode.MULTI;
+        }
+    }
+
+    /**
+     * The number of items transferred, reported as a separate result by JMH.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Transferred {
+        public long items;
+    }
+
+    @Benchmark
+    @Group("singleProducer")
+    @GroupThreads(1)
+    public void singleProducerOffer(SingleProducer state) {
+        // Never block: a producer that is stuck when the iteration ends would hang the benchmark
+        if (!state.offer(ITEM)) {
+            Thread.onSpinWait();
+        }
+    }
+
+    @Benchmark
+    @Group("singleProducer")
+    @GroupThreads(1)
+    public void singleProducerDrain(SingleProducer state, Transferred transferred) {
+        var count = state.drain();
+        if (count == 0) {
+            Thread.onSpinWait();
+        }
+        transferred.items += count;
+    }
+
+    @Benchmark
+    @Group("multiProducer")
+    @GroupThreads(3)
+    public void multiProducerOffer(MultiProducer state) {
+        if (!state.offer(ITEM)) {
+            Thread.onSpinWait();
+        }
+    }
+
+    @Benchmark
+    @Group("multiProducer")
+    @GroupThreads(1)
+    public void multiProducerDrain(MultiProducer state, Transferred transferred) {
+        var count = state.drain();
+        if (count == 0) {
+            Thread.onSpinWait();
+        }
+        transferred.items += count;
+    }
+}
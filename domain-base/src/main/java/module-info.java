@@ -2,11 +2,21 @@ module net.pkhapps.hexagonal.domain.base {
     requires static org.jetbrains.annotations;
 
     requires java.persistence;
+    requires spring.aop;
+    requires spring.beans;
     requires spring.context;
     requires spring.data.commons;
     requires spring.data.jpa;
+    requires spring.tx;
 
     exports net.pkhapps.hexagonal.domain.base;
     exports net.pkhapps.hexagonal.domain.base.annotation;
+    exports net.pkhapps.hexagonal.domain.base.eventsourcing;
+    exports net.pkhapps.hexagonal.domain.base.eventsourcing.jpa;
+    exports net.pkhapps.hexagonal.domain.base.eventsourcing.log;
     exports net.pkhapps.hexagonal.domain.base.support;
+    exports net.pkhapps.hexagonal.domain.base.support.scan;
+    exports net.pkhapps.hexagonal.domain.base.support.sharding;
+
+    opens net.pkhapps.hexagonal.domain.base.eventsourcing.jpa;
 }
\ No newline at end of file
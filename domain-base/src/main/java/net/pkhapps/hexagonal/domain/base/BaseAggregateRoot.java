@@ -39,8 +39,9 @@ import static java.util.Objects.requireNonNull;
 @MappedSuperclass
 public abstract class BaseAggregateRoot<ID extends Serializable> extends BaseEntity<ID> {
 
+    // Created on demand, since most loaded aggregates never register any events.
     @Transient
-    private final List<DomainEvent> domainEvents = new ArrayList<>();
+    private List<DomainEvent> domainEvents;
 
     protected BaseAggregateRoot() {
     }
@@ -51,7 +52,11 @@ public abstract class BaseAggregateRoot<ID extends Serializable> extends BaseEnt
      * @param event the event to register and publish.
      */
     protected void registerEvent(@NotNull DomainEvent event) {
-        domainEvents.add(requireNonNull(event));
+        requireNonNull(event);
+        if (domainEvents == null) {
+            domainEvents = new ArrayList<>(2);
+        }
+        domainEvents.add(event);
     }
 
     /**
@@ -63,7 +68,7 @@ public abstract class BaseAggregateRoot<ID extends Serializable> extends BaseEnt
      */
     @DomainEvents
     protected @NotNull Collection<DomainEvent> domainEvents() {
-        return Collections.unmodifiableCollection(domainEvents);
+        return domainEvents == null ? List.of() : Collections.unmodifiableCollection(domainEvents);
     }
 
     /**
@@ -74,6 +79,6 @@ public abstract class BaseAggregateRoot<ID extends Serializable> extends BaseEnt
      */
     @AfterDomainEventPublication
     protected void clearDomainEvents() {
-        domainEvents.clear();
+        domainEvents = null;
     }
 }
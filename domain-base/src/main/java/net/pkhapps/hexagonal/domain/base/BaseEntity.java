@@ -17,6 +17,8 @@
 
 package net.pkhapps.hexagonal.domain.base;
 
+import net.pkhapps.hexagonal.domain.base.annotation.ChangeTracking;
+import net.pkhapps.hexagonal.domain.base.support.ModifiedAttributes;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.springframework.data.domain.Persistable;
@@ -27,10 +29,15 @@ import javax.persistence.MappedSuperclass;
 import javax.persistence.Transient;
 import javax.persistence.Version;
 import java.io.Serializable;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.Optional;
+import java.util.Set;
 
 /**
- * Base class for entities.
+ * Base class for entities. Entities annotated with {@link ChangeTracking} record which attributes they modify, see
+ * {@link #markModified(String)}.
  *
  * @param <ID> the ID type.
  */
@@ -41,10 +48,40 @@ public abstract class BaseEntity<ID extends Serializable> implements Persistable
     // to customize how IDs are generated in subclasses. Instead, every subclass should declare its own ID and
     // implement the abstract getter and setter methods.
 
+    private static final ClassValue<Boolean> CHANGE_TRACKED = new ClassValue<>() {
+        @Override
+        protected Boolean computeValue(Class<?> type) {
+            return type.isAnnotationPresent(ChangeTracking.class);
+        }
+    };
+
+    static {
+        ModifiedAttributes.setAccess(new ModifiedAttributes.Access() {
+            @Override
+            public @NotNull Set<String> getModifiedAttributes(@NotNull BaseEntity<?> entity) {
+                return entity.getModifiedAttributes();
+            }
+
+            @Override
+            public void markModifiedAttributes(@NotNull BaseEntity<?> entity, @NotNull Collection<String> attributes) {
+                entity.markModifiedAttributes(attributes);
+            }
+
+            @Override
+            public void clearModifiedAttributes(@NotNull BaseEntity<?> entity) {
+                entity.clearModifiedAttributes();
+            }
+        });
+    }
+
     @Version
     @Column(name = "version", nullable = false)
     private Long version;
 
+    // Costs one reference per entity. The set is only allocated when a change tracked entity marks an attribute, and is
+    // released on flush, so unmodified entities and entities that are not change tracked carry no set.
+    private transient Set<String> modifiedAttributes;
+
     protected BaseEntity() {
     }
 
@@ -83,6 +120,30 @@ public abstract class BaseEntity<ID extends Serializable> implements Persistable
         return Optional.ofNullable(version);
     }
 
+    /**
+     * Returns whether this entity has an optimistic locking version, which is the case once it has been persisted.
+     *
+     * @return true if the entity has a version, false otherwise.
+     */
+    public boolean hasVersion() {
+        return version != null;
+    }
+
+    /**
+     * Returns the optimistic locking version as a primitive. Unlike {@link #getVersion()}, this method allocates
+     * nothing.
+     *
+     * @return the version.
+     * @throws IllegalStateException if the entity has not been persisted yet.
+     * @see #hasVersion()
+     */
+    public long getVersionValue() {
+        if (version == null) {
+            throw new IllegalStateException("No version set");
+        }
+        return version;
+    }
+
     /**
      * Sets the optimistic locking version. You should almost never need to do this.
      *
@@ -92,6 +153,60 @@ public abstract class BaseEntity<ID extends Serializable> implements Persistable
         this.version = version;
     }
 
+    /**
+     * Returns whether this entity is annotated with {@link ChangeTracking}.
+     *
+     * @return true if the entity tracks its changes, false otherwise.
+     */
+    @Transient
+    public boolean isChangeTracked() {
+        return CHANGE_TRACKED.get(getClass());
+    }
+
+    /**
+     * Marks the given attribute as modified. Entities annotated with {@link ChangeTracking} must call this method
+     * whenever they change a persistent attribute, or the change is not written to the database. For other entities,
+     * calling this method has no effect.
+     *
+     * @param attribute the name of the modified attribute.
+     */
+    protected void markModified(@NotNull String attribute) {
+        if (!isChangeTracked()) {
+            // Nothing would ever clear the attributes
+            return;
+        }
+        if (modifiedAttributes == null) {
+            modifiedAttributes = new HashSet<>();
+        }
+        modifiedAttributes.add(attribute);
+    }
+
+    /**
+     * Marks the given attributes as modified, see {@link ModifiedAttributes#mark(BaseEntity, Collection)}.
+     *
+     * @param attributes the names of the modified attributes.
+     */
+    void markModifiedAttributes(@NotNull Collection<String> attributes) {
+        attributes.forEach(this::markModified);
+    }
+
+    /**
+     * Returns the names of the attributes that have been marked as modified since the entity was last flushed, see
+     * {@link ModifiedAttributes#of(BaseEntity)}.
+     *
+     * @return an unmodifiable set of attribute names.
+     */
+    @NotNull Set<String> getModifiedAttributes() {
+        return modifiedAttributes == null ? Set.of() : Collections.unmodifiableSet(modifiedAttributes);
+    }
+
+    /**
+     * Forgets all modified attributes, see {@link ModifiedAttributes#clear(BaseEntity)}.
+     */
+    void clearModifiedAttributes() {
+        modifiedAttributes = null;
+    }
+
     @Override
     public String toString() {
         return String.format("%s{id=%s, version=%d}", getClass().getSimpleName(), getId(), version);
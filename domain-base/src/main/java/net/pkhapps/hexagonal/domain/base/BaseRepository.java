@@ -24,7 +24,9 @@ import org.springframework.data.repository.NoRepositoryBean;
 import java.io.Serializable;
 
 /**
- * Base interface for repositories of {@linkplain BaseAggregateRoot aggregate roots}.
+ * Base interface for repositories of {@linkplain BaseAggregateRoot aggregate roots}. Repositories backed by
+ * {@link net.pkhapps.hexagonal.domain.base.support.BaseRepositoryImpl} can extend {@link ExtendedRepository} instead
+ * to get its additional operations.
  *
  * @param <Aggregate> the aggregate root type.
  * @param <ID>        the ID type.
@@ -32,4 +34,4 @@ import java.io.Serializable;
 @NoRepositoryBean
 public interface BaseRepository<Aggregate extends BaseAggregateRoot<ID>, ID extends Serializable>
         extends JpaRepository<Aggregate, ID>, JpaSpecificationExecutor<Aggregate> {
-}
\ No newline at end of file
+}
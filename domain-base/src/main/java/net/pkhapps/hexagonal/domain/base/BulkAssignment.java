@@ -0,0 +1,48 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.domain.base;
+
+import org.jetbrains.annotations.NotNull;
+
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaUpdate;
+import javax.persistence.criteria.Root;
+
+/**
+ * Functional interface for defining the assignments of a {@linkplain ExtendedRepository#bulkUpdate(
+ *org.springframework.data.jpa.domain.Specification, BulkAssignment) bulk update}, for example:
+ * <pre>
+ * (root, update, builder) -&gt; update.set(root.get("archived"), true)
+ * </pre>
+ *
+ * @param <Aggregate> the aggregate root type.
+ */
+@FunctionalInterface
+public interface BulkAssignment<Aggregate> {
+
+    /**
+     * Adds the assignments to the given update statement. The version of the updated aggregates is incremented
+     * automatically and must not be assigned here.
+     *
+     * @param root    the root of the update statement.
+     * @param update  the update statement.
+     * @param builder the criteria builder.
+     */
+    void assign(@NotNull Root<Aggregate> root, @NotNull CriteriaUpdate<Aggregate> update,
+                @NotNull CriteriaBuilder builder);
+}
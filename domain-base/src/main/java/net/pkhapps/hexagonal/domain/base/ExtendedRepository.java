@@ -0,0 +1,185 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.domain.base;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.repository.NoRepositoryBean;
+
+import java.io.Serializable;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.IntFunction;
+
+/**
+ * Opt-in extension of {@link BaseRepository} with bulk operations, read-only loading, fetch plans and count-free
+ * paging. The methods are implemented by {@link net.pkhapps.hexagonal.domain.base.support.BaseRepositoryImpl}, so
+ * only repositories backed by it may extend this interface; for other repositories, Spring Data would try to derive
+ * queries from the method names and fail.
+ *
+ * @param <Aggregate> the aggregate root type.
+ * @param <ID>        the ID type.
+ */
+@NoRepositoryBean
+public interface ExtendedRepository<Aggregate extends BaseAggregateRoot<ID>, ID extends Serializable>
+        extends BaseRepository<Aggregate, ID> {
+
+    /**
+     * Like {@link #findById(Object)}, but loads the aggregate as read-only. Read-only aggregates are not dirty checked,
+     * which saves memory and flush time, but also means that changes made to them are never written to the database.
+     * <p>
+     * Inside read-only transactions started by the caller, all aggregates are loaded as read-only even without calling
+     * this method.
+     *
+     * @param id the ID of the aggregate.
+     * @return the aggregate, or an empty {@code Optional} if not found.
+     */
+    @NotNull Optional<Aggregate> findByIdReadOnly(@NotNull ID id);
+
+    /**
+     * Like {@link #findAll(Specification)}, but loads the aggregates as read-only.
+     *
+     * @param specification the specification of the aggregates to find, or {@code null} to find all aggregates.
+     * @return a list of matching aggregates.
+     * @see #findByIdReadOnly(Serializable)
+     */
+    default @NotNull List<Aggregate> findAllReadOnly(@Nullable Specification<Aggregate> specification) {
+        return findAllReadOnly(specification, Sort.unsorted());
+    }
+
+    /**
+     * Like {@link #findAll(Specification, Sort)}, but loads the aggregates as read-only.
+     *
+     * @param specification the specification of the aggregates to find, or {@code null} to find all aggregates.
+     * @param sort          the sort order.
+     * @return a list of matching aggregates.
+     * @see #findByIdReadOnly(Serializable)
+     */
+    @NotNull List<Aggregate> findAllReadOnly(@Nullable Specification<Aggregate> specification, @NotNull Sort sort);
+
+    /**
+     * Like {@link #findAll(Specification)}, but also loads the associations included in the given fetch plan.
+     *
+     * @param specification the specification of the aggregates to find, or {@code null} to find all aggregates.
+     * @param fetchPlan     the associations to load.
+     * @return a list of matching aggregates.
+     */
+    default @NotNull List<Aggregate> findAll(@Nullable Specification<Aggregate> specification,
+                                             @NotNull FetchPlan fetchPlan) {
+        return findAll(specification, Sort.unsorted(), fetchPlan);
+    }
+
+    /**
+     * Like {@link #findAll(Specification, Sort)}, but also loads the associations included in the given fetch plan.
+     *
+     * @param specification the specification of the aggregates to find, or {@code null} to find all aggregates.
+     * @param sort          the sort order of the result.
+     * @param fetchPlan     the associations to load.
+     * @return a sorted list of matching aggregates.
+     */
+    @NotNull List<Aggregate> findAll(@Nullable Specification<Aggregate> specification, @NotNull Sort sort,
+                                     @NotNull FetchPlan fetchPlan);
+
+    /**
+     * Returns a slice of the aggregates matching the given specification. Unlike
+     * {@link #findAll(Specification, Pageable)}, this method does not count all matching aggregates; it fetches one
+     * extra row to find out whether there is a next slice.
+     *
+     * @param specification the specification of the aggregates to find, or {@code null} to find all aggregates.
+     * @param pageable      the page to return.
+     * @return the slice.
+     */
+    @NotNull Slice<Aggregate> findSlice(@Nullable Specification<Aggregate> specification, @NotNull Pageable pageable);
+
+    /**
+     * Like {@link #findAll(Specification, Pageable)}, but with a total count that may be up to {@code maxCountAge}
+     * old. Counts are cached per {@link net.pkhapps.hexagonal.domain.base.support.BoundSpecification bound
+     * specification}; other specifications are counted every time. The total is always consistent with the returned
+     * page: it is exact when the page is the last one, and never less than what the page proves to exist.
+     *
+     * @param specification the specification of the aggregates to find, or {@code null} to find all aggregates.
+     * @param pageable      the page to return.
+     * @param maxCountAge   the maximum age of a cached count.
+     * @return the page.
+     */
+    @NotNull Page<Aggregate> findPage(@Nullable Specification<Aggregate> specification, @NotNull Pageable pageable,
+                                      @NotNull Duration maxCountAge);
+
+    /**
+     * Updates all aggregates matching the given specification with a single update statement, incrementing their
+     * optimistic locking versions.
+     * <p>
+     * The aggregates are never loaded, which means that <b>no per-aggregate domain events are published and no
+     * aggregate invariants are checked</b>. Aggregates already loaded into the current persistence context are not
+     * refreshed. The specification is invoked without a {@link javax.persistence.criteria.CriteriaQuery}, so it must
+     * not depend on one.
+     *
+     * @param specification the specification of the aggregates to update, or {@code null} to update all aggregates.
+     * @param assignment    the assignments to make.
+     * @return the number of updated aggregates.
+     */
+    default int bulkUpdate(@Nullable Specification<Aggregate> specification,
+                           @NotNull BulkAssignment<Aggregate> assignment) {
+        return bulkUpdate(specification, assignment, null);
+    }
+
+    /**
+     * Like {@link #bulkUpdate(Specification, BulkAssignment)}, but also publishes a summary domain event after the
+     * update.
+     *
+     * @param specification the specification of the aggregates to update, or {@code null} to update all aggregates.
+     * @param assignment    the assignments to make.
+     * @param summaryEvent  a function that creates the summary event from the number of updated aggregates, or
+     *                      {@code null} to not publish an event.
+     * @return the number of updated aggregates.
+     */
+    int bulkUpdate(@Nullable Specification<Aggregate> specification, @NotNull BulkAssignment<Aggregate> assignment,
+                   @Nullable IntFunction<? extends DomainEvent> summaryEvent);
+
+    /**
+     * Deletes all aggregates matching the given specification with a single delete statement.
+     * <p>
+     * The aggregates are never loaded, which means that <b>no per-aggregate domain events are published and no
+     * cascades are applied</b>. Aggregates already loaded into the current persistence context are not detached.
+     * The specification is invoked without a {@link javax.persistence.criteria.CriteriaQuery}, so it must not depend on
+     * one.
+     *
+     * @param specification the specification of the aggregates to delete, or {@code null} to delete all aggregates.
+     * @return the number of deleted aggregates.
+     */
+    default int bulkDelete(@Nullable Specification<Aggregate> specification) {
+        return bulkDelete(specification, null);
+    }
+
+    /**
+     * Like {@link #bulkDelete(Specification)}, but also publishes a summary domain event after the delete.
+     *
+     * @param specification the specification of the aggregates to delete, or {@code null} to delete all aggregates.
+     * @param summaryEvent  a function that creates the summary event from the number of deleted aggregates, or
+     *                      {@code null} to not publish an event.
+     * @return the number of deleted aggregates.
+     */
+    int bulkDelete(@Nullable Specification<Aggregate> specification,
+                   @Nullable IntFunction<? extends DomainEvent> summaryEvent);
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.domain.base;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+import java.util.Optional;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Describes which associations to load together with the aggregates returned by a query, for a particular use case.
+ * A fetch plan is either a list of attribute paths (such as {@code "customer"} or {@code "lines.product"}) or the
+ * name of an entity graph declared with {@link javax.persistence.NamedEntityGraph}.
+ * <p>
+ * Chains of single-valued associations starting at the aggregate root are fetched with joins in the main query.
+ * Collections, and everything reached through them, are loaded by one secondary query per association, covering all
+ * the aggregates of the result at once. This avoids both the N+1 problem and the cartesian products caused by
+ * join-fetching several collections in the same query, and makes the number of statements depend only on the plan
+ * (as long as the result fits within the maximum IN-list size of the repository).
+ *
+ * @see ExtendedRepository#findAll(org.springframework.data.jpa.domain.Specification, FetchPlan)
+ */
+public final class FetchPlan {
+
+    private final List<String> attributePaths;
+    private final String entityGraphName;
+
+    private FetchPlan(@NotNull List<String> attributePaths, String entityGraphName) {
+        this.attributePaths = attributePaths;
+        this.entityGraphName = entityGraphName;
+    }
+
+    /**
+     * Creates a fetch plan that loads the given attribute paths.
+     *
+     * @param attributePaths the attribute paths, with path segments separated by dots.
+     * @return the fetch plan.
+     */
+    public static @NotNull FetchPlan of(@NotNull String... attributePaths) {
+        var paths = List.of(attributePaths);
+        for (var path : paths) {
+            if (path.isBlank() || path.startsWith(".") || path.endsWith(".") || path.contains("..")) {
+                throw new IllegalArgumentException("Invalid attribute path: " + path);
+            }
+        }
+        return new FetchPlan(paths, null);
+    }
+
+    /**
+     * Creates a fetch plan that loads the attributes of the named entity graph.
+     *
+     * @param name the name of the entity graph.
+     * @return the fetch plan.
+     */
+    public static @NotNull FetchPlan entityGraph(@NotNull String name) {
+        return new FetchPlan(List.of(), requireNonNull(name));
+    }
+
+    /**
+     * Returns the attribute paths of this fetch plan, or an empty list if it is based on an entity graph.
+     */
+    public @NotNull List<String> getAttributePaths() {
+        return attributePaths;
+    }
+
+    /**
+     * Returns the name of the entity graph of this fetch plan, if it is based on one.
+     */
+    public @NotNull Optional<String> getEntityGraphName() {
+        return Optional.ofNullable(entityGraphName);
+    }
+
+    @Override
+    public String toString() {
+        return entityGraphName == null ? "FetchPlan" + attributePaths : "FetchPlan[@" + entityGraphName + "]";
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.domain.base.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Annotation used on {@linkplain net.pkhapps.hexagonal.domain.base.BaseEntity entities} to opt them into explicit
+ * change tracking. Instead of comparing every attribute against a snapshot at flush time, the persistence provider
+ * asks the entity which attributes it has {@linkplain net.pkhapps.hexagonal.domain.base.BaseEntity#markModified(String)
+ * marked as modified}. Unmodified entities are skipped altogether, which makes flushing large persistence contexts of
+ * wide entities considerably cheaper. Together with dynamic updates (Hibernate's {@code @DynamicUpdate}), only the
+ * modified columns are written.
+ * <p>
+ * Every method that changes a persistent attribute of an annotated entity <b>must</b> mark the attribute as modified;
+ * changes that are not marked (including changes made to mutable attribute values in place) are not written to the
+ * database. Collections are dirty checked as usual. Merging a detached copy of an entity marks the attributes whose
+ * values the merge changed.
+ * <p>
+ * With Hibernate, change tracking requires the entity dirtiness strategy from the Hibernate support module.
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+@Inherited
+@Documented
+public @interface ChangeTracking {
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.domain.base.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Annotation used on {@linkplain net.pkhapps.hexagonal.domain.base.BaseAggregateRoot aggregate roots} to opt their
+ * repositories into keeping a Bloom filter of the IDs of all existing aggregates.
+ * <p>
+ * The filter is built when the repository is created, by streaming all IDs from the database, and all aggregates
+ * saved through the repository are added to it. Deleted aggregates cannot be removed from a Bloom filter; they only
+ * raise the false positive rate until the application is restarted. Aggregates inserted in any other way (by another
+ * application node, another repository, native SQL or bulk operations) are not added.
+ * <p>
+ * By default, {@code existsById} still queries the database when the filter says that an ID is not present, so it
+ * never misses aggregates inserted elsewhere. IDs found this way are added to the filter, and the
+ * {@linkplain net.pkhapps.hexagonal.domain.base.support.ExistenceFilterStatistics statistics} show how many lookups
+ * the filter would have answered and how many of those answers would have been wrong. Only when all inserts go
+ * through this repository in this JVM can {@link #exclusiveInserts()} be set, after which {@code existsById} returns
+ * {@code false} without querying the database for IDs the filter rules out. This pays off when most lookups are for
+ * IDs that do not exist.
+ *
+ * @see net.pkhapps.hexagonal.domain.base.support.ExistenceFilteredRepository
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface ExistenceFiltering {
+
+    /**
+     * The expected number of aggregates. The filter keeps working with more aggregates, but its false positive rate
+     * increases.
+     */
+    long expectedInsertions() default 1_000_000;
+
+    /**
+     * The desired false positive probability when the filter contains {@link #expectedInsertions()} aggregates.
+     */
+    double falsePositiveProbability() default 0.01;
+
+    /**
+     * Whether all aggregates are inserted through the repository in this JVM, so that {@code existsById} can trust the
+     * filter when it rules an ID out. The default is {@code false}.
+     */
+    boolean exclusiveInserts() default false;
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.domain.base.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Annotation used on {@linkplain net.pkhapps.hexagonal.domain.base.BaseAggregateRoot aggregate roots} to opt their
+ * repositories into caching the results of queries made with
+ * {@linkplain net.pkhapps.hexagonal.domain.base.support.BoundSpecification bound specifications}. The cache is
+ * invalidated whenever an aggregate of the type is saved or deleted through its repository (which is also when its
+ * domain events are published), both immediately and when the surrounding transaction completes. Changes that are
+ * flushed without calling the repository, such as modifications found by dirty checking, invalidate the cache only if
+ * the persistence provider reports them to
+ * {@link net.pkhapps.hexagonal.domain.base.support.QueryResultCacheInvalidator}; with Hibernate, add the
+ * {@code hexagonal-domain-hibernate} module to do this automatically.
+ * <p>
+ * The cache is local to the JVM. When several application instances share a database, a result can be stale for up
+ * to {@link #timeToLiveSeconds()} after another instance has changed the aggregates. Do not use the cache for
+ * aggregate types that are written by several instances and must be read consistently.
+ *
+ * @see net.pkhapps.hexagonal.domain.base.support.BaseRepositoryImpl
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface QueryResultCaching {
+
+    /**
+     * The maximum number of query results to cache. When the cache is full, the least recently used result is evicted.
+     */
+    int maxEntries() default 1000;
+
+    /**
+     * The number of seconds a result stays in the cache, regardless of invalidation.
+     */
+    long timeToLiveSeconds() default 60;
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.domain.base.eventsourcing;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Interface for serializing events and snapshot states to bytes, used by event store adapters.
+ *
+ * @see JavaEventSerializer
+ */
+public interface EventSerializer {
+
+    /**
+     * Serializes the given object.
+     *
+     * @param object the object to serialize.
+     * @return the serialized object.
+     */
+    @NotNull byte[] serialize(@NotNull Object object);
+
+    /**
+     * Deserializes an object.
+     *
+     * @param data the serialized object.
+     * @param type the name of the type of the object, as returned by {@link Class#getName()} when it was serialized.
+     * @return the deserialized object.
+     */
+    @NotNull Object deserialize(@NotNull byte[] data, @NotNull String type);
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.domain.base.eventsourcing;
+
+import net.pkhapps.hexagonal.domain.base.DomainEvent;
+import net.pkhapps.hexagonal.domain.base.IdentifiableDomainObject;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Base class for event-sourced aggregate roots. Instead of being stored as mutable rows, the state of an event-sourced
+ * aggregate is the result of applying all its past {@linkplain DomainEvent domain events} in order. Command methods
+ * validate their input and {@linkplain #raise(DomainEvent) raise} events, and all state changes happen in
+ * {@link #handle(DomainEvent)}, which is also used when the aggregate is rebuilt from its event stream.
+ * <p>
+ * Aggregates with long histories should support snapshots by overriding {@link #createSnapshot()} and
+ * {@link #restoreSnapshot(Serializable)}.
+ *
+ * @param <ID> the ID type.
+ * @see EventSourcedRepository
+ */
+public abstract class EventSourcedAggregateRoot<ID extends Serializable> implements IdentifiableDomainObject<ID> {
+
+    private final List<DomainEvent> uncommittedEvents = new ArrayList<>();
+    private long version;
+
+    protected EventSourcedAggregateRoot() {
+    }
+
+    /**
+     * Returns the ID of the aggregate, which is typically set when handling the event that creates the aggregate.
+     *
+     * @return the ID, or {@code null} if the aggregate has no ID yet.
+     */
+    public abstract @Nullable ID getId();
+
+    @Override
+    public @NotNull ID getIdentifier() {
+        var id = getId();
+        if (id == null) {
+            throw new IllegalStateException("No ID set");
+        }
+        return id;
+    }
+
+    @Override
+    public boolean hasIdentifier() {
+        return getId() != null;
+    }
+
+    /**
+     * Returns the version of the aggregate, which is the number of events in its stream, including uncommitted ones.
+     *
+     * @return the version.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Returns the version of the aggregate as currently stored in the event store.
+     *
+     * @return the stored version.
+     */
+    public long getCommittedVersion() {
+        return version - uncommittedEvents.size();
+    }
+
+    /**
+     * Applies the given event to the aggregate and records it to be appended to the event stream when the aggregate is
+     * saved.
+     *
+     * @param event the event to raise.
+     */
+    protected void raise(@NotNull DomainEvent event) {
+        requireNonNull(event);
+        handle(event);
+        uncommittedEvents.add(event);
+        ++version;
+    }
+
+    /**
+     * Applies the given event to the state of the aggregate. This method is called both when new events are raised and
+     * when the aggregate is rebuilt from its stream, so it must not validate anything or have side effects.
+     *
+     * @param event the event to apply.
+     */
+    protected abstract void handle(@NotNull DomainEvent event);
+
+    /**
+     * Creates a snapshot of the current state of the aggregate. The default implementation returns {@code null},
+     * meaning that snapshots are not supported.
+     *
+     * @return the snapshot state, or {@code null} if snapshots are not supported.
+     */
+    protected @Nullable Serializable createSnapshot() {
+        return null;
+    }
+
+    /**
+     * Restores the state of the aggregate from a snapshot created by {@link #createSnapshot()}.
+     *
+     * @param state the snapshot state.
+     */
+    protected void restoreSnapshot(@NotNull Serializable state) {
+        throw new UnsupportedOperationException("Snapshots are not supported by " + getClass().getName());
+    }
+
+    @NotNull List<DomainEvent> getUncommittedEvents() {
+        return Collections.unmodifiableList(uncommittedEvents);
+    }
+
+    void markCommitted() {
+        uncommittedEvents.clear();
+    }
+
+    void replay(@NotNull DomainEvent event) {
+        handle(event);
+        ++version;
+    }
+
+    void restore(@NotNull Snapshot snapshot) {
+        restoreSnapshot(snapshot.getState());
+        version = snapshot.getVersion();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s{id=%s, version=%d}", getClass().getSimpleName(), getId(), version);
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.domain.base.eventsourcing;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.ApplicationEventPublisherAware;
+import org.springframework.dao.OptimisticLockingFailureException;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Repository for {@linkplain EventSourcedAggregateRoot event-sourced aggregates}. Aggregates are loaded by restoring
+ * the latest snapshot (if any) and replaying the events that came after it, and saved by appending their uncommitted
+ * events to the {@link EventStore}. A new snapshot is stored every {@code snapshotInterval} events, which bounds the
+ * number of events that have to be replayed when loading an aggregate with a long history.
+ * <p>
+ * If an {@link ApplicationEventPublisher} is available, the appended events are also published, just like the domain
+ * events of ordinary aggregates are published by Spring Data.
+ *
+ * @param <Aggregate> the aggregate type.
+ * @param <ID>        the ID type.
+ */
+public class EventSourcedRepository<Aggregate extends EventSourcedAggregateRoot<ID>, ID extends Serializable>
+        implements ApplicationEventPublisherAware {
+
+    private final EventStore eventStore;
+    private final String streamType;
+    private final Supplier<Aggregate> factory;
+    private final int snapshotInterval;
+    private ApplicationEventPublisher eventPublisher;
+
+    /**
+     * Creates a new {@code EventSourcedRepository}.
+     *
+     * @param eventStore       the event store.
+     * @param streamType       the stream type under which the aggregates are stored (typically the aggregate name).
+     * @param factory          a factory that creates empty aggregate instances to replay events on.
+     * @param snapshotInterval the number of events between snapshots, or 0 to disable snapshots.
+     */
+    public EventSourcedRepository(@NotNull EventStore eventStore,
+                                  @NotNull String streamType,
+                                  @NotNull Supplier<Aggregate> factory,
+                                  int snapshotInterval) {
+        if (snapshotInterval < 0) {
+            throw new IllegalArgumentException("snapshotInterval must not be negative");
+        }
+        this.eventStore = requireNonNull(eventStore);
+        this.streamType = requireNonNull(streamType);
+        this.factory = requireNonNull(factory);
+        this.snapshotInterval = snapshotInterval;
+    }
+
+    @Override
+    public void setApplicationEventPublisher(@Nullable ApplicationEventPublisher eventPublisher) {
+        this.eventPublisher = eventPublisher;
+    }
+
+    /**
+     * Returns the number of events between snapshots, or 0 if snapshots are disabled.
+     */
+    public int getSnapshotInterval() {
+        return snapshotInterval;
+    }
+
+    /**
+     * Loads the aggregate with the given ID.
+     *
+     * @param id the ID of the aggregate.
+     * @return the aggregate, or an empty {@code Optional} if its stream is empty.
+     */
+    public @NotNull Optional<Aggregate> findById(@NotNull ID id) {
+        var streamId = streamIdOf(id);
+        var aggregate = factory.get();
+        if (snapshotInterval > 0) {
+            eventStore.readSnapshot(streamId).ifPresent(aggregate::restore);
+        }
+        eventStore.readEvents(streamId, aggregate.getVersion()).forEach(aggregate::replay);
+        return aggregate.getVersion() == 0 ? Optional.empty() : Optional.of(aggregate);
+    }
+
+    /**
+     * Returns whether an aggregate with the given ID exists. Only the version of the stream is read, not its events.
+     *
+     * @param id the ID of the aggregate.
+     * @return true if the aggregate exists, false otherwise.
+     */
+    public boolean existsById(@NotNull ID id) {
+        return eventStore.readVersion(streamIdOf(id)) > 0;
+    }
+
+    /**
+     * Appends the uncommitted events of the given aggregate to its stream. Nothing is written if there are no
+     * uncommitted events.
+     *
+     * @param aggregate the aggregate to save.
+     * @return the saved aggregate.
+     * @throws OptimisticLockingFailureException if somebody else has appended events to the stream since the aggregate
+     *                                           was loaded.
+     */
+    public @NotNull Aggregate save(@NotNull Aggregate aggregate) {
+        requireNonNull(aggregate);
+        var events = new ArrayList<>(aggregate.getUncommittedEvents());
+        if (events.isEmpty()) {
+            return aggregate;
+        }
+        var streamId = streamIdOf(aggregate.getIdentifier());
+        var committedVersion = aggregate.getCommittedVersion();
+        var newVersion = eventStore.append(streamId, committedVersion, events);
+        aggregate.markCommitted();
+        if (snapshotInterval > 0 && newVersion / snapshotInterval > committedVersion / snapshotInterval) {
+            saveSnapshot(streamId, aggregate);
+        }
+        if (eventPublisher != null) {
+            events.forEach(eventPublisher::publishEvent);
+        }
+        return aggregate;
+    }
+
+    private void saveSnapshot(@NotNull StreamId streamId, @NotNull Aggregate aggregate) {
+        var state = aggregate.createSnapshot();
+        if (state != null) {
+            eventStore.saveSnapshot(streamId, new Snapshot(aggregate.getVersion(), state));
+        }
+    }
+
+    private @NotNull StreamId streamIdOf(@NotNull ID id) {
+        return new StreamId(streamType, id.toString());
+    }
+}
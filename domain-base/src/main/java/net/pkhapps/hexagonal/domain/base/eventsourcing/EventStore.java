@@ -0,0 +1,78 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.domain.base.eventsourcing;
+
+import net.pkhapps.hexagonal.domain.base.DomainEvent;
+import org.jetbrains.annotations.NotNull;
+import org.springframework.dao.OptimisticLockingFailureException;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Port for storing the event streams and snapshots of {@linkplain EventSourcedAggregateRoot event-sourced aggregates}.
+ * The version of a stream is the number of events in it.
+ *
+ * @see net.pkhapps.hexagonal.domain.base.eventsourcing.jpa.JpaEventStore
+ */
+public interface EventStore {
+
+    /**
+     * Reads the events of the given stream that come after the given version, in order.
+     *
+     * @param streamId     the stream.
+     * @param afterVersion the version to read after, or 0 to read the whole stream.
+     * @return a list of events (empty if the stream does not exist).
+     */
+    @NotNull List<DomainEvent> readEvents(@NotNull StreamId streamId, long afterVersion);
+
+    /**
+     * Returns the current version of the given stream without reading its events.
+     *
+     * @param streamId the stream.
+     * @return the version of the stream, or 0 if the stream does not exist.
+     */
+    long readVersion(@NotNull StreamId streamId);
+
+    /**
+     * Appends the given events to the given stream, provided that the stream is still at the expected version.
+     *
+     * @param streamId        the stream.
+     * @param expectedVersion the version the stream must have (0 for a new stream).
+     * @param events          the events to append.
+     * @return the new version of the stream.
+     * @throws OptimisticLockingFailureException if the stream is not at the expected version.
+     */
+    long append(@NotNull StreamId streamId, long expectedVersion, @NotNull List<? extends DomainEvent> events);
+
+    /**
+     * Reads the latest snapshot of the given stream.
+     *
+     * @param streamId the stream.
+     * @return the snapshot, or an empty {@code Optional} if there is none.
+     */
+    @NotNull Optional<Snapshot> readSnapshot(@NotNull StreamId streamId);
+
+    /**
+     * Stores a snapshot of the given stream, replacing any older snapshot.
+     *
+     * @param streamId the stream.
+     * @param snapshot the snapshot.
+     */
+    void saveSnapshot(@NotNull StreamId streamId, @NotNull Snapshot snapshot);
+}
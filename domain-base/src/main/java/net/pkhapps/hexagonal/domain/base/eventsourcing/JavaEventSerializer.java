@@ -0,0 +1,61 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.domain.base.eventsourcing;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.io.UncheckedIOException;
+
+/**
+ * {@link EventSerializer} that uses Java serialization. All events and snapshot states must be {@link Serializable}.
+ * Java serialization is simple to get started with, but makes evolving event classes hard; consider a schema-based
+ * format for long-lived streams.
+ */
+public class JavaEventSerializer implements EventSerializer {
+
+    @Override
+    public @NotNull byte[] serialize(@NotNull Object object) {
+        if (!(object instanceof Serializable)) {
+            throw new IllegalArgumentException(object.getClass().getName() + " is not serializable");
+        }
+        var bytes = new ByteArrayOutputStream();
+        try (var out = new ObjectOutputStream(bytes)) {
+            out.writeObject(object);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Could not serialize " + object.getClass().getName(), ex);
+        }
+        return bytes.toByteArray();
+    }
+
+    @Override
+    public @NotNull Object deserialize(@NotNull byte[] data, @NotNull String type) {
+        try (var in = new ObjectInputStream(new ByteArrayInputStream(data))) {
+            return in.readObject();
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Could not deserialize " + type, ex);
+        } catch (ClassNotFoundException ex) {
+            throw new IllegalStateException("Could not deserialize " + type, ex);
+        }
+    }
+}
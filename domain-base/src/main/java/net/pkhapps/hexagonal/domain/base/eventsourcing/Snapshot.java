@@ -0,0 +1,58 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.domain.base.eventsourcing;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Serializable;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Snapshot of the state of an {@linkplain EventSourcedAggregateRoot event-sourced aggregate} at a given version.
+ */
+public final class Snapshot {
+
+    private final long version;
+    private final Serializable state;
+
+    /**
+     * Creates a new {@code Snapshot}.
+     *
+     * @param version the version of the aggregate when the snapshot was taken.
+     * @param state   the state of the aggregate.
+     */
+    public Snapshot(long version, @NotNull Serializable state) {
+        this.version = version;
+        this.state = requireNonNull(state);
+    }
+
+    /**
+     * Returns the version of the aggregate when the snapshot was taken.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Returns the state of the aggregate.
+     */
+    public @NotNull Serializable getState() {
+        return state;
+    }
+}
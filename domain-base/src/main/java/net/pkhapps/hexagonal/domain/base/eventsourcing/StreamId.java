@@ -0,0 +1,77 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.domain.base.eventsourcing;
+
+import net.pkhapps.hexagonal.domain.base.ValueObject;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Objects;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Value object identifying an event stream, consisting of the aggregate type and the aggregate ID.
+ */
+public final class StreamId implements ValueObject {
+
+    private final String type;
+    private final String id;
+
+    /**
+     * Creates a new {@code StreamId}.
+     *
+     * @param type the aggregate type.
+     * @param id   the aggregate ID as a string.
+     */
+    public StreamId(@NotNull String type, @NotNull String id) {
+        this.type = requireNonNull(type);
+        this.id = requireNonNull(id);
+    }
+
+    /**
+     * Returns the aggregate type.
+     */
+    public @NotNull String getType() {
+        return type;
+    }
+
+    /**
+     * Returns the aggregate ID as a string.
+     */
+    public @NotNull String getId() {
+        return id;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        var that = (StreamId) o;
+        return type.equals(that.type) && id.equals(that.id);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(type, id);
+    }
+
+    @Override
+    public String toString() {
+        return type + ":" + id;
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.domain.base.eventsourcing.jpa;
+
+import net.pkhapps.hexagonal.domain.base.DomainEvent;
+import net.pkhapps.hexagonal.domain.base.eventsourcing.EventSerializer;
+import net.pkhapps.hexagonal.domain.base.eventsourcing.EventStore;
+import net.pkhapps.hexagonal.domain.base.eventsourcing.JavaEventSerializer;
+import net.pkhapps.hexagonal.domain.base.eventsourcing.Snapshot;
+import net.pkhapps.hexagonal.domain.base.eventsourcing.StreamId;
+import org.jetbrains.annotations.NotNull;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceException;
+import java.io.Serializable;
+import java.time.Clock;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * {@link EventStore} that stores events and snapshots in relational tables through JPA. The {@link StoredEvent} and
+ * {@link StoredSnapshot} entities must be included in the persistence unit.
+ * <p>
+ * Concurrent appends are detected by checking the current version of the stream before appending, and, for appends
+ * that race past the check, by the unique constraint on the stream and the event version.
+ */
+public class JpaEventStore implements EventStore {
+
+    private final EntityManager entityManager;
+    private final EventSerializer serializer;
+    private Clock clock = Clock.systemUTC();
+
+    /**
+     * Creates a new {@code JpaEventStore} that uses {@linkplain JavaEventSerializer Java serialization}.
+     *
+     * @param entityManager the entity manager to use (typically a shared, transactional entity manager).
+     */
+    public JpaEventStore(@NotNull EntityManager entityManager) {
+        this(entityManager, new JavaEventSerializer());
+    }
+
+    /**
+     * Creates a new {@code JpaEventStore}.
+     *
+     * @param entityManager the entity manager to use (typically a shared, transactional entity manager).
+     * @param serializer    the serializer to use for events and snapshots.
+     */
+    public JpaEventStore(@NotNull EntityManager entityManager, @NotNull EventSerializer serializer) {
+        this.entityManager = requireNonNull(entityManager);
+        this.serializer = requireNonNull(serializer);
+    }
+
+    /**
+     * Sets the clock used to timestamp events and snapshots. The default is the system UTC clock.
+     *
+     * @param clock the clock.
+     */
+    public void setClock(@NotNull Clock clock) {
+        this.clock = requireNonNull(clock);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public @NotNull List<DomainEvent> readEvents(@NotNull StreamId streamId, long afterVersion) {
+        return entityManager.createQuery("select e from StoredEvent e where e.streamType = :type " +
+                "and e.streamId = :id and e.version > :version order by e.version", StoredEvent.class)
+                .setParameter("type", streamId.getType())
+                .setParameter("id", streamId.getId())
+                .setParameter("version", afterVersion)
+                .getResultStream()
+                .map(e -> (DomainEvent) serializer.deserialize(e.getPayload(), e.getEventType()))
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    @Transactional
+    public long append(@NotNull StreamId streamId, long expectedVersion,
+                       @NotNull List<? extends DomainEvent> events) {
+        requireNonNull(events);
+        var currentVersion = readVersion(streamId);
+        if (currentVersion != expectedVersion) {
+            throw conflict(streamId, expectedVersion, currentVersion);
+        }
+        var version = expectedVersion;
+        var now = clock.instant();
+        for (var event : events) {
+            entityManager.persist(new StoredEvent(streamId.getType(), streamId.getId(), ++version,
+                    event.getClass().getName(), serializer.serialize(event), now));
+        }
+        try {
+            entityManager.flush();
+        } catch (PersistenceException ex) {
+            throw new OptimisticLockingFailureException(String.format(
+                    "Stream %s was modified concurrently (expected version %d)", streamId, expectedVersion), ex);
+        }
+        return version;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public long readVersion(@NotNull StreamId streamId) {
+        var version = entityManager.createQuery("select max(e.version) from StoredEvent e " +
+                "where e.streamType = :type and e.streamId = :id", Long.class)
+                .setParameter("type", streamId.getType())
+                .setParameter("id", streamId.getId())
+                .getSingleResult();
+        return version == null ? 0 : version;
+    }
+
+    private @NotNull OptimisticLockingFailureException conflict(@NotNull StreamId streamId, long expectedVersion,
+                                                                long currentVersion) {
+        return new OptimisticLockingFailureException(String.format(
+                "Stream %s is at version %d, expected version %d", streamId, currentVersion, expectedVersion));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public @NotNull Optional<Snapshot> readSnapshot(@NotNull StreamId streamId) {
+        return findSnapshot(streamId).map(s -> new Snapshot(s.getVersion(),
+                (Serializable) serializer.deserialize(s.getPayload(), s.getStateType())));
+    }
+
+    @Override
+    @Transactional
+    public void saveSnapshot(@NotNull StreamId streamId, @NotNull Snapshot snapshot) {
+        var state = snapshot.getState();
+        var existing = findSnapshot(streamId);
+        if (existing.isPresent() && existing.get().getVersion() >= snapshot.getVersion()) {
+            return;
+        }
+        var stored = existing.orElseGet(() -> new StoredSnapshot(streamId.getType(), streamId.getId()));
+        stored.update(snapshot.getVersion(), state.getClass().getName(), serializer.serialize(state), clock.instant());
+        if (existing.isEmpty()) {
+            entityManager.persist(stored);
+        }
+    }
+
+    private @NotNull Optional<StoredSnapshot> findSnapshot(@NotNull StreamId streamId) {
+        return entityManager.createQuery("select s from StoredSnapshot s where s.streamType = :type " +
+                "and s.streamId = :id", StoredSnapshot.class)
+                .setParameter("type", streamId.getType())
+                .setParameter("id", streamId.getId())
+                .getResultStream()
+                .findFirst();
+    }
+}
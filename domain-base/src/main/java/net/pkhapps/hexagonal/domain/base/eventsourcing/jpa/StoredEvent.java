@@ -0,0 +1,96 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.domain.base.eventsourcing.jpa;
+
+import org.jetbrains.annotations.NotNull;
+
+import javax.persistence.*;
+import java.time.Instant;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * JPA entity for storing a single event of an event stream. The unique constraint on the stream and the version is
+ * what detects concurrent appends to the same stream.
+ */
+@Entity
+@Table(name = "es_event",
+        uniqueConstraints = @UniqueConstraint(name = "es_event_stream_version",
+                columnNames = {"stream_type", "stream_id", "version"}))
+public class StoredEvent {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "stream_type", nullable = false)
+    private String streamType;
+
+    @Column(name = "stream_id", nullable = false)
+    private String streamId;
+
+    @Column(name = "version", nullable = false)
+    private long version;
+
+    @Column(name = "event_type", nullable = false)
+    private String eventType;
+
+    @Lob
+    @Column(name = "payload", nullable = false)
+    private byte[] payload;
+
+    @Column(name = "recorded_at", nullable = false)
+    private Instant recordedAt;
+
+    protected StoredEvent() {
+    }
+
+    StoredEvent(@NotNull String streamType, @NotNull String streamId, long version, @NotNull String eventType,
+                @NotNull byte[] payload, @NotNull Instant recordedAt) {
+        this.streamType = requireNonNull(streamType);
+        this.streamId = requireNonNull(streamId);
+        this.version = version;
+        this.eventType = requireNonNull(eventType);
+        this.payload = requireNonNull(payload);
+        this.recordedAt = requireNonNull(recordedAt);
+    }
+
+    public @NotNull String getStreamType() {
+        return streamType;
+    }
+
+    public @NotNull String getStreamId() {
+        return streamId;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public @NotNull String getEventType() {
+        return eventType;
+    }
+
+    public @NotNull byte[] getPayload() {
+        return payload;
+    }
+
+    public @NotNull Instant getRecordedAt() {
+        return recordedAt;
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.domain.base.eventsourcing.jpa;
+
+import org.jetbrains.annotations.NotNull;
+
+import javax.persistence.*;
+import java.time.Instant;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * JPA entity for storing the latest snapshot of an event stream.
+ */
+@Entity
+@Table(name = "es_snapshot",
+        uniqueConstraints = @UniqueConstraint(name = "es_snapshot_stream", columnNames = {"stream_type", "stream_id"}))
+public class StoredSnapshot {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "stream_type", nullable = false)
+    private String streamType;
+
+    @Column(name = "stream_id", nullable = false)
+    private String streamId;
+
+    @Column(name = "version", nullable = false)
+    private long version;
+
+    @Column(name = "state_type", nullable = false)
+    private String stateType;
+
+    @Lob
+    @Column(name = "payload", nullable = false)
+    private byte[] payload;
+
+    @Column(name = "taken_at", nullable = false)
+    private Instant takenAt;
+
+    protected StoredSnapshot() {
+    }
+
+    StoredSnapshot(@NotNull String streamType, @NotNull String streamId) {
+        this.streamType = requireNonNull(streamType);
+        this.streamId = requireNonNull(streamId);
+    }
+
+    void update(long version, @NotNull String stateType, @NotNull byte[] payload, @NotNull Instant takenAt) {
+        this.version = version;
+        this.stateType = requireNonNull(stateType);
+        this.payload = requireNonNull(payload);
+        this.takenAt = requireNonNull(takenAt);
+    }
+
+    public @NotNull String getStreamType() {
+        return streamType;
+    }
+
+    public @NotNull String getStreamId() {
+        return streamId;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public @NotNull String getStateType() {
+        return stateType;
+    }
+
+    public @NotNull byte[] getPayload() {
+        return payload;
+    }
+
+    public @NotNull Instant getTakenAt() {
+        return takenAt;
+    }
+}
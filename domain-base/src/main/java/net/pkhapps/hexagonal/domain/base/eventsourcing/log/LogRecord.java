@@ -0,0 +1,117 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.domain.base.eventsourcing.log;
+
+import net.pkhapps.hexagonal.domain.base.DomainEvent;
+import net.pkhapps.hexagonal.domain.base.eventsourcing.EventSerializer;
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A single event in a {@link MappedEventLog}. The record is a view of the memory-mapped segment it is stored in: nothing
+ * is copied until one of its accessors is called, and {@link #getPayload()} never copies.
+ */
+public final class LogRecord {
+
+    private final ByteBuffer body;
+    private final EventSerializer serializer;
+
+    /**
+     * The body layout is: offset (long), timestamp (long), key length (short), key, type length (short), type, payload.
+     */
+    LogRecord(@NotNull ByteBuffer body, @NotNull EventSerializer serializer) {
+        this.body = body;
+        this.serializer = serializer;
+    }
+
+    /**
+     * Returns the offset of the event in the log.
+     */
+    public long getOffset() {
+        return body.getLong(0);
+    }
+
+    /**
+     * Returns the time the event was appended, in milliseconds since the epoch.
+     */
+    public long getTimestamp() {
+        return body.getLong(8);
+    }
+
+    /**
+     * Returns the key of the aggregate the event belongs to.
+     *
+     * @see MappedEventLog#keyOf(net.pkhapps.hexagonal.domain.base.DomainObjectId)
+     */
+    public @NotNull String getAggregateKey() {
+        return readString(16);
+    }
+
+    /**
+     * Returns the name of the class of the event.
+     */
+    public @NotNull String getEventType() {
+        return readString(typePosition());
+    }
+
+    /**
+     * Returns the serialized event as a read-only view of the segment. The buffer is only valid as long as the segment
+     * is retained.
+     */
+    public @NotNull ByteBuffer getPayload() {
+        var payload = body.duplicate();
+        payload.position(payloadPosition());
+        return payload.slice().asReadOnlyBuffer();
+    }
+
+    /**
+     * Deserializes the event.
+     */
+    public @NotNull DomainEvent getEvent() {
+        var payload = getPayload();
+        var data = new byte[payload.remaining()];
+        payload.get(data);
+        return (DomainEvent) serializer.deserialize(data, getEventType());
+    }
+
+    private int typePosition() {
+        return 18 + Short.toUnsignedInt(body.getShort(16));
+    }
+
+    private int payloadPosition() {
+        var typePosition = typePosition();
+        return typePosition + 2 + Short.toUnsignedInt(body.getShort(typePosition));
+    }
+
+    private @NotNull String readString(int position) {
+        var length = Short.toUnsignedInt(body.getShort(position));
+        var bytes = new byte[length];
+        for (var i = 0; i < length; ++i) {
+            bytes[i] = body.get(position + 2 + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s[offset=%d, aggregateKey=%s, eventType=%s]", getClass().getSimpleName(), getOffset(),
+                getAggregateKey(), getEventType());
+    }
+}
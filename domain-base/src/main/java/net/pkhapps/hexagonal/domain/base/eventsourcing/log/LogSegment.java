@@ -0,0 +1,244 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.domain.base.eventsourcing.log;
+
+import net.pkhapps.hexagonal.domain.base.eventsourcing.EventSerializer;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.ObjIntConsumer;
+import java.util.zip.CRC32;
+
+/**
+ * A preallocated, memory-mapped file containing a contiguous range of log records. Each record is prefixed by the
+ * length and CRC32 of its body. The length is written last, so a record becomes visible to recovery only once it is
+ * complete; a zero length marks the end of the segment. Only one thread may append at a time, but any number of
+ * threads may read concurrently.
+ */
+final class LogSegment {
+
+    static final String SUFFIX = ".segment";
+    private static final int PREFIX_SIZE = 8;
+    private static final int FIXED_BODY_SIZE = 8 + 8 + 2 + 2;
+
+    private final long baseOffset;
+    private final Path file;
+    private final MappedByteBuffer buffer;
+    private volatile int size;
+    private volatile long nextOffset;
+    private volatile long lastTimestamp;
+
+    private LogSegment(long baseOffset, @NotNull Path file, @NotNull MappedByteBuffer buffer) {
+        this.baseOffset = baseOffset;
+        this.file = file;
+        this.buffer = buffer;
+        this.nextOffset = baseOffset;
+    }
+
+    /**
+     * Creates a new, empty segment in the given directory.
+     */
+    static @NotNull LogSegment create(@NotNull Path directory, long baseOffset, int capacity, long timestamp) {
+        var file = directory.resolve(String.format("%020d%s", baseOffset, SUFFIX));
+        try (var channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            var segment = new LogSegment(baseOffset, file, channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity));
+            segment.lastTimestamp = timestamp;
+            return segment;
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Could not create segment " + file, ex);
+        }
+    }
+
+    /**
+     * Opens an existing segment, passing every valid record and its position to the given visitor. Anything after
+     * the last valid record (such as a record that was only partially written when the process crashed) is erased.
+     */
+    static @NotNull LogSegment open(@NotNull Path file, @NotNull EventSerializer serializer,
+                                    @NotNull ObjIntConsumer<LogRecord> visitor) {
+        var name = file.getFileName().toString();
+        var baseOffset = Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+        try (var channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            var segment = new LogSegment(baseOffset, file,
+                    channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size()));
+            segment.lastTimestamp = Files.getLastModifiedTime(file).toMillis();
+            segment.recover(serializer, visitor);
+            return segment;
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Could not open segment " + file, ex);
+        }
+    }
+
+    /**
+     * Returns whether the given file name is the name of a segment file.
+     */
+    static boolean isSegmentFile(@NotNull Path file) {
+        var name = file.getFileName().toString();
+        return name.length() == 20 + SUFFIX.length() && name.endsWith(SUFFIX)
+                && name.chars().limit(20).allMatch(Character::isDigit);
+    }
+
+    /**
+     * Returns the number of bytes a record with fields of the given lengths occupies.
+     */
+    static int recordSize(int keyLength, int typeLength, int payloadLength) {
+        return PREFIX_SIZE + FIXED_BODY_SIZE + keyLength + typeLength + payloadLength;
+    }
+
+    private void recover(@NotNull EventSerializer serializer, @NotNull ObjIntConsumer<LogRecord> visitor) {
+        var capacity = buffer.capacity();
+        var position = 0;
+        var crc = new CRC32();
+        while (position + PREFIX_SIZE + FIXED_BODY_SIZE <= capacity) {
+            var length = buffer.getInt(position);
+            if (length < FIXED_BODY_SIZE || length > capacity - position - PREFIX_SIZE) {
+                break;
+            }
+            var body = body(position, length);
+            crc.reset();
+            crc.update(body.duplicate());
+            if ((int) crc.getValue() != buffer.getInt(position + 4) || body.getLong(0) != nextOffset) {
+                break;
+            }
+            var record = new LogRecord(body, serializer);
+            visitor.accept(record, position);
+            nextOffset = record.getOffset() + 1;
+            lastTimestamp = record.getTimestamp();
+            position += PREFIX_SIZE + length;
+        }
+        size = position;
+        if (position + 4 <= capacity && buffer.getInt(position) != 0) {
+            for (var i = position; i < capacity; ++i) {
+                buffer.put(i, (byte) 0);
+            }
+            buffer.force();
+        }
+    }
+
+    /**
+     * Returns whether a record of the given size fits into this segment, leaving room for the end marker.
+     */
+    boolean hasRoomFor(int recordSize) {
+        return (long) size + recordSize + 4 <= buffer.capacity();
+    }
+
+    /**
+     * Appends a record to this segment, returning its position. The caller must make sure the record fits.
+     */
+    int append(long timestamp, byte[] key, byte[] type, byte[] payload) {
+        var position = size;
+        var length = FIXED_BODY_SIZE + key.length + type.length + payload.length;
+        var offset = nextOffset;
+        var body = body(position, length);
+        body.putLong(offset);
+        body.putLong(timestamp);
+        body.putShort((short) key.length);
+        body.put(key);
+        body.putShort((short) type.length);
+        body.put(type);
+        body.put(payload);
+        body.flip();
+        var crc = new CRC32();
+        crc.update(body);
+        buffer.putInt(position + 4, (int) crc.getValue());
+        buffer.putInt(position, length);
+        lastTimestamp = timestamp;
+        nextOffset = offset + 1;
+        size = position + PREFIX_SIZE + length;
+        return position;
+    }
+
+    /**
+     * Returns the record stored at the given position.
+     */
+    @NotNull LogRecord read(int position, @NotNull EventSerializer serializer) {
+        return new LogRecord(body(position, buffer.getInt(position)), serializer);
+    }
+
+    /**
+     * Passes all records with an offset of at least {@code fromOffset} to the given visitor, returning the offset
+     * after the last visited record.
+     */
+    long forEach(long fromOffset, @NotNull EventSerializer serializer, @NotNull ObjIntConsumer<LogRecord> visitor) {
+        var end = size;
+        var position = 0;
+        var next = baseOffset;
+        while (position < end) {
+            var length = buffer.getInt(position);
+            next = buffer.getLong(position + PREFIX_SIZE) + 1;
+            if (next > fromOffset) {
+                visitor.accept(new LogRecord(body(position, length), serializer), position);
+            }
+            position += PREFIX_SIZE + length;
+        }
+        return next;
+    }
+
+    private @NotNull ByteBuffer body(int position, int length) {
+        var body = buffer.duplicate();
+        body.position(position + PREFIX_SIZE);
+        body.limit(position + PREFIX_SIZE + length);
+        return body.slice();
+    }
+
+    /**
+     * Forces all appended records to disk.
+     */
+    void force() {
+        buffer.force();
+    }
+
+    /**
+     * Deletes the segment file. The mapping stays valid until it is garbage collected, so concurrent readers are not
+     * affected on platforms that allow deleting mapped files.
+     */
+    void delete() {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Could not delete segment " + file, ex);
+        }
+    }
+
+    long getBaseOffset() {
+        return baseOffset;
+    }
+
+    long getNextOffset() {
+        return nextOffset;
+    }
+
+    long getLastTimestamp() {
+        return lastTimestamp;
+    }
+
+    int getCapacity() {
+        return buffer.capacity();
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+}
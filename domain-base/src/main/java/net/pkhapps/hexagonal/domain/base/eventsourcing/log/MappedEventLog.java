@@ -0,0 +1,423 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.domain.base.eventsourcing.log;
+
+import net.pkhapps.hexagonal.domain.base.DomainEvent;
+import net.pkhapps.hexagonal.domain.base.DomainObjectId;
+import net.pkhapps.hexagonal.domain.base.eventsourcing.EventSerializer;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Append-only log of {@linkplain DomainEvent domain events} stored in memory-mapped segment files on the local file
+ * system. Appending an event is a memory copy rather than a database round trip, which makes the log suitable for
+ * high-rate auditing and replay. Events get consecutive offsets starting from 0.
+ * <p>
+ * Segments are preallocated to {@linkplain #setSegmentSize(int) a fixed size} and a new segment is started when the
+ * current one is full. Old segments are deleted when the log grows larger or older than
+ * {@linkplain #setRetention(long, Duration) the retention limits}. When events are forced to disk is decided by the
+ * {@linkplain #setSyncPolicy(SyncPolicy) sync policy}.
+ * <p>
+ * An in-memory index of the events of each aggregate is built when the log is opened and kept up to date on append,
+ * so that the events of a single aggregate can be read without scanning the log. Replays read the segments
+ * sequentially and hand out views of the mapped memory instead of copying.
+ * <p>
+ * Configure the log and then call {@link #open()}. Appends are serialized; reads and replays may run concurrently with
+ * appends and with each other. Only one instance may use a directory at a time.
+ */
+public class MappedEventLog implements Closeable {
+
+    /**
+     * The default segment size (64 MiB).
+     */
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+    private static final Duration RETENTION_CHECK_INTERVAL = Duration.ofMinutes(1);
+
+    private final Path directory;
+    private final EventSerializer serializer;
+    private final ConcurrentSkipListMap<Long, LogSegment> segments = new ConcurrentSkipListMap<>();
+    private final OffsetIndex index = new OffsetIndex();
+    private int segmentSize = DEFAULT_SEGMENT_SIZE;
+    private SyncPolicy syncPolicy = SyncPolicy.batched(1000, Duration.ofMillis(100));
+    private long maxRetainedBytes;
+    private Duration maxRetainedAge;
+    private Clock clock = Clock.systemUTC();
+    private LogSegment activeSegment;
+    private int unsyncedEvents;
+    private ScheduledExecutorService scheduler;
+    private volatile boolean open;
+
+    /**
+     * Creates a new {@code MappedEventLog}.
+     *
+     * @param directory  the directory to store the segments in. It is created if it does not exist.
+     * @param serializer the serializer to use for the events.
+     */
+    public MappedEventLog(@NotNull Path directory, @NotNull EventSerializer serializer) {
+        this.directory = requireNonNull(directory);
+        this.serializer = requireNonNull(serializer);
+    }
+
+    /**
+     * Sets the size of new segments. No event may be larger than this. The default is {@link #DEFAULT_SEGMENT_SIZE}.
+     *
+     * @param segmentSize the segment size in bytes.
+     */
+    public void setSegmentSize(int segmentSize) {
+        if (segmentSize < 1024) {
+            throw new IllegalArgumentException("Segment size must be at least 1024 bytes");
+        }
+        assertNotOpen();
+        this.segmentSize = segmentSize;
+    }
+
+    /**
+     * Sets the sync policy. The default is to sync every 1000 events or 100 milliseconds.
+     *
+     * @param syncPolicy the sync policy.
+     */
+    public void setSyncPolicy(@NotNull SyncPolicy syncPolicy) {
+        assertNotOpen();
+        this.syncPolicy = requireNonNull(syncPolicy);
+    }
+
+    /**
+     * Sets the retention limits. When the segments take up more than {@code maxBytes} in total, or the newest event
+     * of a segment is older than {@code maxAge}, the oldest segments are deleted. The segment being appended to is
+     * never deleted. By default, all segments are retained.
+     *
+     * @param maxBytes the maximum total size of the segments, or 0 for no limit.
+     * @param maxAge   the maximum age of the segments, or {@code null} for no limit.
+     */
+    public void setRetention(long maxBytes, @Nullable Duration maxAge) {
+        if (maxBytes < 0) {
+            throw new IllegalArgumentException("maxBytes must not be negative");
+        }
+        assertNotOpen();
+        this.maxRetainedBytes = maxBytes;
+        this.maxRetainedAge = maxAge;
+    }
+
+    /**
+     * Sets the clock used for timestamping events and checking their age. The default is the system UTC clock.
+     *
+     * @param clock the clock.
+     */
+    public void setClock(@NotNull Clock clock) {
+        assertNotOpen();
+        this.clock = requireNonNull(clock);
+    }
+
+    private void assertNotOpen() {
+        if (open) {
+            throw new IllegalStateException("The log is already open");
+        }
+    }
+
+    private void assertOpen() {
+        if (!open) {
+            throw new IllegalStateException("The log is not open");
+        }
+    }
+
+    /**
+     * Opens the log, recovering and indexing any existing segments. Records that were only partially written when the
+     * process last stopped are discarded.
+     */
+    public synchronized void open() {
+        assertNotOpen();
+        List<Path> files;
+        try {
+            Files.createDirectories(directory);
+            try (var stream = Files.list(directory)) {
+                files = stream.filter(LogSegment::isSegmentFile).sorted().collect(Collectors.toList());
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Could not list segments in " + directory, ex);
+        }
+        for (var file : files) {
+            var segment = LogSegment.open(file, serializer,
+                    (record, position) -> index.add(record.getAggregateKey(), record.getOffset(), position));
+            segments.put(segment.getBaseOffset(), segment);
+        }
+        activeSegment = segments.isEmpty()
+                ? createSegment(0)
+                : segments.lastEntry().getValue();
+        open = true;
+        enforceRetention();
+        startScheduler();
+    }
+
+    private void startScheduler() {
+        var maxDelay = syncPolicy.getMaxDelay();
+        if (maxDelay.isEmpty() && maxRetainedAge == null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, "mapped-event-log-" + directory.getFileName());
+            thread.setDaemon(true);
+            return thread;
+        });
+        maxDelay.ifPresent(delay -> scheduler.scheduleWithFixedDelay(this::sync, delay.toNanos(), delay.toNanos(),
+                TimeUnit.NANOSECONDS));
+        if (maxRetainedAge != null) {
+            scheduler.scheduleWithFixedDelay(this::enforceRetention, RETENTION_CHECK_INTERVAL.toMillis(),
+                    RETENTION_CHECK_INTERVAL.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private @NotNull LogSegment createSegment(long baseOffset) {
+        var segment = LogSegment.create(directory, baseOffset, segmentSize, clock.millis());
+        segments.put(baseOffset, segment);
+        return segment;
+    }
+
+    /**
+     * Returns the key the events of the given aggregate are indexed and stored under. The key consists of the name of
+     * the ID class and the string representation of the ID, so IDs must have a unique string representation, like
+     * {@link net.pkhapps.hexagonal.domain.base.support.SimpleValueObject}s do.
+     *
+     * @param aggregateId the ID of the aggregate.
+     * @return the key.
+     */
+    public static @NotNull String keyOf(@NotNull DomainObjectId aggregateId) {
+        return aggregateId.getClass().getName() + ":" + aggregateId;
+    }
+
+    /**
+     * Appends an event to the log.
+     *
+     * @param aggregateId the ID of the aggregate the event belongs to.
+     * @param event       the event.
+     * @return the offset of the event.
+     */
+    public long append(@NotNull DomainObjectId aggregateId, @NotNull DomainEvent event) {
+        return appendAll(aggregateId, List.of(event));
+    }
+
+    /**
+     * Appends events to the log. The events get consecutive offsets, but are not appended atomically: after a crash,
+     * only some of them may have been retained.
+     *
+     * @param aggregateId the ID of the aggregate the events belong to.
+     * @param events      the events.
+     * @return the offset of the last event, or -1 if the list was empty.
+     */
+    public long appendAll(@NotNull DomainObjectId aggregateId, @NotNull List<? extends DomainEvent> events) {
+        var key = keyOf(aggregateId);
+        var keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        checkFieldLength(keyBytes, "Aggregate key");
+        var records = new ArrayList<byte[][]>(events.size());
+        for (var event : events) {
+            var type = event.getClass().getName().getBytes(StandardCharsets.UTF_8);
+            checkFieldLength(type, "Event type");
+            var payload = serializer.serialize(event);
+            if (LogSegment.recordSize(keyBytes.length, type.length, payload.length) + 4 > segmentSize) {
+                throw new IllegalArgumentException("Event " + event + " does not fit into a segment");
+            }
+            records.add(new byte[][]{type, payload});
+        }
+        synchronized (this) {
+            assertOpen();
+            var offset = -1L;
+            for (var record : records) {
+                var type = record[0];
+                var payload = record[1];
+                if (!activeSegment.hasRoomFor(LogSegment.recordSize(keyBytes.length, type.length, payload.length))) {
+                    roll();
+                }
+                offset = activeSegment.getNextOffset();
+                index.add(key, offset, activeSegment.append(clock.millis(), keyBytes, type, payload));
+            }
+            unsyncedEvents += records.size();
+            var maxUnsyncedEvents = syncPolicy.getMaxUnsyncedEvents();
+            if (maxUnsyncedEvents > 0 && unsyncedEvents >= maxUnsyncedEvents) {
+                activeSegment.force();
+                unsyncedEvents = 0;
+            }
+            return offset;
+        }
+    }
+
+    private static void checkFieldLength(byte[] field, String name) {
+        if (field.length > 0xffff) {
+            throw new IllegalArgumentException(name + " is longer than 65535 bytes");
+        }
+    }
+
+    private void roll() {
+        activeSegment.force();
+        unsyncedEvents = 0;
+        activeSegment = createSegment(activeSegment.getNextOffset());
+        enforceRetention();
+    }
+
+    /**
+     * Forces all appended events to disk, regardless of the sync policy.
+     */
+    public synchronized void sync() {
+        if (open && unsyncedEvents > 0) {
+            activeSegment.force();
+            unsyncedEvents = 0;
+        }
+    }
+
+    /**
+     * Deletes the oldest segments until the retention limits are met. This is done automatically when a segment is
+     * rolled over, and once a minute if there is an age limit.
+     */
+    public synchronized void enforceRetention() {
+        if (!open) {
+            return;
+        }
+        var totalBytes = segments.values().stream().mapToLong(LogSegment::getCapacity).sum();
+        var now = clock.millis();
+        var deleted = false;
+        for (var segment : segments.values()) {
+            if (segment == activeSegment) {
+                break;
+            }
+            var tooLarge = maxRetainedBytes > 0 && totalBytes > maxRetainedBytes;
+            var tooOld = maxRetainedAge != null && now - segment.getLastTimestamp() > maxRetainedAge.toMillis();
+            if (!tooLarge && !tooOld) {
+                break;
+            }
+            segments.remove(segment.getBaseOffset());
+            segment.delete();
+            totalBytes -= segment.getCapacity();
+            deleted = true;
+        }
+        if (deleted) {
+            index.removeBefore(getFirstOffset());
+        }
+    }
+
+    /**
+     * Reads the retained events of the given aggregate, in order.
+     *
+     * @param aggregateId the ID of the aggregate.
+     * @return a list of events (empty if there are none).
+     */
+    public @NotNull List<DomainEvent> readEvents(@NotNull DomainObjectId aggregateId) {
+        assertOpen();
+        var entries = index.get(keyOf(aggregateId));
+        var events = new ArrayList<DomainEvent>(entries.length / 2);
+        for (var i = 0; i < entries.length; i += 2) {
+            var segment = segments.floorEntry(entries[i]);
+            if (segment != null) {
+                events.add(segment.getValue().read((int) entries[i + 1], serializer).getEvent());
+            }
+        }
+        return events;
+    }
+
+    /**
+     * Passes the retained records with an offset of at least {@code fromOffset} to the given consumer, in order. The
+     * records are views of the mapped segments and should not be kept after the consumer returns. Records appended
+     * while the replay is running may or may not be included.
+     *
+     * @param fromOffset the offset to start from.
+     * @param consumer   the consumer of the records.
+     * @return the offset to continue a later replay from.
+     */
+    public long replay(long fromOffset, @NotNull Consumer<LogRecord> consumer) {
+        requireNonNull(consumer);
+        assertOpen();
+        var start = segments.floorKey(fromOffset);
+        var next = Math.max(fromOffset, getFirstOffset());
+        for (var segment : segments.tailMap(start == null ? Long.MIN_VALUE : start).values()) {
+            next = Math.max(next, segment.forEach(fromOffset, serializer, (record, position) -> consumer.accept(record)));
+        }
+        return next;
+    }
+
+    /**
+     * Returns the offset of the oldest retained event (or of the next event if the log is empty).
+     */
+    public long getFirstOffset() {
+        assertOpen();
+        return segments.firstKey();
+    }
+
+    /**
+     * Returns the offset the next appended event will get.
+     */
+    public long getNextOffset() {
+        assertOpen();
+        return segments.lastEntry().getValue().getNextOffset();
+    }
+
+    /**
+     * Returns the number of retained segments.
+     */
+    public int getSegmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * Returns the number of bytes the retained segments take up on disk.
+     */
+    public long getSizeInBytes() {
+        return segments.values().stream().mapToLong(LogSegment::getCapacity).sum();
+    }
+
+    /**
+     * Returns the number of aggregates that have retained events.
+     */
+    public int getAggregateCount() {
+        return index.size();
+    }
+
+    /**
+     * Syncs and closes the log. The segments are unmapped once they are garbage collected.
+     */
+    @Override
+    public synchronized void close() {
+        if (!open) {
+            return;
+        }
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+        activeSegment.force();
+        open = false;
+        activeSegment = null;
+        segments.clear();
+        index.clear();
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.domain.base.eventsourcing.log;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory index of the offsets and segment positions of the records of each aggregate. The entries of an aggregate
+ * are stored as pairs in a single {@code long} array to keep the per-event overhead at 16 bytes. Entries are only
+ * added and removed while holding the lock of the owning {@link MappedEventLog}.
+ */
+final class OffsetIndex {
+
+    private final ConcurrentHashMap<String, Entries> entries = new ConcurrentHashMap<>();
+
+    /**
+     * Adds an entry for the given aggregate. Entries must be added in offset order.
+     */
+    void add(@NotNull String aggregateKey, long offset, int position) {
+        entries.computeIfAbsent(aggregateKey, key -> new Entries()).add(offset, position);
+    }
+
+    /**
+     * Returns the entries of the given aggregate as {@code [offset0, position0, offset1, position1, ...]}.
+     */
+    @NotNull long[] get(@NotNull String aggregateKey) {
+        var aggregateEntries = entries.get(aggregateKey);
+        return aggregateEntries == null ? new long[0] : aggregateEntries.toArray();
+    }
+
+    /**
+     * Removes all entries with an offset less than the given offset.
+     */
+    void removeBefore(long offset) {
+        entries.values().removeIf(aggregateEntries -> aggregateEntries.removeBefore(offset));
+    }
+
+    /**
+     * Removes all entries.
+     */
+    void clear() {
+        entries.clear();
+    }
+
+    /**
+     * Returns the number of indexed aggregates.
+     */
+    int size() {
+        return entries.size();
+    }
+
+    private static final class Entries {
+
+        private long[] data = new long[4];
+        private int length;
+
+        synchronized void add(long offset, int position) {
+            if (length == data.length) {
+                data = Arrays.copyOf(data, data.length * 2);
+            }
+            data[length++] = offset;
+            data[length++] = position;
+        }
+
+        synchronized @NotNull long[] toArray() {
+            return Arrays.copyOf(data, length);
+        }
+
+        /**
+         * Returns whether all entries were removed.
+         */
+        synchronized boolean removeBefore(long offset) {
+            var start = 0;
+            while (start < length && data[start] < offset) {
+                start += 2;
+            }
+            if (start > 0) {
+                length -= start;
+                System.arraycopy(data, start, data, 0, length);
+            }
+            return length == 0;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.domain.base.eventsourcing.log;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.Duration;
+import java.util.Optional;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Policy that decides when a {@link MappedEventLog} forces appended events to disk. Events that have not been synced
+ * survive a crash of the JVM (they are in the page cache), but not a crash of the operating system.
+ */
+public final class SyncPolicy {
+
+    private final int maxUnsyncedEvents;
+    private final Duration maxDelay;
+
+    private SyncPolicy(int maxUnsyncedEvents, @Nullable Duration maxDelay) {
+        this.maxUnsyncedEvents = maxUnsyncedEvents;
+        this.maxDelay = maxDelay;
+    }
+
+    /**
+     * Returns a policy that syncs before every append call returns. A call to
+     * {@link MappedEventLog#appendAll(net.pkhapps.hexagonal.domain.base.DomainObjectId, java.util.List)} is synced
+     * once, after all of its events have been written.
+     */
+    public static @NotNull SyncPolicy everyAppend() {
+        return new SyncPolicy(1, null);
+    }
+
+    /**
+     * Returns a policy that syncs when the given number of events have been appended since the last sync, or when the
+     * given delay has passed since the last sync, whichever comes first.
+     *
+     * @param maxUnsyncedEvents the maximum number of unsynced events.
+     * @param maxDelay          the maximum time an event stays unsynced.
+     * @return the policy.
+     */
+    public static @NotNull SyncPolicy batched(int maxUnsyncedEvents, @NotNull Duration maxDelay) {
+        if (maxUnsyncedEvents < 1) {
+            throw new IllegalArgumentException("maxUnsyncedEvents must be at least 1");
+        }
+        if (maxDelay.isNegative() || maxDelay.isZero()) {
+            throw new IllegalArgumentException("maxDelay must be positive");
+        }
+        return new SyncPolicy(maxUnsyncedEvents, requireNonNull(maxDelay));
+    }
+
+    /**
+     * Returns a policy that only syncs when a segment is rolled over or the log is closed, leaving the rest to the
+     * operating system.
+     */
+    public static @NotNull SyncPolicy never() {
+        return new SyncPolicy(0, null);
+    }
+
+    /**
+     * Returns the number of unsynced events that triggers a sync, or 0 if the number of events never triggers a sync.
+     */
+    public int getMaxUnsyncedEvents() {
+        return maxUnsyncedEvents;
+    }
+
+    /**
+     * Returns the maximum time an event stays unsynced, if any.
+     */
+    public @NotNull Optional<Duration> getMaxDelay() {
+        return Optional.ofNullable(maxDelay);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s[maxUnsyncedEvents=%d, maxDelay=%s]", getClass().getSimpleName(), maxUnsyncedEvents,
+                maxDelay);
+    }
+}
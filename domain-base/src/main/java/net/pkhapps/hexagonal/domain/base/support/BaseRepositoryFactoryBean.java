@@ -0,0 +1,103 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.domain.base.support;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.ApplicationEventPublisherAware;
+import org.springframework.data.jpa.repository.support.JpaRepositoryFactoryBean;
+import org.springframework.data.repository.Repository;
+import org.springframework.data.repository.core.support.RepositoryFactorySupport;
+import org.springframework.data.repository.util.TxUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.persistence.EntityManager;
+
+/**
+ * Repository factory bean that uses {@link BaseRepositoryImpl} as the repository base class, passes the
+ * application event publisher on to the repositories and builds their existence filters. The filters are built in a
+ * transaction of the transaction manager of the repositories (by default the {@code transactionManager} bean); if there
+ * is no such transaction manager, the filters are not built and all lookups go to the database. To use it, configure
+ * it as the repository factory bean class of your Spring Data JPA repositories:
+ * <pre>
+ * &#64;EnableJpaRepositories(repositoryFactoryBeanClass = BaseRepositoryFactoryBean.class)
+ * </pre>
+ *
+ * @param <T>  the repository type.
+ * @param <S>  the domain type.
+ * @param <ID> the ID type.
+ */
+public class BaseRepositoryFactoryBean<T extends Repository<S, ID>, S, ID> extends JpaRepositoryFactoryBean<T, S, ID> {
+
+    private ApplicationEventPublisher eventPublisher;
+    private BeanFactory beanFactory;
+    private String transactionManagerName = TxUtils.DEFAULT_TRANSACTION_MANAGER;
+
+    /**
+     * Creates a new {@code BaseRepositoryFactoryBean}. This constructor is invoked by Spring Data.
+     *
+     * @param repositoryInterface the repository interface.
+     */
+    public BaseRepositoryFactoryBean(@NotNull Class<? extends T> repositoryInterface) {
+        super(repositoryInterface);
+        setRepositoryBaseClass(BaseRepositoryImpl.class);
+    }
+
+    @Override
+    public void setApplicationEventPublisher(@NotNull ApplicationEventPublisher publisher) {
+        super.setApplicationEventPublisher(publisher);
+        this.eventPublisher = publisher;
+    }
+
+    @Override
+    public void setBeanFactory(@NotNull BeanFactory beanFactory) {
+        super.setBeanFactory(beanFactory);
+        this.beanFactory = beanFactory;
+    }
+
+    @Override
+    public void setTransactionManager(@Nullable String transactionManager) {
+        super.setTransactionManager(transactionManager);
+        this.transactionManagerName = transactionManager == null ? TxUtils.DEFAULT_TRANSACTION_MANAGER
+                : transactionManager;
+    }
+
+    @Override
+    protected @NotNull RepositoryFactorySupport createRepositoryFactory(@NotNull EntityManager entityManager) {
+        var factory = super.createRepositoryFactory(entityManager);
+        factory.addRepositoryProxyPostProcessor((proxyFactory, repositoryInformation) -> {
+            Object target;
+            try {
+                target = proxyFactory.getTargetSource().getTarget();
+            } catch (Exception ex) {
+                throw new IllegalStateException("Could not access repository target", ex);
+            }
+            if (target instanceof ApplicationEventPublisherAware && eventPublisher != null) {
+                ((ApplicationEventPublisherAware) target).setApplicationEventPublisher(eventPublisher);
+            }
+            if (target instanceof BaseRepositoryImpl && beanFactory != null
+                    && beanFactory.containsBean(transactionManagerName)) {
+                ((BaseRepositoryImpl<?, ?>) target).buildExistenceFilter(
+                        beanFactory.getBean(transactionManagerName, PlatformTransactionManager.class));
+            }
+        });
+        return factory;
+    }
+}
@@ -0,0 +1,599 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.domain.base.support;
+
+import net.pkhapps.hexagonal.domain.base.BaseAggregateRoot;
+import net.pkhapps.hexagonal.domain.base.BaseRepository;
+import net.pkhapps.hexagonal.domain.base.ExtendedRepository;
+import net.pkhapps.hexagonal.domain.base.BulkAssignment;
+import net.pkhapps.hexagonal.domain.base.DomainEvent;
+import net.pkhapps.hexagonal.domain.base.FetchPlan;
+import net.pkhapps.hexagonal.domain.base.annotation.ExistenceFiltering;
+import net.pkhapps.hexagonal.domain.base.annotation.QueryResultCaching;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.ApplicationEventPublisherAware;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import org.springframework.data.jpa.repository.support.JpaEntityInformation;
+import org.springframework.data.jpa.repository.support.SimpleJpaRepository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.NoTransactionException;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.interceptor.TransactionAspectSupport;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
+import java.io.Serializable;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.IntFunction;
+import java.util.stream.Collectors;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Base class for implementations of {@link BaseRepository} and {@link ExtendedRepository}. To use it, configure it as
+ * the repository base class of your Spring Data JPA repositories:
+ * <pre>
+ * &#64;EnableJpaRepositories(repositoryBaseClass = BaseRepositoryImpl.class)
+ * </pre>
+ * In addition to the behavior of {@link SimpleJpaRepository}, this class compiles the queries of
+ * {@linkplain BoundSpecification bound specifications} only once per {@linkplain SpecificationShape shape} and sort
+ * order, and reuses them with new parameter values. Bound specifications wrapped in
+ * {@linkplain DelegatingSpecification delegating specifications} are unwrapped first.
+ * <p>
+ * If the aggregate root is annotated with {@link QueryResultCaching}, the results of {@code findAll} and
+ * {@code count} queries made with bound specifications are also cached. Only the IDs of the matching aggregates are
+ * cached; on a cache hit, the aggregates themselves are loaded by ID so that no entity instances are shared between
+ * persistence contexts. The cache is invalidated by all {@code save}, {@code delete} and {@code bulk} methods, and by
+ * {@link QueryResultCacheInvalidator} when the persistence provider writes aggregates found dirty at flush time. The
+ * cache is local to the JVM; changes made by other application instances are only seen once the cached results expire.
+ * <p>
+ * If the aggregate root is annotated with {@link ExistenceFiltering}, {@link #existsById(Serializable)} consults a
+ * Bloom filter of all existing IDs, and skips the database query for IDs that the filter rules out if
+ * {@linkplain ExistenceFiltering#exclusiveInserts() all inserts go through the repository}. The filter is built by
+ * {@link BaseRepositoryFactoryBean} when the repository is created; until then, all lookups go to the database.
+ * <p>
+ * {@link #findAllById(Iterable)} splits large ID collections into chunks of at most {@linkplain #getMaxInListSize()
+ * the maximum IN-list size} ({@value #DEFAULT_MAX_IN_LIST_SIZE} IDs by default) and pads every chunk to a power-of-two
+ * size that does not exceed the maximum. This keeps the number of distinct statements low and the statements within
+ * the IN-list limits of all common databases (Oracle allows 1000 elements). If Hibernate's
+ * {@code hibernate.query.in_clause_parameter_padding} is also enabled, it finds the lists already padded. For even
+ * larger collections, see {@link BulkLoader}.
+ * <p>
+ * {@link #findAll(Specification, Sort, FetchPlan)} loads the associations of a {@link FetchPlan} with a fixed number
+ * of statements: one main query, and one secondary query per association that cannot be joined into the main query
+ * (for every chunk of {@linkplain #getMaxInListSize() maximum IN-list size} aggregates in the result).
+ * <p>
+ * {@link #findSlice(Specification, Pageable)} and {@link #findPage(Specification, Pageable, Duration)} page through
+ * large results without counting all matching rows for every page.
+ * <p>
+ * Inside read-only transactions started outside of the repository, all aggregates are loaded as read-only (see
+ * {@link #READ_ONLY_HINT}). Read-only aggregates are not dirty checked, so changes made to them are never written to
+ * the database, not even if they are saved later in the same persistence context. The read-only transactions that
+ * the repository methods start on their own when called without a transaction do not count: aggregates loaded by them
+ * can still be modified and saved, even if the persistence context outlives the transaction.
+ * <p>
+ * Publishing the summary events of {@linkplain #bulkUpdate(Specification, BulkAssignment, IntFunction) bulk
+ * operations} requires an {@link ApplicationEventPublisher}, which is provided when the repositories are created by
+ * {@link BaseRepositoryFactoryBean}.
+ *
+ * @param <Aggregate> the aggregate root type.
+ * @param <ID>        the ID type.
+ */
+public class BaseRepositoryImpl<Aggregate extends BaseAggregateRoot<ID>, ID extends Serializable>
+        extends SimpleJpaRepository<Aggregate, ID>
+        implements ExtendedRepository<Aggregate, ID>, ExistenceFilteredRepository, ApplicationEventPublisherAware {
+
+    /**
+     * The query hint that makes Hibernate load entities as read-only, without keeping snapshots for dirty checking.
+     */
+    public static final String READ_ONLY_HINT = "org.hibernate.readOnly";
+
+    /**
+     * The default maximum number of values in an IN-list.
+     */
+    public static final int DEFAULT_MAX_IN_LIST_SIZE = 512;
+
+    private static final String VERSION_ATTRIBUTE = "version";
+    private static final Object COUNT_ALL_KEY = new Object();
+    private static final String FETCH_SIZE_HINT = "org.hibernate.fetchSize";
+    private static final int ID_FETCH_SIZE = 10_000;
+
+    private final EntityManager entityManager;
+    private final JpaEntityInformation<Aggregate, ?> entityInformation;
+    private final CompiledShapeCache compiledShapes = new CompiledShapeCache();
+    private final QueryResultCache resultCache;
+    private final CountCache countCache = new CountCache();
+    private final ExistenceFilter existenceFilter;
+    private ApplicationEventPublisher eventPublisher;
+
+    /**
+     * Creates a new {@code BaseRepositoryImpl}. This constructor is invoked by Spring Data.
+     *
+     * @param entityInformation the entity information of the aggregate root.
+     * @param entityManager     the entity manager.
+     */
+    public BaseRepositoryImpl(@NotNull JpaEntityInformation<Aggregate, ?> entityInformation,
+                              @NotNull EntityManager entityManager) {
+        super(entityInformation, entityManager);
+        this.entityManager = requireNonNull(entityManager);
+        this.entityInformation = entityInformation;
+        var caching = entityInformation.getJavaType().getAnnotation(QueryResultCaching.class);
+        this.resultCache = caching == null ? null
+                : new QueryResultCache(caching.maxEntries(), caching.timeToLiveSeconds());
+        if (resultCache != null) {
+            QueryResultCacheInvalidator.register(entityInformation.getJavaType(), resultCache);
+        }
+        var filtering = entityInformation.getJavaType().getAnnotation(ExistenceFiltering.class);
+        if (filtering != null && entityInformation.hasCompositeId()) {
+            throw new IllegalStateException("Existence filtering is not supported for composite IDs");
+        }
+        this.existenceFilter = filtering == null ? null
+                : new ExistenceFilter(filtering.expectedInsertions(), filtering.falsePositiveProbability(),
+                filtering.exclusiveInserts());
+    }
+
+    @Override
+    public void setApplicationEventPublisher(@NotNull ApplicationEventPublisher applicationEventPublisher) {
+        this.eventPublisher = requireNonNull(applicationEventPublisher);
+    }
+
+    /**
+     * Returns the entity manager used by this repository.
+     *
+     * @return the entity manager.
+     */
+    protected @NotNull EntityManager getEntityManager() {
+        return entityManager;
+    }
+
+    @Override
+    public @NotNull List<Aggregate> findAll(@Nullable Specification<Aggregate> spec) {
+        return findAll(spec, Sort.unsorted());
+    }
+
+    @Override
+    public @NotNull List<Aggregate> findAll(@Nullable Specification<Aggregate> spec, @NotNull Sort sort) {
+        if (!isResultCacheable(spec)) {
+            return super.findAll(spec, sort);
+        }
+        var result = new ArrayList<Aggregate>();
+        var ids = resultCache.get(new ResultKey(DelegatingSpecification.unwrap(spec), sort, false), () -> {
+            result.addAll(super.findAll(spec, sort));
+            return result.stream().map(entityInformation::getId).collect(Collectors.toUnmodifiableList());
+        });
+        return result.isEmpty() && !ids.isEmpty() ? loadInOrder(ids) : result;
+    }
+
+    @Override
+    public @NotNull List<Aggregate> findAll(@Nullable Specification<Aggregate> spec, @NotNull Sort sort,
+                                            @NotNull FetchPlan fetchPlan) {
+        var loader = new FetchPlanLoader<>(entityManager, getDomainClass(), fetchPlan);
+        var result = loader.applyLoadGraph(getQuery(spec, sort)).getResultList();
+        loader.loadSecondary(result, getMaxInListSize(), this::applyReadOnly);
+        return result;
+    }
+
+    @Override
+    public @NotNull Slice<Aggregate> findSlice(@Nullable Specification<Aggregate> spec, @NotNull Pageable pageable) {
+        if (pageable.isUnpaged()) {
+            return new SliceImpl<>(findAll(spec, pageable.getSort()));
+        }
+        var content = findRangeWithLookahead(spec, pageable);
+        var hasNext = content.size() > pageable.getPageSize();
+        return new SliceImpl<>(hasNext ? content.subList(0, pageable.getPageSize()) : content, pageable, hasNext);
+    }
+
+    @Override
+    public @NotNull Page<Aggregate> findPage(@Nullable Specification<Aggregate> spec, @NotNull Pageable pageable,
+                                             @NotNull Duration maxCountAge) {
+        requireNonNull(maxCountAge, "maxCountAge must not be null");
+        if (pageable.isUnpaged()) {
+            return new PageImpl<>(findAll(spec, pageable.getSort()));
+        }
+        var content = findRangeWithLookahead(spec, pageable);
+        var offset = pageable.getOffset();
+        if (content.size() > pageable.getPageSize()) {
+            // There is at least one more row after this page
+            var total = Math.max(cachedCount(spec, maxCountAge), offset + content.size());
+            return new PageImpl<>(content.subList(0, pageable.getPageSize()), pageable, total);
+        } else if (!content.isEmpty() || offset == 0) {
+            return new PageImpl<>(content, pageable, offset + content.size());
+        } else {
+            // Beyond the last page, so there can be at most offset rows
+            return new PageImpl<>(content, pageable, Math.min(cachedCount(spec, maxCountAge), offset));
+        }
+    }
+
+    private @NotNull List<Aggregate> findRangeWithLookahead(@Nullable Specification<Aggregate> spec,
+                                                            @NotNull Pageable pageable) {
+        var query = getQuery(spec, pageable.getSort());
+        query.setFirstResult(Math.toIntExact(pageable.getOffset()));
+        query.setMaxResults(pageable.getPageSize() + 1);
+        return query.getResultList();
+    }
+
+    private long cachedCount(@Nullable Specification<Aggregate> spec, @NotNull Duration maxCountAge) {
+        if (spec == null) {
+            return countCache.get(COUNT_ALL_KEY, maxCountAge, this::count);
+        }
+        var unwrapped = DelegatingSpecification.unwrap(spec);
+        if (unwrapped instanceof BoundSpecification) {
+            return countCache.get(unwrapped, maxCountAge, () -> count(spec));
+        }
+        return count(spec);
+    }
+
+    @Override
+    public long count(@Nullable Specification<Aggregate> spec) {
+        if (!isResultCacheable(spec)) {
+            return super.count(spec);
+        }
+        return resultCache.get(new ResultKey(DelegatingSpecification.unwrap(spec), Sort.unsorted(), true),
+                () -> super.count(spec));
+    }
+
+    private boolean isResultCacheable(@Nullable Specification<Aggregate> spec) {
+        if (resultCache == null || !(DelegatingSpecification.unwrap(spec) instanceof BoundSpecification)) {
+            return false;
+        }
+        var metadata = getRepositoryMethodMetadata();
+        return metadata == null || metadata.getLockModeType() == null;
+    }
+
+    private @NotNull List<Aggregate> loadInOrder(@NotNull List<?> ids) {
+        @SuppressWarnings("unchecked")
+        var aggregates = findAllById((List<ID>) ids);
+        var byId = new HashMap<Object, Aggregate>(aggregates.size() * 2);
+        aggregates.forEach(aggregate -> byId.put(entityInformation.getId(aggregate), aggregate));
+        return ids.stream().map(byId::get).filter(Objects::nonNull).collect(Collectors.toList());
+    }
+
+    @Override
+    public @NotNull List<Aggregate> findAllById(@NotNull Iterable<ID> ids) {
+        requireNonNull(ids, "ids must not be null");
+        if (entityInformation.hasCompositeId()) {
+            // Composite IDs are loaded one by one, so padding would produce duplicates
+            return super.findAllById(ids);
+        }
+        var distinct = new LinkedHashSet<ID>();
+        ids.forEach(distinct::add);
+        if (distinct.isEmpty()) {
+            return new ArrayList<>();
+        }
+        var idList = new ArrayList<>(distinct);
+        var maxInListSize = getMaxInListSize();
+        if (idList.size() <= maxInListSize) {
+            return super.findAllById(InListPadding.pad(idList, maxInListSize));
+        }
+        var result = new ArrayList<Aggregate>(idList.size());
+        for (int from = 0; from < idList.size(); from += maxInListSize) {
+            var chunk = idList.subList(from, Math.min(from + maxInListSize, idList.size()));
+            result.addAll(super.findAllById(InListPadding.pad(chunk, maxInListSize)));
+        }
+        return result;
+    }
+
+    /**
+     * Returns the maximum number of values to pass in a single IN-list, including padding. The default is
+     * {@value #DEFAULT_MAX_IN_LIST_SIZE}; override to match the limits of the database.
+     *
+     * @return the maximum IN-list size, at least 1.
+     */
+    protected int getMaxInListSize() {
+        return DEFAULT_MAX_IN_LIST_SIZE;
+    }
+
+    @Override
+    public @NotNull Optional<Aggregate> findById(@NotNull ID id) {
+        if (!isReadOnlyContext()) {
+            return super.findById(id);
+        }
+        return findByIdReadOnly(id);
+    }
+
+    @Override
+    public @NotNull Optional<Aggregate> findByIdReadOnly(@NotNull ID id) {
+        requireNonNull(id, "id must not be null");
+        var hints = new HashMap<String, Object>();
+        getQueryHints().withFetchGraphs(entityManager).forEach(hints::put);
+        hints.put(READ_ONLY_HINT, true);
+        var metadata = getRepositoryMethodMetadata();
+        var lockModeType = metadata == null ? null : metadata.getLockModeType();
+        return Optional.ofNullable(lockModeType == null
+                ? entityManager.find(getDomainClass(), id, hints)
+                : entityManager.find(getDomainClass(), id, lockModeType, hints));
+    }
+
+    @Override
+    public @NotNull List<Aggregate> findAllReadOnly(@Nullable Specification<Aggregate> spec, @NotNull Sort sort) {
+        return getQuery(spec, sort).setHint(READ_ONLY_HINT, true).getResultList();
+    }
+
+    /**
+     * Returns whether aggregates should be loaded as read-only. By default, this is the case inside read-only
+     * transactions that were started outside of the repository.
+     *
+     * @return true to load aggregates as read-only, false otherwise.
+     */
+    protected boolean isReadOnlyContext() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return false;
+        }
+        try {
+            // SimpleJpaRepository methods are read-only transactional, so a new transaction was started by the
+            // repository itself and says nothing about the intentions of the caller
+            return !TransactionAspectSupport.currentTransactionStatus().isNewTransaction();
+        } catch (NoTransactionException ex) {
+            // Invoked without the transaction interceptor of the repository
+            return true;
+        }
+    }
+
+    private <R> @NotNull TypedQuery<R> applyReadOnly(@NotNull TypedQuery<R> query) {
+        return isReadOnlyContext() ? query.setHint(READ_ONLY_HINT, true) : query;
+    }
+
+    @Override
+    public boolean existsById(@NotNull ID id) {
+        requireNonNull(id, "id must not be null");
+        if (existenceFilter == null || !existenceFilter.isReady()) {
+            return super.existsById(id);
+        }
+        return existenceFilter.exists(id, () -> super.existsById(id));
+    }
+
+    @Override
+    public @NotNull Optional<ExistenceFilterStatistics> getExistenceFilterStatistics() {
+        return Optional.ofNullable(existenceFilter).map(ExistenceFilter::getStatistics);
+    }
+
+    /**
+     * Builds the existence filter by streaming the IDs of all aggregates from the database, in a read-only transaction
+     * of the given transaction manager. Aggregates saved while the filter is being built are also added to it, so the
+     * filter is complete once this method returns. Does nothing if the aggregate root is not annotated with
+     * {@link ExistenceFiltering}.
+     *
+     * @param transactionManager the transaction manager of the repository, which may be a JTA transaction manager.
+     */
+    void buildExistenceFilter(@NotNull PlatformTransactionManager transactionManager) {
+        if (existenceFilter == null || existenceFilter.isReady()) {
+            return;
+        }
+        var jpql = String.format("select e.%s from %s e", entityInformation.getIdAttribute().getName(),
+                entityInformation.getEntityName());
+        // Some JDBC drivers (like PostgreSQL) only honor the fetch size inside transactions
+        var transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setReadOnly(true);
+        transactionTemplate.executeWithoutResult(status -> {
+            try (var ids = entityManager.createQuery(jpql).setHint(FETCH_SIZE_HINT, ID_FETCH_SIZE)
+                    .getResultStream()) {
+                ids.forEach(existenceFilter::put);
+            }
+        });
+        existenceFilter.markReady();
+    }
+
+    @Override
+    public <S extends Aggregate> @NotNull S save(@NotNull S entity) {
+        invalidateResultCache();
+        var saved = super.save(entity);
+        if (existenceFilter != null) {
+            // Added before commit; if the transaction rolls back, this only causes a false positive
+            var id = entityInformation.getId(saved);
+            if (id != null) {
+                existenceFilter.put(id);
+            }
+        }
+        return saved;
+    }
+
+    @Override
+    public void delete(@NotNull Aggregate entity) {
+        invalidateResultCache();
+        super.delete(entity);
+    }
+
+    @Override
+    public void deleteInBatch(@NotNull Iterable<Aggregate> entities) {
+        invalidateResultCache();
+        super.deleteInBatch(entities);
+    }
+
+    @Override
+    public void deleteAllInBatch() {
+        invalidateResultCache();
+        super.deleteAllInBatch();
+    }
+
+    @Override
+    @Transactional
+    public int bulkUpdate(@Nullable Specification<Aggregate> specification,
+                          @NotNull BulkAssignment<Aggregate> assignment,
+                          @Nullable IntFunction<? extends DomainEvent> summaryEvent) {
+        requireNonNull(assignment);
+        var builder = entityManager.getCriteriaBuilder();
+        var update = builder.createCriteriaUpdate(getDomainClass());
+        var root = update.from(getDomainClass());
+        assignment.assign(root, update, builder);
+        var version = root.<Long>get(VERSION_ATTRIBUTE);
+        update.set(version, builder.sum(version, 1L));
+        if (specification != null) {
+            var predicate = specification.toPredicate(root, null, builder);
+            if (predicate != null) {
+                update.where(predicate);
+            }
+        }
+        invalidateResultCache();
+        var count = entityManager.createQuery(update).executeUpdate();
+        publishSummaryEvent(summaryEvent, count);
+        return count;
+    }
+
+    @Override
+    @Transactional
+    public int bulkDelete(@Nullable Specification<Aggregate> specification,
+                          @Nullable IntFunction<? extends DomainEvent> summaryEvent) {
+        var builder = entityManager.getCriteriaBuilder();
+        var delete = builder.createCriteriaDelete(getDomainClass());
+        var root = delete.from(getDomainClass());
+        if (specification != null) {
+            var predicate = specification.toPredicate(root, null, builder);
+            if (predicate != null) {
+                delete.where(predicate);
+            }
+        }
+        invalidateResultCache();
+        var count = entityManager.createQuery(delete).executeUpdate();
+        publishSummaryEvent(summaryEvent, count);
+        return count;
+    }
+
+    private void publishSummaryEvent(@Nullable IntFunction<? extends DomainEvent> summaryEvent, int count) {
+        if (summaryEvent == null) {
+            return;
+        }
+        if (eventPublisher == null) {
+            throw new IllegalStateException("No ApplicationEventPublisher available, create the repository with "
+                    + BaseRepositoryFactoryBean.class.getSimpleName() + " to publish summary events");
+        }
+        eventPublisher.publishEvent(summaryEvent.apply(count));
+    }
+
+    /**
+     * Invalidates the query result cache of this repository, if it has one. This is done automatically by the
+     * {@code save} and {@code delete} methods, but subclasses that modify aggregates in other ways must call it
+     * themselves.
+     */
+    protected void invalidateResultCache() {
+        if (resultCache != null) {
+            resultCache.invalidate();
+        }
+    }
+
+    @Override
+    protected <S extends Aggregate> @NotNull TypedQuery<S> getQuery(@Nullable Specification<S> spec,
+                                                                    @NotNull Class<S> domainClass,
+                                                                    @NotNull Sort sort) {
+        var unwrapped = DelegatingSpecification.unwrap(spec);
+        if (unwrapped instanceof BoundSpecification && domainClass.equals(getDomainClass())) {
+            @SuppressWarnings("unchecked")
+            var bound = (BoundSpecification<S>) unwrapped;
+            var compiled = compiledShapes.<S>get(bound.getShape(), sort, entityManager, (builder, parameters) -> {
+                var query = builder.createQuery(domainClass);
+                var root = query.from(domainClass);
+                var predicate = bound.getShape().getDefinition().toPredicate(root, query, builder, parameters);
+                if (predicate != null) {
+                    query.where(predicate);
+                }
+                query.select(root);
+                if (sort.isSorted()) {
+                    query.orderBy(QueryUtils.toOrders(sort, root, builder));
+                }
+                return query;
+            });
+            return applyReadOnly(applyRepositoryMethodMetadata(compiled.createQuery(entityManager, bound)));
+        }
+        return applyReadOnly(super.getQuery(spec, domainClass, sort));
+    }
+
+    @Override
+    protected <S extends Aggregate> @NotNull TypedQuery<Long> getCountQuery(@Nullable Specification<S> spec,
+                                                                          @NotNull Class<S> domainClass) {
+        var unwrapped = DelegatingSpecification.unwrap(spec);
+        if (unwrapped instanceof BoundSpecification && domainClass.equals(getDomainClass())) {
+            @SuppressWarnings("unchecked")
+            var bound = (BoundSpecification<S>) unwrapped;
+            var compiled = compiledShapes.<Long>get(bound.getShape(), null, entityManager, (builder, parameters) -> {
+                var query = builder.createQuery(Long.class);
+                var root = query.from(domainClass);
+                var predicate = bound.getShape().getDefinition().toPredicate(root, query, builder, parameters);
+                if (predicate != null) {
+                    query.where(predicate);
+                }
+                query.select(query.isDistinct() ? builder.countDistinct(root) : builder.count(root));
+                query.orderBy(List.of());
+                return query;
+            });
+            return compiled.createQuery(entityManager, bound);
+        }
+        return super.getCountQuery(spec, domainClass);
+    }
+
+    /**
+     * Applies the lock mode and query hints of the current repository method to the given query, like
+     * {@link SimpleJpaRepository} does for the queries it creates itself.
+     *
+     * @param query the query.
+     * @param <R>   the result type of the query.
+     * @return the query with lock mode and hints applied.
+     */
+    protected <R> @NotNull TypedQuery<R> applyRepositoryMethodMetadata(@NotNull TypedQuery<R> query) {
+        var metadata = getRepositoryMethodMetadata();
+        if (metadata == null) {
+            return query;
+        }
+        var lockModeType = metadata.getLockModeType();
+        var result = lockModeType == null ? query : query.setLockMode(lockModeType);
+        getQueryHints().withFetchGraphs(entityManager).forEach(result::setHint);
+        return result;
+    }
+
+    private static final class ResultKey {
+        private final Object specification;
+        private final Sort sort;
+        private final boolean count;
+
+        private ResultKey(@NotNull Object specification, @NotNull Sort sort, boolean count) {
+            this.specification = specification;
+            this.sort = sort;
+            this.count = count;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            var resultKey = (ResultKey) o;
+            return count == resultKey.count
+                    && specification.equals(resultKey.specification)
+                    && sort.equals(resultKey.sort);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(specification, sort, count);
+        }
+    }
+}
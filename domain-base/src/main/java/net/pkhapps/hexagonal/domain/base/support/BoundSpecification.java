@@ -0,0 +1,131 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.domain.base.support;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.springframework.data.jpa.domain.Specification;
+
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Expression;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A {@link SpecificationShape} with values bound to its parameters. Bound specifications are immutable and two bound
+ * specifications are equal if they have the same shape and the same parameter values, which makes them usable as
+ * cache keys.
+ *
+ * @param <T> the type of the entity.
+ */
+public final class BoundSpecification<T> implements Specification<T> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final SpecificationShape<T> shape;
+    private final Map<String, Object> values;
+
+    BoundSpecification(@NotNull SpecificationShape<T> shape, @NotNull Map<String, ?> values) {
+        this.shape = requireNonNull(shape);
+        // Map.copyOf does not allow null values, which are legal parameter values
+        this.values = Collections.unmodifiableMap(new HashMap<>(values));
+    }
+
+    /**
+     * Returns the shape of this specification.
+     *
+     * @return the shape.
+     */
+    public @NotNull SpecificationShape<T> getShape() {
+        return shape;
+    }
+
+    /**
+     * Returns the values bound to the parameters of the shape.
+     *
+     * @return an unmodifiable map of parameter names and values.
+     */
+    public @NotNull Map<String, Object> getValues() {
+        return values;
+    }
+
+    /**
+     * Returns a copy of this specification with the given parameter bound to the given value.
+     *
+     * @param name  the name of the parameter.
+     * @param value the value of the parameter.
+     * @return a new bound specification.
+     */
+    public @NotNull BoundSpecification<T> with(@NotNull String name, @Nullable Object value) {
+        var newValues = new HashMap<>(values);
+        newValues.put(requireNonNull(name), value);
+        return new BoundSpecification<>(shape, newValues);
+    }
+
+    /**
+     * Returns the value bound to the given parameter.
+     *
+     * @param name the name of the parameter.
+     * @return the value, possibly null.
+     * @throws IllegalArgumentException if no value has been bound to the parameter.
+     */
+    public @Nullable Object getValue(@NotNull String name) {
+        if (!values.containsKey(name)) {
+            throw new IllegalArgumentException("No value bound to parameter " + name);
+        }
+        return values.get(name);
+    }
+
+    @Override
+    public Predicate toPredicate(@NotNull Root<T> root, @NotNull CriteriaQuery<?> query,
+                                 @NotNull CriteriaBuilder criteriaBuilder) {
+        return shape.getDefinition().toPredicate(root, query, criteriaBuilder, new ShapeParameters() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <X> @NotNull Expression<X> get(@NotNull String name, @NotNull Class<X> type) {
+                var value = getValue(name);
+                return value == null ? criteriaBuilder.nullLiteral(type) : (Expression<X>) criteriaBuilder.literal(value);
+            }
+        });
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        var that = (BoundSpecification<?>) o;
+        return shape == that.shape && values.equals(that.values);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(System.identityHashCode(shape), values);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s{shape=%s, values=%s}", getClass().getSimpleName(), shape, values);
+    }
+}
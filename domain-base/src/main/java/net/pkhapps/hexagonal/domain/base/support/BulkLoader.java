@@ -0,0 +1,159 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.domain.base.support;
+
+import net.pkhapps.hexagonal.domain.base.BaseAggregateRoot;
+import net.pkhapps.hexagonal.domain.base.BaseRepository;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.LongFunction;
+import java.util.stream.Collectors;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Loader for large numbers of aggregates by ID. The distinct IDs are split into chunks that are loaded with one
+ * {@link BaseRepository#findAllById(Iterable)} call each. The chunks are not padded here: {@link BaseRepositoryImpl}
+ * pads every IN-list it executes, so that the database only ever sees a handful of distinct statements. For other
+ * repositories, enable Hibernate's {@code hibernate.query.in_clause_parameter_padding}. The chunk size should not
+ * exceed the {@linkplain BaseRepositoryImpl#getMaxInListSize() maximum IN-list size} of the repository, or the
+ * repository splits every chunk again.
+ * <p>
+ * If an executor is given, the chunks are loaded in parallel, each in its own transaction. This is only done when
+ * there is no active transaction, since the aggregates would otherwise end up in different persistence contexts than
+ * the one of the caller. Inside a transaction, the chunks are loaded one after another.
+ *
+ * @param <Aggregate> the aggregate root type.
+ * @param <ID>        the ID type.
+ */
+public class BulkLoader<Aggregate extends BaseAggregateRoot<ID>, ID extends Serializable> {
+
+    /**
+     * The default maximum number of IDs per chunk.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 512;
+
+    private final BaseRepository<Aggregate, ID> repository;
+    private final int chunkSize;
+    private final Executor executor;
+
+    /**
+     * Creates a new {@code BulkLoader} that loads chunks of {@value #DEFAULT_CHUNK_SIZE} IDs one after another.
+     *
+     * @param repository the repository to load the aggregates from.
+     */
+    public BulkLoader(@NotNull BaseRepository<Aggregate, ID> repository) {
+        this(repository, DEFAULT_CHUNK_SIZE, null);
+    }
+
+    /**
+     * Creates a new {@code BulkLoader}.
+     *
+     * @param repository the repository to load the aggregates from.
+     * @param chunkSize  the maximum number of IDs per chunk.
+     * @param executor   the executor to load chunks in parallel on, or {@code null} to always load them one after
+     *                   another.
+     */
+    public BulkLoader(@NotNull BaseRepository<Aggregate, ID> repository, int chunkSize,
+                      @Nullable Executor executor) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("chunkSize must be at least 1");
+        }
+        this.repository = requireNonNull(repository);
+        this.chunkSize = chunkSize;
+        this.executor = executor;
+    }
+
+    /**
+     * Loads the aggregates with the given IDs. Duplicate IDs are loaded only once and missing aggregates are ignored.
+     * The order of the result is unspecified.
+     *
+     * @param ids the IDs of the aggregates to load.
+     * @return a list of loaded aggregates.
+     */
+    public @NotNull List<Aggregate> load(@NotNull Iterable<ID> ids) {
+        var distinct = new LinkedHashSet<ID>();
+        ids.forEach(id -> distinct.add(requireNonNull(id, "ids must not contain null")));
+        var idList = new ArrayList<>(distinct);
+        var chunks = new ArrayList<List<ID>>((idList.size() + chunkSize - 1) / chunkSize);
+        for (int from = 0; from < idList.size(); from += chunkSize) {
+            chunks.add(idList.subList(from, Math.min(from + chunkSize, idList.size())));
+        }
+        return loadChunks(chunks);
+    }
+
+    /**
+     * Loads the aggregates with the given numeric IDs. Duplicate IDs are loaded only once and missing aggregates are
+     * ignored. The order of the result is unspecified. The IDs are only converted into ID objects one chunk at a time.
+     *
+     * @param ids       the IDs of the aggregates to load.
+     * @param idFactory the factory to convert numeric IDs into ID objects.
+     * @return a list of loaded aggregates.
+     */
+    public @NotNull List<Aggregate> load(@NotNull long[] ids, @NotNull LongFunction<ID> idFactory) {
+        requireNonNull(idFactory);
+        var sorted = ids.clone();
+        Arrays.sort(sorted);
+        var distinctCount = 0;
+        for (int i = 0; i < sorted.length; ++i) {
+            if (i == 0 || sorted[i] != sorted[i - 1]) {
+                sorted[distinctCount++] = sorted[i];
+            }
+        }
+        var chunks = new ArrayList<List<ID>>((distinctCount + chunkSize - 1) / chunkSize);
+        for (int from = 0; from < distinctCount; from += chunkSize) {
+            var to = Math.min(from + chunkSize, distinctCount);
+            var chunk = new ArrayList<ID>(to - from);
+            for (int i = from; i < to; ++i) {
+                chunk.add(idFactory.apply(sorted[i]));
+            }
+            chunks.add(chunk);
+        }
+        return loadChunks(chunks);
+    }
+
+    private @NotNull List<Aggregate> loadChunks(@NotNull List<List<ID>> chunks) {
+        var result = new ArrayList<Aggregate>();
+        if (executor == null || chunks.size() < 2 || TransactionSynchronizationManager.isActualTransactionActive()) {
+            chunks.forEach(chunk -> result.addAll(repository.findAllById(chunk)));
+            return result;
+        }
+        var futures = chunks.stream()
+                .map(chunk -> CompletableFuture.supplyAsync(() -> repository.findAllById(chunk), executor))
+                .collect(Collectors.toList());
+        try {
+            futures.forEach(future -> result.addAll(future.join()));
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            throw ex;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.domain.base.support;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.CharBuffer;
+import java.util.Arrays;
+import java.util.UUID;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Utility class for encoding UUIDs as 22-character URL-safe Base64 strings (RFC 4648, without padding), which is 14
+ * characters shorter than the canonical hyphenated form. The encoding and decoding work directly on the two
+ * {@code long} halves of the UUID and can write into and read from caller-supplied buffers without allocating.
+ */
+public final class CompactUUID {
+
+    /**
+     * The length of an encoded UUID.
+     */
+    public static final int LENGTH = 22;
+
+    private static final char[] ALPHABET =
+            "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_".toCharArray();
+    private static final byte[] DECODE = new byte[128];
+
+    static {
+        Arrays.fill(DECODE, (byte) -1);
+        for (int i = 0; i < ALPHABET.length; ++i) {
+            DECODE[ALPHABET[i]] = (byte) i;
+        }
+    }
+
+    private CompactUUID() {
+    }
+
+    /**
+     * Encodes the given UUID.
+     *
+     * @param uuid the UUID to encode.
+     * @return the encoded UUID.
+     */
+    public static @NotNull String format(@NotNull UUID uuid) {
+        var chars = new char[LENGTH];
+        format(uuid, chars, 0);
+        return new String(chars);
+    }
+
+    /**
+     * Encodes the given UUID and appends it to the given builder.
+     *
+     * @param uuid    the UUID to encode.
+     * @param builder the builder to append to.
+     * @return the builder.
+     */
+    public static @NotNull StringBuilder format(@NotNull UUID uuid, @NotNull StringBuilder builder) {
+        requireNonNull(uuid);
+        var msb = uuid.getMostSignificantBits();
+        var lsb = uuid.getLeastSignificantBits();
+        builder.ensureCapacity(builder.length() + LENGTH);
+        for (int shift = 58; shift >= 4; shift -= 6) {
+            builder.append(ALPHABET[(int) (msb >>> shift) & 63]);
+        }
+        builder.append(ALPHABET[(int) ((msb & 0xF) << 2 | lsb >>> 62)]);
+        for (int shift = 56; shift >= 2; shift -= 6) {
+            builder.append(ALPHABET[(int) (lsb >>> shift) & 63]);
+        }
+        return builder.append(ALPHABET[(int) (lsb & 0x3) << 4]);
+    }
+
+    /**
+     * Encodes the given UUID into the given array.
+     *
+     * @param uuid   the UUID to encode.
+     * @param dest   the array to write the {@value #LENGTH} characters to.
+     * @param offset the offset in the array to start writing at.
+     * @return the offset after the last written character.
+     */
+    public static int format(@NotNull UUID uuid, @NotNull char[] dest, int offset) {
+        requireNonNull(uuid);
+        if (offset < 0 || offset > dest.length - LENGTH) {
+            throw new IndexOutOfBoundsException("Not enough room for an encoded UUID at offset " + offset);
+        }
+        var msb = uuid.getMostSignificantBits();
+        var lsb = uuid.getLeastSignificantBits();
+        var i = offset;
+        for (int shift = 58; shift >= 4; shift -= 6) {
+            dest[i++] = ALPHABET[(int) (msb >>> shift) & 63];
+        }
+        dest[i++] = ALPHABET[(int) ((msb & 0xF) << 2 | lsb >>> 62)];
+        for (int shift = 56; shift >= 2; shift -= 6) {
+            dest[i++] = ALPHABET[(int) (lsb >>> shift) & 63];
+        }
+        dest[i++] = ALPHABET[(int) (lsb & 0x3) << 4];
+        return i;
+    }
+
+    /**
+     * Decodes the given encoded UUID.
+     *
+     * @param encoded the encoded UUID.
+     * @return the UUID.
+     * @throws IllegalArgumentException if the string is not a valid encoded UUID.
+     */
+    public static @NotNull UUID parse(@NotNull CharSequence encoded) {
+        if (encoded.length() != LENGTH) {
+            throw new IllegalArgumentException("Encoded UUID must be " + LENGTH + " characters long");
+        }
+        var msb = 0L;
+        for (int i = 0; i < 10; ++i) {
+            msb = msb << 6 | decode(encoded.charAt(i), encoded);
+        }
+        var middle = decode(encoded.charAt(10), encoded);
+        msb = msb << 4 | middle >>> 2;
+        var lsb = (long) middle & 0x3;
+        for (int i = 11; i < 21; ++i) {
+            lsb = lsb << 6 | decode(encoded.charAt(i), encoded);
+        }
+        var last = decode(encoded.charAt(21), encoded);
+        if ((last & 0xF) != 0) {
+            throw new IllegalArgumentException("Invalid encoded UUID: " + encoded);
+        }
+        return new UUID(msb, lsb << 2 | last >>> 4);
+    }
+
+    /**
+     * Decodes an encoded UUID from the given array.
+     *
+     * @param src    the array to read the {@value #LENGTH} characters from.
+     * @param offset the offset in the array to start reading at.
+     * @return the UUID.
+     * @throws IllegalArgumentException if the characters are not a valid encoded UUID.
+     */
+    public static @NotNull UUID parse(@NotNull char[] src, int offset) {
+        if (offset < 0 || offset > src.length - LENGTH) {
+            throw new IndexOutOfBoundsException("Not enough characters for an encoded UUID at offset " + offset);
+        }
+        return parse(CharBuffer.wrap(src, offset, LENGTH));
+    }
+
+    /**
+     * Checks whether the given string is an encoded UUID that {@link #parse(CharSequence)} accepts. Strings of
+     * hexadecimal digits separated by four hyphens are never considered encoded, even if they happen to be
+     * {@value #LENGTH} characters long, since {@link UUID#fromString(String)} accepts them in their dashed form.
+     *
+     * @param string the string to check.
+     * @return true if the string is an encoded UUID, false otherwise.
+     */
+    public static boolean isCompact(@NotNull CharSequence string) {
+        if (string.length() != LENGTH) {
+            return false;
+        }
+        var hyphens = 0;
+        var hexDigitsOnly = true;
+        for (int i = 0; i < LENGTH; ++i) {
+            var c = string.charAt(i);
+            if (c >= 128 || DECODE[c] < 0) {
+                return false;
+            }
+            if (c == '-') {
+                ++hyphens;
+            } else if (Character.digit(c, 16) < 0) {
+                hexDigitsOnly = false;
+            }
+        }
+        if (hexDigitsOnly && hyphens == 4) {
+            return false;
+        }
+        return (DECODE[string.charAt(LENGTH - 1)] & 0xF) == 0;
+    }
+
+    private static int decode(char c, @NotNull CharSequence encoded) {
+        var value = c < 128 ? DECODE[c] : -1;
+        if (value < 0) {
+            throw new IllegalArgumentException("Invalid encoded UUID: " + encoded);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,222 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.domain.base.support;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.springframework.data.domain.Sort;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Parameter;
+import javax.persistence.TypedQuery;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Expression;
+import javax.persistence.criteria.ParameterExpression;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.BiFunction;
+import java.util.stream.Collectors;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Cache of the queries compiled from {@linkplain SpecificationShape specification shapes} by a
+ * {@link BaseRepositoryImpl}.
+ * <p>
+ * Creating a query from a criteria query makes Hibernate render the whole criteria tree to JPQL on every call. To avoid
+ * this, the JPQL rendered when a shape is compiled is cached as well, and later queries are created from the string,
+ * which hits the query plan cache of the persistence provider. The criteria query is used as a fallback when the
+ * provider does not expose the rendered query, or when the rendered query has parameters that are not shape
+ * parameters (such as literals the provider binds as parameters).
+ * <p>
+ * The least recently used queries are evicted when the cache is full.
+ */
+final class CompiledShapeCache {
+
+    static final int DEFAULT_MAX_ENTRIES = 512;
+
+    private final Map<Key, CompiledQuery<?>> cache;
+
+    CompiledShapeCache() {
+        this(DEFAULT_MAX_ENTRIES);
+    }
+
+    CompiledShapeCache(int maxEntries) {
+        cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, CompiledQuery<?>> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Returns the compiled query for the given key, compiling it if necessary.
+     *
+     * @param shape         the shape.
+     * @param sort          the sort order of the query, or {@code null} for a count query.
+     * @param entityManager the entity manager.
+     * @param builder       a function that builds the criteria query of the shape, using the given parameters.
+     * @param <R>           the result type of the query.
+     * @return the compiled query.
+     */
+    @SuppressWarnings("unchecked")
+    <R> @NotNull CompiledQuery<R> get(@NotNull SpecificationShape<?> shape, Sort sort,
+                                      @NotNull EntityManager entityManager,
+                                      @NotNull BiFunction<CriteriaBuilder, ShapeParameters, CriteriaQuery<R>> builder) {
+        var key = new Key(shape, sort);
+        synchronized (cache) {
+            var compiled = (CompiledQuery<R>) cache.get(key);
+            if (compiled != null) {
+                return compiled;
+            }
+        }
+        // Compiling outside the lock means concurrent misses may compile twice, which is cheaper than serializing them
+        var compiled = compile(entityManager, builder);
+        synchronized (cache) {
+            var existing = (CompiledQuery<R>) cache.putIfAbsent(key, compiled);
+            return existing == null ? compiled : existing;
+        }
+    }
+
+    /**
+     * Returns the number of cached queries.
+     */
+    int size() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    private static <R> @NotNull CompiledQuery<R> compile(
+            @NotNull EntityManager entityManager,
+            @NotNull BiFunction<CriteriaBuilder, ShapeParameters, CriteriaQuery<R>> builder) {
+        var criteriaBuilder = entityManager.getCriteriaBuilder();
+        var parameters = new HashMap<String, ParameterExpression<?>>();
+        var criteriaQuery = builder.apply(criteriaBuilder, new ShapeParameters() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <X> @NotNull Expression<X> get(@NotNull String name, @NotNull Class<X> type) {
+                return (Expression<X>) parameters.computeIfAbsent(name, n -> criteriaBuilder.parameter(type, n));
+            }
+        });
+        // Render the query once before it is shared between threads. Rendering assigns aliases to the criteria
+        // objects the first time it happens, after which the criteria tree is only read.
+        var query = entityManager.createQuery(criteriaQuery);
+        var queryString = getQueryString(entityManager, query, criteriaQuery.getResultType(), parameters);
+        return new CompiledQuery<>(criteriaQuery, Map.copyOf(parameters), queryString);
+    }
+
+    private static @Nullable String getQueryString(@NotNull EntityManager entityManager,
+                                                   @NotNull TypedQuery<?> query,
+                                                   @NotNull Class<?> resultType,
+                                                   @NotNull Map<String, ?> parameters) {
+        // JPA has no API for this, but Hibernate's criteria query adapter has a public getQueryString() method
+        String queryString;
+        try {
+            queryString = (String) query.getClass().getMethod("getQueryString").invoke(query);
+        } catch (ReflectiveOperationException | RuntimeException ex) {
+            return null;
+        }
+        if (queryString == null) {
+            return null;
+        }
+        try {
+            var names = entityManager.createQuery(queryString, resultType).getParameters().stream()
+                    .map(Parameter::getName)
+                    .collect(Collectors.toSet());
+            return names.equals(parameters.keySet()) ? queryString : null;
+        } catch (RuntimeException ex) {
+            return null;
+        }
+    }
+
+    static final class CompiledQuery<R> {
+
+        private final CriteriaQuery<R> criteriaQuery;
+        private final Map<String, ParameterExpression<?>> parameters;
+        private final String queryString;
+
+        private CompiledQuery(@NotNull CriteriaQuery<R> criteriaQuery,
+                              @NotNull Map<String, ParameterExpression<?>> parameters,
+                              @Nullable String queryString) {
+            this.criteriaQuery = criteriaQuery;
+            this.parameters = parameters;
+            this.queryString = queryString;
+        }
+
+        /**
+         * Returns whether queries are created from the cached JPQL string instead of the criteria query.
+         *
+         * @return true if the JPQL string is used, false otherwise.
+         */
+        boolean isQueryStringCached() {
+            return queryString != null;
+        }
+
+        /**
+         * Creates a new query and binds the values of the given specification to its parameters.
+         *
+         * @param entityManager the entity manager.
+         * @param bound         the specification whose values to bind.
+         * @return the query.
+         */
+        @NotNull TypedQuery<R> createQuery(@NotNull EntityManager entityManager,
+                                           @NotNull BoundSpecification<?> bound) {
+            if (queryString != null) {
+                var query = entityManager.createQuery(queryString, criteriaQuery.getResultType());
+                parameters.keySet().forEach(name -> query.setParameter(name, bound.getValue(name)));
+                return query;
+            }
+            var query = entityManager.createQuery(criteriaQuery);
+            parameters.forEach((name, parameter) -> {
+                @SuppressWarnings("unchecked")
+                var typedParameter = (Parameter<Object>) parameter;
+                query.setParameter(typedParameter, bound.getValue(name));
+            });
+            return query;
+        }
+    }
+
+    private static final class Key {
+
+        private final SpecificationShape<?> shape;
+        private final Sort sort;
+
+        private Key(@NotNull SpecificationShape<?> shape, Sort sort) {
+            this.shape = requireNonNull(shape);
+            this.sort = sort;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            var that = (Key) o;
+            return shape == that.shape && Objects.equals(sort, that.sort);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(shape) + Objects.hashCode(sort);
+        }
+    }
+}
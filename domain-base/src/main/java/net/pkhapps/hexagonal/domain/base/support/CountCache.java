@@ -0,0 +1,76 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.domain.base.support;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * Bounded LRU cache of row counts used by {@link BaseRepositoryImpl} for pages with approximate totals. Unlike
+ * {@link QueryResultCache}, entries are never invalidated by writes; callers accept counts that are up to a given age.
+ */
+final class CountCache {
+
+    private static final int MAX_ENTRIES = 1000;
+
+    private final Map<Object, Entry> entries = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Object, Entry> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    /**
+     * Returns the cached count for the given key if it is not older than {@code maxAge}, or runs the count query and
+     * caches its result.
+     *
+     * @param key    the cache key.
+     * @param maxAge the maximum age of a cached count.
+     * @param count  the count query to run on a cache miss.
+     * @return the count.
+     */
+    long get(@NotNull Object key, @NotNull Duration maxAge, @NotNull LongSupplier count) {
+        var now = System.nanoTime();
+        synchronized (entries) {
+            var entry = entries.get(key);
+            if (entry != null && now - entry.countedAt <= maxAge.toNanos()) {
+                return entry.count;
+            }
+        }
+        // Counting outside the lock means concurrent misses may count twice, which is cheaper than serializing them
+        var value = count.getAsLong();
+        synchronized (entries) {
+            entries.put(key, new Entry(value, now));
+        }
+        return value;
+    }
+
+    private static final class Entry {
+        private final long count;
+        private final long countedAt;
+
+        private Entry(long count, long countedAt) {
+            this.count = count;
+            this.countedAt = countedAt;
+        }
+    }
+}
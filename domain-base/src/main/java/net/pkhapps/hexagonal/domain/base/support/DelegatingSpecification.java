@@ -0,0 +1,66 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.domain.base.support;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.springframework.data.jpa.domain.Specification;
+
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+
+/**
+ * A {@link Specification} that wraps another specification without changing its predicate, for example to attach
+ * tracing information to it. {@link BaseRepositoryImpl} {@linkplain #unwrap(Specification) unwraps} delegating
+ * specifications before it inspects them, so that wrapping a {@link BoundSpecification} does not disable the compiled
+ * query, result cache and count cache paths.
+ *
+ * @param <T> the type of the entity.
+ */
+public interface DelegatingSpecification<T> extends Specification<T> {
+
+    /**
+     * Returns the wrapped specification.
+     *
+     * @return the wrapped specification.
+     */
+    @NotNull Specification<T> getDelegate();
+
+    @Override
+    default @Nullable Predicate toPredicate(@NotNull Root<T> root, @NotNull CriteriaQuery<?> query,
+                                            @NotNull CriteriaBuilder criteriaBuilder) {
+        return getDelegate().toPredicate(root, query, criteriaBuilder);
+    }
+
+    /**
+     * Unwraps the given specification until it is no longer a {@code DelegatingSpecification}.
+     *
+     * @param specification the specification to unwrap, may be {@code null}.
+     * @param <T>           the type of the entity.
+     * @return the innermost specification, or {@code null} if {@code specification} was {@code null}.
+     */
+    static <T> @Nullable Specification<T> unwrap(@Nullable Specification<T> specification) {
+        var result = specification;
+        while (result instanceof DelegatingSpecification) {
+            result = ((DelegatingSpecification<T>) result).getDelegate();
+        }
+        return result;
+    }
+}
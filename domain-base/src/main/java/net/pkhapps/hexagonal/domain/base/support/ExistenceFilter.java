@@ -0,0 +1,157 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.domain.base.support;
+
+import net.pkhapps.hexagonal.domain.base.DomainObjectId;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Thread-safe Bloom filter of aggregate IDs, used by {@link BaseRepositoryImpl} to answer {@code existsById} for
+ * absent IDs without querying the database. The bit positions are derived from a single 64-bit hash of the ID using
+ * double hashing. Unless the filter is told that it sees all inserts, IDs that it rules out are still looked up.
+ */
+final class ExistenceFilter {
+
+    private final AtomicLongArray words;
+    private final long bitCount;
+    private final int hashFunctionCount;
+    private final AtomicLong setBitCount = new AtomicLong();
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder definiteMisses = new LongAdder();
+    private final LongAdder falsePositives = new LongAdder();
+    private final LongAdder missedInserts = new LongAdder();
+    private final boolean exclusiveInserts;
+    private volatile boolean ready;
+
+    ExistenceFilter(long expectedInsertions, double falsePositiveProbability, boolean exclusiveInserts) {
+        if (expectedInsertions < 1) {
+            throw new IllegalArgumentException("expectedInsertions must be positive");
+        }
+        if (falsePositiveProbability <= 0 || falsePositiveProbability >= 1) {
+            throw new IllegalArgumentException("falsePositiveProbability must be between 0 and 1");
+        }
+        var optimalBits = -expectedInsertions * Math.log(falsePositiveProbability) / (Math.log(2) * Math.log(2));
+        var wordCount = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(1, (long) Math.ceil(optimalBits / Long.SIZE)));
+        this.words = new AtomicLongArray(wordCount);
+        this.bitCount = (long) wordCount * Long.SIZE;
+        this.hashFunctionCount = (int) Math.max(1, Math.round((double) bitCount / expectedInsertions * Math.log(2)));
+        this.exclusiveInserts = exclusiveInserts;
+    }
+
+    /**
+     * Returns whether the filter contains all existing IDs and can be used for lookups.
+     */
+    boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Marks the filter as containing all existing IDs.
+     */
+    void markReady() {
+        ready = true;
+    }
+
+    /**
+     * Adds the given ID to the filter.
+     */
+    void put(@NotNull Object id) {
+        var hash = hash(id);
+        var h1 = (int) hash;
+        var h2 = (int) (hash >>> 32);
+        for (int i = 0; i < hashFunctionCount; ++i) {
+            var bit = Math.floorMod(h1 + (long) i * h2, bitCount);
+            var index = (int) (bit >>> 6);
+            var mask = 1L << bit;
+            long word;
+            do {
+                word = words.get(index);
+                if ((word & mask) != 0) {
+                    break;
+                }
+            } while (!words.compareAndSet(index, word, word | mask));
+            if ((word & mask) == 0) {
+                setBitCount.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Returns whether the given ID might be in the filter. If this method returns false, the ID is definitely not in
+     * the filter.
+     */
+    boolean mightContain(@NotNull Object id) {
+        var hash = hash(id);
+        var h1 = (int) hash;
+        var h2 = (int) (hash >>> 32);
+        for (int i = 0; i < hashFunctionCount; ++i) {
+            var bit = Math.floorMod(h1 + (long) i * h2, bitCount);
+            if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks whether the given ID exists. If the filter sees all inserts, the database lookup is only used if the
+     * filter cannot rule the ID out. Otherwise, the lookup is always used, and IDs that it finds but the filter ruled
+     * out are added to the filter.
+     */
+    boolean exists(@NotNull Object id, @NotNull BooleanSupplier lookup) {
+        lookups.increment();
+        if (!mightContain(id)) {
+            definiteMisses.increment();
+            if (exclusiveInserts || !lookup.getAsBoolean()) {
+                return false;
+            }
+            missedInserts.increment();
+            put(id);
+            return true;
+        }
+        var exists = lookup.getAsBoolean();
+        if (!exists) {
+            falsePositives.increment();
+        }
+        return exists;
+    }
+
+    @NotNull ExistenceFilterStatistics getStatistics() {
+        return new ExistenceFilterStatistics(bitCount, hashFunctionCount, setBitCount.get(), lookups.sum(),
+                definiteMisses.sum(), falsePositives.sum(), missedInserts.sum());
+    }
+
+    private static long hash(@NotNull Object id) {
+        requireNonNull(id);
+        if (id instanceof DomainObjectId && id instanceof SimpleValueObject) {
+            return StableHash.of((DomainObjectId) id);
+        }
+        // The filter is never persisted, so the hash code (spread over 64 bits) is good enough
+        var hash = id.hashCode() * 0x9e3779b97f4a7c15L;
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        return hash ^ (hash >>> 33);
+    }
+}
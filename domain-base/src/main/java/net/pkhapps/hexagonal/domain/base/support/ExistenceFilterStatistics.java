@@ -0,0 +1,136 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.domain.base.support;
+
+/**
+ * Statistics of the existence filter of a repository.
+ *
+ * @see net.pkhapps.hexagonal.domain.base.annotation.ExistenceFiltering
+ */
+public final class ExistenceFilterStatistics {
+
+    private final long bitCount;
+    private final int hashFunctionCount;
+    private final long setBitCount;
+    private final long lookups;
+    private final long definiteMisses;
+    private final long falsePositives;
+    private final long missedInserts;
+
+    ExistenceFilterStatistics(long bitCount, int hashFunctionCount, long setBitCount, long lookups,
+                              long definiteMisses, long falsePositives, long missedInserts) {
+        this.bitCount = bitCount;
+        this.hashFunctionCount = hashFunctionCount;
+        this.setBitCount = setBitCount;
+        this.lookups = lookups;
+        this.definiteMisses = definiteMisses;
+        this.falsePositives = falsePositives;
+        this.missedInserts = missedInserts;
+    }
+
+    /**
+     * Returns the size of the filter in bits.
+     */
+    public long getBitCount() {
+        return bitCount;
+    }
+
+    /**
+     * Returns the number of hash functions (bits set per ID).
+     */
+    public int getHashFunctionCount() {
+        return hashFunctionCount;
+    }
+
+    /**
+     * Returns the memory used by the bits of the filter, in bytes.
+     */
+    public long getMemoryBytes() {
+        return bitCount / Byte.SIZE;
+    }
+
+    /**
+     * Returns the estimated number of distinct IDs in the filter, computed from the number of set bits.
+     */
+    public long getApproximateElementCount() {
+        if (setBitCount >= bitCount) {
+            return Long.MAX_VALUE;
+        }
+        return Math.round(-((double) bitCount / hashFunctionCount) * Math.log1p(-(double) setBitCount / bitCount));
+    }
+
+    /**
+     * Returns the probability that the filter reports an absent ID as possibly present, given the current number of
+     * set bits.
+     */
+    public double getExpectedFalsePositiveRate() {
+        return Math.pow((double) setBitCount / bitCount, hashFunctionCount);
+    }
+
+    /**
+     * Returns the number of {@code existsById} lookups that have been made through the filter.
+     */
+    public long getLookups() {
+        return lookups;
+    }
+
+    /**
+     * Returns the number of lookups for IDs that the filter ruled out. With
+     * {@link net.pkhapps.hexagonal.domain.base.annotation.ExistenceFiltering#exclusiveInserts() exclusive inserts},
+     * these lookups were answered without querying the database.
+     */
+    public long getDefiniteMisses() {
+        return definiteMisses;
+    }
+
+    /**
+     * Returns the number of lookups that the filter passed on to the database, but that did not find an aggregate.
+     */
+    public long getFalsePositives() {
+        return falsePositives;
+    }
+
+    /**
+     * Returns the number of lookups for IDs that the filter ruled out, but that the database found because they were
+     * inserted without going through the repository. This is always 0 with
+     * {@link net.pkhapps.hexagonal.domain.base.annotation.ExistenceFiltering#exclusiveInserts() exclusive inserts},
+     * since the database is not queried then; without them, a non-zero value means that exclusive inserts must not be
+     * enabled.
+     */
+    public long getMissedInserts() {
+        return missedInserts;
+    }
+
+    /**
+     * Returns the observed false positive rate, which is the fraction of lookups of absent IDs that were passed on to
+     * the database, or 0 if no absent IDs have been looked up.
+     */
+    public double getObservedFalsePositiveRate() {
+        var negatives = definiteMisses - missedInserts + falsePositives;
+        return negatives == 0 ? 0 : (double) falsePositives / negatives;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s{bits=%d, hashFunctions=%d, memoryBytes=%d, approximateElements=%d, "
+                        + "expectedFalsePositiveRate=%.6f, lookups=%d, definiteMisses=%d, falsePositives=%d, "
+                        + "missedInserts=%d, observedFalsePositiveRate=%.6f}", getClass().getSimpleName(), bitCount,
+                hashFunctionCount, getMemoryBytes(), getApproximateElementCount(), getExpectedFalsePositiveRate(),
+                lookups, definiteMisses, falsePositives, missedInserts, getObservedFalsePositiveRate());
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.domain.base.support;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Optional;
+
+/**
+ * Opt-in interface for repositories backed by {@link BaseRepositoryImpl} that exposes the statistics of their
+ * existence filters. Add it to the repository interface to make the statistics available through the repository:
+ * <pre>
+ * public interface CustomerRepository extends BaseRepository&lt;Customer, CustomerId&gt;, ExistenceFilteredRepository {
+ * }
+ * </pre>
+ *
+ * @see net.pkhapps.hexagonal.domain.base.annotation.ExistenceFiltering
+ */
+public interface ExistenceFilteredRepository {
+
+    /**
+     * Returns the statistics of the existence filter of this repository, such as its memory use and false positive
+     * rate.
+     *
+     * @return the statistics, or an empty {@code Optional} if the aggregate root is not annotated with
+     * {@link net.pkhapps.hexagonal.domain.base.annotation.ExistenceFiltering}.
+     */
+    @NotNull Optional<ExistenceFilterStatistics> getExistenceFilterStatistics();
+}
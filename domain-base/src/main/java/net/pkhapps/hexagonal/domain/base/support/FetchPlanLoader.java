@@ -0,0 +1,176 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.domain.base.support;
+
+import net.pkhapps.hexagonal.domain.base.FetchPlan;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import javax.persistence.AttributeNode;
+import javax.persistence.EntityGraph;
+import javax.persistence.EntityManager;
+import javax.persistence.Subgraph;
+import javax.persistence.TypedQuery;
+import javax.persistence.metamodel.Attribute;
+import javax.persistence.metamodel.EntityType;
+import javax.persistence.metamodel.PluralAttribute;
+import javax.persistence.metamodel.SingularAttribute;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Executes a {@link FetchPlan} for {@link BaseRepositoryImpl}. Chains of single-valued associations starting at the
+ * root are added to an entity graph that is used as a load graph by the main query. Every other association in the
+ * plan is loaded by a secondary query that navigates from the roots of the result to the owners of the association
+ * and join-fetches it, so that each association is initialized for all owners at once.
+ *
+ * @param <T> the root entity type.
+ */
+final class FetchPlanLoader<T> {
+
+    private static final String LOAD_GRAPH_HINT = "javax.persistence.loadgraph";
+
+    private final EntityManager entityManager;
+    private final Class<T> rootClass;
+    private final Node plan = new Node();
+    private final List<String> secondaryQueries = new ArrayList<>();
+
+    FetchPlanLoader(@NotNull EntityManager entityManager, @NotNull Class<T> rootClass, @NotNull FetchPlan fetchPlan) {
+        this.entityManager = requireNonNull(entityManager);
+        this.rootClass = requireNonNull(rootClass);
+        fetchPlan.getEntityGraphName().ifPresentOrElse(
+                name -> addGraphNodes(plan, entityManager.getEntityGraph(name).getAttributeNodes()),
+                () -> fetchPlan.getAttributePaths().forEach(this::addPath));
+        var rootType = entityManager.getMetamodel().entity(rootClass);
+        createSecondaryQueries(rootType, plan, "r", "", true);
+    }
+
+    private void addPath(@NotNull String path) {
+        var node = plan;
+        for (var segment : path.split("\\.")) {
+            node = node.children.computeIfAbsent(segment, s -> new Node());
+        }
+    }
+
+    private static void addGraphNodes(@NotNull Node node, @NotNull List<AttributeNode<?>> attributeNodes) {
+        for (var attributeNode : attributeNodes) {
+            var child = node.children.computeIfAbsent(attributeNode.getAttributeName(), s -> new Node());
+            for (var subgraph : attributeNode.getSubgraphs().values()) {
+                addGraphNodes(child, subgraph.getAttributeNodes());
+            }
+        }
+    }
+
+    private void createSecondaryQueries(@NotNull EntityType<?> ownerType, @NotNull Node node, @NotNull String alias,
+                                        @NotNull String joins, boolean joinedByMainQuery) {
+        var index = 0;
+        for (var entry : node.children.entrySet()) {
+            var attribute = ownerType.getAttribute(entry.getKey());
+            var joined = joinedByMainQuery && !attribute.isCollection();
+            entry.getValue().joined = joined;
+            if (!joined) {
+                secondaryQueries.add(String.format("select %s from %s r%s left join fetch %s.%s where r in :roots",
+                        alias, entityManager.getMetamodel().entity(rootClass).getName(), joins, alias,
+                        attribute.getName()));
+            }
+            if (!entry.getValue().children.isEmpty()) {
+                var childAlias = alias + "_" + index++;
+                createSecondaryQueries(targetType(attribute), entry.getValue(), childAlias,
+                        String.format("%s join %s.%s %s", joins, alias, attribute.getName(), childAlias), joined);
+            }
+        }
+    }
+
+    private static @NotNull EntityType<?> targetType(@NotNull Attribute<?, ?> attribute) {
+        var type = attribute instanceof PluralAttribute
+                ? ((PluralAttribute<?, ?, ?>) attribute).getElementType()
+                : ((SingularAttribute<?, ?>) attribute).getType();
+        if (!(type instanceof EntityType)) {
+            throw new IllegalArgumentException("Attribute " + attribute.getName() + " of "
+                    + attribute.getDeclaringType().getJavaType().getName() + " is not an association");
+        }
+        return (EntityType<?>) type;
+    }
+
+    private @Nullable EntityGraph<T> createLoadGraph() {
+        if (plan.children.values().stream().noneMatch(child -> child.joined)) {
+            return null;
+        }
+        var graph = entityManager.createEntityGraph(rootClass);
+        addJoinedNodes(plan, graph::addAttributeNodes, graph::addSubgraph);
+        return graph;
+    }
+
+    private static void addJoinedNodes(@NotNull Node node, @NotNull Consumer<String> addAttributeNode,
+                                       @NotNull Function<String, Subgraph<?>> addSubgraph) {
+        node.children.forEach((name, child) -> {
+            if (!child.joined) {
+                return;
+            }
+            if (child.children.values().stream().anyMatch(c -> c.joined)) {
+                var subgraph = addSubgraph.apply(name);
+                addJoinedNodes(child, subgraph::addAttributeNodes, subgraph::addSubgraph);
+            } else {
+                addAttributeNode.accept(name);
+            }
+        });
+    }
+
+    /**
+     * Applies the load graph of the plan to the given main query.
+     */
+    @NotNull TypedQuery<T> applyLoadGraph(@NotNull TypedQuery<T> query) {
+        var graph = createLoadGraph();
+        return graph == null ? query : query.setHint(LOAD_GRAPH_HINT, graph);
+    }
+
+    /**
+     * Runs the secondary queries for the given roots, which must be managed by the entity manager of this loader.
+     *
+     * @param roots      the roots returned by the main query.
+     * @param chunkSize  the maximum number of roots to pass to a single query.
+     * @param customizer a function applied to each secondary query before it is executed.
+     */
+    void loadSecondary(@NotNull List<T> roots, int chunkSize, @NotNull UnaryOperator<TypedQuery<Object>> customizer) {
+        if (roots.isEmpty() || secondaryQueries.isEmpty()) {
+            return;
+        }
+        var distinct = new ArrayList<>(new LinkedHashSet<>(roots));
+        for (var jpql : secondaryQueries) {
+            for (int from = 0; from < distinct.size(); from += chunkSize) {
+                var chunk = distinct.subList(from, Math.min(from + chunkSize, distinct.size()));
+                customizer.apply(entityManager.createQuery(jpql, Object.class))
+                        .setParameter("roots", InListPadding.pad(chunk, chunkSize))
+                        .getResultList();
+            }
+        }
+    }
+
+    private static final class Node {
+        private final Map<String, Node> children = new LinkedHashMap<>();
+        private boolean joined;
+    }
+}
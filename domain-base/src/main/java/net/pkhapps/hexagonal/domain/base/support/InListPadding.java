@@ -0,0 +1,60 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.domain.base.support;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Pads the values of IN-list parameters so that the database only ever sees a handful of distinct statements and can
+ * reuse their cached plans.
+ */
+final class InListPadding {
+
+    private InListPadding() {
+    }
+
+    /**
+     * Pads the given list to the next power-of-two size by repeating its last element, but never beyond
+     * {@code maxSize}. Lists with a power-of-two size, and lists of {@code maxSize} elements, are returned as they are.
+     *
+     * @param list    the list to pad, with at most {@code maxSize} elements.
+     * @param maxSize the maximum size of the padded list, such as the IN-list limit of the database.
+     * @param <T>     the element type.
+     * @return the padded list, or the list itself if it needs no padding.
+     */
+    static <T> @NotNull List<T> pad(@NotNull List<T> list, int maxSize) {
+        var size = list.size();
+        if (size > maxSize) {
+            throw new IllegalArgumentException("The list has more than " + maxSize + " elements");
+        }
+        if (size == 0 || Integer.bitCount(size) == 1 || size == maxSize) {
+            return list;
+        }
+        var paddedSize = Math.min(Integer.highestOneBit(size) << 1, maxSize);
+        var padded = new ArrayList<T>(paddedSize);
+        padded.addAll(list);
+        var last = list.get(size - 1);
+        while (padded.size() < paddedSize) {
+            padded.add(last);
+        }
+        return padded;
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.domain.base.support;
+
+import net.pkhapps.hexagonal.domain.base.BaseEntity;
+import net.pkhapps.hexagonal.domain.base.annotation.ChangeTracking;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Collection;
+import java.util.Set;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Gives persistence providers access to the attributes that {@linkplain ChangeTracking change tracked} entities have
+ * marked as modified. The attributes are not part of the public API of {@link BaseEntity}, so that domain code cannot
+ * forge or forget modifications. Application code should not use this class.
+ */
+public final class ModifiedAttributes {
+
+    private static volatile Access access;
+
+    private ModifiedAttributes() {
+    }
+
+    /**
+     * Returns the names of the attributes that the given entity has marked as modified since it was last flushed.
+     *
+     * @param entity the entity.
+     * @return an unmodifiable set of attribute names.
+     */
+    public static @NotNull Set<String> of(@NotNull BaseEntity<?> entity) {
+        return access.getModifiedAttributes(requireNonNull(entity));
+    }
+
+    /**
+     * Marks the given attributes of the given entity as modified. Persistence providers call this when they change the
+     * state of an entity without going through its methods, such as when merging a detached copy of the entity into
+     * it.
+     *
+     * @param entity     the entity.
+     * @param attributes the names of the modified attributes.
+     */
+    public static void mark(@NotNull BaseEntity<?> entity, @NotNull Collection<String> attributes) {
+        access.markModifiedAttributes(requireNonNull(entity), requireNonNull(attributes));
+    }
+
+    /**
+     * Forgets all modified attributes of the given entity. Persistence providers call this after the entity has been
+     * flushed.
+     *
+     * @param entity the entity.
+     */
+    public static void clear(@NotNull BaseEntity<?> entity) {
+        access.clearModifiedAttributes(requireNonNull(entity));
+    }
+
+    /**
+     * Registers the access to the modified attributes. Called once by {@link BaseEntity} when it is initialized, which
+     * happens before any entity can be passed to the other methods.
+     *
+     * @param access the access.
+     * @throws IllegalStateException if the access has already been registered.
+     */
+    public static synchronized void setAccess(@NotNull Access access) {
+        if (ModifiedAttributes.access != null) {
+            throw new IllegalStateException("Access has already been registered");
+        }
+        ModifiedAttributes.access = requireNonNull(access);
+    }
+
+    /**
+     * Access to the modified attributes of entities, implemented by {@link BaseEntity}.
+     */
+    public interface Access {
+
+        @NotNull Set<String> getModifiedAttributes(@NotNull BaseEntity<?> entity);
+
+        void markModifiedAttributes(@NotNull BaseEntity<?> entity, @NotNull Collection<String> attributes);
+
+        void clearModifiedAttributes(@NotNull BaseEntity<?> entity);
+    }
+}
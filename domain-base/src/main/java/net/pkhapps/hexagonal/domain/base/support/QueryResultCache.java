@@ -0,0 +1,124 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.domain.base.support;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Bounded LRU/TTL cache of query results used by {@link BaseRepositoryImpl}. Instead of removing entries on
+ * invalidation, the cache bumps a generation counter; entries created in an earlier generation are treated as misses.
+ * A result is only stored if no invalidation happened while the query was running, so a query that raced with a write
+ * can never leave a stale entry behind.
+ */
+final class QueryResultCache {
+
+    private final int maxEntries;
+    private final long timeToLiveNanos;
+    private final AtomicLong generation = new AtomicLong();
+    private final Map<Object, Entry> entries;
+
+    QueryResultCache(int maxEntries, long timeToLiveSeconds) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("maxEntries must be at least 1");
+        }
+        this.maxEntries = maxEntries;
+        this.timeToLiveNanos = TimeUnit.SECONDS.toNanos(timeToLiveSeconds);
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Object, Entry> eldest) {
+                return size() > QueryResultCache.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached result for the given key, or runs the query and caches its result.
+     *
+     * @param key   the cache key.
+     * @param query the query to run on a cache miss.
+     * @param <R>   the type of the result.
+     * @return the result.
+     */
+    @SuppressWarnings("unchecked")
+    <R> R get(@NotNull Object key, @NotNull Supplier<R> query) {
+        // Within a transaction that has modified the aggregate type, the cache would not reflect the uncommitted
+        // changes, so bypass it altogether.
+        if (TransactionSynchronizationManager.hasResource(this)) {
+            return query.get();
+        }
+        var currentGeneration = generation.get();
+        var now = System.nanoTime();
+        synchronized (entries) {
+            var entry = entries.get(key);
+            if (entry != null && entry.generation == currentGeneration && now - entry.expiresAt < 0) {
+                return (R) entry.value;
+            }
+        }
+        var result = query.get();
+        if (result != null) {
+            synchronized (entries) {
+                if (generation.get() == currentGeneration) {
+                    entries.put(key, new Entry(result, currentGeneration, now + timeToLiveNanos));
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Invalidates all entries immediately and again when the current transaction (if any) completes, and bypasses the
+     * cache for the rest of the current transaction.
+     */
+    void invalidate() {
+        generation.incrementAndGet();
+        if (TransactionSynchronizationManager.isSynchronizationActive() && !TransactionSynchronizationManager.hasResource(this)) {
+            TransactionSynchronizationManager.bindResource(this, Boolean.TRUE);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(QueryResultCache.this);
+                    generation.incrementAndGet();
+                }
+            });
+        }
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    private static final class Entry {
+        private final Object value;
+        private final long generation;
+        private final long expiresAt;
+
+        private Entry(@Nullable Object value, long generation, long expiresAt) {
+            this.value = value;
+            this.generation = generation;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
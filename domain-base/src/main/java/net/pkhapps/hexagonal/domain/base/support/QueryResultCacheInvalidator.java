@@ -0,0 +1,114 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.domain.base.support;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Invalidates the query result caches of {@link BaseRepositoryImpl} when aggregates are written without going through
+ * their repositories, for example when the persistence provider flushes changes found by dirty checking. Persistence
+ * provider integrations call {@link #invalidate(Class)} whenever they insert, update or delete an entity. For
+ * Hibernate, this is done by {@code net.pkhapps.hexagonal.domain.hibernate.QueryResultCacheIntegrator}.
+ * <p>
+ * The caches are local to the JVM. Changes made by other application instances are not seen until the cached results
+ * expire.
+ *
+ * @see net.pkhapps.hexagonal.domain.base.annotation.QueryResultCaching
+ */
+public final class QueryResultCacheInvalidator {
+
+    // Caches are registered when repositories are created, but invalidated on every flushed write. The registrations
+    // are therefore replaced as a whole on registration, so that invalidation never has to lock.
+    private static final Object LOCK = new Object();
+    private static volatile Registrations registrations = new Registrations(List.of());
+
+    private QueryResultCacheInvalidator() {
+    }
+
+    static void register(@NotNull Class<?> domainClass, @NotNull QueryResultCache cache) {
+        requireNonNull(domainClass);
+        requireNonNull(cache);
+        synchronized (LOCK) {
+            var entries = new ArrayList<Registration>();
+            for (var entry : registrations.entries) {
+                if (entry.cache.get() != null) {
+                    entries.add(entry);
+                }
+            }
+            entries.add(new Registration(domainClass, cache));
+            registrations = new Registrations(List.copyOf(entries));
+        }
+    }
+
+    /**
+     * Invalidates the query result caches of all repositories whose aggregate root type is the given class or one of
+     * its superclasses. The caches are invalidated immediately and again when the current transaction (if any)
+     * completes, like when an aggregate is saved through its repository.
+     *
+     * @param entityClass the class of the entity that was written.
+     */
+    public static void invalidate(@NotNull Class<?> entityClass) {
+        requireNonNull(entityClass, "entityClass must not be null");
+        var current = registrations;
+        if (current.entries.isEmpty()) {
+            return;
+        }
+        for (var reference : current.cachesByEntityClass.get(entityClass)) {
+            var cache = reference.get();
+            if (cache != null) {
+                cache.invalidate();
+            }
+        }
+    }
+
+    private static final class Registration {
+
+        private final Class<?> domainClass;
+        private final WeakReference<QueryResultCache> cache;
+
+        private Registration(@NotNull Class<?> domainClass, @NotNull QueryResultCache cache) {
+            this.domainClass = domainClass;
+            this.cache = new WeakReference<>(cache);
+        }
+    }
+
+    private static final class Registrations {
+
+        private final List<Registration> entries;
+        private final ClassValue<List<WeakReference<QueryResultCache>>> cachesByEntityClass = new ClassValue<>() {
+            @Override
+            protected List<WeakReference<QueryResultCache>> computeValue(Class<?> entityClass) {
+                return entries.stream()
+                        .filter(entry -> entry.domainClass.isAssignableFrom(entityClass))
+                        .map(entry -> entry.cache)
+                        .collect(Collectors.toUnmodifiableList());
+            }
+        };
+
+        private Registrations(@NotNull List<Registration> entries) {
+            this.entries = entries;
+        }
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.domain.base.support;
+
+import org.jetbrains.annotations.NotNull;
+
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+
+/**
+ * Defines the predicate of a {@link SpecificationShape}. This is like
+ * {@link org.springframework.data.jpa.domain.Specification#toPredicate(Root, CriteriaQuery, CriteriaBuilder)}, except
+ * that all values that change between executions must be taken from the {@link ShapeParameters} instead of being
+ * captured by the definition.
+ *
+ * @param <T> the type of the entity.
+ */
+@FunctionalInterface
+public interface ShapeDefinition<T> {
+
+    /**
+     * Creates the predicate of the shape.
+     *
+     * @param root            the root of the query.
+     * @param query           the query.
+     * @param criteriaBuilder the criteria builder.
+     * @param parameters      the parameters of the shape.
+     * @return the predicate, or {@code null} if the shape should not restrict the query.
+     */
+    Predicate toPredicate(@NotNull Root<T> root, @NotNull CriteriaQuery<?> query,
+                          @NotNull CriteriaBuilder criteriaBuilder, @NotNull ShapeParameters parameters);
+}
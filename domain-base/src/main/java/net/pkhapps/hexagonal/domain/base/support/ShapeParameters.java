@@ -0,0 +1,42 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.domain.base.support;
+
+import org.jetbrains.annotations.NotNull;
+
+import javax.persistence.criteria.Expression;
+
+/**
+ * Gives a {@link ShapeDefinition} access to the parameters of a {@link SpecificationShape}.
+ */
+@FunctionalInterface
+public interface ShapeParameters {
+
+    /**
+     * Returns an expression representing the parameter with the given name. When the shape is compiled, this is a
+     * {@linkplain javax.persistence.criteria.ParameterExpression parameter expression} that is bound to a new value
+     * every time the compiled query is executed. When the shape is used as an ordinary specification, this is a literal
+     * containing the bound value.
+     *
+     * @param name the name of the parameter.
+     * @param type the type of the parameter.
+     * @param <X>  the type of the parameter.
+     * @return an expression to use in the predicate.
+     */
+    <X> @NotNull Expression<X> get(@NotNull String name, @NotNull Class<X> type);
+}
@@ -20,8 +20,6 @@ package net.pkhapps.hexagonal.domain.base.support;
 import net.pkhapps.hexagonal.domain.base.ValueObject;
 import org.jetbrains.annotations.NotNull;
 
-import java.util.Objects;
-
 import static java.util.Objects.requireNonNull;
 
 /**
@@ -67,6 +65,6 @@ public abstract class SimpleValueObject<V> implements ValueObject {
 
     @Override
     public int hashCode() {
-        return Objects.hash(value);
+        return value.hashCode();
     }
 }
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.domain.base.support;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Map;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * The "shape" of a {@linkplain org.springframework.data.jpa.domain.Specification specification}: its predicates without
+ * the parameter values. Binding values to a shape produces a {@link BoundSpecification} that can be passed to any
+ * {@link org.springframework.data.jpa.repository.JpaSpecificationExecutor} method. When it is passed to a repository
+ * backed by {@link BaseRepositoryImpl}, the criteria query of the shape is built only once and then reused with new
+ * parameter values, so that neither the criteria tree nor the rendered query (and thereby the query plan) has to be
+ * rebuilt.
+ * <p>
+ * Shapes are identified by object identity, so they should be created once and stored in constants or fields of
+ * {@linkplain net.pkhapps.hexagonal.domain.base.annotation.SpecificationFactory specification factories}:
+ * <pre>
+ * private static final SpecificationShape&lt;Customer&gt; BY_NAME = SpecificationShape.of(
+ *     (root, query, cb, params) -&gt; cb.equal(root.get("name"), params.get("name", String.class)));
+ *
+ * public Specification&lt;Customer&gt; byName(String name) {
+ *     return BY_NAME.with("name", name);
+ * }
+ * </pre>
+ *
+ * @param <T> the type of the entity.
+ */
+public final class SpecificationShape<T> {
+
+    private final ShapeDefinition<T> definition;
+
+    private SpecificationShape(@NotNull ShapeDefinition<T> definition) {
+        this.definition = requireNonNull(definition);
+    }
+
+    /**
+     * Creates a new specification shape.
+     *
+     * @param definition the definition of the shape's predicate.
+     * @param <T>        the type of the entity.
+     * @return the new shape.
+     */
+    public static <T> @NotNull SpecificationShape<T> of(@NotNull ShapeDefinition<T> definition) {
+        return new SpecificationShape<>(definition);
+    }
+
+    /**
+     * Returns the definition of the shape.
+     *
+     * @return the definition.
+     */
+    public @NotNull ShapeDefinition<T> getDefinition() {
+        return definition;
+    }
+
+    /**
+     * Binds a value to the given parameter.
+     *
+     * @param name  the name of the parameter.
+     * @param value the value of the parameter.
+     * @return a specification with the parameter bound.
+     */
+    public @NotNull BoundSpecification<T> with(@NotNull String name, @Nullable Object value) {
+        return new BoundSpecification<>(this, Map.of()).with(name, value);
+    }
+
+    /**
+     * Binds the given values to the parameters of the shape.
+     *
+     * @param values a map of parameter names and values.
+     * @return a specification with the parameters bound.
+     */
+    public @NotNull BoundSpecification<T> withAll(@NotNull Map<String, ?> values) {
+        return new BoundSpecification<>(this, values);
+    }
+}
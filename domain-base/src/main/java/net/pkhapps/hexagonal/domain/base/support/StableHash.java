@@ -0,0 +1,99 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.domain.base.support;
+
+import net.pkhapps.hexagonal.domain.base.DomainObjectId;
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.charset.StandardCharsets;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Utility class for computing hashes of {@linkplain DomainObjectId domain object IDs} that are stable across JVMs and
+ * releases. Unlike {@link Object#hashCode()}, these hashes can safely be used for assigning IDs to partitions or shards
+ * that are persisted or shared between nodes.
+ */
+public final class StableHash {
+
+    private StableHash() {
+    }
+
+    /**
+     * Computes a stable 64-bit hash of the given ID. {@link NumericDomainObjectId}s and {@link UUIDDomainObjectId}s are
+     * hashed based on their numeric value. Other {@link SimpleValueObject}s are hashed based on the string
+     * representation of their wrapped value.
+     *
+     * @param id the ID to hash.
+     * @return the hash.
+     * @throws IllegalArgumentException if the ID is of an unsupported type.
+     */
+    public static long of(@NotNull DomainObjectId id) {
+        requireNonNull(id);
+        if (id instanceof NumericDomainObjectId) {
+            return mix(((NumericDomainObjectId) id).unwrap());
+        } else if (id instanceof UUIDDomainObjectId) {
+            var uuid = ((UUIDDomainObjectId) id).unwrap();
+            return mix(uuid.getMostSignificantBits() ^ mix(uuid.getLeastSignificantBits()));
+        } else if (id instanceof SimpleValueObject) {
+            return of(((SimpleValueObject<?>) id).unwrap().toString());
+        }
+        throw new IllegalArgumentException("Unsupported ID type: " + id.getClass().getName());
+    }
+
+    /**
+     * Computes a stable 64-bit hash of the given string (FNV-1a over its UTF-8 bytes, followed by a final mix).
+     *
+     * @param value the string to hash.
+     * @return the hash.
+     */
+    public static long of(@NotNull String value) {
+        var hash = 0xcbf29ce484222325L;
+        for (var b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return mix(hash);
+    }
+
+    /**
+     * Maps the given hash to a bucket in the range {@code [0, buckets)}.
+     *
+     * @param hash    the hash.
+     * @param buckets the number of buckets.
+     * @return the bucket.
+     */
+    public static int bucket(long hash, int buckets) {
+        if (buckets < 1) {
+            throw new IllegalArgumentException("Number of buckets must be at least 1");
+        }
+        return (int) Math.floorMod(hash, (long) buckets);
+    }
+
+    /**
+     * The finalization step of MurmurHash3, which spreads the bits of the input over the whole output.
+     */
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+}
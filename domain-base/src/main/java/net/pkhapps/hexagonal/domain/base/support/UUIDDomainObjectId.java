@@ -47,13 +47,15 @@ public abstract class UUIDDomainObjectId extends SimpleValueObject<UUID> impleme
     }
 
     /**
-     * Creates a new {@code UUIDDomainObjectId} from the given string.
+     * Creates a new {@code UUIDDomainObjectId} from the given string, which can be either in the canonical form or in
+     * the {@linkplain CompactUUID compact form}.
      *
      * @param uuid the UUID as a string.
      * @see UUID#fromString(String)
+     * @see CompactUUID#parse(CharSequence)
      */
     public UUIDDomainObjectId(@NotNull String uuid) {
-        super(UUID.fromString(uuid));
+        super(CompactUUID.isCompact(uuid) ? CompactUUID.parse(uuid) : UUID.fromString(uuid));
     }
 
     /**
@@ -83,4 +85,13 @@ public abstract class UUIDDomainObjectId extends SimpleValueObject<UUID> impleme
         buf.putLong(uuid.getLeastSignificantBits());
         return buf.array();
     }
+
+    /**
+     * Returns the UUID in the {@linkplain CompactUUID compact form}.
+     *
+     * @return a 22-character string.
+     */
+    public @NotNull String toCompactString() {
+        return CompactUUID.format(unwrap());
+    }
 }
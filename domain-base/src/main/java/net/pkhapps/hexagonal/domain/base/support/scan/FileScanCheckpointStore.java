@@ -0,0 +1,120 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.domain.base.support.scan;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * {@link ScanCheckpointStore} that stores every checkpoint in a properties file of its own in a directory. Files are
+ * replaced atomically, so a crash while saving leaves the previous checkpoint intact.
+ */
+public class FileScanCheckpointStore implements ScanCheckpointStore {
+
+    private static final String LOWER_BOUND = "lowerBound";
+    private static final String UPPER_BOUND = "upperBound";
+    private static final String PARTITION_COUNT = "partitionCount";
+    private static final String COMPLETED_PARTITIONS = "completedPartitions";
+    private static final String PROCESSED_AGGREGATES = "processedAggregates";
+
+    private final Path directory;
+
+    /**
+     * Creates a new {@code FileScanCheckpointStore}.
+     *
+     * @param directory the directory to store the checkpoint files in (created if it does not exist).
+     */
+    public FileScanCheckpointStore(@NotNull Path directory) {
+        this.directory = requireNonNull(directory);
+    }
+
+    private @NotNull Path fileOf(@NotNull String scanName) {
+        if (!scanName.matches("[\\w.-]+")) {
+            throw new IllegalArgumentException("Scan names may only contain letters, digits, '_', '.' and '-'");
+        }
+        return directory.resolve(scanName + ".checkpoint");
+    }
+
+    @Override
+    public synchronized @NotNull Optional<ScanCheckpoint> load(@NotNull String scanName) {
+        var file = fileOf(scanName);
+        if (!Files.exists(file)) {
+            return Optional.empty();
+        }
+        var properties = new Properties();
+        try (var reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Could not read checkpoint " + file, ex);
+        }
+        var completed = properties.getProperty(COMPLETED_PARTITIONS, "");
+        return Optional.of(new ScanCheckpoint(
+                Long.parseLong(properties.getProperty(LOWER_BOUND)),
+                Long.parseLong(properties.getProperty(UPPER_BOUND)),
+                Integer.parseInt(properties.getProperty(PARTITION_COUNT)),
+                completed.isEmpty() ? Set.<Integer>of() : Arrays.stream(completed.split(","))
+                        .map(Integer::valueOf)
+                        .collect(Collectors.toSet()),
+                Long.parseLong(properties.getProperty(PROCESSED_AGGREGATES, "0"))));
+    }
+
+    @Override
+    public synchronized void save(@NotNull String scanName, @NotNull ScanCheckpoint checkpoint) {
+        var file = fileOf(scanName);
+        var properties = new Properties();
+        properties.setProperty(LOWER_BOUND, Long.toString(checkpoint.getLowerBound()));
+        properties.setProperty(UPPER_BOUND, Long.toString(checkpoint.getUpperBound()));
+        properties.setProperty(PARTITION_COUNT, Integer.toString(checkpoint.getPartitionCount()));
+        properties.setProperty(COMPLETED_PARTITIONS, checkpoint.getCompletedPartitions().stream()
+                .map(String::valueOf)
+                .collect(Collectors.joining(",")));
+        properties.setProperty(PROCESSED_AGGREGATES, Long.toString(checkpoint.getProcessedAggregates()));
+        try {
+            Files.createDirectories(directory);
+            var temp = Files.createTempFile(directory, scanName, ".tmp");
+            try (var writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                properties.store(writer, "Checkpoint of partitioned scan " + scanName);
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Could not write checkpoint " + file, ex);
+        }
+    }
+
+    @Override
+    public synchronized void delete(@NotNull String scanName) {
+        try {
+            Files.deleteIfExists(fileOf(scanName));
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Could not delete checkpoint of " + scanName, ex);
+        }
+    }
+}
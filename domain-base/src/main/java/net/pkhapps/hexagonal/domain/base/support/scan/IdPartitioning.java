@@ -0,0 +1,184 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.domain.base.support.scan;
+
+import net.pkhapps.hexagonal.domain.base.support.NumericDomainObjectId;
+import net.pkhapps.hexagonal.domain.base.support.UUIDDomainObjectId;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.function.LongFunction;
+import java.util.function.ToLongFunction;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Strategy for splitting the ID space of an aggregate table into contiguous ranges for a {@link PartitionedScan}.
+ * The first and last ranges are open-ended, so together the ranges always cover every possible ID, including IDs
+ * created after the ranges were computed.
+ *
+ * @param <ID> the ID type.
+ */
+public abstract class IdPartitioning<ID> {
+
+    private IdPartitioning() {
+    }
+
+    /**
+     * Partitioning for {@link NumericDomainObjectId}s. The range between the smallest and largest existing IDs is
+     * split into ranges of equal width.
+     *
+     * @param factory a function that creates IDs from long values.
+     * @param <ID>    the ID type.
+     * @return the partitioning.
+     */
+    public static <ID extends NumericDomainObjectId> @NotNull IdPartitioning<ID> numeric(
+            @NotNull LongFunction<ID> factory) {
+        return new Numeric<>(factory, NumericDomainObjectId::unwrap);
+    }
+
+    /**
+     * Partitioning for plain {@code Long} IDs, like {@link #numeric(LongFunction)}.
+     *
+     * @return the partitioning.
+     */
+    public static @NotNull IdPartitioning<Long> longs() {
+        return new Numeric<>(Long::valueOf, Long::longValue);
+    }
+
+    /**
+     * Partitioning for {@link UUIDDomainObjectId}s. The UUID key space is split into ranges of equal width based on
+     * the most significant bits, which distributes random (version 4) UUIDs evenly without looking at the data.
+     * <p>
+     * The database must order UUIDs by their unsigned bytes, or the ranges overlap and aggregates are processed more
+     * than once. PostgreSQL's {@code uuid} type and binary columns, which {@code UUIDDomainObjectIdCustomType} of the
+     * Hibernate module maps the IDs to, do. The native {@code UUID} type of H2 1.4 orders UUIDs as signed values and
+     * must not be used.
+     *
+     * @param factory a function that creates IDs from UUIDs.
+     * @param <ID>    the ID type.
+     * @return the partitioning.
+     */
+    public static <ID extends UUIDDomainObjectId> @NotNull IdPartitioning<ID> uuid(
+            @NotNull Function<UUID, ID> factory) {
+        return new KeySpace<>(factory);
+    }
+
+    /**
+     * Partitioning for plain {@code UUID} IDs, like {@link #uuid(Function)}. Hibernate maps {@code UUID}s to binary
+     * columns by default.
+     *
+     * @return the partitioning.
+     */
+    public static @NotNull IdPartitioning<UUID> uuids() {
+        return new KeySpace<>(Function.identity());
+    }
+
+    /**
+     * Returns this partitioning if it needs the smallest and largest existing IDs, or {@code null} if it does not.
+     */
+    @Nullable Numeric<ID> asNumeric() {
+        return null;
+    }
+
+    /**
+     * Splits the ID space into at most {@code partitions} ranges.
+     *
+     * @param partitions the number of partitions.
+     * @param min        the smallest existing ID, if the partitioning is {@linkplain #asNumeric() numeric}.
+     * @param max        the largest existing ID, if the partitioning is {@linkplain #asNumeric() numeric}.
+     * @return the ranges, ordered by ID.
+     */
+    abstract @NotNull List<IdRange<ID>> split(int partitions, long min, long max);
+
+    static final class Numeric<ID> extends IdPartitioning<ID> {
+        private final LongFunction<ID> factory;
+        private final ToLongFunction<ID> unwrap;
+
+        private Numeric(@NotNull LongFunction<ID> factory, @NotNull ToLongFunction<ID> unwrap) {
+            this.factory = requireNonNull(factory);
+            this.unwrap = unwrap;
+        }
+
+        @Override
+        @NotNull Numeric<ID> asNumeric() {
+            return this;
+        }
+
+        /**
+         * Converts the given ID to the long value used as a bound.
+         */
+        long toBound(@NotNull ID id) {
+            return unwrap.applyAsLong(id);
+        }
+
+        @Override
+        @NotNull List<IdRange<ID>> split(int partitions, long min, long max) {
+            var span = BigInteger.valueOf(max).subtract(BigInteger.valueOf(min)).add(BigInteger.ONE);
+            var boundaries = new ArrayList<Long>(partitions);
+            for (int i = 1; i < partitions; ++i) {
+                var boundary = BigInteger.valueOf(min)
+                        .add(span.multiply(BigInteger.valueOf(i)).divide(BigInteger.valueOf(partitions)))
+                        .longValueExact();
+                // With fewer IDs than partitions, several boundaries coincide
+                if (boundary > min && (boundaries.isEmpty() || boundary > boundaries.get(boundaries.size() - 1))) {
+                    boundaries.add(boundary);
+                }
+            }
+            var ranges = new ArrayList<IdRange<ID>>(boundaries.size() + 1);
+            ID lower = null;
+            for (var boundary : boundaries) {
+                var upper = factory.apply(boundary);
+                ranges.add(new IdRange<>(ranges.size(), lower, upper));
+                lower = upper;
+            }
+            ranges.add(new IdRange<>(ranges.size(), lower, null));
+            return ranges;
+        }
+    }
+
+    private static final class KeySpace<ID> extends IdPartitioning<ID> {
+        private static final BigInteger KEY_SPACE = BigInteger.ONE.shiftLeft(Long.SIZE);
+
+        private final Function<UUID, ID> factory;
+
+        private KeySpace(@NotNull Function<UUID, ID> factory) {
+            this.factory = requireNonNull(factory);
+        }
+
+        @Override
+        @NotNull List<IdRange<ID>> split(int partitions, long min, long max) {
+            var ranges = new ArrayList<IdRange<ID>>(partitions);
+            ID lower = null;
+            for (int i = 1; i < partitions; ++i) {
+                var mostSignificantBits = KEY_SPACE.multiply(BigInteger.valueOf(i))
+                        .divide(BigInteger.valueOf(partitions)).longValue();
+                var upper = factory.apply(new UUID(mostSignificantBits, 0));
+                ranges.add(new IdRange<>(i - 1, lower, upper));
+                lower = upper;
+            }
+            ranges.add(new IdRange<>(ranges.size(), lower, null));
+            return ranges;
+        }
+    }
+}
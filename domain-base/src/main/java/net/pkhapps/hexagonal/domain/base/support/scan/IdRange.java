@@ -0,0 +1,57 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.domain.base.support.scan;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A contiguous range of IDs covered by one partition of a {@link PartitionedScan}. A missing bound means that the
+ * range is open in that direction.
+ *
+ * @param <ID> the ID type.
+ */
+final class IdRange<ID> {
+
+    private final int index;
+    private final ID lowerInclusive;
+    private final ID upperExclusive;
+
+    IdRange(int index, @Nullable ID lowerInclusive, @Nullable ID upperExclusive) {
+        this.index = index;
+        this.lowerInclusive = lowerInclusive;
+        this.upperExclusive = upperExclusive;
+    }
+
+    int getIndex() {
+        return index;
+    }
+
+    @Nullable ID getLowerInclusive() {
+        return lowerInclusive;
+    }
+
+    @Nullable ID getUpperExclusive() {
+        return upperExclusive;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("#%d[%s, %s)", index, lowerInclusive == null ? "" : lowerInclusive,
+                upperExclusive == null ? "" : upperExclusive);
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.domain.base.support.scan;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * {@link ScanCheckpointStore} that keeps checkpoints in memory. Scans can be resumed after failures within the same
+ * JVM, but not after restarts.
+ */
+public class InMemoryScanCheckpointStore implements ScanCheckpointStore {
+
+    private final Map<String, ScanCheckpoint> checkpoints = new ConcurrentHashMap<>();
+
+    @Override
+    public @NotNull Optional<ScanCheckpoint> load(@NotNull String scanName) {
+        return Optional.ofNullable(checkpoints.get(requireNonNull(scanName)));
+    }
+
+    @Override
+    public void save(@NotNull String scanName, @NotNull ScanCheckpoint checkpoint) {
+        checkpoints.put(requireNonNull(scanName), requireNonNull(checkpoint));
+    }
+
+    @Override
+    public void delete(@NotNull String scanName) {
+        checkpoints.remove(requireNonNull(scanName));
+    }
+}
@@ -0,0 +1,382 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.domain.base.support.scan;
+
+import net.pkhapps.hexagonal.domain.base.BaseAggregateRoot;
+import net.pkhapps.hexagonal.domain.base.BaseRepository;
+import net.pkhapps.hexagonal.domain.base.ExtendedRepository;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.Expression;
+import javax.persistence.criteria.Predicate;
+import java.io.Serializable;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Processes all aggregates of a repository (optionally filtered by a {@link Specification}) by splitting the table
+ * into contiguous ID ranges and scanning the ranges in parallel. Each partition is read in batches ordered by ID, and
+ * every batch is read and processed in a transaction of its own, so the worker threads use separate connections and
+ * no transaction stays open for long.
+ * <p>
+ * Completed partitions are recorded in a {@link ScanCheckpointStore}. If the scan fails, running partitions are
+ * allowed to finish, and running the scan again with the same name skips the completed partitions. Batches of
+ * partitions that did not complete are processed again, so the processor should be idempotent.
+ * <p>
+ * If the repository is an {@link ExtendedRepository}, batches are read with
+ * {@link ExtendedRepository#findSlice(Specification, Pageable)}, which does not count the matching rows.
+ *
+ * @param <Aggregate> the aggregate type.
+ * @param <ID>        the ID type.
+ */
+public class PartitionedScan<Aggregate extends BaseAggregateRoot<ID>, ID extends Serializable> {
+
+    /**
+     * The default number of partitions.
+     */
+    public static final int DEFAULT_PARTITION_COUNT = 64;
+
+    /**
+     * The default number of partitions scanned in parallel.
+     */
+    public static final int DEFAULT_PARALLELISM = 4;
+
+    /**
+     * The default number of aggregates per batch.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 500;
+
+    private final BaseRepository<Aggregate, ID> repository;
+    private final IdPartitioning<ID> partitioning;
+    private final PlatformTransactionManager transactionManager;
+    private String idAttribute = "id";
+    private int partitionCount = DEFAULT_PARTITION_COUNT;
+    private int parallelism = DEFAULT_PARALLELISM;
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    private ScanCheckpointStore checkpointStore = new InMemoryScanCheckpointStore();
+    private ScanProgressListener progressListener;
+
+    /**
+     * Creates a new {@code PartitionedScan}.
+     *
+     * @param repository         the repository to scan.
+     * @param partitioning       the strategy for splitting the IDs into partitions.
+     * @param transactionManager the transaction manager to use for the batches.
+     */
+    public PartitionedScan(@NotNull BaseRepository<Aggregate, ID> repository,
+                           @NotNull IdPartitioning<ID> partitioning,
+                           @NotNull PlatformTransactionManager transactionManager) {
+        this.repository = requireNonNull(repository);
+        this.partitioning = requireNonNull(partitioning);
+        this.transactionManager = requireNonNull(transactionManager);
+    }
+
+    /**
+     * Sets the name of the ID attribute of the aggregate. The default is {@code id}.
+     *
+     * @param idAttribute the name of the ID attribute.
+     */
+    public void setIdAttribute(@NotNull String idAttribute) {
+        this.idAttribute = requireNonNull(idAttribute);
+    }
+
+    /**
+     * Sets the number of partitions to split the table into. Resumed scans keep the partitioning they were started
+     * with. The default is {@value #DEFAULT_PARTITION_COUNT}.
+     *
+     * @param partitionCount the number of partitions.
+     */
+    public void setPartitionCount(int partitionCount) {
+        if (partitionCount < 1) {
+            throw new IllegalArgumentException("partitionCount must be at least 1");
+        }
+        this.partitionCount = partitionCount;
+    }
+
+    /**
+     * Sets the number of partitions to scan in parallel. Every worker uses one database connection at a time. The
+     * default is {@value #DEFAULT_PARALLELISM}.
+     *
+     * @param parallelism the number of parallel workers.
+     */
+    public void setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be at least 1");
+        }
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Sets the number of aggregates to read and process per transaction. The default is
+     * {@value #DEFAULT_BATCH_SIZE}.
+     *
+     * @param batchSize the batch size.
+     */
+    public void setBatchSize(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize must be at least 1");
+        }
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Sets the store for the checkpoints of the scan. The default is an {@link InMemoryScanCheckpointStore}.
+     *
+     * @param checkpointStore the checkpoint store.
+     */
+    public void setCheckpointStore(@NotNull ScanCheckpointStore checkpointStore) {
+        this.checkpointStore = requireNonNull(checkpointStore);
+    }
+
+    /**
+     * Sets the listener to notify of the progress of the scan.
+     *
+     * @param progressListener the listener, or {@code null} to not report progress.
+     */
+    public void setProgressListener(@Nullable ScanProgressListener progressListener) {
+        this.progressListener = progressListener;
+    }
+
+    /**
+     * Runs the scan, resuming it if a checkpoint exists for the given name. The checkpoint is removed when the scan
+     * completes.
+     *
+     * @param scanName  the name of the scan, used as the checkpoint key.
+     * @param filter    the specification that aggregates must match to be processed, or {@code null} to process all
+     *                  aggregates.
+     * @param processor the processor, called with the aggregates of every batch inside the transaction of the batch.
+     * @return the final progress of the scan.
+     * @throws IllegalStateException if any partition failed.
+     */
+    public @NotNull ScanProgress run(@NotNull String scanName, @Nullable Specification<Aggregate> filter,
+                                     @NotNull Consumer<List<Aggregate>> processor) {
+        requireNonNull(scanName);
+        requireNonNull(processor);
+        var checkpoint = checkpointStore.load(scanName).orElseGet(this::createCheckpoint);
+        checkpointStore.save(scanName, checkpoint);
+        var ranges = partitioning.split(checkpoint.getPartitionCount(), checkpoint.getLowerBound(),
+                checkpoint.getUpperBound());
+        var pending = ranges.stream()
+                .filter(range -> !checkpoint.getCompletedPartitions().contains(range.getIndex()))
+                .collect(Collectors.toList());
+        var state = new RunState(scanName, ranges.size(), checkpoint);
+        if (!pending.isEmpty()) {
+            runPartitions(state, pending, filter, processor);
+        }
+        checkpointStore.delete(scanName);
+        return state.progress();
+    }
+
+    private @NotNull ScanCheckpoint createCheckpoint() {
+        var numeric = partitioning.asNumeric();
+        if (numeric == null) {
+            return new ScanCheckpoint(0, 0, partitionCount, Set.of(), 0);
+        }
+        var transaction = new TransactionTemplate(transactionManager);
+        transaction.setReadOnly(true);
+        var bounds = transaction.execute(status -> {
+            var first = findSlice(null, PageRequest.of(0, 1, Sort.by(Sort.Direction.ASC, idAttribute)));
+            var last = findSlice(null, PageRequest.of(0, 1, Sort.by(Sort.Direction.DESC, idAttribute)));
+            return first.isEmpty() || last.isEmpty() ? new long[]{0, 0} : new long[]{
+                    numeric.toBound(first.getContent().get(0).getIdentifier()),
+                    numeric.toBound(last.getContent().get(0).getIdentifier())};
+        });
+        requireNonNull(bounds);
+        return new ScanCheckpoint(bounds[0], bounds[1], partitionCount, Set.of(), 0);
+    }
+
+    private void runPartitions(@NotNull RunState state, @NotNull List<IdRange<ID>> pending,
+                               @Nullable Specification<Aggregate> filter,
+                               @NotNull Consumer<List<Aggregate>> processor) {
+        var threadNumber = new AtomicInteger();
+        var executor = Executors.newFixedThreadPool(Math.min(parallelism, pending.size()), runnable -> {
+            var thread = new Thread(runnable, state.scanName + "-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        var failed = new AtomicBoolean();
+        try {
+            var futures = new ArrayList<Future<?>>(pending.size());
+            for (var range : pending) {
+                futures.add(executor.submit(() -> {
+                    if (failed.get()) {
+                        return;
+                    }
+                    try {
+                        var processed = scanPartition(state, range, filter, processor, failed);
+                        state.partitionCompleted(range.getIndex(), processed);
+                    } catch (RuntimeException | Error ex) {
+                        failed.set(true);
+                        throw ex;
+                    }
+                }));
+            }
+            RuntimeException failure = null;
+            for (var future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException ex) {
+                    if (ex.getCause() instanceof PartitionAbortedException) {
+                        continue;
+                    }
+                    if (failure == null) {
+                        failure = new IllegalStateException("Partitioned scan " + state.scanName
+                                + " failed, run it again to resume from the completed partitions", ex.getCause());
+                    } else {
+                        failure.addSuppressed(ex.getCause());
+                    }
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    failed.set(true);
+                    throw new IllegalStateException("Interrupted while waiting for partitioned scan "
+                            + state.scanName, ex);
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private @NotNull Slice<Aggregate> findSlice(@Nullable Specification<Aggregate> spec, @NotNull Pageable page) {
+        if (repository instanceof ExtendedRepository) {
+            return ((ExtendedRepository<Aggregate, ID>) repository).findSlice(spec, page);
+        }
+        return repository.findAll(spec, page);
+    }
+
+    private long scanPartition(@NotNull RunState state, @NotNull IdRange<ID> range,
+                               @Nullable Specification<Aggregate> filter,
+                               @NotNull Consumer<List<Aggregate>> processor, @NotNull AtomicBoolean failed) {
+        var transaction = new TransactionTemplate(transactionManager);
+        var page = PageRequest.of(0, batchSize, Sort.by(Sort.Direction.ASC, idAttribute));
+        var processed = 0L;
+        ID after = null;
+        while (true) {
+            var spec = Specification.where(filter).and(rangeOf(range, after));
+            var batch = transaction.execute(status -> {
+                var slice = findSlice(spec, page);
+                if (slice.hasContent()) {
+                    processor.accept(slice.getContent());
+                }
+                return slice;
+            });
+            requireNonNull(batch);
+            processed += batch.getNumberOfElements();
+            state.batchProcessed(batch.getNumberOfElements());
+            if (!batch.hasNext()) {
+                return processed;
+            }
+            if (failed.get()) {
+                // Another partition failed; leave this one incomplete so that it is resumed later
+                throw new PartitionAbortedException();
+            }
+            after = batch.getContent().get(batch.getNumberOfElements() - 1).getIdentifier();
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private @NotNull Specification<Aggregate> rangeOf(@NotNull IdRange<ID> range, @Nullable ID after) {
+        // The ID types are not Comparable, so raw types are used to build the comparisons
+        return (root, query, builder) -> {
+            Expression id = root.get(idAttribute);
+            var predicates = new ArrayList<Predicate>(3);
+            if (range.getLowerInclusive() != null) {
+                predicates.add(builder.greaterThanOrEqualTo(id, literal(builder, range.getLowerInclusive())));
+            }
+            if (range.getUpperExclusive() != null) {
+                predicates.add(builder.lessThan(id, literal(builder, range.getUpperExclusive())));
+            }
+            if (after != null) {
+                predicates.add(builder.greaterThan(id, literal(builder, after)));
+            }
+            return predicates.isEmpty() ? null : builder.and(predicates.toArray(new Predicate[0]));
+        };
+    }
+
+    @SuppressWarnings("rawtypes")
+    private static @NotNull Expression literal(@NotNull CriteriaBuilder builder, @NotNull Object value) {
+        return builder.literal(value);
+    }
+
+    private static final class PartitionAbortedException extends RuntimeException {
+        private PartitionAbortedException() {
+            super(null, null, false, false);
+        }
+    }
+
+    private final class RunState {
+        private final String scanName;
+        private final int partitionCount;
+        private final long startTime = System.nanoTime();
+        private ScanCheckpoint checkpoint;
+        private long processedInIncompletePartitions;
+
+        private RunState(@NotNull String scanName, int partitionCount, @NotNull ScanCheckpoint checkpoint) {
+            this.scanName = scanName;
+            this.partitionCount = partitionCount;
+            this.checkpoint = checkpoint;
+        }
+
+        synchronized void batchProcessed(int count) {
+            processedInIncompletePartitions += count;
+            notifyListener();
+        }
+
+        synchronized void partitionCompleted(int partition, long processed) {
+            processedInIncompletePartitions -= processed;
+            checkpoint = checkpoint.withCompletedPartition(partition, processed);
+            checkpointStore.save(scanName, checkpoint);
+            notifyListener();
+        }
+
+        synchronized @NotNull ScanProgress progress() {
+            return new ScanProgress(scanName, partitionCount, checkpoint.getCompletedPartitions().size(),
+                    checkpoint.getProcessedAggregates() + processedInIncompletePartitions,
+                    Duration.ofNanos(System.nanoTime() - startTime));
+        }
+
+        private void notifyListener() {
+            if (progressListener != null) {
+                progressListener.onProgress(progress());
+            }
+        }
+    }
+}
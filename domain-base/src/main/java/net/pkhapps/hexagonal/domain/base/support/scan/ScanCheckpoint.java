@@ -0,0 +1,111 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.domain.base.support.scan;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Immutable record of the progress of a {@link PartitionedScan}, used to resume the scan after a failure. Besides the
+ * completed partitions, the checkpoint records the inputs of the partitioning, so that a resumed scan uses exactly the
+ * same partitions even if IDs have been added or removed in the meantime.
+ */
+public final class ScanCheckpoint {
+
+    private final long lowerBound;
+    private final long upperBound;
+    private final int partitionCount;
+    private final Set<Integer> completedPartitions;
+    private final long processedAggregates;
+
+    /**
+     * Creates a new {@code ScanCheckpoint}.
+     *
+     * @param lowerBound          the smallest ID when the scan was started (for numeric partitioning).
+     * @param upperBound          the largest ID when the scan was started (for numeric partitioning).
+     * @param partitionCount      the requested number of partitions.
+     * @param completedPartitions the indexes of the completed partitions.
+     * @param processedAggregates the number of aggregates processed in the completed partitions.
+     */
+    public ScanCheckpoint(long lowerBound, long upperBound, int partitionCount,
+                          @NotNull Set<Integer> completedPartitions, long processedAggregates) {
+        this.lowerBound = lowerBound;
+        this.upperBound = upperBound;
+        this.partitionCount = partitionCount;
+        this.completedPartitions = Collections.unmodifiableSet(new TreeSet<>(completedPartitions));
+        this.processedAggregates = processedAggregates;
+    }
+
+    /**
+     * Returns the smallest ID when the scan was started (for numeric partitioning).
+     */
+    public long getLowerBound() {
+        return lowerBound;
+    }
+
+    /**
+     * Returns the largest ID when the scan was started (for numeric partitioning).
+     */
+    public long getUpperBound() {
+        return upperBound;
+    }
+
+    /**
+     * Returns the requested number of partitions.
+     */
+    public int getPartitionCount() {
+        return partitionCount;
+    }
+
+    /**
+     * Returns the indexes of the completed partitions.
+     */
+    public @NotNull Set<Integer> getCompletedPartitions() {
+        return completedPartitions;
+    }
+
+    /**
+     * Returns the number of aggregates processed in the completed partitions.
+     */
+    public long getProcessedAggregates() {
+        return processedAggregates;
+    }
+
+    /**
+     * Returns a copy of this checkpoint with the given partition marked as completed.
+     *
+     * @param partition the index of the partition.
+     * @param processed the number of aggregates processed in the partition.
+     * @return the new checkpoint.
+     */
+    public @NotNull ScanCheckpoint withCompletedPartition(int partition, long processed) {
+        var completed = new TreeSet<>(completedPartitions);
+        completed.add(partition);
+        return new ScanCheckpoint(lowerBound, upperBound, partitionCount, completed, processedAggregates + processed);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s{bounds=[%d, %d], partitions=%d, completed=%s, processed=%d}",
+                getClass().getSimpleName(), lowerBound, upperBound, partitionCount, completedPartitions,
+                processedAggregates);
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.domain.base.support.scan;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Optional;
+
+/**
+ * Interface for storing the {@linkplain ScanCheckpoint checkpoints} of {@linkplain PartitionedScan partitioned
+ * scans}. To survive restarts, checkpoints must be stored outside the JVM, for example with
+ * {@link FileScanCheckpointStore}.
+ */
+public interface ScanCheckpointStore {
+
+    /**
+     * Loads the checkpoint of the given scan.
+     *
+     * @param scanName the name of the scan.
+     * @return the checkpoint, or an empty {@code Optional} if the scan has no checkpoint.
+     */
+    @NotNull Optional<ScanCheckpoint> load(@NotNull String scanName);
+
+    /**
+     * Stores the checkpoint of the given scan, replacing any previous checkpoint.
+     *
+     * @param scanName   the name of the scan.
+     * @param checkpoint the checkpoint.
+     */
+    void save(@NotNull String scanName, @NotNull ScanCheckpoint checkpoint);
+
+    /**
+     * Removes the checkpoint of the given scan. This is done when the scan completes.
+     *
+     * @param scanName the name of the scan.
+     */
+    void delete(@NotNull String scanName);
+}
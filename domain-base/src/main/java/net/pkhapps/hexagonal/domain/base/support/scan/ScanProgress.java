@@ -0,0 +1,93 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.domain.base.support.scan;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.time.Duration;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Snapshot of the progress of a {@link PartitionedScan}.
+ */
+public final class ScanProgress {
+
+    private final String scanName;
+    private final int partitionCount;
+    private final int completedPartitions;
+    private final long processedAggregates;
+    private final Duration elapsed;
+
+    ScanProgress(@NotNull String scanName, int partitionCount, int completedPartitions, long processedAggregates,
+                 @NotNull Duration elapsed) {
+        this.scanName = requireNonNull(scanName);
+        this.partitionCount = partitionCount;
+        this.completedPartitions = completedPartitions;
+        this.processedAggregates = processedAggregates;
+        this.elapsed = requireNonNull(elapsed);
+    }
+
+    /**
+     * Returns the name of the scan.
+     */
+    public @NotNull String getScanName() {
+        return scanName;
+    }
+
+    /**
+     * Returns the total number of partitions.
+     */
+    public int getPartitionCount() {
+        return partitionCount;
+    }
+
+    /**
+     * Returns the number of completed partitions, including partitions completed before the scan was resumed.
+     */
+    public int getCompletedPartitions() {
+        return completedPartitions;
+    }
+
+    /**
+     * Returns the number of processed aggregates, including aggregates processed before the scan was resumed.
+     */
+    public long getProcessedAggregates() {
+        return processedAggregates;
+    }
+
+    /**
+     * Returns the time elapsed since the scan was (re)started.
+     */
+    public @NotNull Duration getElapsed() {
+        return elapsed;
+    }
+
+    /**
+     * Returns whether all partitions have been completed.
+     */
+    public boolean isDone() {
+        return completedPartitions == partitionCount;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s{scan=%s, partitions=%d/%d, processed=%d, elapsed=%s}", getClass().getSimpleName(),
+                scanName, completedPartitions, partitionCount, processedAggregates, elapsed);
+    }
+}
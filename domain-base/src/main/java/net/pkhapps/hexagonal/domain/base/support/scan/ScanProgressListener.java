@@ -0,0 +1,35 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.domain.base.support.scan;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Listener notified of the progress of a {@link PartitionedScan} after every processed batch. The listener is called
+ * from the worker threads of the scan, but never concurrently.
+ */
+@FunctionalInterface
+public interface ScanProgressListener {
+
+    /**
+     * Called when the scan has made progress.
+     *
+     * @param progress the current progress.
+     */
+    void onProgress(@NotNull ScanProgress progress);
+}
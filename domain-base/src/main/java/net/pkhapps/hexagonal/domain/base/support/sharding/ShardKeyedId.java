@@ -0,0 +1,37 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.domain.base.support.sharding;
+
+import net.pkhapps.hexagonal.domain.base.DomainObjectId;
+
+/**
+ * Interface for {@linkplain DomainObjectId domain object IDs} that carry the key of the shard they belong to, for
+ * example as the high bits of a numeric ID. Embedding the shard key makes it possible to move aggregates between shards
+ * or add new shards without rehashing existing IDs.
+ *
+ * @see ShardResolver#embeddedKey(int)
+ */
+public interface ShardKeyedId extends DomainObjectId {
+
+    /**
+     * Returns the shard key embedded in this ID. The key is mapped to a shard by taking it modulo the number of shards.
+     *
+     * @return the shard key (never negative).
+     */
+    int shardKey();
+}
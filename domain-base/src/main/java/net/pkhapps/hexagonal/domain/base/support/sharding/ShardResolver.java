@@ -0,0 +1,86 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.domain.base.support.sharding;
+
+import net.pkhapps.hexagonal.domain.base.DomainObjectId;
+import net.pkhapps.hexagonal.domain.base.support.StableHash;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Functional interface for deterministically mapping IDs to shards. The mapping must never change for an ID that has
+ * already been stored.
+ *
+ * @param <ID> the ID type.
+ * @see ShardedRepository
+ */
+@FunctionalInterface
+public interface ShardResolver<ID> {
+
+    /**
+     * Returns the shard of the given ID.
+     *
+     * @param id the ID.
+     * @return the shard, in the range {@code [0, shardCount)}.
+     */
+    int shardOf(@NotNull ID id);
+
+    /**
+     * Returns a resolver that maps IDs to shards based on their {@linkplain StableHash stable hash}.
+     *
+     * @param shardCount the number of shards.
+     * @param <ID>       the ID type.
+     * @return the resolver.
+     */
+    static <ID extends DomainObjectId> @NotNull ShardResolver<ID> hashing(int shardCount) {
+        requirePositive(shardCount);
+        return id -> StableHash.bucket(StableHash.of(id), shardCount);
+    }
+
+    /**
+     * Returns a resolver that maps IDs to shards based on the {@linkplain ShardKeyedId#shardKey() key} embedded in them.
+     *
+     * @param shardCount the number of shards.
+     * @param <ID>       the ID type.
+     * @return the resolver.
+     */
+    static <ID extends ShardKeyedId> @NotNull ShardResolver<ID> embeddedKey(int shardCount) {
+        requirePositive(shardCount);
+        return id -> Math.floorMod(id.shardKey(), shardCount);
+    }
+
+    /**
+     * Returns a resolver that uses the {@linkplain ShardKeyedId#shardKey() embedded key} of IDs that have one, and the
+     * {@linkplain StableHash stable hash} of all other IDs.
+     *
+     * @param shardCount the number of shards.
+     * @param <ID>       the ID type.
+     * @return the resolver.
+     */
+    static <ID extends DomainObjectId> @NotNull ShardResolver<ID> embeddedKeyOrHashing(int shardCount) {
+        requirePositive(shardCount);
+        return id -> id instanceof ShardKeyedId
+                ? Math.floorMod(((ShardKeyedId) id).shardKey(), shardCount)
+                : StableHash.bucket(StableHash.of(id), shardCount);
+    }
+
+    private static void requirePositive(int shardCount) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("shardCount must be at least 1");
+        }
+    }
+}
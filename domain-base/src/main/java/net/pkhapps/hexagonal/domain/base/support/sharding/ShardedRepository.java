@@ -0,0 +1,323 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.domain.base.support.sharding;
+
+import net.pkhapps.hexagonal.domain.base.BaseAggregateRoot;
+import net.pkhapps.hexagonal.domain.base.BaseRepository;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Facade that spreads the aggregates of one type over several shards, each of which is a {@link BaseRepository} backed
+ * by its own {@link javax.sql.DataSource} (and typically its own entity manager factory and transaction manager).
+ * Operations on single aggregates are routed to the shard {@linkplain ShardResolver resolved} from the aggregate ID.
+ * Specification queries are fanned out to all shards in parallel and the results merged.
+ * <p>
+ * Every shard operation runs in the transaction of its own shard. Operations that touch several shards, such as
+ * {@link #saveAll(Iterable)}, are therefore <b>not atomic</b> across shards. Aggregates must have their IDs assigned
+ * before they are saved, since the ID decides the shard.
+ *
+ * @param <Aggregate> the aggregate root type.
+ * @param <ID>        the ID type.
+ */
+public class ShardedRepository<Aggregate extends BaseAggregateRoot<ID>, ID extends Serializable> {
+
+    private final List<BaseRepository<Aggregate, ID>> shards;
+    private final ShardResolver<? super ID> resolver;
+    private final Executor executor;
+
+    /**
+     * Creates a new {@code ShardedRepository}.
+     *
+     * @param shards   the repositories of the shards, in shard order.
+     * @param resolver the resolver that maps IDs to shards.
+     * @param executor the executor to run fan-out queries on. Since the queries block on JDBC, this should not be
+     *                 {@link java.util.concurrent.ForkJoinPool#commonPool()}.
+     */
+    public ShardedRepository(@NotNull List<? extends BaseRepository<Aggregate, ID>> shards,
+                             @NotNull ShardResolver<? super ID> resolver,
+                             @NotNull Executor executor) {
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("At least one shard is required");
+        }
+        this.shards = List.copyOf(shards);
+        this.resolver = requireNonNull(resolver);
+        this.executor = requireNonNull(executor);
+    }
+
+    /**
+     * Returns the number of shards.
+     *
+     * @return the number of shards.
+     */
+    public int getShardCount() {
+        return shards.size();
+    }
+
+    /**
+     * Returns the repository of the given shard, for operations that this facade does not support.
+     *
+     * @param shard the shard.
+     * @return the repository.
+     */
+    public @NotNull BaseRepository<Aggregate, ID> getShard(int shard) {
+        return shards.get(shard);
+    }
+
+    /**
+     * Returns the shard that the aggregate with the given ID belongs to.
+     *
+     * @param id the ID.
+     * @return the shard.
+     * @throws IllegalStateException if the resolver returns a shard that does not exist.
+     */
+    public int shardOf(@NotNull ID id) {
+        var shard = resolver.shardOf(requireNonNull(id));
+        if (shard < 0 || shard >= shards.size()) {
+            throw new IllegalStateException("Resolver mapped " + id + " to nonexistent shard " + shard);
+        }
+        return shard;
+    }
+
+    /**
+     * Returns the repository of the shard that the aggregate with the given ID belongs to.
+     *
+     * @param id the ID.
+     * @return the repository.
+     */
+    public @NotNull BaseRepository<Aggregate, ID> getShardOf(@NotNull ID id) {
+        return shards.get(shardOf(id));
+    }
+
+    /**
+     * Finds the aggregate with the given ID in its shard.
+     *
+     * @param id the ID.
+     * @return the aggregate, or an empty {@code Optional} if not found.
+     */
+    public @NotNull Optional<Aggregate> findById(@NotNull ID id) {
+        return getShardOf(id).findById(id);
+    }
+
+    /**
+     * Checks whether an aggregate with the given ID exists in its shard.
+     *
+     * @param id the ID.
+     * @return true if the aggregate exists, false otherwise.
+     */
+    public boolean existsById(@NotNull ID id) {
+        return getShardOf(id).existsById(id);
+    }
+
+    /**
+     * Finds all aggregates with the given IDs, querying each involved shard in parallel. The order of the result is
+     * unspecified.
+     *
+     * @param ids the IDs.
+     * @return a list of found aggregates.
+     */
+    public @NotNull List<Aggregate> findAllById(@NotNull Iterable<ID> ids) {
+        var idsByShard = new LinkedHashMap<Integer, List<ID>>();
+        ids.forEach(id -> idsByShard.computeIfAbsent(shardOf(id), shard -> new ArrayList<>()).add(id));
+        return concat(onShards(idsByShard, (repository, shardIds) -> repository.findAllById(shardIds)));
+    }
+
+    /**
+     * Saves the given aggregate in its shard.
+     *
+     * @param aggregate the aggregate to save, with an ID assigned.
+     * @param <S>       the aggregate type.
+     * @return the saved aggregate.
+     */
+    public <S extends Aggregate> @NotNull S save(@NotNull S aggregate) {
+        return getShardOf(requireId(aggregate)).save(aggregate);
+    }
+
+    /**
+     * Saves the given aggregates, one transaction per involved shard. If saving fails on one shard, the aggregates of
+     * other shards may still have been saved.
+     *
+     * @param aggregates the aggregates to save, with IDs assigned.
+     * @param <S>        the aggregate type.
+     * @return a list of saved aggregates, in unspecified order.
+     */
+    public <S extends Aggregate> @NotNull List<S> saveAll(@NotNull Iterable<S> aggregates) {
+        var aggregatesByShard = new LinkedHashMap<Integer, List<S>>();
+        aggregates.forEach(aggregate -> aggregatesByShard
+                .computeIfAbsent(shardOf(requireId(aggregate)), shard -> new ArrayList<>())
+                .add(aggregate));
+        return concat(onShards(aggregatesByShard, BaseRepository::saveAll));
+    }
+
+    /**
+     * Deletes the aggregate with the given ID from its shard.
+     *
+     * @param id the ID.
+     */
+    public void deleteById(@NotNull ID id) {
+        getShardOf(id).deleteById(id);
+    }
+
+    /**
+     * Deletes the given aggregate from its shard.
+     *
+     * @param aggregate the aggregate to delete.
+     */
+    public void delete(@NotNull Aggregate aggregate) {
+        getShardOf(requireId(aggregate)).delete(aggregate);
+    }
+
+    /**
+     * Finds all aggregates matching the given specification on all shards. The order of the result is unspecified.
+     *
+     * @param specification the specification, or {@code null} to find all aggregates.
+     * @return a list of matching aggregates.
+     */
+    public @NotNull List<Aggregate> findAll(@Nullable Specification<Aggregate> specification) {
+        return concat(fanOut(repository -> repository.findAll(specification)));
+    }
+
+    /**
+     * Finds all aggregates matching the given specification on all shards, in the given order. Every shard sorts its
+     * own results in the database, after which the sorted results are merged by comparing the values of the sorted
+     * properties, which must be {@link Comparable}. Nested property paths are supported, but properties that the
+     * database sorts differently from Java (such as strings under a non-binary collation) may be merged in a slightly
+     * different order than a single database would return them.
+     *
+     * @param specification the specification, or {@code null} to find all aggregates.
+     * @param sort          the sort order.
+     * @return a sorted list of matching aggregates.
+     */
+    public @NotNull List<Aggregate> findAll(@Nullable Specification<Aggregate> specification, @NotNull Sort sort) {
+        requireNonNull(sort, "sort must not be null");
+        var results = fanOut(repository -> repository.findAll(specification, sort));
+        return sort.isSorted() ? merge(results, new SortComparator(sort)) : concat(results);
+    }
+
+    /**
+     * Counts the aggregates matching the given specification on all shards.
+     *
+     * @param specification the specification, or {@code null} to count all aggregates.
+     * @return the total number of matching aggregates.
+     */
+    public long count(@Nullable Specification<Aggregate> specification) {
+        return fanOut(repository -> repository.count(specification)).stream().mapToLong(Long::longValue).sum();
+    }
+
+    /**
+     * Runs the given operation on all shards in parallel and returns the results in shard order.
+     *
+     * @param operation the operation to run.
+     * @param <R>       the result type.
+     * @return a list of results, one per shard.
+     */
+    public <R> @NotNull List<R> fanOut(@NotNull Function<BaseRepository<Aggregate, ID>, R> operation) {
+        requireNonNull(operation);
+        if (shards.size() == 1) {
+            return List.of(operation.apply(shards.get(0)));
+        }
+        var futures = shards.stream()
+                .map(repository -> CompletableFuture.supplyAsync(() -> operation.apply(repository), executor))
+                .collect(Collectors.toList());
+        return join(futures);
+    }
+
+    private <T, R> @NotNull List<R> onShards(@NotNull Map<Integer, List<T>> itemsByShard,
+                                             @NotNull ShardOperation<Aggregate, ID, T, R> operation) {
+        if (itemsByShard.size() == 1) {
+            var entry = itemsByShard.entrySet().iterator().next();
+            return List.of(operation.apply(shards.get(entry.getKey()), entry.getValue()));
+        }
+        var futures = itemsByShard.entrySet().stream()
+                .map(entry -> CompletableFuture.supplyAsync(
+                        () -> operation.apply(shards.get(entry.getKey()), entry.getValue()), executor))
+                .collect(Collectors.toList());
+        return join(futures);
+    }
+
+    private static <R> @NotNull List<R> join(@NotNull List<CompletableFuture<R>> futures) {
+        try {
+            CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            throw ex;
+        }
+        return futures.stream().map(CompletableFuture::join).collect(Collectors.toList());
+    }
+
+    private static <T> @NotNull List<T> concat(@NotNull List<? extends List<T>> lists) {
+        var result = new ArrayList<T>(lists.stream().mapToInt(List::size).sum());
+        lists.forEach(result::addAll);
+        return result;
+    }
+
+    private static <T> @NotNull List<T> merge(@NotNull List<? extends List<T>> sortedLists,
+                                              @NotNull Comparator<? super T> comparator) {
+        var result = new ArrayList<T>(sortedLists.stream().mapToInt(List::size).sum());
+        // Each cursor is {list index, position}, ordered by the element at the position
+        var cursors = new PriorityQueue<int[]>((a, b) -> comparator.compare(sortedLists.get(a[0]).get(a[1]),
+                sortedLists.get(b[0]).get(b[1])));
+        for (int i = 0; i < sortedLists.size(); ++i) {
+            if (!sortedLists.get(i).isEmpty()) {
+                cursors.add(new int[]{i, 0});
+            }
+        }
+        while (!cursors.isEmpty()) {
+            var cursor = cursors.poll();
+            var list = sortedLists.get(cursor[0]);
+            result.add(list.get(cursor[1]));
+            if (++cursor[1] < list.size()) {
+                cursors.add(cursor);
+            }
+        }
+        return result;
+    }
+
+    private @NotNull ID requireId(@NotNull Aggregate aggregate) {
+        var id = aggregate.getId();
+        if (id == null) {
+            throw new IllegalArgumentException("Sharded aggregates must have their IDs assigned before saving");
+        }
+        return id;
+    }
+
+    @FunctionalInterface
+    private interface ShardOperation<Aggregate extends BaseAggregateRoot<ID>, ID extends Serializable, T, R> {
+        R apply(@NotNull BaseRepository<Aggregate, ID> repository, @NotNull List<T> items);
+    }
+}
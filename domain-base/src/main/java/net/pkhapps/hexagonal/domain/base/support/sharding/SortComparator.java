@@ -0,0 +1,118 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.domain.base.support.sharding;
+
+import net.pkhapps.hexagonal.domain.base.support.NumericDomainObjectId;
+import net.pkhapps.hexagonal.domain.base.support.UUIDDomainObjectId;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.util.DirectFieldAccessFallbackBeanWrapper;
+
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Comparator that orders objects like a database orders rows by a {@link Sort}, used to merge results that the shards
+ * have already sorted. Property paths are read through getters, falling back to fields, and the values must be
+ * {@link Comparable}, {@linkplain NumericDomainObjectId numeric IDs} or {@linkplain UUIDDomainObjectId UUID IDs}.
+ * Numeric IDs are ordered by their numeric values, like a {@code BIGINT} column. UUID IDs are ordered by their bytes as
+ * unsigned values, like the {@code BINARY} column that {@code UUIDDomainObjectIdCustomType} maps them to; this is not
+ * the order of {@link UUID#compareTo(UUID)}, which compares signed values. With {@link Sort.NullHandling#NATIVE}, nulls
+ * are ordered as the lowest values (first when ascending), which is what H2, MySQL and SQL Server do; PostgreSQL and
+ * Oracle order them as the highest values, so sorts on nullable properties should specify the null handling
+ * explicitly.
+ * <p>
+ * The sort keys of every object are read only once and remembered by identity, so a comparator should only be used
+ * for one merge, and not by several threads.
+ */
+final class SortComparator implements Comparator<Object> {
+
+    private final Sort.Order[] orders;
+    private final Map<Object, Object[]> keys = new IdentityHashMap<>();
+
+    SortComparator(@NotNull Sort sort) {
+        this.orders = sort.stream().toArray(Sort.Order[]::new);
+    }
+
+    @Override
+    public int compare(Object o1, Object o2) {
+        var keys1 = keys.computeIfAbsent(o1, this::keysOf);
+        var keys2 = keys.computeIfAbsent(o2, this::keysOf);
+        for (int i = 0; i < orders.length; ++i) {
+            var result = compare(orders[i], keys1[i], keys2[i]);
+            if (result != 0) {
+                return result;
+            }
+        }
+        return 0;
+    }
+
+    private @NotNull Object[] keysOf(@NotNull Object object) {
+        var result = new Object[orders.length];
+        for (int i = 0; i < orders.length; ++i) {
+            result[i] = getProperty(object, orders[i].getProperty());
+        }
+        return result;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static int compare(@NotNull Sort.Order order, @Nullable Object v1, @Nullable Object v2) {
+        if (v1 == null || v2 == null) {
+            if (v1 == v2) {
+                return 0;
+            }
+            var nullFirst = order.getNullHandling() == Sort.NullHandling.NULLS_FIRST
+                    || order.getNullHandling() == Sort.NullHandling.NATIVE && order.isAscending();
+            return (v1 == null) == nullFirst ? -1 : 1;
+        }
+        int result;
+        if (order.isIgnoreCase() && v1 instanceof String && v2 instanceof String) {
+            result = ((String) v1).compareToIgnoreCase((String) v2);
+        } else if (v1 instanceof NumericDomainObjectId && v2 instanceof NumericDomainObjectId) {
+            result = ((NumericDomainObjectId) v1).unwrap().compareTo(((NumericDomainObjectId) v2).unwrap());
+        } else if (v1 instanceof UUIDDomainObjectId && v2 instanceof UUIDDomainObjectId) {
+            result = compareUnsigned(((UUIDDomainObjectId) v1).unwrap(), ((UUIDDomainObjectId) v2).unwrap());
+        } else if (v1 instanceof Comparable) {
+            result = ((Comparable) v1).compareTo(v2);
+        } else {
+            throw new IllegalArgumentException("Cannot merge results sorted by " + order.getProperty()
+                    + ", since " + v1.getClass().getName() + " is not Comparable");
+        }
+        return order.isAscending() ? result : -result;
+    }
+
+    private static int compareUnsigned(@NotNull UUID uuid1, @NotNull UUID uuid2) {
+        var result = Long.compareUnsigned(uuid1.getMostSignificantBits(), uuid2.getMostSignificantBits());
+        return result != 0 ? result
+                : Long.compareUnsigned(uuid1.getLeastSignificantBits(), uuid2.getLeastSignificantBits());
+    }
+
+    private static @Nullable Object getProperty(@Nullable Object object, @NotNull String path) {
+        var value = object;
+        for (var property : path.split("\\.")) {
+            if (value == null) {
+                return null;
+            }
+            value = new DirectFieldAccessFallbackBeanWrapper(value).getPropertyValue(property);
+        }
+        return value;
+    }
+}
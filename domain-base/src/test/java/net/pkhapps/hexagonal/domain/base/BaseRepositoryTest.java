@@ -0,0 +1,75 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.domain.base;
+
+import org.jetbrains.annotations.Nullable;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.jpa.repository.support.JpaRepositoryFactory;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.Id;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BaseRepositoryTest {
+
+    @Test
+    void baseRepository_withoutBaseRepositoryImpl_canBeCreated() {
+        var factoryBean = new LocalContainerEntityManagerFactoryBean();
+        factoryBean.setPackagesToScan(BaseRepositoryTest.class.getPackageName());
+        factoryBean.setJpaVendorAdapter(new HibernateJpaVendorAdapter());
+        factoryBean.setJpaPropertyMap(Map.of(
+                "javax.persistence.jdbc.url", "jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1",
+                "hibernate.hbm2ddl.auto", "create-drop"));
+        factoryBean.afterPropertiesSet();
+        var entityManagerFactory = factoryBean.getObject();
+        assertNotNull(entityManagerFactory);
+        var entityManager = entityManagerFactory.createEntityManager();
+        try {
+            var repository = new JpaRepositoryFactory(entityManager).getRepository(NoteRepository.class);
+            entityManager.getTransaction().begin();
+            var note = repository.save(new Note());
+            entityManager.getTransaction().commit();
+            assertTrue(repository.existsById(note.getIdentifier()));
+        } finally {
+            entityManager.close();
+            factoryBean.destroy();
+        }
+    }
+
+    @Entity
+    static class Note extends BaseAggregateRoot<Long> {
+
+        @Id
+        @GeneratedValue
+        private Long id;
+
+        @Override
+        public @Nullable Long getId() {
+            return id;
+        }
+    }
+
+    interface NoteRepository extends BaseRepository<Note, Long> {
+    }
+}
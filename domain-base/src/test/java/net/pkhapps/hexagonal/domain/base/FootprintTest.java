@@ -0,0 +1,194 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.domain.base;
+
+import net.pkhapps.hexagonal.domain.base.annotation.ChangeTracking;
+import net.pkhapps.hexagonal.domain.base.support.NumericDomainObjectId;
+import net.pkhapps.hexagonal.domain.base.support.UUIDDomainObjectId;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jol.info.ClassLayout;
+import org.openjdk.jol.info.FieldLayout;
+import org.openjdk.jol.info.GraphLayout;
+import org.openjdk.jol.vm.VM;
+
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pins the memory layout of the base classes and ID types with JOL, so that fields or eagerly allocated objects added
+ * to them are noticed. Sizes are computed for the running VM, so the test passes regardless of whether compressed
+ * references are in use.
+ */
+class FootprintTest {
+
+    private static final UUID UUID_VALUE = UUID.fromString("3f2504e0-4f89-41d3-9a0c-0305e82c3301");
+
+    private static long shallowSize(int referenceFields) {
+        var vm = VM.current();
+        var size = vm.objectHeaderSize() + referenceFields * vm.sizeOfField("oop");
+        var alignment = vm.objectAlignment();
+        return (size + alignment - 1) / alignment * alignment;
+    }
+
+    private static long instanceSize(@NotNull Class<?> type) {
+        return ClassLayout.parseClass(type).instanceSize();
+    }
+
+    private static @NotNull Set<String> fieldNames(@NotNull Class<?> type) {
+        return ClassLayout.parseClass(type).fields().stream().map(FieldLayout::name).collect(Collectors.toSet());
+    }
+
+    @Test
+    void baseAggregateRoot_shallowSize_versionModifiedAttributesAndDomainEventsOnly() {
+        assertEquals(Set.of("version", "modifiedAttributes", "domainEvents"), fieldNames(BaseAggregateRoot.class));
+        assertEquals(shallowSize(3), instanceSize(BaseAggregateRoot.class));
+        assertEquals(shallowSize(4), instanceSize(TestAggregate.class));
+    }
+
+    @Test
+    void newAggregate_retainedSize_aggregateAndIdOnly() {
+        var id = new TestUUIDId(UUID_VALUE);
+        var aggregate = new TestAggregate(id);
+
+        var layout = GraphLayout.parseInstance(aggregate);
+        assertEquals(3, layout.totalCount(), layout::toFootprint);
+        assertEquals(shallowSize(4) + GraphLayout.parseInstance(id).totalSize(), layout.totalSize());
+        assertSame(List.of(), aggregate.domainEvents());
+        assertSame(Set.of(), aggregate.getModifiedAttributes());
+    }
+
+    @Test
+    void clearDomainEvents_registeredEvents_retainedSizeRestored() {
+        var aggregate = new TestAggregate(new TestUUIDId(UUID_VALUE));
+        var before = GraphLayout.parseInstance(aggregate).totalSize();
+
+        aggregate.registerEvent(new TestEvent());
+        assertTrue(GraphLayout.parseInstance(aggregate).totalSize() > before);
+        aggregate.clearDomainEvents();
+
+        assertEquals(before, GraphLayout.parseInstance(aggregate).totalSize());
+    }
+
+    @Test
+    void markModified_notChangeTracked_nothingAllocated() {
+        var aggregate = new TestAggregate(new TestUUIDId(UUID_VALUE));
+        var before = GraphLayout.parseInstance(aggregate).totalSize();
+
+        aggregate.markModified("id");
+
+        assertEquals(before, GraphLayout.parseInstance(aggregate).totalSize());
+        assertSame(Set.of(), aggregate.getModifiedAttributes());
+    }
+
+    @Test
+    void clearModifiedAttributes_markedAttributes_retainedSizeRestored() {
+        var aggregate = new TrackedAggregate(new TestUUIDId(UUID_VALUE));
+        var before = GraphLayout.parseInstance(aggregate).totalSize();
+
+        aggregate.markModified("id");
+        assertTrue(GraphLayout.parseInstance(aggregate).totalSize() > before);
+        aggregate.clearModifiedAttributes();
+
+        assertEquals(before, GraphLayout.parseInstance(aggregate).totalSize());
+    }
+
+    @Test
+    void setVersion_uncachedValue_retainedSizeGrowsByOneLong() {
+        var aggregate = new TestAggregate(new TestUUIDId(UUID_VALUE));
+        var before = GraphLayout.parseInstance(aggregate).totalSize();
+
+        aggregate.setVersion(1_000_000L);
+
+        assertEquals(before + instanceSize(Long.class), GraphLayout.parseInstance(aggregate).totalSize());
+        assertTrue(aggregate.hasVersion());
+        assertEquals(1_000_000L, aggregate.getVersionValue());
+    }
+
+    @Test
+    void uuidDomainObjectId_sizes_wrapperAndUUIDOnly() {
+        var id = new TestUUIDId(UUID_VALUE);
+
+        assertEquals(Set.of("value"), fieldNames(TestUUIDId.class));
+        assertEquals(shallowSize(1), instanceSize(TestUUIDId.class));
+        var layout = GraphLayout.parseInstance(id);
+        assertEquals(2, layout.totalCount(), layout::toFootprint);
+        assertEquals(shallowSize(1) + instanceSize(UUID.class), layout.totalSize());
+    }
+
+    @Test
+    void numericDomainObjectId_sizes_wrapperAndLongOnly() {
+        var id = new TestNumericId(1_000_000L);
+
+        assertEquals(Set.of("value"), fieldNames(TestNumericId.class));
+        assertEquals(shallowSize(1), instanceSize(TestNumericId.class));
+        var layout = GraphLayout.parseInstance(id);
+        assertEquals(2, layout.totalCount(), layout::toFootprint);
+        assertEquals(shallowSize(1) + instanceSize(Long.class), layout.totalSize());
+    }
+
+    @Test
+    void hashCode_simpleValueObject_sameAsValue() {
+        assertEquals(UUID_VALUE.hashCode(), new TestUUIDId(UUID_VALUE).hashCode());
+        assertEquals(Long.hashCode(1_000_000L), new TestNumericId(1_000_000L).hashCode());
+    }
+
+    private static final class TestUUIDId extends UUIDDomainObjectId {
+
+        private TestUUIDId(@NotNull UUID uuid) {
+            super(uuid);
+        }
+    }
+
+    private static final class TestNumericId extends NumericDomainObjectId {
+
+        private TestNumericId(long id) {
+            super(id);
+        }
+    }
+
+    private static final class TestEvent implements DomainEvent {
+    }
+
+    private static class TestAggregate extends BaseAggregateRoot<TestUUIDId> {
+
+        private final TestUUIDId id;
+
+        private TestAggregate(@NotNull TestUUIDId id) {
+            this.id = id;
+        }
+
+        @Override
+        public @Nullable TestUUIDId getId() {
+            return id;
+        }
+    }
+
+    @ChangeTracking
+    private static final class TrackedAggregate extends TestAggregate {
+
+        private TrackedAggregate(@NotNull TestUUIDId id) {
+            super(id);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.domain.base.eventsourcing;
+
+import net.pkhapps.hexagonal.domain.base.DomainEvent;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Serializable;
+
+/**
+ * Event-sourced aggregate root used by the event sourcing tests and benchmarks.
+ */
+public class Counter extends EventSourcedAggregateRoot<String> {
+
+    private String id;
+    private long value;
+
+    @Override
+    public @Nullable String getId() {
+        return id;
+    }
+
+    public long getValue() {
+        return value;
+    }
+
+    public static @NotNull Counter create(@NotNull String id) {
+        var counter = new Counter();
+        counter.raise(new Created(id));
+        return counter;
+    }
+
+    public void add(long amount) {
+        raise(new Added(amount));
+    }
+
+    @Override
+    protected void handle(@NotNull DomainEvent event) {
+        if (event instanceof Created) {
+            id = ((Created) event).id;
+        } else if (event instanceof Added) {
+            value += ((Added) event).amount;
+        }
+    }
+
+    @Override
+    protected @NotNull Serializable createSnapshot() {
+        return new State(id, value);
+    }
+
+    @Override
+    protected void restoreSnapshot(@NotNull Serializable state) {
+        id = ((State) state).id;
+        value = ((State) state).value;
+    }
+
+    static final class Created implements DomainEvent, Serializable {
+
+        private final String id;
+
+        Created(@NotNull String id) {
+            this.id = id;
+        }
+    }
+
+    static final class Added implements DomainEvent, Serializable {
+
+        private final long amount;
+
+        Added(long amount) {
+            this.amount = amount;
+        }
+    }
+
+    private static final class State implements Serializable {
+
+        private final String id;
+        private final long value;
+
+        private State(@NotNull String id, long value) {
+            this.id = id;
+            this.value = value;
+        }
+    }
+}
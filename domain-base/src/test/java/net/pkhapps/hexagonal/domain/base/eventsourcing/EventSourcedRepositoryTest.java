@@ -0,0 +1,184 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.domain.base.eventsourcing;
+
+import net.pkhapps.hexagonal.domain.base.DomainEvent;
+import net.pkhapps.hexagonal.domain.base.eventsourcing.jpa.JpaEventStore;
+import net.pkhapps.hexagonal.domain.base.eventsourcing.jpa.StoredEvent;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.SharedEntityManagerCreator;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.EnableTransactionManagement;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EventSourcedRepositoryTest {
+
+    private AnnotationConfigApplicationContext context;
+    private RecordingEventStore eventStore;
+
+    @BeforeEach
+    void setUp() {
+        context = new AnnotationConfigApplicationContext(Config.class);
+        eventStore = new RecordingEventStore(context.getBean(EventStore.class));
+    }
+
+    @AfterEach
+    void tearDown() {
+        context.close();
+    }
+
+    @Test
+    void existsById_readsVersionOnly() {
+        var repository = new EventSourcedRepository<>(eventStore, "Counter", Counter::new, 0);
+        var counter = Counter.create("a");
+        counter.add(1);
+        repository.save(counter);
+
+        assertTrue(repository.existsById("a"));
+        assertFalse(repository.existsById("b"));
+        assertTrue(eventStore.reads.isEmpty());
+        assertEquals(2, eventStore.readVersion(new StreamId("Counter", "a")));
+        assertEquals(0, eventStore.readVersion(new StreamId("Counter", "b")));
+    }
+
+    @Test
+    void findById_withSnapshot_replaysEventsAfterSnapshotOnly() {
+        var repository = new EventSourcedRepository<>(eventStore, "Counter", Counter::new, 3);
+        var counter = Counter.create("a");
+        for (int i = 1; i <= 7; ++i) {
+            counter.add(i);
+            repository.save(counter);
+        }
+
+        var loaded = repository.findById("a").orElseThrow();
+
+        assertEquals(28, loaded.getValue());
+        assertEquals(8, loaded.getVersion());
+        assertEquals(List.of(6L), eventStore.reads);
+    }
+
+    @Test
+    void findById_withoutSnapshots_replaysWholeStream() {
+        var repository = new EventSourcedRepository<>(eventStore, "Counter", Counter::new, 0);
+        var counter = Counter.create("a");
+        counter.add(5);
+        counter.add(6);
+        repository.save(counter);
+
+        assertEquals(11, repository.findById("a").orElseThrow().getValue());
+        assertEquals(List.of(0L), eventStore.reads);
+        assertEquals(Optional.empty(), repository.findById("b"));
+    }
+
+    @Test
+    void save_streamModifiedSinceLoad_throwsOptimisticLockingFailure() {
+        var repository = new EventSourcedRepository<>(eventStore, "Counter", Counter::new, 0);
+        repository.save(Counter.create("a"));
+        var first = repository.findById("a").orElseThrow();
+        var second = repository.findById("a").orElseThrow();
+        first.add(1);
+        repository.save(first);
+        second.add(2);
+
+        assertThrows(OptimisticLockingFailureException.class, () -> repository.save(second));
+    }
+
+    /**
+     * Records the {@code afterVersion} of every call to {@link #readEvents(StreamId, long)}.
+     */
+    private static final class RecordingEventStore implements EventStore {
+
+        private final EventStore delegate;
+        private final List<Long> reads = new ArrayList<>();
+
+        private RecordingEventStore(@NotNull EventStore delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public @NotNull List<DomainEvent> readEvents(@NotNull StreamId streamId, long afterVersion) {
+            reads.add(afterVersion);
+            return delegate.readEvents(streamId, afterVersion);
+        }
+
+        @Override
+        public long readVersion(@NotNull StreamId streamId) {
+            return delegate.readVersion(streamId);
+        }
+
+        @Override
+        public long append(@NotNull StreamId streamId, long expectedVersion,
+                           @NotNull List<? extends DomainEvent> events) {
+            return delegate.append(streamId, expectedVersion, events);
+        }
+
+        @Override
+        public @NotNull Optional<Snapshot> readSnapshot(@NotNull StreamId streamId) {
+            return delegate.readSnapshot(streamId);
+        }
+
+        @Override
+        public void saveSnapshot(@NotNull StreamId streamId, @NotNull Snapshot snapshot) {
+            delegate.saveSnapshot(streamId, snapshot);
+        }
+    }
+
+    @Configuration
+    @EnableTransactionManagement
+    static class Config {
+
+        @Bean
+        LocalContainerEntityManagerFactoryBean entityManagerFactory() {
+            var factory = new LocalContainerEntityManagerFactoryBean();
+            factory.setPackagesToScan(StoredEvent.class.getPackageName());
+            factory.setJpaVendorAdapter(new HibernateJpaVendorAdapter());
+            factory.setJpaPropertyMap(Map.of(
+                    "javax.persistence.jdbc.url", "jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1",
+                    "hibernate.hbm2ddl.auto", "create-drop"));
+            return factory;
+        }
+
+        @Bean
+        PlatformTransactionManager transactionManager(@NotNull EntityManagerFactory entityManagerFactory) {
+            return new JpaTransactionManager(entityManagerFactory);
+        }
+
+        @Bean
+        JpaEventStore eventStore(@NotNull EntityManagerFactory entityManagerFactory) {
+            return new JpaEventStore(SharedEntityManagerCreator.createSharedEntityManager(entityManagerFactory));
+        }
+    }
+}
@@ -0,0 +1,246 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.domain.base.eventsourcing.log;
+
+import net.pkhapps.hexagonal.domain.base.DomainEvent;
+import net.pkhapps.hexagonal.domain.base.eventsourcing.JavaEventSerializer;
+import net.pkhapps.hexagonal.domain.base.support.UUIDDomainObjectId;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit test for {@link MappedEventLog}.
+ */
+class MappedEventLogTest {
+
+    private static final TestId FIRST = new TestId("a8b2c0d4-1c9e-4c8e-9f3a-2b7d6e5f4a31");
+    private static final TestId SECOND = new TestId("5e0f3a2b-7c1d-4e6f-8a9b-0c1d2e3f4a5b");
+
+    @TempDir
+    Path directory;
+    private final MutableClock clock = new MutableClock();
+    private MappedEventLog log;
+
+    @AfterEach
+    void tearDown() {
+        if (log != null) {
+            log.close();
+        }
+    }
+
+    private @NotNull MappedEventLog openLog(int segmentSize, long maxBytes, Duration maxAge) {
+        if (log != null) {
+            log.close();
+        }
+        log = new MappedEventLog(directory, new JavaEventSerializer());
+        log.setSegmentSize(segmentSize);
+        log.setSyncPolicy(SyncPolicy.never());
+        log.setRetention(maxBytes, maxAge);
+        log.setClock(clock);
+        log.open();
+        return log;
+    }
+
+    private static @NotNull List<Integer> values(@NotNull List<DomainEvent> events) {
+        return events.stream().map(event -> ((Recorded) event).value).collect(Collectors.toList());
+    }
+
+    private @NotNull List<Path> segmentFiles() throws IOException {
+        try (var stream = Files.list(directory)) {
+            return stream.filter(LogSegment::isSegmentFile).sorted().collect(Collectors.toList());
+        }
+    }
+
+    @Test
+    void open_existingSegments_eventsRecoveredAndIndexed() {
+        var log = openLog(MappedEventLog.DEFAULT_SEGMENT_SIZE, 0, null);
+        log.append(FIRST, new Recorded(1));
+        log.append(SECOND, new Recorded(2));
+        log.appendAll(FIRST, List.of(new Recorded(3), new Recorded(4)));
+
+        log = openLog(MappedEventLog.DEFAULT_SEGMENT_SIZE, 0, null);
+
+        assertEquals(List.of(1, 3, 4), values(log.readEvents(FIRST)));
+        assertEquals(List.of(2), values(log.readEvents(SECOND)));
+        assertEquals(2, log.getAggregateCount());
+        assertEquals(4, log.getNextOffset());
+        assertEquals(4, log.append(SECOND, new Recorded(5)));
+    }
+
+    @Test
+    void open_tornLastRecord_recordDiscardedAndTailErased() throws IOException {
+        var log = openLog(MappedEventLog.DEFAULT_SEGMENT_SIZE, 0, null);
+        log.append(FIRST, new Recorded(1));
+        log.append(FIRST, new Recorded(2));
+        log.append(FIRST, new Recorded(3));
+        log.close();
+
+        // Simulate a crash that persisted the length of the last record but not all of its body
+        var file = segmentFiles().get(0);
+        var bytes = ByteBuffer.wrap(Files.readAllBytes(file));
+        var position = 0;
+        for (var i = 0; i < 2; ++i) {
+            position += 8 + bytes.getInt(position);
+        }
+        var end = position + 8 + bytes.getInt(position);
+        bytes.put(end - 1, (byte) (bytes.get(end - 1) ^ 0xff));
+        Files.write(file, bytes.array());
+
+        log = openLog(MappedEventLog.DEFAULT_SEGMENT_SIZE, 0, null);
+
+        assertEquals(List.of(1, 2), values(log.readEvents(FIRST)));
+        assertEquals(2, log.getNextOffset());
+        var recovered = ByteBuffer.wrap(Files.readAllBytes(file));
+        for (var i = position; i < end; ++i) {
+            assertEquals(0, recovered.get(i), "Byte at " + i + " was not erased");
+        }
+
+        assertEquals(2, log.append(FIRST, new Recorded(4)));
+        log = openLog(MappedEventLog.DEFAULT_SEGMENT_SIZE, 0, null);
+        assertEquals(List.of(1, 2, 4), values(log.readEvents(FIRST)));
+    }
+
+    @Test
+    void open_garbageAfterLastRecord_garbageErased() throws IOException {
+        var log = openLog(MappedEventLog.DEFAULT_SEGMENT_SIZE, 0, null);
+        log.append(FIRST, new Recorded(1));
+        log.close();
+
+        var file = segmentFiles().get(0);
+        var bytes = ByteBuffer.wrap(Files.readAllBytes(file));
+        var position = 8 + bytes.getInt(0);
+        bytes.putInt(position, Integer.MAX_VALUE);
+        bytes.putLong(position + 8, 0x0123456789abcdefL);
+        Files.write(file, bytes.array());
+
+        log = openLog(MappedEventLog.DEFAULT_SEGMENT_SIZE, 0, null);
+
+        assertEquals(List.of(1), values(log.readEvents(FIRST)));
+        var recovered = ByteBuffer.wrap(Files.readAllBytes(file));
+        assertEquals(0, recovered.getInt(position));
+        assertEquals(0, recovered.getLong(position + 8));
+        assertEquals(1, log.append(FIRST, new Recorded(2)));
+    }
+
+    @Test
+    void append_sizeLimitExceeded_oldestSegmentsDeleted() throws IOException {
+        var log = openLog(1024, 3 * 1024, null);
+        for (var i = 0; i < 40; ++i) {
+            log.append(i % 2 == 0 ? FIRST : SECOND, new Recorded(i));
+        }
+
+        assertEquals(3, log.getSegmentCount());
+        assertEquals(3 * 1024, log.getSizeInBytes());
+        assertEquals(3, segmentFiles().size());
+        var firstOffset = log.getFirstOffset();
+        assertTrue(firstOffset > 0);
+
+        var replayed = new ArrayList<Long>();
+        assertEquals(40, log.replay(0, record -> replayed.add(record.getOffset())));
+        assertEquals(firstOffset, replayed.get(0));
+        assertEquals(39, replayed.get(replayed.size() - 1));
+        assertEquals(40 - firstOffset, replayed.size());
+
+        var retained = new ArrayList<>(values(log.readEvents(FIRST)));
+        retained.addAll(values(log.readEvents(SECOND)));
+        assertEquals(replayed.size(), retained.size());
+        assertTrue(retained.stream().allMatch(value -> value >= firstOffset));
+    }
+
+    @Test
+    void enforceRetention_ageLimitExceeded_oldSegmentsDeletedExceptActive() throws IOException {
+        var log = openLog(1024, 0, Duration.ofHours(1));
+        for (var i = 0; i < 10; ++i) {
+            log.append(FIRST, new Recorded(i));
+        }
+        var segmentCount = log.getSegmentCount();
+        assertTrue(segmentCount > 2);
+
+        clock.advance(Duration.ofMinutes(30));
+        log.enforceRetention();
+        assertEquals(segmentCount, log.getSegmentCount());
+
+        log.append(FIRST, new Recorded(10));
+        clock.advance(Duration.ofMinutes(45));
+        log.enforceRetention();
+
+        assertEquals(1, log.getSegmentCount());
+        assertEquals(1, segmentFiles().size());
+        var retained = values(log.readEvents(FIRST));
+        assertEquals(log.getFirstOffset(), (long) retained.get(0));
+        assertEquals(10, retained.get(retained.size() - 1));
+    }
+
+    private static final class TestId extends UUIDDomainObjectId {
+
+        private TestId(String uuid) {
+            super(uuid);
+        }
+    }
+
+    private static final class Recorded implements DomainEvent, Serializable {
+
+        private final int value;
+
+        private Recorded(int value) {
+            this.value = value;
+        }
+    }
+
+    private static final class MutableClock extends Clock {
+
+        private Instant instant = Instant.parse("2020-11-01T12:00:00Z");
+
+        void advance(@NotNull Duration duration) {
+            instant = instant.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+    }
+}
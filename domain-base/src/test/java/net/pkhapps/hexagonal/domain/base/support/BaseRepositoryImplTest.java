@@ -0,0 +1,192 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.domain.base.support;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.orm.jpa.DefaultJpaDialect;
+import org.springframework.orm.jpa.EntityManagerHolder;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BaseRepositoryImplTest {
+
+    private static final SpecificationShape<Product> PRODUCT_BY_MIN_PRICE = SpecificationShape.of(
+            (root, query, cb, params) -> cb.ge(root.get("price"), params.get("min", Integer.class)));
+    private static final SpecificationShape<CachedProduct> CACHED_PRODUCT_BY_MIN_PRICE = SpecificationShape.of(
+            (root, query, cb, params) -> cb.ge(root.get("price"), params.get("min", Integer.class)));
+
+    private AnnotationConfigApplicationContext context;
+    private Product.Repository productRepository;
+    private CachedProduct.Repository cachedProductRepository;
+    private TransactionTemplate transactionTemplate;
+    private EntityManager entityManager;
+
+    @BeforeEach
+    void setUp() {
+        context = new AnnotationConfigApplicationContext(JpaTestConfig.class);
+        productRepository = context.getBean(Product.Repository.class);
+        cachedProductRepository = context.getBean(CachedProduct.Repository.class);
+        transactionTemplate = context.getBean(TransactionTemplate.class);
+        entityManager = context.getBean(EntityManager.class);
+    }
+
+    @AfterEach
+    void tearDown() {
+        context.close();
+    }
+
+    @Test
+    void findAll_delegatingBoundSpecification_compilesShapeOnce() {
+        var compilations = new AtomicInteger();
+        var shape = SpecificationShape.<Product>of((root, query, cb, params) -> {
+            compilations.incrementAndGet();
+            return cb.ge(root.get("price"), params.get("min", Integer.class));
+        });
+        productRepository.saveAll(List.of(new Product("apple", 1), new Product("banana", 2)));
+
+        assertEquals(2, productRepository.findAll(new Wrapper<>(shape.with("min", 1))).size());
+        assertEquals(1, productRepository.findAll(new Wrapper<>(shape.with("min", 2))).size());
+        assertEquals(0, productRepository.findAll(new Wrapper<>(new Wrapper<>(shape.with("min", 3)))).size());
+        assertEquals(1, compilations.get());
+    }
+
+    @Test
+    void findAll_delegatingBoundSpecification_usesResultCache() {
+        cachedProductRepository.saveAll(List.of(new CachedProduct("apple", 1), new CachedProduct("banana", 2)));
+        assertEquals(1, cachedProductRepository.findAll(new Wrapper<>(CACHED_PRODUCT_BY_MIN_PRICE.with("min", 2)))
+                .size());
+
+        insertBehindRepository("CachedProduct", "cherry", 3);
+
+        assertEquals(1, cachedProductRepository.findAll(new Wrapper<>(CACHED_PRODUCT_BY_MIN_PRICE.with("min", 2)))
+                .size());
+        assertEquals(2, cachedProductRepository.findAll(CACHED_PRODUCT_BY_MIN_PRICE.with("min", 2).and(null))
+                .size());
+    }
+
+    @Test
+    void findPage_delegatingBoundSpecification_usesCountCache() {
+        productRepository.saveAll(List.of(new Product("apple", 1), new Product("banana", 2),
+                new Product("cherry", 3)));
+        var page = productRepository.findPage(new Wrapper<>(PRODUCT_BY_MIN_PRICE.with("min", 1)),
+                PageRequest.of(0, 1), Duration.ofHours(1));
+        assertEquals(3, page.getTotalElements());
+
+        insertBehindRepository("Product", "durian", 4);
+
+        assertEquals(3, productRepository.findPage(new Wrapper<>(PRODUCT_BY_MIN_PRICE.with("min", 1)),
+                PageRequest.of(0, 1), Duration.ofHours(1)).getTotalElements());
+        assertEquals(4, productRepository.findPage(new Wrapper<>(PRODUCT_BY_MIN_PRICE.with("min", 1)),
+                PageRequest.of(0, 1), Duration.ZERO).getTotalElements());
+    }
+
+    @Test
+    void findAllById_moreIdsThanMaxInListSize_loadsEveryAggregateOnce() {
+        var saved = productRepository.saveAll(List.of(new Product("a", 1), new Product("b", 2),
+                new Product("c", 3)));
+        var ids = new ArrayList<Long>();
+        for (long i = 0; i < BaseRepositoryImpl.DEFAULT_MAX_IN_LIST_SIZE * 2 + 100; ++i) {
+            ids.add(-i);
+        }
+        saved.forEach(product -> {
+            ids.add(product.getId());
+            ids.add(0, product.getId());
+        });
+
+        var found = productRepository.findAllById(ids).stream().map(Product::getName).sorted()
+                .collect(Collectors.toList());
+
+        assertEquals(List.of("a", "b", "c"), found);
+    }
+
+    @Test
+    void findById_readOnlyTransaction_changesNotFlushed() {
+        var id = productRepository.save(new Product("apple", 1)).getId();
+        // HibernateJpaDialect would make the whole session read-only, hiding whether the hint is applied
+        var transactionManager = new JpaTransactionManager(context.getBean(EntityManagerFactory.class));
+        transactionManager.setJpaDialect(new DefaultJpaDialect());
+        var readOnlyTemplate = new TransactionTemplate(transactionManager);
+        readOnlyTemplate.setReadOnly(true);
+
+        readOnlyTemplate.executeWithoutResult(status -> {
+            productRepository.findById(id).orElseThrow().setPrice(2);
+            entityManager.flush();
+        });
+
+        assertEquals(1, productRepository.findById(id).orElseThrow().getPrice());
+    }
+
+    @Test
+    void findById_noTransactionAndLongLivedPersistenceContext_changesSaved() {
+        var id = productRepository.save(new Product("apple", 1)).getId();
+        var entityManagerFactory = context.getBean(EntityManagerFactory.class);
+        // Keeps the persistence context open across repository calls, like OpenEntityManagerInViewInterceptor
+        var longLived = entityManagerFactory.createEntityManager();
+        TransactionSynchronizationManager.bindResource(entityManagerFactory, new EntityManagerHolder(longLived));
+        try {
+            var product = productRepository.findById(id).orElseThrow();
+            product.setPrice(2);
+            productRepository.save(product);
+        } finally {
+            TransactionSynchronizationManager.unbindResource(entityManagerFactory);
+            longLived.close();
+        }
+
+        assertEquals(2, productRepository.findById(id).orElseThrow().getPrice());
+    }
+
+    private void insertBehindRepository(@NotNull String table, @NotNull String name, int price) {
+        transactionTemplate.executeWithoutResult(status -> entityManager
+                .createNativeQuery("insert into " + table + " (id, version, name, price) values (?, 0, ?, ?)")
+                .setParameter(1, 1000 + price)
+                .setParameter(2, name)
+                .setParameter(3, price)
+                .executeUpdate());
+    }
+
+    private static final class Wrapper<T> implements DelegatingSpecification<T> {
+
+        private final Specification<T> delegate;
+
+        private Wrapper(@NotNull Specification<T> delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public @NotNull Specification<T> getDelegate() {
+            return delegate;
+        }
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.domain.base.support;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BulkLoaderTest {
+
+    private AnnotationConfigApplicationContext context;
+    private Product.Repository productRepository;
+    private TransactionTemplate transactionTemplate;
+    private EntityManager entityManager;
+    private ExecutorService executor;
+    private List<Long> ids;
+    private final List<List<Long>> chunks = Collections.synchronizedList(new ArrayList<>());
+    private final List<Thread> loadingThreads = Collections.synchronizedList(new ArrayList<>());
+
+    @BeforeEach
+    void setUp() {
+        context = new AnnotationConfigApplicationContext(JpaTestConfig.class);
+        productRepository = context.getBean(Product.Repository.class);
+        transactionTemplate = context.getBean(TransactionTemplate.class);
+        entityManager = context.getBean(EntityManager.class);
+        executor = Executors.newFixedThreadPool(2);
+        ids = productRepository.saveAll(List.of(new Product("a", 1), new Product("b", 2), new Product("c", 3),
+                new Product("d", 4), new Product("e", 5))).stream()
+                .map(Product::getId)
+                .sorted()
+                .collect(Collectors.toList());
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdown();
+        context.close();
+    }
+
+    @SuppressWarnings("unchecked")
+    private @NotNull Product.Repository recordingRepository() {
+        return (Product.Repository) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{Product.Repository.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("findAllById")) {
+                        var chunk = new ArrayList<Long>();
+                        ((Iterable<Long>) args[0]).forEach(chunk::add);
+                        chunks.add(chunk);
+                        loadingThreads.add(Thread.currentThread());
+                    }
+                    try {
+                        return method.invoke(productRepository, args);
+                    } catch (InvocationTargetException ex) {
+                        throw ex.getCause();
+                    }
+                });
+    }
+
+    private static @NotNull List<String> names(@NotNull List<Product> products) {
+        return products.stream().map(Product::getName).sorted().collect(Collectors.toList());
+    }
+
+    @Test
+    void load_longIdsWithDuplicatesAndMissingIds_everyDistinctIdLoadedOnce() {
+        var loader = new BulkLoader<>(recordingRepository(), 2, null);
+        var input = LongStream.concat(ids.stream().mapToLong(Long::longValue), LongStream.of(ids.get(2), ids.get(0),
+                -1, ids.get(4), -1)).toArray();
+
+        var products = loader.load(input, Long::valueOf);
+
+        assertEquals(List.of("a", "b", "c", "d", "e"), names(products));
+        var loadedIds = chunks.stream().flatMap(List::stream).sorted().collect(Collectors.toList());
+        var expected = new ArrayList<>(ids);
+        expected.add(0, -1L);
+        assertEquals(expected, loadedIds);
+    }
+
+    @Test
+    void load_idsNotMultipleOfChunkSize_lastChunkSmaller() {
+        var loader = new BulkLoader<>(recordingRepository(), 2, null);
+
+        var products = loader.load(ids);
+
+        assertEquals(5, products.size());
+        assertEquals(List.of(2, 2, 1), chunks.stream().map(List::size).collect(Collectors.toList()));
+        assertEquals(List.of(ids.subList(0, 2), ids.subList(2, 4), ids.subList(4, 5)), chunks);
+    }
+
+    @Test
+    void load_idsMultipleOfChunkSize_allChunksFull() {
+        var loader = new BulkLoader<>(recordingRepository(), 2, null);
+
+        loader.load(ids.subList(0, 4));
+
+        assertEquals(List.of(2, 2), chunks.stream().map(List::size).collect(Collectors.toList()));
+    }
+
+    @Test
+    void load_executorAndNoTransaction_chunksLoadedOnExecutor() {
+        var loader = new BulkLoader<>(recordingRepository(), 2, executor);
+
+        var products = loader.load(ids);
+
+        assertEquals(List.of("a", "b", "c", "d", "e"), names(products));
+        assertEquals(3, loadingThreads.size());
+        assertFalse(loadingThreads.contains(Thread.currentThread()));
+    }
+
+    @Test
+    void load_executorInsideTransaction_chunksLoadedInCallerTransaction() {
+        var loader = new BulkLoader<>(recordingRepository(), 2, executor);
+
+        transactionTemplate.executeWithoutResult(status -> {
+            var products = loader.load(ids);
+
+            assertEquals(5, products.size());
+            assertTrue(products.stream().allMatch(entityManager::contains));
+        });
+
+        assertEquals(3, loadingThreads.size());
+        assertTrue(loadingThreads.stream().allMatch(thread -> thread == Thread.currentThread()));
+    }
+
+    @Test
+    void constructor_chunkSizeBelowOne_rejected() {
+        assertThrows(IllegalArgumentException.class, () -> new BulkLoader<>(productRepository, 0, null));
+    }
+}
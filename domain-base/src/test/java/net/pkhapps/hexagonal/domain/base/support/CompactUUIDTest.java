@@ -0,0 +1,82 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.domain.base.support;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompactUUIDTest {
+
+    @Test
+    void format_parse_roundTrip() {
+        for (int i = 0; i < 100; ++i) {
+            var uuid = UUID.randomUUID();
+            var encoded = CompactUUID.format(uuid);
+            assertEquals(CompactUUID.LENGTH, encoded.length());
+            assertEquals(uuid, CompactUUID.parse(encoded));
+            assertTrue(CompactUUID.isCompact(encoded));
+        }
+    }
+
+    @Test
+    void isCompact_canonicalForm_false() {
+        assertFalse(CompactUUID.isCompact(UUID.randomUUID().toString()));
+    }
+
+    @Test
+    void isCompact_characterOutsideAlphabet_false() {
+        var encoded = CompactUUID.format(UUID.randomUUID());
+        assertFalse(CompactUUID.isCompact("+" + encoded.substring(1)));
+        assertFalse(CompactUUID.isCompact(encoded.substring(0, 10) + "/" + encoded.substring(11)));
+        assertFalse(CompactUUID.isCompact(encoded.substring(0, 10) + "ä" + encoded.substring(11)));
+        assertFalse(CompactUUID.isCompact(encoded.substring(0, 21) + "="));
+    }
+
+    @Test
+    void isCompact_nonZeroTrailingBits_false() {
+        var encoded = CompactUUID.format(UUID.randomUUID());
+        var invalid = encoded.substring(0, 21) + "B";
+        assertFalse(CompactUUID.isCompact(invalid));
+        assertThrows(IllegalArgumentException.class, () -> CompactUUID.parse(invalid));
+    }
+
+    @Test
+    void isCompact_shortDashedForm_false() {
+        var dashed = "123-4567-89ab-cdef-120";
+        assertEquals(CompactUUID.LENGTH, dashed.length());
+        assertFalse(CompactUUID.isCompact(dashed));
+        assertEquals(UUID.fromString(dashed), new TestId(dashed).unwrap());
+    }
+
+    @Test
+    void uuidDomainObjectId_compactAndCanonicalForms_sameId() {
+        var uuid = UUID.randomUUID();
+        assertEquals(uuid, new TestId(CompactUUID.format(uuid)).unwrap());
+        assertEquals(uuid, new TestId(uuid.toString()).unwrap());
+    }
+
+    private static final class TestId extends UUIDDomainObjectId {
+
+        private TestId(String uuid) {
+            super(uuid);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.domain.base.support;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.data.domain.Sort;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import java.util.List;
+import java.util.function.BiFunction;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompiledShapeCacheTest {
+
+    private static final SpecificationShape<Product> BY_PRICE_RANGE = SpecificationShape.of(
+            (root, query, cb, params) -> cb.between(root.get("price"), params.get("min", Integer.class),
+                    params.get("max", Integer.class)));
+    private static final SpecificationShape<Product> BY_NAME_LITERAL = SpecificationShape.of(
+            (root, query, cb, params) -> cb.and(cb.equal(root.get("name"), "apple"),
+                    cb.ge(root.get("price"), params.get("min", Integer.class))));
+
+    private static AnnotationConfigApplicationContext context;
+    private EntityManager entityManager;
+
+    @BeforeAll
+    static void setUpContext() {
+        context = new AnnotationConfigApplicationContext(JpaTestConfig.class);
+        var repository = context.getBean(Product.Repository.class);
+        repository.saveAll(List.of(new Product("apple", 1), new Product("banana", 2), new Product("cherry", 3)));
+    }
+
+    @AfterAll
+    static void tearDownContext() {
+        context.close();
+    }
+
+    @BeforeEach
+    void setUp() {
+        entityManager = context.getBean(EntityManagerFactory.class).createEntityManager();
+    }
+
+    @AfterEach
+    void tearDown() {
+        entityManager.close();
+    }
+
+    @Test
+    void get_sameShapeAndSort_returnsSameCompiledQuery() {
+        var cache = new CompiledShapeCache();
+        var first = cache.get(BY_PRICE_RANGE, Sort.unsorted(), entityManager, select(BY_PRICE_RANGE));
+        var second = cache.get(BY_PRICE_RANGE, Sort.unsorted(), entityManager, select(BY_PRICE_RANGE));
+        var sorted = cache.get(BY_PRICE_RANGE, Sort.by("name"), entityManager,
+                select(BY_PRICE_RANGE));
+        assertSame(first, second);
+        assertNotSame(first, sorted);
+    }
+
+    @Test
+    void get_cacheFull_leastRecentlyUsedQueryEvicted() {
+        var cache = new CompiledShapeCache(2);
+        var byName = cache.get(BY_PRICE_RANGE, Sort.by("name"), entityManager, select(BY_PRICE_RANGE));
+        var byPrice = cache.get(BY_PRICE_RANGE, Sort.by("price"), entityManager, select(BY_PRICE_RANGE));
+        assertSame(byName, cache.get(BY_PRICE_RANGE, Sort.by("name"), entityManager, select(BY_PRICE_RANGE)));
+
+        var unsorted = cache.get(BY_PRICE_RANGE, Sort.unsorted(), entityManager, select(BY_PRICE_RANGE));
+
+        assertEquals(2, cache.size());
+        assertSame(unsorted, cache.get(BY_PRICE_RANGE, Sort.unsorted(), entityManager, select(BY_PRICE_RANGE)));
+        assertSame(byName, cache.get(BY_PRICE_RANGE, Sort.by("name"), entityManager, select(BY_PRICE_RANGE)));
+        assertNotSame(byPrice, cache.get(BY_PRICE_RANGE, Sort.by("price"), entityManager, select(BY_PRICE_RANGE)));
+    }
+
+    @Test
+    void createQuery_shapeParametersOnly_usesCachedQueryString() {
+        var compiled = new CompiledShapeCache().get(BY_PRICE_RANGE, Sort.unsorted(), entityManager,
+                select(BY_PRICE_RANGE));
+        assertTrue(compiled.isQueryStringCached());
+        assertEquals(List.of("banana", "cherry"),
+                names(compiled.createQuery(entityManager, BY_PRICE_RANGE.with("min", 2).with("max", 3))
+                        .getResultList()));
+        assertEquals(List.of("apple"),
+                names(compiled.createQuery(entityManager, BY_PRICE_RANGE.with("min", 0).with("max", 1))
+                        .getResultList()));
+    }
+
+    @Test
+    void createQuery_literalBoundAsParameter_fallsBackToCriteriaQuery() {
+        var compiled = new CompiledShapeCache().get(BY_NAME_LITERAL, Sort.unsorted(), entityManager,
+                select(BY_NAME_LITERAL));
+        assertFalse(compiled.isQueryStringCached());
+        assertEquals(List.of("apple"),
+                names(compiled.createQuery(entityManager, BY_NAME_LITERAL.with("min", 1)).getResultList()));
+        assertEquals(List.of(),
+                names(compiled.createQuery(entityManager, BY_NAME_LITERAL.with("min", 2)).getResultList()));
+    }
+
+    private static BiFunction<CriteriaBuilder, ShapeParameters, CriteriaQuery<Product>> select(
+            SpecificationShape<Product> shape) {
+        return (builder, parameters) -> {
+            var query = builder.createQuery(Product.class);
+            var root = query.from(Product.class);
+            query.where(shape.getDefinition().toPredicate(root, query, builder, parameters));
+            return query.select(root);
+        };
+    }
+
+    private static List<String> names(List<Product> products) {
+        return products.stream().map(Product::getName).sorted().collect(Collectors.toList());
+    }
+}
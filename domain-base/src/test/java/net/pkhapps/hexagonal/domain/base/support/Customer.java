@@ -0,0 +1,47 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.domain.base.support;
+
+import org.jetbrains.annotations.NotNull;
+
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.Id;
+
+/**
+ * Entity referenced by {@link PurchaseOrder}, used by the fetch plan tests.
+ */
+@Entity
+class Customer {
+
+    @Id
+    @GeneratedValue
+    private Long id;
+    private String name;
+
+    protected Customer() {
+    }
+
+    Customer(@NotNull String name) {
+        this.name = name;
+    }
+
+    @NotNull String getName() {
+        return name;
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.domain.base.support;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExistenceFilteringTest {
+
+    private AnnotationConfigApplicationContext context;
+    private FilteredProduct.Repository filteredRepository;
+    private ExclusiveProduct.Repository exclusiveRepository;
+    private TransactionTemplate transactionTemplate;
+    private EntityManager entityManager;
+
+    @BeforeEach
+    void setUp() {
+        context = new AnnotationConfigApplicationContext(JpaTestConfig.class);
+        filteredRepository = context.getBean(FilteredProduct.Repository.class);
+        exclusiveRepository = context.getBean(ExclusiveProduct.Repository.class);
+        transactionTemplate = context.getBean(TransactionTemplate.class);
+        entityManager = context.getBean(EntityManager.class);
+    }
+
+    @AfterEach
+    void tearDown() {
+        context.close();
+    }
+
+    @Test
+    void existsById_savedThroughRepository_true() {
+        filteredRepository.save(new FilteredProduct(1, "saved"));
+        exclusiveRepository.save(new ExclusiveProduct(1, "saved"));
+
+        assertTrue(filteredRepository.existsById(1L));
+        assertTrue(exclusiveRepository.existsById(1L));
+    }
+
+    @Test
+    void existsById_absent_falseAndCountedAsDefiniteMiss() {
+        assertFalse(filteredRepository.existsById(42L));
+        assertFalse(exclusiveRepository.existsById(42L));
+
+        var statistics = filteredRepository.getExistenceFilterStatistics().orElseThrow();
+        assertEquals(1, statistics.getLookups());
+        assertEquals(1, statistics.getDefiniteMisses());
+        assertEquals(0, statistics.getMissedInserts());
+    }
+
+    @Test
+    void existsById_insertedBehindRepository_foundInDatabaseAndAddedToFilter() {
+        insertBehindRepository("FilteredProduct", 7);
+
+        assertTrue(filteredRepository.existsById(7L));
+        assertTrue(filteredRepository.existsById(7L));
+
+        var statistics = filteredRepository.getExistenceFilterStatistics().orElseThrow();
+        assertEquals(2, statistics.getLookups());
+        assertEquals(1, statistics.getDefiniteMisses());
+        assertEquals(1, statistics.getMissedInserts());
+    }
+
+    @Test
+    void existsById_insertedBehindRepositoryWithExclusiveInserts_false() {
+        insertBehindRepository("ExclusiveProduct", 7);
+
+        assertFalse(exclusiveRepository.existsById(7L));
+        assertEquals(0, exclusiveRepository.getExistenceFilterStatistics().orElseThrow().getMissedInserts());
+    }
+
+    private void insertBehindRepository(@NotNull String table, long id) {
+        transactionTemplate.executeWithoutResult(status -> entityManager
+                .createNativeQuery("insert into " + table + " (id, version, name) values (?, 0, ?)")
+                .setParameter(1, id)
+                .setParameter(2, "inserted")
+                .executeUpdate());
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.domain.base.support;
+
+import net.pkhapps.hexagonal.domain.base.FetchPlan;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+import org.springframework.data.domain.Sort;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.PersistenceUnitUtil;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FetchPlanTest {
+
+    private AnnotationConfigApplicationContext context;
+    private PurchaseOrder.Repository orderRepository;
+    private PersistenceUnitUtil persistenceUnitUtil;
+
+    @BeforeEach
+    void setUp() {
+        context = new AnnotationConfigApplicationContext(JpaTestConfig.class);
+        orderRepository = context.getBean(PurchaseOrder.Repository.class);
+        persistenceUnitUtil = context.getBean(EntityManagerFactory.class).getPersistenceUnitUtil();
+        var entityManager = context.getBean(EntityManager.class);
+        context.getBean(TransactionTemplate.class).executeWithoutResult(status -> {
+            var products = List.of(new Product("a", 1), new Product("b", 2), new Product("c", 3));
+            products.forEach(entityManager::persist);
+            for (int i = 0; i < 10; ++i) {
+                var customer = new Customer("customer" + i);
+                entityManager.persist(customer);
+                var order = new PurchaseOrder(customer);
+                order.addLine(products.get(i % 3), i);
+                order.addLine(products.get((i + 1) % 3), i);
+                entityManager.persist(order);
+            }
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        context.close();
+    }
+
+    @Test
+    void findAll_withoutFetchPlan_associationsNotLoaded() {
+        var orders = orderRepository.findAll();
+
+        assertEquals(10, orders.size());
+        orders.forEach(order -> {
+            assertFalse(persistenceUnitUtil.isLoaded(order.getCustomer()));
+            assertFalse(persistenceUnitUtil.isLoaded(order, "lines"));
+        });
+    }
+
+    @Test
+    void findAll_attributePaths_loadsAssociationsOfAllRoots() {
+        var orders = orderRepository.findAll(null, Sort.by("id"),
+                FetchPlan.of("customer", "lines.product"));
+
+        assertEquals(10, orders.size());
+        assertLoaded(orders);
+        assertEquals("customer0", orders.get(0).getCustomer().getName());
+    }
+
+    @Test
+    void findAll_entityGraph_loadsAssociationsOfAllRoots() {
+        var orders = orderRepository.findAll(null, FetchPlan.entityGraph("PurchaseOrder.full"));
+
+        assertEquals(10, orders.size());
+        assertLoaded(orders);
+    }
+
+    @Test
+    void findAll_pathToBasicAttribute_throwsException() {
+        assertThrows(InvalidDataAccessApiUsageException.class,
+                () -> orderRepository.findAll(null, FetchPlan.of("customer.name.first")));
+    }
+
+    @Test
+    void of_invalidPath_throwsException() {
+        assertThrows(IllegalArgumentException.class, () -> FetchPlan.of("lines..product"));
+        assertThrows(IllegalArgumentException.class, () -> FetchPlan.of(".lines"));
+        assertThrows(IllegalArgumentException.class, () -> FetchPlan.of(" "));
+    }
+
+    private void assertLoaded(List<PurchaseOrder> orders) {
+        orders.forEach(order -> {
+            assertTrue(persistenceUnitUtil.isLoaded(order.getCustomer()));
+            assertTrue(persistenceUnitUtil.isLoaded(order, "lines"));
+            assertEquals(2, order.getLines().size());
+            order.getLines().forEach(line -> assertTrue(persistenceUnitUtil.isLoaded(line.getProduct())));
+        });
+    }
+}
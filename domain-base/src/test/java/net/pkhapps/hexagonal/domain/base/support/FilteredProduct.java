@@ -0,0 +1,55 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.domain.base.support;
+
+import net.pkhapps.hexagonal.domain.base.BaseAggregateRoot;
+import net.pkhapps.hexagonal.domain.base.BaseRepository;
+import net.pkhapps.hexagonal.domain.base.annotation.ExistenceFiltering;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+
+/**
+ * Aggregate root with an existence filter, used by the repository tests.
+ */
+@Entity
+@ExistenceFiltering(expectedInsertions = 1000)
+class FilteredProduct extends BaseAggregateRoot<Long> {
+
+    @Id
+    private Long id;
+    private String name;
+
+    protected FilteredProduct() {
+    }
+
+    FilteredProduct(long id, @NotNull String name) {
+        this.id = id;
+        this.name = name;
+    }
+
+    @Override
+    public @Nullable Long getId() {
+        return id;
+    }
+
+    interface Repository extends BaseRepository<FilteredProduct, Long>, ExistenceFilteredRepository {
+    }
+}
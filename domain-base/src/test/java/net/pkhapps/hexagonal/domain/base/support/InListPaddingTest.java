@@ -0,0 +1,63 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.domain.base.support;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InListPaddingTest {
+
+    @Test
+    void pad_powerOfTwoSize_returnedAsIs() {
+        var list = List.of(1, 2, 3, 4);
+        assertSame(list, InListPadding.pad(list, 512));
+    }
+
+    @Test
+    void pad_otherSize_paddedWithLastElement() {
+        assertEquals(List.of(1, 2, 3, 3), InListPadding.pad(List.of(1, 2, 3), 512));
+        assertEquals(List.of(1, 2, 3, 4, 5, 5, 5, 5), InListPadding.pad(List.of(1, 2, 3, 4, 5), 512));
+    }
+
+    @Test
+    void pad_nextPowerOfTwoAboveMaximum_paddedToMaximum() {
+        var padded = InListPadding.pad(range(600), 1000);
+        assertEquals(1000, padded.size());
+        assertEquals(599, padded.get(999));
+    }
+
+    @Test
+    void pad_maximumSize_returnedAsIs() {
+        var list = range(1000);
+        assertSame(list, InListPadding.pad(list, 1000));
+    }
+
+    @Test
+    void pad_moreThanMaximum_exceptionThrown() {
+        assertThrows(IllegalArgumentException.class, () -> InListPadding.pad(range(1001), 1000));
+    }
+
+    private static List<Integer> range(int size) {
+        return IntStream.range(0, size).boxed().collect(Collectors.toList());
+    }
+}
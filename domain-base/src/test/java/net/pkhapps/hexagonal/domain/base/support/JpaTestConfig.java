@@ -0,0 +1,66 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.domain.base.support;
+
+import org.jetbrains.annotations.NotNull;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.EnableTransactionManagement;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Spring configuration of an in-memory H2 database with Hibernate and repositories backed by
+ * {@link BaseRepositoryImpl}. Every application context gets its own database. The connection is configured through
+ * JPA properties, because the module does not read {@code java.sql}.
+ */
+@Configuration
+@EnableTransactionManagement
+@EnableJpaRepositories(considerNestedRepositories = true,
+        repositoryFactoryBeanClass = BaseRepositoryFactoryBean.class)
+public class JpaTestConfig {
+
+    @Bean
+    LocalContainerEntityManagerFactoryBean entityManagerFactory() {
+        var factory = new LocalContainerEntityManagerFactoryBean();
+        factory.setPackagesToScan(JpaTestConfig.class.getPackageName());
+        factory.setJpaVendorAdapter(new HibernateJpaVendorAdapter());
+        factory.setJpaPropertyMap(Map.of(
+                "javax.persistence.jdbc.url", "jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1",
+                "hibernate.hbm2ddl.auto", "create-drop"));
+        return factory;
+    }
+
+    @Bean
+    PlatformTransactionManager transactionManager(@NotNull EntityManagerFactory entityManagerFactory) {
+        return new JpaTransactionManager(entityManagerFactory);
+    }
+
+    @Bean
+    TransactionTemplate transactionTemplate(@NotNull PlatformTransactionManager transactionManager) {
+        return new TransactionTemplate(transactionManager);
+    }
+}
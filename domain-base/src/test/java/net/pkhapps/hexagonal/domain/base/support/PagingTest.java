@@ -0,0 +1,157 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.domain.base.support;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PagingTest {
+
+    private static final SpecificationShape<Product> BY_MIN_PRICE = SpecificationShape.of(
+            (root, query, cb, params) -> cb.ge(root.get("price"), params.get("min", Integer.class)));
+    private static final Duration LONG_AGE = Duration.ofHours(1);
+
+    private AnnotationConfigApplicationContext context;
+    private Product.Repository repository;
+    private TransactionTemplate transactionTemplate;
+    private EntityManager entityManager;
+
+    @BeforeEach
+    void setUp() {
+        context = new AnnotationConfigApplicationContext(JpaTestConfig.class);
+        repository = context.getBean(Product.Repository.class);
+        transactionTemplate = context.getBean(TransactionTemplate.class);
+        entityManager = context.getBean(EntityManager.class);
+        for (int price = 1; price <= 5; ++price) {
+            repository.save(new Product("product" + price, price));
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        context.close();
+    }
+
+    @Test
+    void findSlice_moreRowsAfterSlice_hasNext() {
+        var slice = repository.findSlice(null, PageRequest.of(0, 2, Sort.by("price")));
+
+        assertEquals(List.of(1, 2), prices(slice.getContent()));
+        assertTrue(slice.hasNext());
+    }
+
+    @Test
+    void findSlice_lastSlice_noNext() {
+        var partial = repository.findSlice(null, PageRequest.of(2, 2, Sort.by("price")));
+        assertEquals(List.of(5), prices(partial.getContent()));
+        assertFalse(partial.hasNext());
+
+        var full = repository.findSlice(BY_MIN_PRICE.with("min", 2), PageRequest.of(1, 2, Sort.by("price")));
+        assertEquals(List.of(4, 5), prices(full.getContent()));
+        assertFalse(full.hasNext());
+    }
+
+    @Test
+    void findPage_notLastPage_usesCachedCount() {
+        var spec = BY_MIN_PRICE.with("min", 1);
+        assertEquals(5, repository.findPage(spec, PageRequest.of(0, 2), LONG_AGE).getTotalElements());
+        insertBehindRepository(6);
+
+        assertEquals(5, repository.findPage(spec, PageRequest.of(0, 2), LONG_AGE).getTotalElements());
+        assertEquals(6, repository.findPage(spec, PageRequest.of(0, 2), Duration.ZERO).getTotalElements());
+    }
+
+    @Test
+    void findPage_lastPage_exactTotalWithoutCount() {
+        var spec = BY_MIN_PRICE.with("min", 1);
+        assertEquals(5, repository.findPage(spec, PageRequest.of(0, 2), LONG_AGE).getTotalElements());
+        insertBehindRepository(6);
+
+        var last = repository.findPage(spec, PageRequest.of(2, 2, Sort.by("price")), LONG_AGE);
+
+        assertEquals(List.of(5, 6), prices(last.getContent()));
+        assertEquals(6, last.getTotalElements());
+    }
+
+    @Test
+    void findPage_staleCountLowerThanRowsSeen_totalCoversRowsSeen() {
+        var spec = BY_MIN_PRICE.with("min", 1);
+        assertEquals(5, repository.findPage(spec, PageRequest.of(0, 2), LONG_AGE).getTotalElements());
+        insertBehindRepository(6);
+        insertBehindRepository(7);
+        insertBehindRepository(8);
+
+        var page = repository.findPage(spec, PageRequest.of(2, 2, Sort.by("price")), LONG_AGE);
+
+        assertEquals(List.of(5, 6), prices(page.getContent()));
+        assertEquals(7, page.getTotalElements());
+        assertTrue(page.hasNext());
+    }
+
+    @Test
+    void findPage_beyondLastPage_totalAtMostOffset() {
+        var page = repository.findPage(null, PageRequest.of(5, 2), LONG_AGE);
+
+        assertTrue(page.getContent().isEmpty());
+        assertEquals(5, page.getTotalElements());
+    }
+
+    @Test
+    void findPage_nullSpecification_countCached() {
+        assertEquals(5, repository.findPage(null, PageRequest.of(0, 2), LONG_AGE).getTotalElements());
+        insertBehindRepository(6);
+
+        assertEquals(5, repository.findPage(null, PageRequest.of(0, 2), LONG_AGE).getTotalElements());
+    }
+
+    @Test
+    void findPage_unboundSpecification_countedEveryTime() {
+        Specification<Product> spec = (root, query, cb) -> cb.ge(root.get("price"), 1);
+        assertEquals(5, repository.findPage(spec, PageRequest.of(0, 2), LONG_AGE).getTotalElements());
+        insertBehindRepository(6);
+
+        assertEquals(6, repository.findPage(spec, PageRequest.of(0, 2), LONG_AGE).getTotalElements());
+    }
+
+    private static @NotNull List<Integer> prices(@NotNull List<Product> products) {
+        return products.stream().map(Product::getPrice).collect(Collectors.toList());
+    }
+
+    private void insertBehindRepository(int price) {
+        transactionTemplate.executeWithoutResult(status -> entityManager
+                .createNativeQuery("insert into Product (id, version, name, price) values (?, 0, ?, ?)")
+                .setParameter(1, 1000 + price)
+                .setParameter(2, "product" + price)
+                .setParameter(3, price)
+                .executeUpdate());
+    }
+}
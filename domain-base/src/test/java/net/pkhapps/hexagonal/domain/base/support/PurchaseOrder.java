@@ -0,0 +1,84 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.domain.base.support;
+
+import net.pkhapps.hexagonal.domain.base.BaseAggregateRoot;
+import net.pkhapps.hexagonal.domain.base.ExtendedRepository;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import javax.persistence.CascadeType;
+import javax.persistence.Entity;
+import javax.persistence.FetchType;
+import javax.persistence.GeneratedValue;
+import javax.persistence.Id;
+import javax.persistence.JoinColumn;
+import javax.persistence.ManyToOne;
+import javax.persistence.NamedAttributeNode;
+import javax.persistence.NamedEntityGraph;
+import javax.persistence.NamedSubgraph;
+import javax.persistence.OneToMany;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Aggregate root with lazy associations, used by the fetch plan tests.
+ */
+@Entity
+@NamedEntityGraph(name = "PurchaseOrder.full", attributeNodes = {
+        @NamedAttributeNode("customer"),
+        @NamedAttributeNode(value = "lines", subgraph = "lines")
+}, subgraphs = @NamedSubgraph(name = "lines", attributeNodes = @NamedAttributeNode("product")))
+class PurchaseOrder extends BaseAggregateRoot<Long> {
+
+    @Id
+    @GeneratedValue
+    private Long id;
+    @ManyToOne(fetch = FetchType.LAZY)
+    private Customer customer;
+    @OneToMany(cascade = CascadeType.ALL)
+    @JoinColumn(name = "purchase_order_id")
+    private List<OrderLine> lines = new ArrayList<>();
+
+    protected PurchaseOrder() {
+    }
+
+    PurchaseOrder(@NotNull Customer customer) {
+        this.customer = customer;
+    }
+
+    @Override
+    public @Nullable Long getId() {
+        return id;
+    }
+
+    @NotNull Customer getCustomer() {
+        return customer;
+    }
+
+    @NotNull List<OrderLine> getLines() {
+        return lines;
+    }
+
+    void addLine(@NotNull Product product, int quantity) {
+        lines.add(new OrderLine(product, quantity));
+    }
+
+    interface Repository extends ExtendedRepository<PurchaseOrder, Long> {
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.domain.base.support;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QueryResultCacheInvalidatorTest {
+
+    private static int queries(QueryResultCache cache) {
+        var calls = new AtomicInteger();
+        cache.get("key", calls::incrementAndGet);
+        return calls.get();
+    }
+
+    @Test
+    void invalidate_subclass_invalidatesCachesOfClassAndSuperclassesOnly() {
+        var baseCache = new QueryResultCache(10, 60);
+        var subCache = new QueryResultCache(10, 60);
+        var otherCache = new QueryResultCache(10, 60);
+        QueryResultCacheInvalidator.register(Base.class, baseCache);
+        QueryResultCacheInvalidator.register(Sub.class, subCache);
+        QueryResultCacheInvalidator.register(Other.class, otherCache);
+        assertEquals(1, queries(baseCache));
+        assertEquals(1, queries(subCache));
+        assertEquals(1, queries(otherCache));
+
+        QueryResultCacheInvalidator.invalidate(Sub.class);
+
+        assertEquals(1, queries(baseCache));
+        assertEquals(1, queries(subCache));
+        assertEquals(0, queries(otherCache));
+
+        QueryResultCacheInvalidator.invalidate(Base.class);
+
+        assertEquals(1, queries(baseCache));
+        assertEquals(0, queries(subCache));
+    }
+
+    @Test
+    void invalidate_cacheRegisteredAfterFirstInvalidation_invalidated() {
+        QueryResultCacheInvalidator.invalidate(Late.class);
+        var cache = new QueryResultCache(10, 60);
+        QueryResultCacheInvalidator.register(Late.class, cache);
+        assertEquals(1, queries(cache));
+
+        QueryResultCacheInvalidator.invalidate(Late.class);
+
+        assertEquals(1, queries(cache));
+    }
+
+    private static class Base {
+    }
+
+    private static class Sub extends Base {
+    }
+
+    private static class Other {
+    }
+
+    private static class Late {
+    }
+}
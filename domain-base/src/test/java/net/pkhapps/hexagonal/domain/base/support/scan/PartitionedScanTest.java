@@ -0,0 +1,187 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.domain.base.support.scan;
+
+import net.pkhapps.hexagonal.domain.base.support.JpaTestConfig;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PartitionedScanTest {
+
+    private static final int READINGS = 100;
+    private static final long FAILING_ID = 55;
+
+    @TempDir
+    Path checkpointDirectory;
+
+    private AnnotationConfigApplicationContext context;
+    private Reading.Repository repository;
+
+    @BeforeEach
+    void setUp() {
+        context = new AnnotationConfigApplicationContext(JpaTestConfig.class);
+        repository = context.getBean(Reading.Repository.class);
+        var readings = new ArrayList<Reading>();
+        for (long id = 1; id <= READINGS; ++id) {
+            readings.add(new Reading(id, (int) id % 7));
+        }
+        repository.saveAll(readings);
+    }
+
+    @AfterEach
+    void tearDown() {
+        context.close();
+    }
+
+    @Test
+    void run_processesEveryAggregateOnceAndDeletesCheckpoint() {
+        var processed = Collections.synchronizedList(new ArrayList<Long>());
+        var checkpointStore = new FileScanCheckpointStore(checkpointDirectory);
+        var scan = createScan(checkpointStore);
+        scan.setParallelism(3);
+
+        var progress = scan.run("all", null, recordingIds(processed));
+
+        assertEquals(allIds(), new HashSet<>(processed));
+        assertEquals(READINGS, processed.size());
+        assertTrue(progress.isDone());
+        assertEquals(READINGS, progress.getProcessedAggregates());
+        assertTrue(checkpointStore.load("all").isEmpty());
+    }
+
+    @Test
+    void run_filter_processesMatchingAggregatesOnly() {
+        var processed = Collections.synchronizedList(new ArrayList<Long>());
+
+        createScan(new InMemoryScanCheckpointStore()).run("filtered",
+                (root, query, cb) -> cb.equal(root.get("value"), 0), recordingIds(processed));
+
+        assertEquals(LongStream.rangeClosed(1, READINGS).filter(id -> id % 7 == 0).boxed().collect(Collectors.toSet()),
+                new HashSet<>(processed));
+    }
+
+    @Test
+    void run_afterFailure_resumesIncompletePartitionsOnly() {
+        var checkpointStore = new FileScanCheckpointStore(checkpointDirectory);
+        var firstRun = Collections.synchronizedList(new ArrayList<Long>());
+        var failingScan = createScan(checkpointStore);
+        failingScan.setParallelism(1);
+
+        assertThrows(IllegalStateException.class, () -> failingScan.run("resumable", null, batch -> {
+            if (batch.stream().anyMatch(reading -> reading.getIdentifier() == FAILING_ID)) {
+                throw new IllegalStateException("Processing failed");
+            }
+            batch.forEach(reading -> firstRun.add(reading.getIdentifier()));
+        }));
+
+        var checkpoint = checkpointStore.load("resumable").orElseThrow();
+        var completedIds = idsInPartitions(checkpoint);
+        assertFalse(checkpoint.getCompletedPartitions().isEmpty());
+        assertTrue(checkpoint.getCompletedPartitions().size() < checkpoint.getPartitionCount());
+        assertFalse(completedIds.contains(FAILING_ID));
+        assertTrue(firstRun.containsAll(completedIds));
+
+        // A new scan instance, as after a restart, picks up the checkpoint from the store
+        var secondRun = Collections.synchronizedList(new ArrayList<Long>());
+        var progress = createScan(checkpointStore).run("resumable", null, recordingIds(secondRun));
+
+        assertTrue(Collections.disjoint(completedIds, secondRun));
+        assertEquals(secondRun.size(), new HashSet<>(secondRun).size());
+        var all = new HashSet<>(completedIds);
+        all.addAll(secondRun);
+        assertEquals(allIds(), all);
+        assertTrue(secondRun.contains(FAILING_ID));
+        assertTrue(progress.isDone());
+        assertEquals(READINGS, progress.getProcessedAggregates());
+        assertTrue(checkpointStore.load("resumable").isEmpty());
+    }
+
+    @Test
+    void run_uuidIds_processesEveryAggregateOnce() {
+        var sensorRepository = context.getBean(Sensor.Repository.class);
+        var random = new Random(1);
+        var ids = new ArrayList<UUID>();
+        for (int i = 0; i < READINGS; ++i) {
+            ids.add(new UUID(random.nextLong(), random.nextLong()));
+        }
+        // The edges of the key space, including the most significant bits with the sign bit set
+        ids.addAll(List.of(new UUID(0, 0), new UUID(Long.MAX_VALUE, -1), new UUID(Long.MIN_VALUE, 0),
+                new UUID(-1, -1)));
+        sensorRepository.saveAll(ids.stream().map(Sensor::new).collect(Collectors.toList()));
+        var processed = Collections.synchronizedList(new ArrayList<UUID>());
+        var scan = new PartitionedScan<>(sensorRepository, IdPartitioning.uuids(),
+                context.getBean(PlatformTransactionManager.class));
+        scan.setPartitionCount(10);
+        scan.setBatchSize(4);
+        scan.setParallelism(3);
+
+        var progress = scan.run("uuids", null, batch -> batch.forEach(sensor -> processed.add(sensor.getId())));
+
+        assertEquals(new HashSet<>(ids), new HashSet<>(processed));
+        assertEquals(ids.size(), processed.size());
+        assertEquals(ids.size(), progress.getProcessedAggregates());
+    }
+
+    private @NotNull PartitionedScan<Reading, Long> createScan(@NotNull ScanCheckpointStore checkpointStore) {
+        var scan = new PartitionedScan<>(repository, IdPartitioning.longs(),
+                context.getBean(PlatformTransactionManager.class));
+        scan.setPartitionCount(10);
+        scan.setBatchSize(4);
+        scan.setCheckpointStore(checkpointStore);
+        return scan;
+    }
+
+    private static @NotNull Consumer<List<Reading>> recordingIds(@NotNull List<Long> ids) {
+        return batch -> batch.forEach(reading -> ids.add(reading.getIdentifier()));
+    }
+
+    private static @NotNull Set<Long> allIds() {
+        return LongStream.rangeClosed(1, READINGS).boxed().collect(Collectors.toSet());
+    }
+
+    private static @NotNull Set<Long> idsInPartitions(@NotNull ScanCheckpoint checkpoint) {
+        var ids = new HashSet<Long>();
+        IdPartitioning.longs().split(checkpoint.getPartitionCount(), checkpoint.getLowerBound(),
+                checkpoint.getUpperBound()).stream()
+                .filter(range -> checkpoint.getCompletedPartitions().contains(range.getIndex()))
+                .forEach(range -> LongStream.rangeClosed(1, READINGS)
+                        .filter(id -> range.getLowerInclusive() == null || id >= range.getLowerInclusive())
+                        .filter(id -> range.getUpperExclusive() == null || id < range.getUpperExclusive())
+                        .forEach(ids::add));
+        return ids;
+    }
+}
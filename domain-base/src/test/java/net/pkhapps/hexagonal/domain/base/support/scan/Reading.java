@@ -0,0 +1,56 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.domain.base.support.scan;
+
+import net.pkhapps.hexagonal.domain.base.BaseAggregateRoot;
+import net.pkhapps.hexagonal.domain.base.ExtendedRepository;
+import org.jetbrains.annotations.Nullable;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+
+/**
+ * Aggregate root with an assigned ID used by the partitioned scan tests.
+ */
+@Entity
+class Reading extends BaseAggregateRoot<Long> {
+
+    @Id
+    private Long id;
+    private int value;
+
+    protected Reading() {
+    }
+
+    Reading(long id, int value) {
+        this.id = id;
+        this.value = value;
+    }
+
+    @Override
+    public @Nullable Long getId() {
+        return id;
+    }
+
+    int getValue() {
+        return value;
+    }
+
+    interface Repository extends ExtendedRepository<Reading, Long> {
+    }
+}
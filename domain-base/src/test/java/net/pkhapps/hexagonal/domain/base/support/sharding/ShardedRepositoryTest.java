@@ -0,0 +1,134 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.domain.base.support.sharding;
+
+import net.pkhapps.hexagonal.domain.base.support.JpaTestConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShardedRepositoryTest {
+
+    private static final int SHARD_COUNT = 3;
+
+    private final List<AnnotationConfigApplicationContext> contexts = new ArrayList<>();
+    private ExecutorService executor;
+    private ShardedRepository<Shipment, Long> repository;
+    private List<Shipment> shipments;
+
+    @BeforeEach
+    void setUp() {
+        var shards = new ArrayList<Shipment.Repository>();
+        for (int i = 0; i < SHARD_COUNT; ++i) {
+            var context = new AnnotationConfigApplicationContext(JpaTestConfig.class);
+            contexts.add(context);
+            shards.add(context.getBean(Shipment.Repository.class));
+        }
+        executor = Executors.newFixedThreadPool(SHARD_COUNT);
+        repository = new ShardedRepository<>(shards, id -> (int) (id % SHARD_COUNT), executor);
+        shipments = List.of(
+                new Shipment(1, "Turku", 30),
+                new Shipment(2, "helsinki", 10),
+                new Shipment(3, "Oulu", null),
+                new Shipment(4, "Espoo", 10),
+                new Shipment(5, "tampere", 20),
+                new Shipment(6, "Vaasa", 30),
+                new Shipment(7, "Pori", null),
+                new Shipment(8, "Lahti", 20),
+                new Shipment(9, "Kotka", 10));
+        repository.saveAll(shipments);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdown();
+        contexts.forEach(AnnotationConfigApplicationContext::close);
+    }
+
+    @Test
+    void saveAll_routesAggregatesToTheirShards() {
+        for (int i = 0; i < SHARD_COUNT; ++i) {
+            var shard = i;
+            var ids = repository.getShard(shard).findAll().stream()
+                    .map(Shipment::getId)
+                    .sorted()
+                    .collect(Collectors.toList());
+            var expected = shipments.stream()
+                    .map(Shipment::getId)
+                    .filter(id -> id % SHARD_COUNT == shard)
+                    .collect(Collectors.toList());
+            assertEquals(expected, ids);
+        }
+        assertEquals("Oulu", repository.findById(3L).orElseThrow().getDestination());
+        assertTrue(repository.existsById(9L));
+        assertFalse(repository.existsById(10L));
+    }
+
+    @Test
+    void findAllById_queriesAllInvolvedShards() {
+        var found = repository.findAllById(List.of(1L, 2L, 6L, 10L)).stream()
+                .map(Shipment::getId)
+                .sorted()
+                .collect(Collectors.toList());
+        assertEquals(List.of(1L, 2L, 6L), found);
+    }
+
+    @Test
+    void count_sumsAllShards() {
+        assertEquals(9, repository.count(null));
+        assertEquals(3, repository.count(weight(10)));
+    }
+
+    @Test
+    void findAll_sorted_mergesShardResultsInSortOrder() {
+        var sort = Sort.by(Sort.Order.desc("weight").nullsLast(), Sort.Order.asc("destination").ignoreCase());
+        var expected = shipments.stream()
+                .sorted(Comparator.comparing(Shipment::getWeight, Comparator.nullsLast(Comparator.reverseOrder()))
+                        .thenComparing(Shipment::getDestination, String.CASE_INSENSITIVE_ORDER))
+                .map(Shipment::getId)
+                .collect(Collectors.toList());
+
+        var result = repository.findAll(null, sort).stream().map(Shipment::getId).collect(Collectors.toList());
+
+        assertEquals(expected, result);
+    }
+
+    @Test
+    void findAll_sortedWithSpecification_mergesOnlyMatchingAggregates() {
+        var result = repository.findAll(weight(10), Sort.by("destination")).stream()
+                .map(Shipment::getDestination)
+                .collect(Collectors.toList());
+        assertEquals(List.of("Espoo", "Kotka", "helsinki"), result);
+    }
+
+    private static Specification<Shipment> weight(int weight) {
+        return (root, query, cb) -> cb.equal(root.get("weight"), weight);
+    }
+}
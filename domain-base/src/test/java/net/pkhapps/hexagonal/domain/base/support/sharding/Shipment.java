@@ -0,0 +1,68 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.domain.base.support.sharding;
+
+import net.pkhapps.hexagonal.domain.base.BaseAggregateRoot;
+import net.pkhapps.hexagonal.domain.base.BaseRepository;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+
+/**
+ * Aggregate root with an assigned ID used by the sharding tests.
+ */
+@Entity
+class Shipment extends BaseAggregateRoot<Long> {
+
+    @Id
+    private Long id;
+    private String destination;
+    private Integer weight;
+
+    protected Shipment() {
+    }
+
+    Shipment(long id, @NotNull String destination, @Nullable Integer weight) {
+        this.id = id;
+        this.destination = destination;
+        this.weight = weight;
+    }
+
+    @Override
+    public @Nullable Long getId() {
+        return id;
+    }
+
+    @NotNull String getDestination() {
+        return destination;
+    }
+
+    @Nullable Integer getWeight() {
+        return weight;
+    }
+
+    @Override
+    public String toString() {
+        return id + ":" + destination + ":" + weight;
+    }
+
+    interface Repository extends BaseRepository<Shipment, Long> {
+    }
+}
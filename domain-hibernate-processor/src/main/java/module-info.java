@@ -0,0 +1,8 @@
+module net.pkhapps.hexagonal.domain.hibernate.processor {
+    requires static org.jetbrains.annotations;
+
+    requires java.compiler;
+
+    provides javax.annotation.processing.Processor
+            with net.pkhapps.hexagonal.domain.hibernate.processor.HibernateSupportProcessor;
+}
@@ -0,0 +1,400 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.domain.hibernate.processor;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.annotation.processing.SupportedOptions;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Annotation processor that generates Hibernate support classes for the domain object IDs and simple value objects
+ * of the compiled sources, so that they do not have to be written by hand or discovered at runtime:
+ * <ul>
+ * <li>For every {@code NumericDomainObjectId} subclass {@code FooId}: a {@code FooIdType} custom type and a
+ * {@code FooIdGenerator} that delegates to Hibernate's sequence generator.</li>
+ * <li>For every {@code UUIDDomainObjectId} subclass {@code FooId}: a {@code FooIdType} custom type and, if
+ * {@code FooId} has a no-argument constructor, a {@code FooIdGenerator}.</li>
+ * <li>For every other {@code SimpleValueObject} subclass {@code Foo}: a {@code FooConverter} attribute converter.</li>
+ * </ul>
+ * Classes that already exist (for example because they were written by hand) are not generated. Finally, an index
+ * class implementing Hibernate's {@code MetadataBuilderInitializer} is generated together with its
+ * {@code META-INF/services} entry. Hibernate loads the index through the {@link java.util.ServiceLoader} at bootstrap
+ * and it registers all the generated types and auto-applied converters directly, without classpath scanning or
+ * reflection.
+ * <p>
+ * The index class is named {@code GeneratedHibernateSupport} and is placed in the longest common package of the
+ * processed classes, unless the {@value #INDEX_PACKAGE_OPTION} option is given. Because there can only be one index
+ * per compilation, incremental compilations that only see a subset of the classes will produce an incomplete index;
+ * do a full build before packaging.
+ */
+@SupportedAnnotationTypes("*")
+@SupportedOptions(HibernateSupportProcessor.INDEX_PACKAGE_OPTION)
+public class HibernateSupportProcessor extends AbstractProcessor {
+
+    /**
+     * Processor option for setting the package of the generated index class.
+     */
+    public static final String INDEX_PACKAGE_OPTION = "hexagonal.hibernate.indexPackage";
+
+    static final String INDEX_CLASS_NAME = "GeneratedHibernateSupport";
+
+    private static final String NUMERIC_ID = "net.pkhapps.hexagonal.domain.base.support.NumericDomainObjectId";
+    private static final String UUID_ID = "net.pkhapps.hexagonal.domain.base.support.UUIDDomainObjectId";
+    private static final String SIMPLE_VALUE_OBJECT = "net.pkhapps.hexagonal.domain.base.support.SimpleValueObject";
+    private static final String HIBERNATE_PACKAGE = "net.pkhapps.hexagonal.domain.hibernate.";
+    private static final String METADATA_BUILDER_INITIALIZER = "org.hibernate.boot.spi.MetadataBuilderInitializer";
+
+    private final List<String> generatedTypes = new ArrayList<>();
+    private final List<String> generatedConverters = new ArrayList<>();
+    private final List<String> processedPackages = new ArrayList<>();
+    private boolean indexPending;
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        var numericId = processingEnv.getElementUtils().getTypeElement(NUMERIC_ID);
+        var uuidId = processingEnv.getElementUtils().getTypeElement(UUID_ID);
+        var simpleValueObject = processingEnv.getElementUtils().getTypeElement(SIMPLE_VALUE_OBJECT);
+        if (numericId == null || uuidId == null || simpleValueObject == null) {
+            // The domain base classes are not on the classpath, so there is nothing to do
+            return false;
+        }
+        var found = false;
+        for (var type : typesOf(roundEnv.getRootElements())) {
+            if (!isCandidate(type)) {
+                continue;
+            }
+            if (isSubclassOf(type, numericId)) {
+                found |= processNumericId(type);
+            } else if (isSubclassOf(type, uuidId)) {
+                found |= processUUIDId(type);
+            } else if (isSubclassOf(type, simpleValueObject)) {
+                found |= processSimpleValueObject(type, simpleValueObject);
+            }
+        }
+        if (found) {
+            indexPending = true;
+        } else if (indexPending && !roundEnv.processingOver()) {
+            // Write the index in the first round that produced nothing new, so that it is still compiled
+            writeIndex();
+            indexPending = false;
+        }
+        return false;
+    }
+
+    private static @NotNull List<TypeElement> typesOf(@NotNull Set<? extends Element> elements) {
+        var types = new ArrayList<TypeElement>();
+        for (var type : ElementFilter.typesIn(elements)) {
+            types.add(type);
+            types.addAll(typesOf(Set.copyOf(type.getEnclosedElements())));
+        }
+        return types;
+    }
+
+    private static boolean isCandidate(@NotNull TypeElement type) {
+        return type.getKind() == ElementKind.CLASS
+                && !type.getModifiers().contains(Modifier.ABSTRACT)
+                && !type.getModifiers().contains(Modifier.PRIVATE)
+                && type.getTypeParameters().isEmpty()
+                && (type.getNestingKind() == NestingKind.TOP_LEVEL || type.getModifiers().contains(Modifier.STATIC));
+    }
+
+    private boolean isSubclassOf(@NotNull TypeElement type, @NotNull TypeElement superclass) {
+        var types = processingEnv.getTypeUtils();
+        return types.isSubtype(types.erasure(type.asType()), types.erasure(superclass.asType()));
+    }
+
+    private boolean processNumericId(@NotNull TypeElement type) {
+        if (findConstructor(type, "long") == null && findConstructor(type, Long.class.getName()) == null) {
+            skip(type, "it has no constructor taking a long");
+            return false;
+        }
+        var idName = type.getQualifiedName().toString();
+        var found = false;
+        var typeName = siblingName(type, "Type");
+        if (isNotDeclared(typeName)) {
+            writeSource(typeName, simpleNameOf(typeName), out -> {
+                out.printf("/**%n * Hibernate custom type for {@link %s}.%n */%n", idName);
+                out.printf("public class %s extends %sNumericDomainObjectIdCustomType<%s> {%n%n",
+                        simpleNameOf(typeName), HIBERNATE_PACKAGE, idName);
+                out.printf("    public static final %sNumericDomainObjectIdTypeDescriptor<%s> DESCRIPTOR%n"
+                                + "            = new %1$sNumericDomainObjectIdTypeDescriptor<>(%2$s.class, %2$s::new);%n",
+                        HIBERNATE_PACKAGE, idName);
+                out.printf("    public static final %1$s INSTANCE = new %1$s();%n%n", simpleNameOf(typeName));
+                out.printf("    public %s() {%n        super(DESCRIPTOR);%n    }%n}%n", simpleNameOf(typeName));
+            });
+            generatedTypes.add(typeName);
+            found = true;
+        }
+        // The generator needs the type descriptor of the generated type, so only generate it together with the type
+        var generatorName = siblingName(type, "Generator");
+        if (found && isNotDeclared(generatorName)) {
+            writeSource(generatorName, simpleNameOf(generatorName), out -> {
+                out.printf("/**%n * Hibernate identifier generator for {@link %s} that delegates to Hibernate's%n"
+                        + " * sequence based generator.%n */%n", idName);
+                out.printf("public class %s extends %sNumericDomainObjectIdGenerator<%s> {%n%n",
+                        simpleNameOf(generatorName), HIBERNATE_PACKAGE, idName);
+                out.printf("    public %s() {%n        super(new org.hibernate.id.enhanced.SequenceStyleGenerator(), "
+                        + "%s.DESCRIPTOR);%n    }%n%n", simpleNameOf(generatorName), typeName);
+                out.printf("    @Override%n"
+                        + "    public void configure(org.hibernate.type.Type type, java.util.Properties params,%n"
+                        + "                          org.hibernate.service.ServiceRegistry serviceRegistry) {%n"
+                        + "        super.configure(org.hibernate.type.LongType.INSTANCE, params, serviceRegistry);%n"
+                        + "    }%n}%n");
+            });
+            found = true;
+        }
+        return found;
+    }
+
+    private boolean processUUIDId(@NotNull TypeElement type) {
+        if (findConstructor(type, java.util.UUID.class.getName()) == null) {
+            skip(type, "it has no constructor taking a UUID");
+            return false;
+        }
+        var idName = type.getQualifiedName().toString();
+        var found = false;
+        var typeName = siblingName(type, "Type");
+        if (isNotDeclared(typeName)) {
+            writeSource(typeName, simpleNameOf(typeName), out -> {
+                out.printf("/**%n * Hibernate custom type for {@link %s}.%n */%n", idName);
+                out.printf("public class %s extends %sUUIDDomainObjectIdCustomType<%s> {%n%n",
+                        simpleNameOf(typeName), HIBERNATE_PACKAGE, idName);
+                out.printf("    public static final %sUUIDDomainObjectIdTypeDescriptor<%s> DESCRIPTOR%n"
+                                + "            = new %1$sUUIDDomainObjectIdTypeDescriptor<>(%2$s.class, %2$s::new);%n",
+                        HIBERNATE_PACKAGE, idName);
+                out.printf("    public static final %1$s INSTANCE = new %1$s();%n%n", simpleNameOf(typeName));
+                out.printf("    public %s() {%n        super(DESCRIPTOR);%n    }%n}%n", simpleNameOf(typeName));
+            });
+            generatedTypes.add(typeName);
+            found = true;
+        }
+        var generatorName = siblingName(type, "Generator");
+        if (isNotDeclared(generatorName) && findConstructor(type) != null) {
+            writeSource(generatorName, simpleNameOf(generatorName), out -> {
+                out.printf("/**%n * Hibernate identifier generator for {@link %s} that generates random UUIDs.%n */%n",
+                        idName);
+                out.printf("public class %s extends %sUUIDDomainObjectIdGenerator<%s> {%n%n",
+                        simpleNameOf(generatorName), HIBERNATE_PACKAGE, idName);
+                out.printf("    public %s() {%n        super(%s::new);%n    }%n}%n", simpleNameOf(generatorName),
+                        idName);
+            });
+            found = true;
+        }
+        return found;
+    }
+
+    private boolean processSimpleValueObject(@NotNull TypeElement type, @NotNull TypeElement simpleValueObject) {
+        var valueType = findValueType(type.asType(), simpleValueObject);
+        if (valueType == null) {
+            skip(type, "its value type could not be determined");
+            return false;
+        }
+        var valueTypeName = processingEnv.getTypeUtils().erasure(valueType).toString();
+        if (findConstructor(type, valueTypeName) == null && findConstructor(type, unboxedName(valueType)) == null) {
+            skip(type, "it has no constructor taking a " + valueTypeName);
+            return false;
+        }
+        var converterName = siblingName(type, "Converter");
+        if (!isNotDeclared(converterName)) {
+            return false;
+        }
+        var valueObjectName = type.getQualifiedName().toString();
+        writeSource(converterName, simpleNameOf(converterName), out -> {
+            out.printf("/**%n * JPA attribute converter for {@link %s}.%n */%n", valueObjectName);
+            out.printf("public class %s%n        extends net.pkhapps.hexagonal.domain.base.support."
+                            + "SimpleValueObjectAttributeConverter<%s, %s> {%n%n", simpleNameOf(converterName),
+                    valueObjectName, valueType);
+            out.printf("    public %s() {%n        super(%s::new);%n    }%n}%n", simpleNameOf(converterName),
+                    valueObjectName);
+        });
+        generatedConverters.add(converterName);
+        return true;
+    }
+
+    private @Nullable TypeMirror findValueType(@NotNull TypeMirror type, @NotNull TypeElement simpleValueObject) {
+        var types = processingEnv.getTypeUtils();
+        for (var supertype : types.directSupertypes(type)) {
+            if (supertype.getKind() != TypeKind.DECLARED) {
+                continue;
+            }
+            var declared = (DeclaredType) supertype;
+            if (declared.asElement().equals(simpleValueObject)) {
+                var arguments = declared.getTypeArguments();
+                return arguments.size() == 1 && arguments.get(0).getKind() == TypeKind.DECLARED
+                        ? arguments.get(0) : null;
+            }
+            var result = findValueType(supertype, simpleValueObject);
+            if (result != null) {
+                return result;
+            }
+        }
+        return null;
+    }
+
+    private @NotNull String unboxedName(@NotNull TypeMirror type) {
+        try {
+            return processingEnv.getTypeUtils().unboxedType(type).toString();
+        } catch (IllegalArgumentException ex) {
+            return type.toString();
+        }
+    }
+
+    private @Nullable ExecutableElement findConstructor(@NotNull TypeElement type, @NotNull String... parameterTypes) {
+        var types = processingEnv.getTypeUtils();
+        for (var constructor : ElementFilter.constructorsIn(type.getEnclosedElements())) {
+            if (constructor.getModifiers().contains(Modifier.PRIVATE)
+                    || constructor.getParameters().size() != parameterTypes.length) {
+                continue;
+            }
+            var matches = true;
+            for (int i = 0; i < parameterTypes.length; ++i) {
+                var parameterType = types.erasure(constructor.getParameters().get(i).asType()).toString();
+                matches &= parameterType.equals(parameterTypes[i]);
+            }
+            if (matches) {
+                return constructor;
+            }
+        }
+        return null;
+    }
+
+    private static @NotNull String siblingName(@NotNull TypeElement type, @NotNull String suffix) {
+        // Nested classes get a top-level sibling named after all their enclosing classes
+        var name = new StringBuilder(type.getSimpleName()).append(suffix);
+        var enclosing = type.getEnclosingElement();
+        while (enclosing instanceof TypeElement) {
+            name.insert(0, enclosing.getSimpleName());
+            enclosing = enclosing.getEnclosingElement();
+        }
+        var packageName = enclosing.toString();
+        return packageName.isEmpty() ? name.toString() : packageName + "." + name;
+    }
+
+    private static @NotNull String simpleNameOf(@NotNull String qualifiedName) {
+        return qualifiedName.substring(qualifiedName.lastIndexOf('.') + 1);
+    }
+
+    private static @NotNull String packageOf(@NotNull String qualifiedName) {
+        var lastDot = qualifiedName.lastIndexOf('.');
+        return lastDot < 0 ? "" : qualifiedName.substring(0, lastDot);
+    }
+
+    private boolean isNotDeclared(@NotNull String qualifiedName) {
+        return processingEnv.getElementUtils().getTypeElement(qualifiedName) == null;
+    }
+
+    private void skip(@NotNull TypeElement type, @NotNull String reason) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE,
+                "No Hibernate support generated for " + type.getQualifiedName() + " because " + reason, type);
+    }
+
+    private void writeSource(@NotNull String qualifiedName, @NotNull String simpleName,
+                             @NotNull SourceBody body) {
+        var packageName = packageOf(qualifiedName);
+        processedPackages.add(packageName);
+        try (var out = new PrintWriter(processingEnv.getFiler().createSourceFile(qualifiedName).openWriter())) {
+            if (!packageName.isEmpty()) {
+                out.printf("package %s;%n%n", packageName);
+            }
+            out.printf("// Generated by %s, do not edit.%n%n", getClass().getName());
+            body.write(out);
+        } catch (IOException ex) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    "Could not write " + simpleName + ": " + ex.getMessage());
+        }
+    }
+
+    private void writeIndex() {
+        var indexPackage = processingEnv.getOptions().get(INDEX_PACKAGE_OPTION);
+        if (indexPackage == null) {
+            indexPackage = commonPackage(processedPackages);
+        }
+        var indexName = indexPackage.isEmpty() ? INDEX_CLASS_NAME : indexPackage + "." + INDEX_CLASS_NAME;
+        writeSource(indexName, INDEX_CLASS_NAME, out -> {
+            out.printf("/**%n * Registers the generated Hibernate types and converters of this module at bootstrap.%n"
+                    + " */%n");
+            out.printf("public final class %s implements %s {%n%n", INDEX_CLASS_NAME, METADATA_BUILDER_INITIALIZER);
+            out.printf("    @Override%n    public void contribute(org.hibernate.boot.MetadataBuilder metadataBuilder,%n"
+                    + "                           org.hibernate.boot.registry.StandardServiceRegistry "
+                    + "serviceRegistry) {%n");
+            for (var type : generatedTypes) {
+                out.printf("        metadataBuilder.applyBasicType(%s.INSTANCE);%n", type);
+            }
+            for (var converter : generatedConverters) {
+                out.printf("        metadataBuilder.applyAttributeConverter(new %s(), true);%n", converter);
+            }
+            out.printf("    }%n}%n");
+        });
+        try (var out = new PrintWriter(processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "",
+                "META-INF/services/" + METADATA_BUILDER_INITIALIZER).openWriter())) {
+            out.println(indexName);
+        } catch (IOException ex) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    "Could not write service entry for " + indexName + ": " + ex.getMessage());
+        }
+    }
+
+    static @NotNull String commonPackage(@NotNull List<String> packages) {
+        if (packages.isEmpty()) {
+            return "";
+        }
+        var common = packages.get(0).split("\\.");
+        var length = common.length;
+        for (var packageName : packages) {
+            var segments = packageName.split("\\.");
+            var i = 0;
+            while (i < Math.min(length, segments.length) && segments[i].equals(common[i])) {
+                ++i;
+            }
+            length = i;
+        }
+        return String.join(".", List.of(common).subList(0, length));
+    }
+
+    @FunctionalInterface
+    private interface SourceBody {
+        void write(@NotNull PrintWriter out);
+    }
+}
@@ -0,0 +1,275 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.domain.hibernate.processor;
+
+import net.pkhapps.hexagonal.domain.base.support.NumericDomainObjectId;
+import org.hibernate.boot.MetadataSources;
+import org.hibernate.boot.registry.BootstrapServiceRegistryBuilder;
+import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.persistence.Entity;
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaFileObject;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Compiles small fixtures with the processor and checks the generated sources, the index and its registration with
+ * Hibernate.
+ */
+class HibernateSupportProcessorTest {
+
+    private static final String SUPPORT = "net.pkhapps.hexagonal.domain.base.support.";
+
+    @TempDir
+    Path directory;
+
+    private final Map<String, String> fixtures = Map.of(
+            "com/example/order/OrderId.java", String.join("\n",
+                    "package com.example.order;",
+                    "public class OrderId extends " + SUPPORT + "NumericDomainObjectId {",
+                    "    public OrderId(long id) { super(id); }",
+                    "}"),
+            "com/example/order/PurchaseOrder.java", String.join("\n",
+                    "package com.example.order;",
+                    "@javax.persistence.Entity",
+                    "public class PurchaseOrder {",
+                    "    @javax.persistence.Id private OrderId id;",
+                    "    private com.example.customer.CustomerId customer;",
+                    "    private com.example.customer.Email email;",
+                    "    private com.example.customer.Phone phone;",
+                    "    public static class LineId extends " + SUPPORT + "NumericDomainObjectId {",
+                    "        public LineId(long id) { super(id); }",
+                    "    }",
+                    "}"),
+            "com/example/customer/CustomerId.java", String.join("\n",
+                    "package com.example.customer;",
+                    "public class CustomerId extends " + SUPPORT + "UUIDDomainObjectId {",
+                    "    public CustomerId() { }",
+                    "    public CustomerId(java.util.UUID uuid) { super(uuid); }",
+                    "}"),
+            "com/example/customer/Email.java", String.join("\n",
+                    "package com.example.customer;",
+                    "public class Email extends " + SUPPORT + "SimpleValueObject<String> {",
+                    "    public Email(String value) { super(value); }",
+                    "}"),
+            "com/example/customer/Phone.java", String.join("\n",
+                    "package com.example.customer;",
+                    "public class Phone extends " + SUPPORT + "SimpleValueObject<String> {",
+                    "    public Phone(String value) { super(value); }",
+                    "}"),
+            "com/example/customer/PhoneConverter.java", String.join("\n",
+                    "package com.example.customer;",
+                    "public class PhoneConverter extends " + SUPPORT
+                            + "SimpleValueObjectAttributeConverter<Phone, String> {",
+                    "    public PhoneConverter() { super(Phone::new); }",
+                    "}"));
+
+    private @NotNull Path sources() {
+        return directory.resolve("src");
+    }
+
+    private @NotNull Path classes() {
+        return directory.resolve("classes");
+    }
+
+    private @NotNull Path generated() {
+        return directory.resolve("generated");
+    }
+
+    private @NotNull List<Diagnostic<? extends JavaFileObject>> compile(@NotNull Map<String, String> files,
+                                                                         @NotNull String... options)
+            throws IOException {
+        var sourceFiles = new ArrayList<File>();
+        for (var file : files.entrySet()) {
+            var path = sources().resolve(file.getKey());
+            Files.createDirectories(path.getParent());
+            Files.writeString(path, file.getValue());
+            sourceFiles.add(path.toFile());
+        }
+        Files.createDirectories(classes());
+        Files.createDirectories(generated());
+        var compiler = ToolProvider.getSystemJavaCompiler();
+        var diagnostics = new DiagnosticCollector<JavaFileObject>();
+        try (var fileManager = compiler.getStandardFileManager(diagnostics, null, null)) {
+            var arguments = new ArrayList<>(List.of("-classpath", classpath(), "-d", classes().toString(),
+                    "-s", generated().toString()));
+            arguments.addAll(List.of(options));
+            var task = compiler.getTask(null, fileManager, diagnostics, arguments, null,
+                    fileManager.getJavaFileObjectsFromFiles(sourceFiles));
+            task.setProcessors(List.of(new HibernateSupportProcessor()));
+            var errors = diagnostics.getDiagnostics();
+            assertTrue(task.call(), () -> "Compilation failed: " + errors);
+        }
+        return diagnostics.getDiagnostics();
+    }
+
+    private static @NotNull String classpath() {
+        // The test class path may be hidden in a manifest-only JAR, so locate the needed libraries one by one
+        return Stream.of(NumericDomainObjectId.class, hibernateSupportClass(), MetadataSources.class, Entity.class,
+                NotNull.class)
+                .map(HibernateSupportProcessorTest::locationOf)
+                .collect(Collectors.joining(File.pathSeparator));
+    }
+
+    private static @NotNull Class<?> hibernateSupportClass() {
+        // Not readable by this module at compile time
+        try {
+            return Class.forName("net.pkhapps.hexagonal.domain.hibernate.NumericDomainObjectIdCustomType");
+        } catch (ClassNotFoundException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static @NotNull String locationOf(@NotNull Class<?> type) {
+        try {
+            return Path.of(type.getProtectionDomain().getCodeSource().getLocation().toURI()).toString();
+        } catch (URISyntaxException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private @NotNull List<String> generatedSources() throws IOException {
+        try (var files = Files.walk(generated())) {
+            return files.filter(Files::isRegularFile)
+                    .map(file -> generated().relativize(file).toString().replace(File.separatorChar, '/'))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    @Test
+    void compile_idsAndValueObjects_supportClassesGenerated() throws IOException {
+        compile(fixtures);
+
+        assertEquals(List.of(
+                "com/example/GeneratedHibernateSupport.java",
+                "com/example/customer/CustomerIdGenerator.java",
+                "com/example/customer/CustomerIdType.java",
+                "com/example/customer/EmailConverter.java",
+                "com/example/order/OrderIdGenerator.java",
+                "com/example/order/OrderIdType.java",
+                "com/example/order/PurchaseOrderLineIdGenerator.java",
+                "com/example/order/PurchaseOrderLineIdType.java"), generatedSources());
+    }
+
+    @Test
+    void compile_handWrittenClass_notGeneratedNorRegistered() throws IOException {
+        compile(fixtures);
+
+        assertFalse(Files.exists(generated().resolve("com/example/customer/PhoneConverter.java")));
+        var index = Files.readString(generated().resolve("com/example/GeneratedHibernateSupport.java"));
+        assertTrue(index.contains("com.example.customer.EmailConverter"), index);
+        assertFalse(index.contains("PhoneConverter"), index);
+    }
+
+    @Test
+    void compile_uuidIdWithoutDefaultConstructor_noGenerator() throws IOException {
+        compile(Map.of("com/example/ShipmentId.java", String.join("\n",
+                "package com.example;",
+                "public class ShipmentId extends " + SUPPORT + "UUIDDomainObjectId {",
+                "    public ShipmentId(java.util.UUID uuid) { super(uuid); }",
+                "}")));
+
+        assertEquals(List.of("com/example/GeneratedHibernateSupport.java", "com/example/ShipmentIdType.java"),
+                generatedSources());
+    }
+
+    @Test
+    void compile_index_compiledAndRegisteredAsService() throws IOException {
+        var diagnostics = compile(fixtures);
+
+        // The index is written in a round before the last one, so it is compiled without warnings
+        assertTrue(diagnostics.stream().noneMatch(diagnostic -> diagnostic.getKind() == Diagnostic.Kind.WARNING
+                || diagnostic.getKind() == Diagnostic.Kind.MANDATORY_WARNING), diagnostics::toString);
+        assertTrue(Files.exists(classes().resolve("com/example/GeneratedHibernateSupport.class")));
+        assertEquals(List.of("com.example.GeneratedHibernateSupport"), Files.readAllLines(
+                classes().resolve("META-INF/services/org.hibernate.boot.spi.MetadataBuilderInitializer")));
+    }
+
+    @Test
+    void compile_indexPackageOption_indexPlacedInPackage() throws IOException {
+        compile(fixtures, "-A" + HibernateSupportProcessor.INDEX_PACKAGE_OPTION + "=com.example.order");
+
+        assertTrue(Files.exists(classes().resolve("com/example/order/GeneratedHibernateSupport.class")));
+        assertEquals(List.of("com.example.order.GeneratedHibernateSupport"), Files.readAllLines(
+                classes().resolve("META-INF/services/org.hibernate.boot.spi.MetadataBuilderInitializer")));
+    }
+
+    @Test
+    void compile_noCandidates_noIndex() throws IOException {
+        compile(Map.of("com/example/Plain.java", "package com.example; public class Plain { }"));
+
+        assertEquals(List.of(), generatedSources());
+        assertFalse(Files.exists(classes().resolve("META-INF")));
+    }
+
+    @Test
+    void hibernateBootstrap_generatedTypesAndConvertersApplied() throws Exception {
+        compile(fixtures);
+
+        try (var classLoader = new URLClassLoader(new URL[]{classes().toUri().toURL()},
+                getClass().getClassLoader())) {
+            var bootstrapRegistry = new BootstrapServiceRegistryBuilder().applyClassLoader(classLoader).build();
+            var registry = new StandardServiceRegistryBuilder(bootstrapRegistry)
+                    .applySetting("hibernate.dialect", "org.hibernate.dialect.H2Dialect")
+                    .applySetting("hibernate.temp.use_jdbc_metadata_defaults", false)
+                    .build();
+            try {
+                var metadata = new MetadataSources(registry)
+                        .addAnnotatedClass(classLoader.loadClass("com.example.order.PurchaseOrder"))
+                        .buildMetadata();
+                var entity = metadata.getEntityBinding("com.example.order.PurchaseOrder");
+
+                assertEquals("com.example.order.OrderIdType",
+                        entity.getIdentifier().getType().getClass().getName());
+                assertEquals("com.example.customer.CustomerIdType",
+                        entity.getProperty("customer").getType().getClass().getName());
+                assertTrue(entity.getProperty("email").getType().getName().endsWith("EmailConverter"),
+                        entity.getProperty("email").getType().getName());
+            } finally {
+                StandardServiceRegistryBuilder.destroy(registry);
+            }
+        }
+    }
+
+    @Test
+    void commonPackage_longestCommonPrefixOfSegments() {
+        assertEquals("com.example", HibernateSupportProcessor.commonPackage(
+                List.of("com.example.order", "com.example.customer", "com.example.order.line")));
+        assertEquals("", HibernateSupportProcessor.commonPackage(List.of("com.example", "org.example")));
+        assertEquals("", HibernateSupportProcessor.commonPackage(List.of()));
+    }
+}
@@ -1,9 +1,14 @@
 module net.pkhapps.hexagonal.domain.hibernate {
     requires static org.jetbrains.annotations;
 
+    requires java.naming;
     requires java.sql;
     requires net.pkhapps.hexagonal.domain.base;
     requires org.hibernate.orm.core;
 
     exports net.pkhapps.hexagonal.domain.hibernate;
+
+    provides org.hibernate.integrator.spi.Integrator with
+            net.pkhapps.hexagonal.domain.hibernate.ChangeTrackingIntegrator,
+            net.pkhapps.hexagonal.domain.hibernate.QueryResultCacheIntegrator;
 }
\ No newline at end of file
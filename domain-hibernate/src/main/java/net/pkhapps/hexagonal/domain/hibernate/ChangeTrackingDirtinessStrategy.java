@@ -0,0 +1,63 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.domain.hibernate;
+
+import net.pkhapps.hexagonal.domain.base.BaseEntity;
+import net.pkhapps.hexagonal.domain.base.support.ModifiedAttributes;
+import org.hibernate.CustomEntityDirtinessStrategy;
+import org.hibernate.Session;
+import org.hibernate.persister.entity.EntityPersister;
+
+/**
+ * {@link CustomEntityDirtinessStrategy} for {@linkplain net.pkhapps.hexagonal.domain.base.annotation.ChangeTracking
+ * change tracked} entities. Instead of comparing the entities against their snapshots, Hibernate asks them which
+ * attributes they have marked as modified. Entities that are not change tracked are dirty checked as usual. To use
+ * the strategy, set the following property:
+ * <pre>
+ * hibernate.entity_dirtiness_strategy=net.pkhapps.hexagonal.domain.hibernate.ChangeTrackingDirtinessStrategy
+ * </pre>
+ * Annotate the entities with {@code @DynamicUpdate} to only write the modified columns.
+ * <p>
+ * Merging a detached entity copies its state into the managed entity without marking anything. When this strategy is
+ * configured, {@link ChangeTrackingIntegrator} therefore compares every merged change tracked entity against its
+ * loaded state right after the merge, and marks the attributes that differ.
+ */
+public class ChangeTrackingDirtinessStrategy implements CustomEntityDirtinessStrategy {
+
+    @Override
+    public boolean canDirtyCheck(Object entity, EntityPersister persister, Session session) {
+        return entity instanceof BaseEntity && ((BaseEntity<?>) entity).isChangeTracked();
+    }
+
+    @Override
+    public boolean isDirty(Object entity, EntityPersister persister, Session session) {
+        return !ModifiedAttributes.of((BaseEntity<?>) entity).isEmpty();
+    }
+
+    @Override
+    public void resetDirty(Object entity, EntityPersister persister, Session session) {
+        ModifiedAttributes.clear((BaseEntity<?>) entity);
+    }
+
+    @Override
+    public void findDirty(Object entity, EntityPersister persister, Session session,
+                          DirtyCheckContext dirtyCheckContext) {
+        var modified = ModifiedAttributes.of((BaseEntity<?>) entity);
+        dirtyCheckContext.doDirtyChecking(attribute -> modified.contains(attribute.getName()));
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.domain.hibernate;
+
+import net.pkhapps.hexagonal.domain.base.BaseEntity;
+import net.pkhapps.hexagonal.domain.base.support.ModifiedAttributes;
+import org.hibernate.HibernateException;
+import org.hibernate.boot.Metadata;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.MergeEvent;
+import org.hibernate.event.spi.MergeEventListener;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.proxy.HibernateProxy;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+
+import java.util.ArrayList;
+import java.util.Map;
+
+/**
+ * Hibernate {@link Integrator} that makes merges work with {@link ChangeTrackingDirtinessStrategy}. After a detached
+ * {@linkplain net.pkhapps.hexagonal.domain.base.annotation.ChangeTracking change tracked} entity has been merged, the
+ * managed entity is compared against its loaded state and the attributes that differ are marked as modified, so that
+ * the merged changes are written when the session is flushed. The integrator is registered automatically through the
+ * Java service loader, and does nothing unless the change tracking dirtiness strategy is configured.
+ */
+public class ChangeTrackingIntegrator implements Integrator {
+
+    @Override
+    public void integrate(Metadata metadata, SessionFactoryImplementor sessionFactory,
+                          SessionFactoryServiceRegistry serviceRegistry) {
+        if (sessionFactory.getSessionFactoryOptions()
+                .getCustomEntityDirtinessStrategy() instanceof ChangeTrackingDirtinessStrategy) {
+            serviceRegistry.getService(EventListenerRegistry.class)
+                    .appendListeners(EventType.MERGE, new MarkingMergeListener());
+        }
+    }
+
+    @Override
+    public void disintegrate(SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+        // Nothing to clean up
+    }
+
+    private static final class MarkingMergeListener implements MergeEventListener {
+
+        @Override
+        public void onMerge(MergeEvent event) throws HibernateException {
+            markMergedAttributes(event);
+        }
+
+        @Override
+        @SuppressWarnings("rawtypes")
+        public void onMerge(MergeEvent event, Map copiedAlready) throws HibernateException {
+            markMergedAttributes(event);
+        }
+
+        private static void markMergedAttributes(MergeEvent event) {
+            var result = event.getResult();
+            if (result instanceof HibernateProxy) {
+                result = ((HibernateProxy) result).getHibernateLazyInitializer().getImplementation();
+            }
+            if (!(result instanceof BaseEntity) || !((BaseEntity<?>) result).isChangeTracked()) {
+                return;
+            }
+            var session = event.getSession();
+            var entry = session.getPersistenceContext().getEntry(result);
+            if (entry == null || entry.getLoadedState() == null) {
+                return;
+            }
+            var persister = entry.getPersister();
+            var dirty = persister.findDirty(persister.getPropertyValues(result), entry.getLoadedState(), result,
+                    session);
+            if (dirty == null) {
+                return;
+            }
+            var names = persister.getPropertyNames();
+            var attributes = new ArrayList<String>(dirty.length);
+            for (var index : dirty) {
+                attributes.add(names[index]);
+            }
+            ModifiedAttributes.mark((BaseEntity<?>) result, attributes);
+        }
+    }
+}
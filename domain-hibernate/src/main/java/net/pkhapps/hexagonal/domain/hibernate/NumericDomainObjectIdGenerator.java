@@ -20,6 +20,8 @@ package net.pkhapps.hexagonal.domain.hibernate;
 import net.pkhapps.hexagonal.domain.base.support.NumericDomainObjectId;
 import org.hibernate.HibernateException;
 import org.hibernate.MappingException;
+import org.hibernate.boot.model.relational.Database;
+import org.hibernate.boot.model.relational.ExportableProducer;
 import org.hibernate.engine.spi.SharedSessionContractImplementor;
 import org.hibernate.id.Configurable;
 import org.hibernate.id.IdentifierGenerator;
@@ -36,7 +38,7 @@ import java.util.Properties;
  * @param <ID> the ID type.
  */
 public abstract class NumericDomainObjectIdGenerator<ID extends NumericDomainObjectId> implements IdentifierGenerator,
-        Configurable {
+        Configurable, ExportableProducer {
 
     private final IdentifierGenerator delegate;
     private final NumericDomainObjectIdTypeDescriptor<ID> typeDescriptor;
@@ -60,6 +62,14 @@ public abstract class NumericDomainObjectIdGenerator<ID extends NumericDomainObj
         }
     }
 
+    @Override
+    public void registerExportables(Database database) {
+        // Sequence and table based generators need this to create and initialize their database structures
+        if (delegate instanceof ExportableProducer) {
+            ((ExportableProducer) delegate).registerExportables(database);
+        }
+    }
+
     @Override
     public Serializable generate(SharedSessionContractImplementor session, Object object) throws HibernateException {
         return typeDescriptor.wrap(delegate.generate(session, object), null);
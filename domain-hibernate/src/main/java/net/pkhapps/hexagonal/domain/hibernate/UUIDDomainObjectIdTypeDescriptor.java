@@ -17,6 +17,7 @@
 
 package net.pkhapps.hexagonal.domain.hibernate;
 
+import net.pkhapps.hexagonal.domain.base.support.CompactUUID;
 import net.pkhapps.hexagonal.domain.base.support.UUIDDomainObjectId;
 import org.hibernate.type.descriptor.WrapperOptions;
 import org.hibernate.type.descriptor.java.AbstractTypeDescriptor;
@@ -40,6 +41,7 @@ import static java.util.Objects.requireNonNull;
 public class UUIDDomainObjectIdTypeDescriptor<ID extends UUIDDomainObjectId> extends AbstractTypeDescriptor<ID> {
 
     private final Function<UUID, ID> factory;
+    private final boolean compactStrings;
 
     /**
      * Creates a new {@code DomainObjectIdTypeDescriptor}.
@@ -48,18 +50,37 @@ public class UUIDDomainObjectIdTypeDescriptor<ID extends UUIDDomainObjectId> ext
      * @param factory a factory for creating new ID instances.
      */
     public UUIDDomainObjectIdTypeDescriptor(@NotNull Class<ID> type, @NotNull Function<UUID, ID> factory) {
+        this(type, factory, false);
+    }
+
+    /**
+     * Creates a new {@code DomainObjectIdTypeDescriptor}.
+     *
+     * @param type           the ID type.
+     * @param factory        a factory for creating new ID instances.
+     * @param compactStrings whether {@link #toString(UUIDDomainObjectId)} should produce the
+     *                       {@linkplain CompactUUID compact form} instead of the canonical form.
+     *                       {@link #fromString(String)} always accepts both forms.
+     */
+    public UUIDDomainObjectIdTypeDescriptor(@NotNull Class<ID> type, @NotNull Function<UUID, ID> factory,
+                                            boolean compactStrings) {
         super(type);
         this.factory = requireNonNull(factory);
+        this.compactStrings = compactStrings;
     }
 
     @Override
     public String toString(ID value) {
-        return ToStringTransformer.INSTANCE.transform(value.unwrap());
+        return compactStrings
+                ? CompactUUID.format(value.unwrap())
+                : ToStringTransformer.INSTANCE.transform(value.unwrap());
     }
 
     @Override
     public ID fromString(String string) {
-        return factory.apply(ToStringTransformer.INSTANCE.parse(string));
+        return factory.apply(CompactUUID.isCompact(string)
+                ? CompactUUID.parse(string)
+                : ToStringTransformer.INSTANCE.parse(string));
     }
 
     @Override
@@ -95,7 +116,7 @@ public class UUIDDomainObjectIdTypeDescriptor<ID extends UUIDDomainObjectId> ext
             return factory.apply(PassThroughTransformer.INSTANCE.parse(value));
         }
         if (value instanceof String) {
-            return factory.apply(ToStringTransformer.INSTANCE.parse(value));
+            return fromString((String) value);
         }
         if (value instanceof byte[]) {
             return factory.apply(ToBytesTransformer.INSTANCE.parse(value));
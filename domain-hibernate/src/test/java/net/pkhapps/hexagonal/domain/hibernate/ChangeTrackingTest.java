@@ -0,0 +1,118 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.domain.hibernate;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChangeTrackingTest {
+
+    private AnnotationConfigApplicationContext context;
+    private Gadget.Repository repository;
+    private TransactionTemplate transactionTemplate;
+    private EntityManager entityManager;
+    private long gadgetId;
+
+    @BeforeEach
+    void setUp() {
+        context = new AnnotationConfigApplicationContext(JpaTestConfig.class);
+        repository = context.getBean(Gadget.Repository.class);
+        transactionTemplate = context.getBean(TransactionTemplate.class);
+        entityManager = context.getBean(EntityManager.class);
+        gadgetId = repository.save(new Gadget("widget", 10)).getIdentifier();
+    }
+
+    @AfterEach
+    void tearDown() {
+        context.close();
+    }
+
+    @Test
+    void flush_markedChange_written() {
+        inTransaction(gadget -> gadget.setPrice(20));
+
+        var gadget = load();
+        assertEquals(20, gadget.getPrice());
+        assertEquals(1, gadget.getVersionValue());
+    }
+
+    @Test
+    void flush_noChanges_nothingWritten() {
+        inTransaction(gadget -> gadget.getName());
+
+        assertEquals(0, load().getVersionValue());
+    }
+
+    @Test
+    void flush_unmarkedChange_notWritten() {
+        inTransaction(gadget -> gadget.setPriceWithoutMarking(20));
+
+        var gadget = load();
+        assertEquals(10, gadget.getPrice());
+        assertEquals(0, gadget.getVersionValue());
+    }
+
+    @Test
+    void merge_changedDetachedEntity_written() {
+        var detached = load();
+        detached.setPriceWithoutMarking(30);
+        detached.setName("gizmo");
+
+        transactionTemplate.executeWithoutResult(status -> entityManager.merge(detached));
+
+        var gadget = load();
+        assertEquals(30, gadget.getPrice());
+        assertEquals("gizmo", gadget.getName());
+        assertEquals(1, gadget.getVersionValue());
+    }
+
+    @Test
+    void save_changedDetachedEntity_written() {
+        var detached = load();
+        detached.setPrice(40);
+
+        repository.save(detached);
+
+        assertEquals(40, load().getPrice());
+    }
+
+    @Test
+    void merge_unchangedDetachedEntity_nothingWritten() {
+        var detached = load();
+
+        transactionTemplate.executeWithoutResult(status -> entityManager.merge(detached));
+
+        assertEquals(0, load().getVersionValue());
+    }
+
+    private void inTransaction(Consumer<Gadget> action) {
+        transactionTemplate.executeWithoutResult(status -> action.accept(entityManager.find(Gadget.class, gadgetId)));
+    }
+
+    private Gadget load() {
+        return repository.findById(gadgetId).orElseThrow();
+    }
+}
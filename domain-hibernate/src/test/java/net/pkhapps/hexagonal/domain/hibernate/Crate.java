@@ -0,0 +1,71 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.domain.hibernate;
+
+import net.pkhapps.hexagonal.domain.base.BaseAggregateRoot;
+import net.pkhapps.hexagonal.domain.base.BaseRepository;
+import net.pkhapps.hexagonal.domain.base.support.UUIDDomainObjectId;
+import org.hibernate.annotations.Type;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import java.util.UUID;
+
+/**
+ * Aggregate root with a UUID ID, used by the sharding tests.
+ */
+@Entity
+class Crate extends BaseAggregateRoot<Crate.CrateId> {
+
+    @Id
+    @Type(type = "net.pkhapps.hexagonal.domain.hibernate.Crate$CrateIdType")
+    @Column(length = 16)
+    private CrateId id;
+
+    protected Crate() {
+    }
+
+    Crate(@NotNull CrateId id) {
+        this.id = id;
+    }
+
+    @Override
+    public @Nullable CrateId getId() {
+        return id;
+    }
+
+    static final class CrateId extends UUIDDomainObjectId {
+
+        CrateId(@NotNull UUID uuid) {
+            super(uuid);
+        }
+    }
+
+    public static final class CrateIdType extends UUIDDomainObjectIdCustomType<CrateId> {
+
+        public CrateIdType() {
+            super(new UUIDDomainObjectIdTypeDescriptor<>(CrateId.class, CrateId::new));
+        }
+    }
+
+    interface Repository extends BaseRepository<Crate, CrateId> {
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.domain.hibernate;
+
+import net.pkhapps.hexagonal.domain.base.BaseAggregateRoot;
+import net.pkhapps.hexagonal.domain.base.BaseRepository;
+import net.pkhapps.hexagonal.domain.base.annotation.ChangeTracking;
+import org.hibernate.annotations.DynamicUpdate;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.Id;
+
+/**
+ * Change tracked aggregate root used by the tests.
+ */
+@Entity
+@ChangeTracking
+@DynamicUpdate
+class Gadget extends BaseAggregateRoot<Long> {
+
+    @Id
+    @GeneratedValue
+    private Long id;
+    private String name;
+    private int price;
+
+    protected Gadget() {
+    }
+
+    Gadget(@NotNull String name, int price) {
+        this.name = name;
+        this.price = price;
+    }
+
+    @Override
+    public @Nullable Long getId() {
+        return id;
+    }
+
+    @NotNull String getName() {
+        return name;
+    }
+
+    void setName(@NotNull String name) {
+        this.name = name;
+        markModified("name");
+    }
+
+    int getPrice() {
+        return price;
+    }
+
+    void setPrice(int price) {
+        this.price = price;
+        markModified("price");
+    }
+
+    /**
+     * Changes the price without marking it, which breaks the contract of change tracked entities.
+     */
+    void setPriceWithoutMarking(int price) {
+        this.price = price;
+    }
+
+    interface Repository extends BaseRepository<Gadget, Long> {
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.domain.hibernate;
+
+import net.pkhapps.hexagonal.domain.base.BaseAggregateRoot;
+import net.pkhapps.hexagonal.domain.base.BaseRepository;
+import net.pkhapps.hexagonal.domain.base.support.NumericDomainObjectId;
+import net.pkhapps.hexagonal.domain.base.support.sharding.ShardKeyedId;
+import org.hibernate.annotations.Type;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+
+/**
+ * Aggregate root with a numeric ID that embeds its shard key, used by the sharding tests.
+ */
+@Entity
+class Parcel extends BaseAggregateRoot<Parcel.ParcelId> {
+
+    @Id
+    @Type(type = "net.pkhapps.hexagonal.domain.hibernate.Parcel$ParcelIdType")
+    private ParcelId id;
+
+    protected Parcel() {
+    }
+
+    Parcel(@NotNull ParcelId id) {
+        this.id = id;
+    }
+
+    @Override
+    public @Nullable ParcelId getId() {
+        return id;
+    }
+
+    /**
+     * Numeric ID with the shard key in its upper 32 bits.
+     */
+    static final class ParcelId extends NumericDomainObjectId implements ShardKeyedId {
+
+        ParcelId(long id) {
+            super(id);
+        }
+
+        ParcelId(int shardKey, int sequence) {
+            this((long) shardKey << 32 | sequence);
+        }
+
+        @Override
+        public int shardKey() {
+            return (int) (unwrap() >>> 32);
+        }
+    }
+
+    public static final class ParcelIdType extends NumericDomainObjectIdCustomType<ParcelId> {
+
+        public ParcelIdType() {
+            super(new NumericDomainObjectIdTypeDescriptor<>(ParcelId.class, ParcelId::new));
+        }
+    }
+
+    interface Repository extends BaseRepository<Parcel, ParcelId> {
+    }
+}
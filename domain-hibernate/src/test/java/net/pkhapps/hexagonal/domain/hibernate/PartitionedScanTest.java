@@ -0,0 +1,107 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.domain.hibernate;
+
+import net.pkhapps.hexagonal.domain.base.support.scan.IdPartitioning;
+import net.pkhapps.hexagonal.domain.base.support.scan.PartitionedScan;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs a {@link PartitionedScan} over aggregates whose domain object IDs are mapped with the custom types of this
+ * module, so that the range bounds are passed to the database as domain object IDs.
+ */
+class PartitionedScanTest {
+
+    private static final int AGGREGATES = 100;
+
+    private AnnotationConfigApplicationContext context;
+
+    @BeforeEach
+    void setUp() {
+        context = new AnnotationConfigApplicationContext(JpaTestConfig.class);
+    }
+
+    @AfterEach
+    void tearDown() {
+        context.close();
+    }
+
+    @Test
+    void run_numericDomainObjectIds_processesEveryAggregateOnce() {
+        var repository = context.getBean(Parcel.Repository.class);
+        var ids = new ArrayList<Parcel.ParcelId>();
+        for (int i = 1; i <= AGGREGATES; ++i) {
+            ids.add(new Parcel.ParcelId(i % 3, i));
+        }
+        repository.saveAll(ids.stream().map(Parcel::new).collect(Collectors.toList()));
+        var processed = Collections.synchronizedList(new ArrayList<Parcel.ParcelId>());
+        var scan = new PartitionedScan<>(repository, IdPartitioning.numeric(Parcel.ParcelId::new),
+                context.getBean(PlatformTransactionManager.class));
+        configure(scan);
+
+        var progress = scan.run("parcels", null, batch -> batch.forEach(parcel -> processed.add(parcel.getId())));
+
+        assertProcessedOnce(ids, processed);
+        assertEquals(AGGREGATES, progress.getProcessedAggregates());
+    }
+
+    @Test
+    void run_uuidDomainObjectIds_processesEveryAggregateOnce() {
+        var repository = context.getBean(Crate.Repository.class);
+        var random = new Random(1);
+        var ids = new ArrayList<Crate.CrateId>();
+        for (int i = 0; i < AGGREGATES; ++i) {
+            ids.add(new Crate.CrateId(new UUID(random.nextLong(), random.nextLong())));
+        }
+        repository.saveAll(ids.stream().map(Crate::new).collect(Collectors.toList()));
+        var processed = Collections.synchronizedList(new ArrayList<Crate.CrateId>());
+        var scan = new PartitionedScan<>(repository, IdPartitioning.uuid(Crate.CrateId::new),
+                context.getBean(PlatformTransactionManager.class));
+        configure(scan);
+
+        var progress = scan.run("crates", null, batch -> batch.forEach(crate -> processed.add(crate.getId())));
+
+        assertProcessedOnce(ids, processed);
+        assertEquals(AGGREGATES, progress.getProcessedAggregates());
+    }
+
+    private static void configure(PartitionedScan<?, ?> scan) {
+        scan.setPartitionCount(10);
+        scan.setBatchSize(4);
+        scan.setParallelism(3);
+    }
+
+    private static <ID> void assertProcessedOnce(List<ID> expected, List<ID> processed) {
+        assertEquals(new HashSet<>(expected), new HashSet<>(processed));
+        assertEquals(expected.size(), processed.size());
+    }
+}
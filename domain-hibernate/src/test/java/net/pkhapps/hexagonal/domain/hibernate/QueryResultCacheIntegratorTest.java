@@ -0,0 +1,104 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.domain.hibernate;
+
+import net.pkhapps.hexagonal.domain.base.support.SpecificationShape;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QueryResultCacheIntegratorTest {
+
+    private static final SpecificationShape<Product> BY_MIN_PRICE = SpecificationShape.of(
+            (root, query, cb, params) -> cb.ge(root.get("price"), params.get("min", Integer.class)));
+
+    private AnnotationConfigApplicationContext context;
+    private Product.Repository repository;
+    private TransactionTemplate transactionTemplate;
+    private EntityManager entityManager;
+    private long appleId;
+
+    @BeforeEach
+    void setUp() {
+        context = new AnnotationConfigApplicationContext(JpaTestConfig.class);
+        repository = context.getBean(Product.Repository.class);
+        transactionTemplate = context.getBean(TransactionTemplate.class);
+        entityManager = context.getBean(EntityManager.class);
+        appleId = repository.save(new Product("apple", 1)).getIdentifier();
+        repository.save(new Product("banana", 2));
+    }
+
+    @AfterEach
+    void tearDown() {
+        context.close();
+    }
+
+    @Test
+    void dirtyCheckingFlush_invalidatesResultCache() {
+        assertEquals(List.of("banana"), namesWithMinPrice(2));
+        assertEquals(1, repository.count(BY_MIN_PRICE.with("min", 2)));
+
+        transactionTemplate.executeWithoutResult(status -> entityManager.find(Product.class, appleId).setPrice(3));
+
+        assertEquals(List.of("apple", "banana"), namesWithMinPrice(2));
+        assertEquals(2, repository.count(BY_MIN_PRICE.with("min", 2)));
+    }
+
+    @Test
+    void insertAndDeleteWithoutRepository_invalidateResultCache() {
+        assertEquals(List.of("banana"), namesWithMinPrice(2));
+
+        transactionTemplate.executeWithoutResult(status -> entityManager.persist(new Product("cherry", 3)));
+        assertEquals(List.of("banana", "cherry"), namesWithMinPrice(2));
+
+        transactionTemplate.executeWithoutResult(status -> entityManager.createQuery(
+                "select p from Product p where p.name = 'banana'", Product.class)
+                .getResultList()
+                .forEach(entityManager::remove));
+        assertEquals(List.of("cherry"), namesWithMinPrice(2));
+    }
+
+    @Test
+    void uncommittedChanges_bypassResultCacheUntilCompletion() {
+        assertEquals(List.of("banana"), namesWithMinPrice(2));
+
+        transactionTemplate.executeWithoutResult(status -> {
+            entityManager.find(Product.class, appleId).setPrice(3);
+            entityManager.flush();
+            assertEquals(List.of("apple", "banana"), namesWithMinPrice(2));
+            status.setRollbackOnly();
+        });
+
+        assertEquals(List.of("banana"), namesWithMinPrice(2));
+    }
+
+    private List<String> namesWithMinPrice(int min) {
+        return repository.findAll(BY_MIN_PRICE.with("min", min)).stream()
+                .map(Product::getName)
+                .sorted()
+                .collect(Collectors.toList());
+    }
+}
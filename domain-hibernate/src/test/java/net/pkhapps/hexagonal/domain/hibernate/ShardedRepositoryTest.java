@@ -0,0 +1,162 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.domain.hibernate;
+
+import net.pkhapps.hexagonal.domain.base.BaseAggregateRoot;
+import net.pkhapps.hexagonal.domain.base.BaseRepository;
+import net.pkhapps.hexagonal.domain.base.support.StableHash;
+import net.pkhapps.hexagonal.domain.base.support.sharding.ShardResolver;
+import net.pkhapps.hexagonal.domain.base.support.sharding.ShardedRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.data.domain.Sort;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.ToIntFunction;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs a {@link ShardedRepository} over aggregates whose domain object IDs are mapped with the custom types of this
+ * module, so that the shards sort the IDs like the databases do in production.
+ */
+class ShardedRepositoryTest {
+
+    private static final int SHARD_COUNT = 3;
+
+    private final List<AnnotationConfigApplicationContext> contexts = new ArrayList<>();
+    private ExecutorService executor;
+
+    @BeforeEach
+    void setUp() {
+        for (int i = 0; i < SHARD_COUNT; ++i) {
+            contexts.add(new AnnotationConfigApplicationContext(JpaTestConfig.class));
+        }
+        executor = Executors.newFixedThreadPool(SHARD_COUNT);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdown();
+        contexts.forEach(AnnotationConfigApplicationContext::close);
+    }
+
+    private <A extends BaseAggregateRoot<ID>, ID extends Serializable> ShardedRepository<A, ID> shardedRepository(
+            Class<? extends BaseRepository<A, ID>> repositoryType, ShardResolver<ID> resolver) {
+        var shards = contexts.stream()
+                .map(context -> context.getBean(repositoryType))
+                .collect(Collectors.toList());
+        return new ShardedRepository<>(shards, resolver, executor);
+    }
+
+    private static <A extends BaseAggregateRoot<ID>, ID extends Serializable> void assertRoutedTo(
+            ShardedRepository<A, ID> repository, List<A> aggregates, ToIntFunction<ID> expectedShard) {
+        for (var aggregate : aggregates) {
+            var id = aggregate.getId();
+            for (int shard = 0; shard < SHARD_COUNT; ++shard) {
+                assertEquals(shard == expectedShard.applyAsInt(id), repository.getShard(shard).existsById(id),
+                        () -> "Shard of " + id);
+            }
+        }
+    }
+
+    @Test
+    void findAll_sortedByNumericId_embeddedKey_routesByKeyAndMergesInNumericOrder() {
+        var parcels = List.of(
+                new Parcel(new Parcel.ParcelId(2, 1)),
+                new Parcel(new Parcel.ParcelId(0, 7)),
+                new Parcel(new Parcel.ParcelId(5, 3)),
+                new Parcel(new Parcel.ParcelId(1, 2)),
+                new Parcel(new Parcel.ParcelId(4, 9)),
+                new Parcel(new Parcel.ParcelId(0, 4)),
+                new Parcel(new Parcel.ParcelId(3, 8)));
+        var repository = shardedRepository(Parcel.Repository.class,
+                ShardResolver.<Parcel.ParcelId>embeddedKey(SHARD_COUNT));
+        repository.saveAll(parcels);
+
+        assertRoutedTo(repository, parcels, id -> id.shardKey() % SHARD_COUNT);
+        var expected = parcels.stream()
+                .map(Parcel::getId)
+                .sorted(Comparator.comparing(Parcel.ParcelId::unwrap))
+                .collect(Collectors.toList());
+        var result = repository.findAll(null, Sort.by("id")).stream()
+                .map(Parcel::getId)
+                .collect(Collectors.toList());
+        assertEquals(expected, result);
+    }
+
+    @Test
+    void findAll_sortedByUUIDId_hashing_routesByHashAndMergesInUnsignedByteOrder() {
+        var crates = new ArrayList<Crate>();
+        // Both signs in both halves, so that signed and unsigned orders differ
+        for (var mostSignificantBits : new long[]{Long.MIN_VALUE, -1, 0, 1, Long.MAX_VALUE, 0x8000_0000_0000_0001L}) {
+            crates.add(new Crate(new Crate.CrateId(new UUID(mostSignificantBits, crates.size()))));
+            crates.add(new Crate(new Crate.CrateId(new UUID(mostSignificantBits, -crates.size()))));
+        }
+        var repository = shardedRepository(Crate.Repository.class,
+                ShardResolver.<Crate.CrateId>hashing(SHARD_COUNT));
+        repository.saveAll(crates);
+
+        assertRoutedTo(repository, crates, id -> StableHash.bucket(StableHash.of(id), SHARD_COUNT));
+        var expected = crates.stream()
+                .map(Crate::getId)
+                .sorted((id1, id2) -> Arrays.compareUnsigned(id1.toBytes(), id2.toBytes()))
+                .collect(Collectors.toList());
+        var ascending = repository.findAll(null, Sort.by("id")).stream()
+                .map(Crate::getId)
+                .collect(Collectors.toList());
+        assertEquals(expected, ascending);
+        Collections.reverse(expected);
+        var descending = repository.findAll(null, Sort.by(Sort.Direction.DESC, "id")).stream()
+                .map(Crate::getId)
+                .collect(Collectors.toList());
+        assertEquals(expected, descending);
+    }
+
+    @Test
+    void embeddedKeyOrHashing_keyedAndUnkeyedIds_routedByKeyOrHash() {
+        var parcels = List.of(new Parcel(new Parcel.ParcelId(1, 1)), new Parcel(new Parcel.ParcelId(2, 2)),
+                new Parcel(new Parcel.ParcelId(6, 3)));
+        var parcelRepository = shardedRepository(Parcel.Repository.class,
+                ShardResolver.<Parcel.ParcelId>embeddedKeyOrHashing(SHARD_COUNT));
+        parcelRepository.saveAll(parcels);
+        var crates = new ArrayList<Crate>();
+        for (int i = 0; i < 10; ++i) {
+            crates.add(new Crate(new Crate.CrateId(new UUID(i, i))));
+        }
+        var crateRepository = shardedRepository(Crate.Repository.class,
+                ShardResolver.<Crate.CrateId>embeddedKeyOrHashing(SHARD_COUNT));
+        crateRepository.saveAll(crates);
+
+        assertRoutedTo(parcelRepository, parcels, id -> id.shardKey() % SHARD_COUNT);
+        assertRoutedTo(crateRepository, crates, id -> StableHash.bucket(StableHash.of(id), SHARD_COUNT));
+        assertTrue(parcelRepository.findById(new Parcel.ParcelId(6, 3)).isPresent());
+        assertTrue(crateRepository.findById(new Crate.CrateId(new UUID(9, 9))).isPresent());
+    }
+}
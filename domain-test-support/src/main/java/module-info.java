@@ -0,0 +1,9 @@
+module net.pkhapps.hexagonal.domain.test {
+    requires static org.jetbrains.annotations;
+
+    requires java.sql;
+    requires net.pkhapps.hexagonal.domain.base;
+    requires spring.data.jpa;
+
+    exports net.pkhapps.hexagonal.domain.test;
+}
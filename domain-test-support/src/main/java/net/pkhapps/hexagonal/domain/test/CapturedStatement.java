@@ -0,0 +1,111 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.domain.test;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A SQL statement captured by {@link StatementCapturingDataSource}, together with the parameter values it was
+ * executed with.
+ */
+public final class CapturedStatement {
+
+    private final String sql;
+    private final SortedMap<Integer, ParameterBinding> bindings = new TreeMap<>();
+
+    CapturedStatement(@NotNull String sql) {
+        this.sql = requireNonNull(sql);
+    }
+
+    /**
+     * Returns the SQL of the statement.
+     */
+    public @NotNull String getSql() {
+        return sql;
+    }
+
+    /**
+     * Returns the parameter values of the statement, in parameter order.
+     */
+    public @NotNull List<Object> getParameters() {
+        var parameters = new ArrayList<>();
+        bindings.values().forEach(binding -> parameters.add(binding.setter.getName().equals("setNull")
+                ? null : binding.arguments[1]));
+        return Collections.unmodifiableList(parameters);
+    }
+
+    void recordBinding(@NotNull Method setter, @NotNull Object[] arguments) {
+        bindings.put((Integer) arguments[0], new ParameterBinding(setter, arguments.clone()));
+    }
+
+    @NotNull CapturedStatement copy() {
+        var copy = new CapturedStatement(sql);
+        copy.bindings.putAll(bindings);
+        return copy;
+    }
+
+    void clearBindings() {
+        bindings.clear();
+    }
+
+    /**
+     * Binds the captured parameter values to the given statement, using the same setter methods that were used when
+     * the statement was captured.
+     */
+    void bindTo(@NotNull PreparedStatement statement) throws SQLException {
+        for (var binding : bindings.values()) {
+            try {
+                binding.setter.invoke(statement, binding.arguments);
+            } catch (InvocationTargetException ex) {
+                if (ex.getCause() instanceof SQLException) {
+                    throw (SQLException) ex.getCause();
+                }
+                throw new IllegalStateException("Could not bind parameter", ex.getCause());
+            } catch (IllegalAccessException ex) {
+                throw new IllegalStateException("Could not bind parameter", ex);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return sql + " " + getParameters();
+    }
+
+    private static final class ParameterBinding {
+        private final Method setter;
+        private final Object[] arguments;
+
+        private ParameterBinding(@NotNull Method setter, @NotNull Object[] arguments) {
+            this.setter = setter;
+            this.arguments = arguments;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.domain.test;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * The execution plan of a registered query, summarized as the way each table is accessed.
+ *
+ * @see QueryPlanVerifier
+ */
+public final class QueryPlan {
+
+    /**
+     * The access path of a table that is read with a full table scan.
+     */
+    public static final String FULL_SCAN = "SCAN";
+
+    private final String name;
+    private final Map<String, String> accessPaths;
+    private final List<String> explainOutput;
+
+    QueryPlan(@NotNull String name, @NotNull Map<String, String> accessPaths, @NotNull List<String> explainOutput) {
+        this.name = requireNonNull(name);
+        this.accessPaths = Collections.unmodifiableMap(new LinkedHashMap<>(accessPaths));
+        this.explainOutput = List.copyOf(explainOutput);
+    }
+
+    /**
+     * Returns the name under which the query was registered.
+     */
+    public @NotNull String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the access path of each table read by the query, in plan order. The access path is either the name of
+     * the index used or {@link #FULL_SCAN}.
+     */
+    public @NotNull Map<String, String> getAccessPaths() {
+        return accessPaths;
+    }
+
+    /**
+     * Returns the tables that the query reads with full table scans.
+     */
+    public @NotNull List<String> getFullScans() {
+        return accessPaths.entrySet().stream()
+                .filter(entry -> FULL_SCAN.equals(entry.getValue()))
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toUnmodifiableList());
+    }
+
+    /**
+     * Returns the raw {@code EXPLAIN} output of each statement executed by the query.
+     */
+    public @NotNull List<String> getExplainOutput() {
+        return explainOutput;
+    }
+
+    @Override
+    public String toString() {
+        return name + " " + accessPaths;
+    }
+}
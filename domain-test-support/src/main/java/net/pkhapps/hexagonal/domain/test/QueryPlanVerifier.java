@@ -0,0 +1,280 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.domain.test;
+
+import org.jetbrains.annotations.NotNull;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Test utility that catches query plan regressions, such as a changed specification turning an index lookup into a
+ * full table scan. Queries are registered by name, executed against an embedded H2 database, and the SQL statements
+ * they execute are run through {@code EXPLAIN}. The resulting {@linkplain QueryPlan plans} are compared against a
+ * baseline file that is checked in with the tests.
+ * <p>
+ * {@link #verify()} fails with an {@link AssertionError} if a query reads a table with a full table scan where the
+ * baseline used an index (or did not read the table at all), or if a query has no baseline. To create or update the
+ * baseline after an intentional change, run the tests with the system property {@value #UPDATE_BASELINE_PROPERTY}
+ * set to {@code true} and review the diff of the baseline file.
+ * <p>
+ * The persistence unit under test must use a {@link StatementCapturingDataSource}, and the registered queries must
+ * run on the calling thread. Plans are parsed from H2's {@code EXPLAIN} output; other databases are not supported.
+ * Example:
+ * <pre>
+ * var verifier = new QueryPlanVerifier(dataSource, Path.of("src/test/resources/query-plans.txt"))
+ *     .register("customersByName", customerRepository, customerSpecifications.byName("Joe"))
+ *     .register("openOrders", orderRepository, orderSpecifications.open());
+ * verifier.verify();
+ * </pre>
+ */
+public class QueryPlanVerifier {
+
+    /**
+     * The system property that makes {@link #verify()} write the current plans to the baseline file instead of
+     * comparing against it.
+     */
+    public static final String UPDATE_BASELINE_PROPERTY = "hexagonal.queryPlans.updateBaseline";
+
+    private static final Pattern TABLE_ACCESS = Pattern.compile(
+            "(?:FROM|JOIN)\\s+([\\w.\"$]+)(?:\\s+(?!/\\*)[\\w\"$]+)?\\s*/\\*\\s*(.*?)\\s*\\*/",
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+    private static final String TABLE_SCAN_SUFFIX = ".tableScan";
+    private static final String BASELINE_HEADER = "# Query plan baseline, checked by " + QueryPlanVerifier.class
+            .getName() + ".\n# Regenerate with -D" + UPDATE_BASELINE_PROPERTY + "=true and review the changes.\n";
+
+    private final StatementCapturingDataSource dataSource;
+    private final Path baselineFile;
+    private final Map<String, Runnable> queries = new LinkedHashMap<>();
+
+    /**
+     * Creates a new {@code QueryPlanVerifier}.
+     *
+     * @param dataSource   the data source of the persistence unit under test.
+     * @param baselineFile the baseline file.
+     */
+    public QueryPlanVerifier(@NotNull StatementCapturingDataSource dataSource, @NotNull Path baselineFile) {
+        this.dataSource = requireNonNull(dataSource);
+        this.baselineFile = requireNonNull(baselineFile);
+    }
+
+    /**
+     * Registers a query.
+     *
+     * @param name  the name of the query, unique within the baseline file.
+     * @param query an action that executes the query.
+     * @return this verifier, for chaining.
+     */
+    public @NotNull QueryPlanVerifier register(@NotNull String name, @NotNull Runnable query) {
+        requireNonNull(name);
+        requireNonNull(query);
+        if (name.isBlank() || name.contains("=") || name.contains("\n")) {
+            throw new IllegalArgumentException("Invalid query name: " + name);
+        }
+        if (queries.putIfAbsent(name, query) != null) {
+            throw new IllegalArgumentException("Query " + name + " has already been registered");
+        }
+        return this;
+    }
+
+    /**
+     * Registers a query that finds all aggregates matching the given specification.
+     *
+     * @param name          the name of the query, unique within the baseline file.
+     * @param executor      the repository to query.
+     * @param specification the specification.
+     * @param <T>           the aggregate type.
+     * @return this verifier, for chaining.
+     */
+    public <T> @NotNull QueryPlanVerifier register(@NotNull String name, @NotNull JpaSpecificationExecutor<T> executor,
+                                                   @NotNull Specification<T> specification) {
+        requireNonNull(executor);
+        requireNonNull(specification);
+        return register(name, () -> executor.findAll(specification));
+    }
+
+    /**
+     * Executes all registered queries and explains the statements they execute.
+     *
+     * @return the plans of the queries, in registration order.
+     */
+    public @NotNull List<QueryPlan> explain() {
+        var plans = new ArrayList<QueryPlan>(queries.size());
+        queries.forEach((name, query) -> plans.add(explain(name, dataSource.capture(query))));
+        return plans;
+    }
+
+    private @NotNull QueryPlan explain(@NotNull String name, @NotNull List<CapturedStatement> statements) {
+        if (statements.isEmpty()) {
+            throw new IllegalStateException("Query " + name + " did not execute any statements on the calling thread");
+        }
+        var accessPaths = new LinkedHashMap<String, String>();
+        var explainOutput = new ArrayList<String>(statements.size());
+        for (var statement : statements) {
+            var output = explain(statement);
+            explainOutput.add(output);
+            var matcher = TABLE_ACCESS.matcher(output);
+            while (matcher.find()) {
+                var table = unquote(matcher.group(1));
+                var access = unquote(matcher.group(2));
+                var path = access.endsWith(TABLE_SCAN_SUFFIX) ? QueryPlan.FULL_SCAN
+                        : access.contains(":") ? access.substring(0, access.indexOf(':')).trim() : access;
+                // If the same table is read several ways, a full scan is what matters
+                accessPaths.merge(table, path, (a, b) -> QueryPlan.FULL_SCAN.equals(b) ? b : a);
+            }
+        }
+        return new QueryPlan(name, accessPaths, explainOutput);
+    }
+
+    private @NotNull String explain(@NotNull CapturedStatement statement) {
+        try (var connection = dataSource.getDelegate().getConnection();
+             var explain = connection.prepareStatement("EXPLAIN " + statement.getSql())) {
+            statement.bindTo(explain);
+            try (var rs = explain.executeQuery()) {
+                var output = new StringBuilder();
+                while (rs.next()) {
+                    output.append(rs.getString(1)).append('\n');
+                }
+                return output.toString();
+            }
+        } catch (SQLException ex) {
+            throw new IllegalStateException("Could not explain " + statement.getSql(), ex);
+        }
+    }
+
+    private static @NotNull String unquote(@NotNull String identifier) {
+        return identifier.replace("\"", "");
+    }
+
+    /**
+     * Executes and explains all registered queries and compares their plans against the baseline file, or writes the
+     * baseline file if the {@value #UPDATE_BASELINE_PROPERTY} system property is {@code true}.
+     *
+     * @throws AssertionError if any query has regressed or has no baseline.
+     */
+    public void verify() {
+        var plans = explain();
+        if (Boolean.getBoolean(UPDATE_BASELINE_PROPERTY)) {
+            writeBaseline(plans);
+            return;
+        }
+        var baseline = readBaseline();
+        var failures = new ArrayList<String>();
+        for (var plan : plans) {
+            var expected = baseline.get(plan.getName());
+            if (expected == null) {
+                failures.add(plan.getName() + ": no baseline, current plan is " + format(plan));
+                continue;
+            }
+            for (var table : plan.getFullScans()) {
+                var expectedPath = expected.get(table);
+                if (!QueryPlan.FULL_SCAN.equals(expectedPath)) {
+                    failures.add(String.format("%s: full table scan of %s, baseline %s%n%s", plan.getName(), table,
+                            expectedPath == null ? "did not read the table" : "used " + expectedPath,
+                            String.join("", plan.getExplainOutput())));
+                }
+            }
+        }
+        if (!failures.isEmpty()) {
+            throw new AssertionError(String.format("Query plan regressions found (baseline %s):%n%s", baselineFile,
+                    String.join(System.lineSeparator(), failures)));
+        }
+    }
+
+    private @NotNull Map<String, Map<String, String>> readBaseline() {
+        if (!Files.exists(baselineFile)) {
+            throw new AssertionError("Query plan baseline " + baselineFile + " does not exist, create it with -D"
+                    + UPDATE_BASELINE_PROPERTY + "=true");
+        }
+        try {
+            var baseline = new TreeMap<String, Map<String, String>>();
+            var lines = Files.readAllLines(baselineFile, StandardCharsets.UTF_8);
+            for (int i = 0; i < lines.size(); ++i) {
+                var line = lines.get(i).trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                var separator = line.indexOf('=');
+                var name = separator < 0 ? "" : line.substring(0, separator).trim();
+                if (name.isEmpty()) {
+                    throw malformedBaseline(i, line);
+                }
+                var accessPaths = new LinkedHashMap<String, String>();
+                var entries = line.substring(separator + 1).trim();
+                if (!entries.isEmpty()) {
+                    for (var entry : entries.split(",")) {
+                        var parts = entry.trim().split(":", 2);
+                        if (parts.length != 2 || parts[0].isBlank() || parts[1].isBlank()) {
+                            throw malformedBaseline(i, line);
+                        }
+                        accessPaths.put(parts[0].trim(), parts[1].trim());
+                    }
+                }
+                if (baseline.put(name, accessPaths) != null) {
+                    throw malformedBaseline(i, line);
+                }
+            }
+            return baseline;
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Could not read query plan baseline " + baselineFile, ex);
+        }
+    }
+
+    private @NotNull AssertionError malformedBaseline(int lineIndex, @NotNull String line) {
+        return new AssertionError(String.format("Malformed query plan baseline %s, line %d: %s (expected "
+                + "'name = table:access, ...'), regenerate it with -D%s=true", baselineFile, lineIndex + 1, line,
+                UPDATE_BASELINE_PROPERTY));
+    }
+
+    private void writeBaseline(@NotNull List<QueryPlan> plans) {
+        var content = new StringBuilder(BASELINE_HEADER);
+        plans.stream()
+                .sorted((p1, p2) -> p1.getName().compareTo(p2.getName()))
+                .forEach(plan -> content.append(plan.getName()).append(" = ").append(format(plan)).append('\n'));
+        try {
+            var parent = baselineFile.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            Files.writeString(baselineFile, content, StandardCharsets.UTF_8);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Could not write query plan baseline " + baselineFile, ex);
+        }
+    }
+
+    private static @NotNull String format(@NotNull QueryPlan plan) {
+        return plan.getAccessPaths().entrySet().stream()
+                .map(entry -> entry.getKey() + ":" + entry.getValue())
+                .collect(Collectors.joining(", "));
+    }
+}
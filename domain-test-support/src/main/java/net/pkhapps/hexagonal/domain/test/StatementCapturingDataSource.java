@@ -0,0 +1,192 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.domain.test;
+
+import org.jetbrains.annotations.NotNull;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Logger;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Data source wrapper that records the prepared statements executed by the current thread while
+ * {@linkplain #capture(Runnable) capturing}. Use it as the data source of the persistence unit under test so that
+ * {@link QueryPlanVerifier} can see the SQL that Hibernate generates for specifications.
+ */
+public class StatementCapturingDataSource implements DataSource {
+
+    private final DataSource delegate;
+    private final ThreadLocal<List<CapturedStatement>> captured = new ThreadLocal<>();
+
+    /**
+     * Creates a new {@code StatementCapturingDataSource}.
+     *
+     * @param delegate the data source to wrap.
+     */
+    public StatementCapturingDataSource(@NotNull DataSource delegate) {
+        this.delegate = requireNonNull(delegate);
+    }
+
+    /**
+     * Returns the wrapped data source. Connections from it are not captured.
+     */
+    public @NotNull DataSource getDelegate() {
+        return delegate;
+    }
+
+    /**
+     * Runs the given action and returns the prepared statements it executed through this data source, in execution
+     * order. Statements executed by other threads are not captured.
+     *
+     * @param action the action to run.
+     * @return the executed statements.
+     */
+    public @NotNull List<CapturedStatement> capture(@NotNull Runnable action) {
+        requireNonNull(action);
+        var previous = captured.get();
+        var statements = new ArrayList<CapturedStatement>();
+        captured.set(statements);
+        try {
+            action.run();
+        } finally {
+            if (previous == null) {
+                captured.remove();
+            } else {
+                captured.set(previous);
+            }
+        }
+        return Collections.unmodifiableList(statements);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return wrap(delegate.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return wrap(delegate.getConnection(username, password));
+    }
+
+    private @NotNull Connection wrap(@NotNull Connection connection) {
+        return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Connection.class},
+                new ConnectionHandler(connection));
+    }
+
+    @Override
+    public PrintWriter getLogWriter() throws SQLException {
+        return delegate.getLogWriter();
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) throws SQLException {
+        delegate.setLogWriter(out);
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) throws SQLException {
+        delegate.setLoginTimeout(seconds);
+    }
+
+    @Override
+    public int getLoginTimeout() throws SQLException {
+        return delegate.getLoginTimeout();
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        return delegate.getParentLogger();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        return iface.isInstance(this) ? iface.cast(this) : delegate.unwrap(iface);
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return iface.isInstance(this) || delegate.isWrapperFor(iface);
+    }
+
+    private static Object invoke(@NotNull Object target, @NotNull Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException ex) {
+            throw ex.getCause();
+        }
+    }
+
+    private final class ConnectionHandler implements InvocationHandler {
+        private final Connection connection;
+
+        private ConnectionHandler(@NotNull Connection connection) {
+            this.connection = connection;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            var result = StatementCapturingDataSource.invoke(connection, method, args);
+            var statements = captured.get();
+            if (statements != null && method.getName().equals("prepareStatement")
+                    && result instanceof PreparedStatement) {
+                return Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{PreparedStatement.class},
+                        new StatementHandler((PreparedStatement) result, (String) args[0], statements));
+            }
+            return result;
+        }
+    }
+
+    private static final class StatementHandler implements InvocationHandler {
+        private final PreparedStatement statement;
+        private final List<CapturedStatement> statements;
+        private final CapturedStatement current;
+
+        private StatementHandler(@NotNull PreparedStatement statement, @NotNull String sql,
+                                 @NotNull List<CapturedStatement> statements) {
+            this.statement = statement;
+            this.statements = statements;
+            this.current = new CapturedStatement(sql);
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            var name = method.getName();
+            if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+                current.recordBinding(method, args);
+            } else if (name.equals("clearParameters")) {
+                current.clearBindings();
+            } else if (name.equals("executeQuery") && (args == null || args.length == 0)) {
+                statements.add(current.copy());
+            }
+            return StatementCapturingDataSource.invoke(statement, method, args);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.domain.test;
+
+import org.jetbrains.annotations.NotNull;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+
+/**
+ * Entity used to test {@link QueryPlanVerifier} against queries generated by Hibernate. The code is indexed, the
+ * name is not.
+ */
+@Entity
+@Table(name = "item", indexes = @Index(name = "item_code_idx", columnList = "code"))
+class Item {
+
+    @Id
+    private Long id;
+    private String code;
+    private String name;
+
+    static @NotNull Specification<Item> byCode(@NotNull String code) {
+        return (root, query, builder) -> builder.equal(root.get("code"), code);
+    }
+
+    static @NotNull Specification<Item> byName(@NotNull String name) {
+        return (root, query, builder) -> builder.equal(root.get("name"), name);
+    }
+
+    interface Repository extends JpaRepository<Item, Long>, JpaSpecificationExecutor<Item> {
+    }
+}
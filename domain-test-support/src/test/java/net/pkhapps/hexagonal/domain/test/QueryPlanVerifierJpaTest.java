@@ -0,0 +1,124 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.domain.test;
+
+import org.h2.jdbcx.JdbcConnectionPool;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.persistence.EntityManagerFactory;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * End-to-end test of {@link QueryPlanVerifier} with specifications that Hibernate turns into SQL.
+ */
+class QueryPlanVerifierJpaTest {
+
+    @TempDir
+    Path tempDir;
+
+    private AnnotationConfigApplicationContext context;
+    private StatementCapturingDataSource dataSource;
+    private Item.Repository repository;
+    private Path baselineFile;
+
+    @BeforeEach
+    void setUp() {
+        context = new AnnotationConfigApplicationContext(Config.class);
+        dataSource = context.getBean(StatementCapturingDataSource.class);
+        repository = context.getBean(Item.Repository.class);
+        baselineFile = tempDir.resolve("query-plans.txt");
+    }
+
+    @AfterEach
+    void tearDown() {
+        context.close();
+    }
+
+    @Test
+    void explain_specifications_accessPathsOfGeneratedSqlParsed() {
+        var plans = verifier().explain();
+
+        assertEquals(Map.of("PUBLIC.ITEM", "PUBLIC.ITEM_CODE_IDX"), plans.get(0).getAccessPaths());
+        assertEquals(Map.of("PUBLIC.ITEM", QueryPlan.FULL_SCAN), plans.get(1).getAccessPaths());
+    }
+
+    @Test
+    void verify_specificationUsingIndexTurnedIntoFullScan_fails() throws IOException {
+        Files.writeString(baselineFile, "byCode = PUBLIC.ITEM:PUBLIC.ITEM_CODE_IDX\n"
+                + "byName = PUBLIC.ITEM:PUBLIC.ITEM_CODE_IDX\n");
+
+        var error = assertThrows(AssertionError.class, () -> verifier().verify());
+        assertTrue(error.getMessage().contains("byName: full table scan of PUBLIC.ITEM, baseline used "
+                + "PUBLIC.ITEM_CODE_IDX"), error.getMessage());
+        assertFalse(error.getMessage().contains("byCode:"), error.getMessage());
+    }
+
+    private @NotNull QueryPlanVerifier verifier() {
+        return new QueryPlanVerifier(dataSource, baselineFile)
+                .register("byCode", repository, Item.byCode("A"))
+                .register("byName", repository, Item.byName("a"));
+    }
+
+    @Configuration
+    @EnableJpaRepositories(considerNestedRepositories = true)
+    static class Config {
+
+        @Bean(destroyMethod = "dispose")
+        JdbcConnectionPool connectionPool() {
+            return JdbcConnectionPool.create("jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1", "sa", "");
+        }
+
+        @Bean
+        StatementCapturingDataSource dataSource(@NotNull JdbcConnectionPool connectionPool) {
+            return new StatementCapturingDataSource(connectionPool);
+        }
+
+        @Bean
+        LocalContainerEntityManagerFactoryBean entityManagerFactory(@NotNull StatementCapturingDataSource dataSource) {
+            var factory = new LocalContainerEntityManagerFactoryBean();
+            factory.setDataSource(dataSource);
+            factory.setPackagesToScan(Config.class.getPackageName());
+            factory.setJpaVendorAdapter(new HibernateJpaVendorAdapter());
+            factory.setJpaPropertyMap(Map.of("hibernate.hbm2ddl.auto", "create-drop"));
+            return factory;
+        }
+
+        @Bean
+        PlatformTransactionManager transactionManager(@NotNull EntityManagerFactory entityManagerFactory) {
+            return new JpaTransactionManager(entityManagerFactory);
+        }
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2020 Petter Holmström
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package net.pkhapps.hexagonal.domain.test;
+
+import org.h2.jdbcx.JdbcConnectionPool;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QueryPlanVerifierTest {
+
+    @TempDir
+    Path tempDir;
+
+    private JdbcConnectionPool pool;
+    private StatementCapturingDataSource dataSource;
+    private Connection keepAlive;
+    private Path baselineFile;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        pool = JdbcConnectionPool.create("jdbc:h2:mem:" + UUID.randomUUID(), "sa", "");
+        keepAlive = pool.getConnection();
+        try (var statement = keepAlive.createStatement()) {
+            statement.execute("create table item (id bigint primary key, code varchar(20), name varchar(50))");
+            statement.execute("create index item_code_idx on item (code)");
+        }
+        dataSource = new StatementCapturingDataSource(pool);
+        baselineFile = tempDir.resolve("query-plans.txt");
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        keepAlive.close();
+        pool.dispose();
+    }
+
+    @Test
+    void explain_indexedAndUnindexedColumns_accessPathsParsed() {
+        var plans = verifier().explain();
+
+        assertEquals("byCode", plans.get(0).getName());
+        assertEquals(Map.of("PUBLIC.ITEM", "PUBLIC.ITEM_CODE_IDX"), plans.get(0).getAccessPaths());
+        assertTrue(plans.get(0).getFullScans().isEmpty());
+        assertEquals("byName", plans.get(1).getName());
+        assertEquals(Map.of("PUBLIC.ITEM", QueryPlan.FULL_SCAN), plans.get(1).getAccessPaths());
+        assertEquals(1, plans.get(1).getFullScans().size());
+    }
+
+    @Test
+    void verify_updateBaseline_writesBaselineThatVerifies() throws IOException {
+        System.setProperty(QueryPlanVerifier.UPDATE_BASELINE_PROPERTY, "true");
+        try {
+            verifier().verify();
+        } finally {
+            System.clearProperty(QueryPlanVerifier.UPDATE_BASELINE_PROPERTY);
+        }
+
+        var baseline = Files.readString(baselineFile);
+        assertTrue(baseline.contains("byCode = PUBLIC.ITEM:PUBLIC.ITEM_CODE_IDX\n"), baseline);
+        assertTrue(baseline.contains("byName = PUBLIC.ITEM:" + QueryPlan.FULL_SCAN + "\n"), baseline);
+        verifier().verify();
+    }
+
+    @Test
+    void verify_indexLookupTurnedIntoFullScan_fails() throws IOException {
+        Files.writeString(baselineFile, "byCode = PUBLIC.ITEM:PUBLIC.ITEM_CODE_IDX\n"
+                + "byName = PUBLIC.ITEM:PUBLIC.ITEM_NAME_IDX\n");
+
+        var error = assertThrows(AssertionError.class, () -> verifier().verify());
+        assertTrue(error.getMessage().contains("byName: full table scan of PUBLIC.ITEM, baseline used "
+                + "PUBLIC.ITEM_NAME_IDX"), error.getMessage());
+        assertFalse(error.getMessage().contains("byCode:"), error.getMessage());
+    }
+
+    @Test
+    void verify_queryWithoutBaseline_fails() throws IOException {
+        Files.writeString(baselineFile, "# comment\n\nbyCode = PUBLIC.ITEM:PUBLIC.ITEM_CODE_IDX\n");
+
+        var error = assertThrows(AssertionError.class, () -> verifier().verify());
+        assertTrue(error.getMessage().contains("byName: no baseline"), error.getMessage());
+    }
+
+    @Test
+    void verify_missingBaselineFile_fails() {
+        var error = assertThrows(AssertionError.class, () -> verifier().verify());
+        assertTrue(error.getMessage().contains("does not exist"), error.getMessage());
+    }
+
+    @Test
+    void verify_lineWithoutSeparator_reportedAsMalformed() throws IOException {
+        Files.writeString(baselineFile, "# comment\nbyCode PUBLIC.ITEM:PUBLIC.ITEM_CODE_IDX\n");
+
+        var error = assertThrows(AssertionError.class, () -> verifier().verify());
+        assertTrue(error.getMessage().contains("Malformed query plan baseline"), error.getMessage());
+        assertTrue(error.getMessage().contains("line 2"), error.getMessage());
+    }
+
+    @Test
+    void verify_entryWithoutAccessPath_reportedAsMalformed() throws IOException {
+        Files.writeString(baselineFile, "byCode = PUBLIC.ITEM\n");
+
+        var error = assertThrows(AssertionError.class, () -> verifier().verify());
+        assertTrue(error.getMessage().contains("Malformed query plan baseline"), error.getMessage());
+    }
+
+    private @NotNull QueryPlanVerifier verifier() {
+        return new QueryPlanVerifier(dataSource, baselineFile)
+                .register("byCode", () -> query("select id from item where code = ?", "A"))
+                .register("byName", () -> query("select id from item where name = ?", "a"));
+    }
+
+    private void query(@NotNull String sql, @NotNull String value) {
+        try (var connection = dataSource.getConnection();
+             var statement = connection.prepareStatement(sql)) {
+            statement.setString(1, value);
+            statement.executeQuery().close();
+        } catch (SQLException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+}